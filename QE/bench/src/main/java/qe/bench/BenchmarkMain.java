@@ -0,0 +1,34 @@
+package qe.bench;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks: java -jar target/benchmarks.jar [JMH options]
+ *
+ * The results are written as JSON to bench-results/jmh-&lt;date&gt;.json (unless -rf/-rff are given), one file
+ * per run so they can be compared over time. Every benchmark runs with 10^4, 10^5 and 10^6 students by default,
+ * other scales are given with -p students=..., e.g. -p students=100000000 (the generated databases are kept,
+ * see DataGenerator)
+ *
+ * Examples:
+ *   java -jar target/benchmarks.jar SelectBenchmark -p students=100000
+ *   java -jar target/benchmarks.jar -l
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options=new ArrayList<>(Arrays.asList(args));
+        if(!options.contains("-rf") && !options.contains("-rff")){
+            File folder=new File("bench-results");
+            folder.mkdirs();
+            String date=LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            options.addAll(0,Arrays.asList("-rf","json","-rff",new File(folder,"jmh-"+date+".json").getPath()));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,155 @@
+package qe.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.SplittableRandom;
+
+/**
+ * Generates databases with the schema of db/schema.txt (student, course, enroll) scaled to a number of students
+ *
+ * For n students the database has n students, max(10,n/100) courses and 2n enrollments; a student's sid is s0..s(n-1),
+ * its birth year is uniform in [1950,2005) and each enrollment is a student and a course drawn uniformly, so point
+ * and range queries select a known fraction of the tables. The data only depends on n (fixed seed)
+ *
+ * Generated databases are kept under the data folder (system property qe.bench.data, by default qe-bench in the
+ * temporary folder) and reused by later runs; the rows are written as they are generated, so 10^8 students only
+ * need the disk space. Benchmarks that change the database work on a copy (see copy)
+ */
+final class DataGenerator {
+    static final String SCHEMA="student(sid:String, sname:String, major:String, byear:Integer)\n"
+            +"course(cno:String, cname:String, dept:String)\n"
+            +"enroll(sid:String, cno:String, grade:String)\n";
+    static final int FIRST_YEAR=1950;
+    static final int YEARS=55;
+
+    private static final String[] NAMES={"John","Ellen","Eric","Ann","Maria","Omar","Li","Sofia","Kwame","Ines",
+            "Yuki","Pavel","Amara","Lucas","Nadia","Tom"};
+    private static final String[] DEPARTMENTS={"CS","Math","Physics","Biology","History","Art","Music","Law"};
+    private static final String[] GRADES={"A","B","C","D","F"};
+    private static final String COMPLETE=".complete";
+
+    private DataGenerator() {
+    }
+
+    static int courses(int students) {
+        return Math.max(10,students/100);
+    }
+
+    static Path dataFolder() {
+        return Paths.get(System.getProperty("qe.bench.data",System.getProperty("java.io.tmpdir")+"/qe-bench"));
+    }
+
+    /**
+     * Returns the folder of the generated database with the given number of students, generating it if needed
+     * (the folder must not be changed, see copy)
+     * @param students
+     * @return
+     */
+    static synchronized Path database(int students) {
+        Path folder=dataFolder().resolve("students-"+students);
+        if(Files.exists(folder.resolve(COMPLETE))){
+            return folder;
+        }
+        try {
+            delete(folder);
+            Files.createDirectories(folder);
+            Files.write(folder.resolve("schema.txt"),SCHEMA.getBytes(StandardCharsets.UTF_8));
+            generate(folder,students);
+            Files.createFile(folder.resolve(COMPLETE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return folder;
+    }
+
+    /**
+     * Writes the csv files of the three tables
+     *
+     * Implements the following algorithm
+     *
+     * For each student i: write s<i>, a name, a department and a birth year
+     * For each course i: write c<i>, its title and a department
+     * For each of the 2n enrollments: write a random student, a random course and a grade
+     */
+    private static void generate(Path folder, int students) throws IOException {
+        SplittableRandom random=new SplittableRandom(42);
+        int courses=courses(students);
+        try(BufferedWriter out=Files.newBufferedWriter(folder.resolve("student.csv"),StandardCharsets.UTF_8)){
+            for(int i=0;i<students;i++){
+                out.write("s"+i+","+NAMES[random.nextInt(NAMES.length)]+","
+                        +DEPARTMENTS[random.nextInt(DEPARTMENTS.length)]+","+(FIRST_YEAR+random.nextInt(YEARS))+"\n");
+            }
+        }
+        try(BufferedWriter out=Files.newBufferedWriter(folder.resolve("course.csv"),StandardCharsets.UTF_8)){
+            for(int i=0;i<courses;i++){
+                out.write("c"+i+",Course "+i+","+DEPARTMENTS[random.nextInt(DEPARTMENTS.length)]+"\n");
+            }
+        }
+        try(BufferedWriter out=Files.newBufferedWriter(folder.resolve("enroll.csv"),StandardCharsets.UTF_8)){
+            for(long i=0;i<2L*students;i++){
+                out.write("s"+random.nextInt(students)+",c"+random.nextInt(courses)+","
+                        +GRADES[random.nextInt(GRADES.length)]+"\n");
+            }
+        }
+    }
+
+    /**
+     * Copies a generated database to a working folder (replacing its content) that a benchmark can change
+     * @param source
+     * @param name
+     * @return the working folder
+     */
+    static Path copy(Path source, String name) {
+        Path target=dataFolder().resolve("work").resolve(name);
+        try {
+            delete(target);
+            Files.createDirectories(target);
+            try(var files=Files.list(source)){
+                for(Path file: (Iterable<Path>) files::iterator){
+                    if(!file.getFileName().toString().equals(COMPLETE)){
+                        Files.copy(file,target.resolve(file.getFileName()),StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return target;
+    }
+
+    /**
+     * Deletes a folder and its content, if it exists
+     * @param folder
+     */
+    static void delete(Path folder) {
+        if(!Files.exists(folder)){
+            return;
+        }
+        try {
+            Files.walkFileTree(folder,new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package qe.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk delete (Database.deleteData): deleting batch students matched by a condition on an attribute without index
+ * from the indexed student table, so the table keeps its size; the students are inserted before each delete,
+ * outside of the measured time
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=20)
+@Measurement(iterations=50)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeleteBenchmark {
+    @Param({"10000","100000","1000000"})
+    int students;
+
+    @Param({"1000"})
+    int batch;
+
+    Engine engine;
+    int next;
+
+    @Setup(Level.Trial)
+    public void open() {
+        this.engine=Engine.open(DataGenerator.copy(DataGenerator.database(students),"delete"));
+        engine.createIndex("CREATE INDEX ON student (sid) USING BTREE");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        engine.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void insert() {
+        engine.insert(InsertBenchmark.insertQuery(next,batch,"Deleted"));
+        next+=batch;
+    }
+
+    @Benchmark
+    public void bulkDelete() {
+        engine.delete("DELETE FROM student WHERE major = 'Deleted'");
+    }
+}
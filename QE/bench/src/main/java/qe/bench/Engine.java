@@ -0,0 +1,190 @@
+package qe.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A database of the engine, as seen by the benchmarks
+ *
+ * The engine classes are in the default package, which a class in a package cannot name (and JMH does not accept
+ * benchmarks in the default package), so the database is called through method handles looked up once:
+ * a call costs a few nanoseconds, nothing next to running a query
+ */
+final class Engine implements AutoCloseable {
+    private static final MethodHandle NEW_DATABASE;
+    private static final MethodHandle POPULATE;
+    private static final MethodHandle SET_RESULT_CACHE;
+    private static final MethodHandle SELECT;
+    private static final MethodHandle INSERT;
+    private static final MethodHandle DELETE;
+    private static final MethodHandle CREATE_INDEX;
+    private static final MethodHandle CLOSE;
+    private static final MethodHandle GET_TABLES;
+    private static final MethodHandle GET_NAME;
+    private static final MethodHandle GET_SCHEMA;
+    private static final MethodHandle GET_TUPLES;
+    private static final MethodHandle READ_TABLE;
+
+    static {
+        try {
+            ClassLoader loader=Engine.class.getClassLoader();
+            Class<?> database=Class.forName("Database",true,loader);
+            Class<?> table=Class.forName("ITable",true,loader);
+            Class<?> schema=Class.forName("ISchema",true,loader);
+            Class<?> io=Class.forName("IO",true,loader);
+            MethodHandles.Lookup lookup=MethodHandles.lookup();
+            Constructor<?> constructor=database.getDeclaredConstructor(String.class,String.class);
+            constructor.setAccessible(true);
+            NEW_DATABASE=lookup.unreflectConstructor(constructor);
+            POPULATE=method(lookup,database,"populateDB");
+            SET_RESULT_CACHE=method(lookup,database,"setResultCache",int.class,long.class);
+            SELECT=method(lookup,database,"selectData",String.class);
+            INSERT=method(lookup,database,"insertData",String.class);
+            DELETE=method(lookup,database,"deleteData",String.class);
+            CREATE_INDEX=method(lookup,database,"createIndex",String.class);
+            CLOSE=method(lookup,database,"close");
+            GET_TABLES=method(lookup,database,"getTables");
+            GET_NAME=method(lookup,table,"getName");
+            GET_SCHEMA=method(lookup,table,"getSchema");
+            GET_TUPLES=method(lookup,table,"getTuples");
+            READ_TABLE=method(lookup,io,"readTable",String.class,schema,String.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle method(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?>... parameters)
+            throws ReflectiveOperationException {
+        Method m=owner.getDeclaredMethod(name,parameters);
+        m.setAccessible(true);
+        return lookup.unreflect(m);
+    }
+
+    private final Object db;
+    private final Path folder;
+
+    private Engine(Object db, Path folder) {
+        this.db=db;
+        this.folder=folder;
+    }
+
+    /**
+     * Opens the database of a folder (see DataGenerator) without loading its tables
+     * @param folder
+     * @return
+     */
+    static Engine create(Path folder) {
+        try {
+            return new Engine(NEW_DATABASE.invoke(folder.toString(),"schema.txt"),folder);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Opens the database of a folder and loads its tables, with the result cache off so that selects run
+     * @param folder
+     * @return
+     */
+    static Engine open(Path folder) {
+        Engine engine=create(folder);
+        engine.populate();
+        engine.setResultCache(0,0);
+        return engine;
+    }
+
+    void populate() {
+        try {
+            POPULATE.invoke(db);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    void setResultCache(int maxEntries, long maxBytes) {
+        try {
+            SET_RESULT_CACHE.invoke(db,maxEntries,maxBytes);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Runs a select query
+     * @param query
+     * @return the result tuples
+     */
+    List<?> select(String query) {
+        try {
+            return (List<?>) GET_TUPLES.invoke(SELECT.invoke(db,query));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    void insert(String query) {
+        try {
+            INSERT.invoke(db,query);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    void delete(String query) {
+        try {
+            DELETE.invoke(db,query);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    void createIndex(String query) {
+        try {
+            CREATE_INDEX.invoke(db,query);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Reads the csv file of a table with IO.readTable, without adding it to the database
+     * @param tableName
+     * @return the tuples read
+     */
+    List<?> readTable(String tableName) {
+        try {
+            for(Object table: (List<?>) GET_TABLES.invoke(db)){
+                if(GET_NAME.invoke(table).equals(tableName)){
+                    Object read=READ_TABLE.invoke(tableName,GET_SCHEMA.invoke(table),folder.toString());
+                    return (List<?>) GET_TUPLES.invoke(read);
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+        throw new IllegalArgumentException("Unknown table: "+tableName);
+    }
+
+    @Override
+    public void close() {
+        try {
+            CLOSE.invoke(db);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if(e instanceof RuntimeException){
+            return (RuntimeException) e;
+        }
+        if(e instanceof Error){
+            throw (Error) e;
+        }
+        return new RuntimeException(e);
+    }
+}
@@ -0,0 +1,70 @@
+package qe.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk insert (Database.insertData): one insert query of batch new students into the indexed student table
+ * Each iteration starts from a fresh copy of the generated database
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3,time=2)
+@Measurement(iterations=5,time=2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+    @Param({"10000","100000","1000000"})
+    int students;
+
+    @Param({"1000"})
+    int batch;
+
+    Engine engine;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        this.engine=Engine.open(DataGenerator.copy(DataGenerator.database(students),"insert"));
+        engine.createIndex("CREATE INDEX ON student (sid) USING BTREE");
+        this.next=0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        engine.close();
+    }
+
+    @Benchmark
+    public void bulkInsert() {
+        engine.insert(insertQuery(next,batch,"Bench"));
+        next+=batch;
+    }
+
+    /**
+     * Returns an insert query of count new students (sids n<first>..), in the given major
+     */
+    static String insertQuery(int first, int count, String major) {
+        StringBuilder query=new StringBuilder("INSERT INTO student VALUES ");
+        for(int i=0;i<count;i++){
+            if(i>0){
+                query.append(", ");
+            }
+            query.append("('n").append(first+i).append("', 'New', '").append(major).append("', 2000)");
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package qe.bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Joins (Database.selectData, result cache off): student with all its enrollments, and the three tables
+ * for the students of one birth year
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3,time=2)
+@Measurement(iterations=5,time=2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JoinBenchmark {
+    @Param({"10000","100000","1000000"})
+    int students;
+
+    Engine engine;
+
+    @Setup(Level.Trial)
+    public void open() {
+        this.engine=Engine.open(DataGenerator.copy(DataGenerator.database(students),"join"));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        engine.close();
+    }
+
+    @Benchmark
+    public List<?> studentEnroll() {
+        return engine.select("SELECT student.sname, enroll.cno FROM student JOIN enroll ON student.sid = enroll.sid");
+    }
+
+    @Benchmark
+    public List<?> threeTablesOneYear() {
+        int year=DataGenerator.FIRST_YEAR+ThreadLocalRandom.current().nextInt(DataGenerator.YEARS);
+        return engine.select("SELECT student.sname, course.cname FROM student JOIN enroll ON student.sid = enroll.sid"
+                +" JOIN course ON enroll.cno = course.cno WHERE student.byear = "+year);
+    }
+}
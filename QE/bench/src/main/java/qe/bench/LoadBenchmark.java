@@ -0,0 +1,80 @@
+package qe.bench;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold load: opening a database from its csv files (Database.populateDB), and reading one csv file (IO.readTable)
+ * Every load starts from a fresh copy of the generated database, so no statistics or index file of an earlier
+ * load is reused
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=2)
+@Measurement(iterations=5)
+@Fork(1)
+public class LoadBenchmark {
+
+    @State(Scope.Thread)
+    public static class Load {
+        @Param({"10000","100000","1000000"})
+        int students;
+
+        Path source;
+        Engine engine;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            this.source=DataGenerator.database(students);
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() {
+            this.engine=Engine.create(DataGenerator.copy(source,"load"));
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() {
+            engine.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Read {
+        @Param({"10000","100000","1000000"})
+        int students;
+
+        Engine engine;
+
+        @Setup(Level.Trial)
+        public void open() {
+            this.engine=Engine.create(DataGenerator.database(students));
+        }
+    }
+
+    @Benchmark
+    public Engine populate(Load load) {
+        load.engine.populate();
+        return load.engine;
+    }
+
+    @Benchmark
+    public List<?> readEnroll(Read read) {
+        return read.engine.readTable("enroll");
+    }
+}
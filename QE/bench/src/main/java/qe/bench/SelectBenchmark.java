@@ -0,0 +1,61 @@
+package qe.bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Selects on the student table (Database.selectData, result cache off): a point select on an indexed key
+ * and the range of one birth year (indexed) sorted on another attribute
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3,time=2)
+@Measurement(iterations=5,time=2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectBenchmark {
+    @Param({"10000","100000","1000000"})
+    int students;
+
+    Engine engine;
+
+    @Setup(Level.Trial)
+    public void open() {
+        this.engine=Engine.open(DataGenerator.copy(DataGenerator.database(students),"select"));
+        engine.createIndex("CREATE INDEX ON student (sid) USING BTREE");
+        engine.createIndex("CREATE INDEX ON student (byear) USING BTREE");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        engine.close();
+    }
+
+    @Benchmark
+    public List<?> pointSelect() {
+        int sid=ThreadLocalRandom.current().nextInt(students);
+        return engine.select("SELECT sid, sname, major FROM student WHERE sid = 's"+sid+"'");
+    }
+
+    @Benchmark
+    public List<?> rangeOrderBy() {
+        int year=DataGenerator.FIRST_YEAR+ThreadLocalRandom.current().nextInt(DataGenerator.YEARS);
+        return engine.select("SELECT sid, sname, byear FROM student WHERE byear >= "+year+" AND byear < "+(year+1)
+                +" ORDER BY sname");
+    }
+}
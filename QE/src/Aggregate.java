@@ -0,0 +1,101 @@
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An aggregate function of the select clause: COUNT(*), COUNT(attribute), COUNT(DISTINCT attribute),
+ * SUM(attribute), AVG(attribute), MIN(attribute) or MAX(attribute)
+ *
+ * The aggregate is named by its normalized text (function in upper case, e.g. COUNT(DISTINCT sid)),
+ * which is the name of its attribute in the result, so the having and order by clauses refer to it by that text
+ */
+class Aggregate {
+    private static final Pattern AGGREGATE=Pattern.compile(
+            "(?i)\\s*(count|sum|avg|min|max)\\s*\\(\\s*(distinct\\s+)?([^()\\s]+)\\s*\\)\\s*");
+
+    private String function;
+    private String attribute;
+    private boolean distinct;
+
+    /**
+     * constructor
+     * @param function COUNT, SUM, AVG, MIN or MAX
+     * @param attribute the aggregated attribute, * for COUNT(*)
+     * @param distinct whether only the distinct values are aggregated
+     */
+    public Aggregate(String function, String attribute, boolean distinct) {
+        this.function=function;
+        this.attribute=attribute;
+        this.distinct=distinct;
+    }
+
+    /**
+     * Parses an attribute of the select clause, returns null if it is not an aggregate
+     * @param text
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static Aggregate parse(String text) throws InvalidQueryException {
+        Matcher m=AGGREGATE.matcher(text);
+        if(!m.matches()){
+            return null;
+        }
+        return create(m.group(1).toUpperCase(),m.group(3),m.group(2)!=null);
+    }
+
+    /**
+     * Returns the aggregate of the function on the attribute, checking that only COUNT is applied to *
+     * @param function COUNT, SUM, AVG, MIN or MAX
+     * @param attribute
+     * @param distinct
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static Aggregate create(String function, String attribute, boolean distinct) throws InvalidQueryException {
+        if(attribute.equals("*") && (distinct || !function.equals("COUNT"))){
+            throw new InvalidQueryException("Only COUNT can be applied to *: "+function+"("+(distinct?"DISTINCT ":"")
+                    +attribute+")");
+        }
+        return new Aggregate(function,attribute,distinct);
+    }
+
+    public String getFunction() {
+        return this.function;
+    }
+
+    /**
+     * Returns the aggregated attribute, * for COUNT(*)
+     * @return
+     */
+    public String getAttribute() {
+        return this.attribute;
+    }
+
+    public boolean isDistinct() {
+        return this.distinct;
+    }
+
+    /**
+     * Returns the type of the aggregate for an attribute of the given type
+     * (COUNT is an Integer, AVG a Double, SUM, MIN and MAX have the type of the attribute)
+     * @param attributeType
+     * @return
+     * @throws InvalidQueryException
+     */
+    public String type(String attributeType) throws InvalidQueryException {
+        switch(function){
+            case "COUNT": return "Integer";
+            case "AVG":
+            case "SUM":
+                if(attributeType.equals("String")){
+                    throw new InvalidQueryException(function+" needs a numeric attribute: "+this);
+                }
+                return function.equals("AVG")?"Double":attributeType;
+            default: return attributeType;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return function+"("+(distinct?"DISTINCT ":"")+attribute+")";
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups the tuples of its child on the group by attributes and computes the aggregates of every group
+ * (see HashAggregate)
+ */
+class AggregateNode extends PlanNode {
+    private PlanNode child;
+    private int[] groupColumns;
+    private List<Aggregate> aggregates;
+    private int[] aggregateColumns;
+    private ISchema schema;
+    private int memoryBudget;
+    private File spillFolder;
+
+    /**
+     * constructor
+     * @param child
+     * @param groupColumns the indexes of the group by attributes in the child schema
+     * @param aggregates
+     * @param aggregateColumns the indexes of the aggregated attributes in the child schema (-1 for COUNT(*))
+     * @param schema the result schema (the group by attributes followed by the aggregates)
+     * @param memoryBudget
+     * @param spillFolder
+     */
+    public AggregateNode(PlanNode child, int[] groupColumns, List<Aggregate> aggregates, int[] aggregateColumns,
+                         ISchema schema, int memoryBudget, File spillFolder) {
+        this.child=child;
+        this.groupColumns=groupColumns;
+        this.aggregates=aggregates;
+        this.aggregateColumns=aggregateColumns;
+        this.schema=schema;
+        this.memoryBudget=memoryBudget;
+        this.spillFolder=spillFolder;
+    }
+
+    @Override
+    String getName() {
+        return child.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return this.schema;
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Collections.singletonList(child);
+    }
+
+    @Override
+    ITable execute() {
+        return new HashAggregate(groupColumns,aggregates,aggregateColumns,child.getSchema(),memoryBudget,spillFolder)
+                .aggregate(child.run(),schema);
+    }
+
+    @Override
+    String describe() {
+        StringBuilder groups=new StringBuilder();
+        for(int i=0;i<groupColumns.length;i++){
+            groups.append(i>0?", ":"").append(schema.getName(i));
+        }
+        StringBuilder names=new StringBuilder();
+        for(int i=0;i<aggregates.size();i++){
+            names.append(i>0?", ":"").append(aggregates.get(i));
+        }
+        return "HashAggregate [group by "+(groupColumns.length==0?"()":groups)+": "+names+"]";
+    }
+}
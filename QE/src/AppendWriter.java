@@ -0,0 +1,193 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends data to a file, keeping the file channel open between writes (used by the write-ahead log)
+ *
+ * Writes are group committed: append only queues the data and returns a ticket, commit waits until the data
+ * of the ticket is written. The first thread to commit writes the data queued by every thread so far
+ * in one write (and one fsync), the other threads wait for it, so concurrent writers share the cost of the write
+ * Data is written in the order it was appended
+ *
+ * When the written data is forced to the disk depends on the sync policy:
+ * ALWAYS forces it on every group commit, INTERVAL at most once per sync interval, NEVER leaves it to the OS
+ */
+class AppendWriter implements Closeable {
+    enum SyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    private FileChannel channel;
+    private SyncPolicy syncPolicy;
+    private long syncIntervalNanos;
+    private long lastSync=System.nanoTime();
+    private ByteArrayOutputStream pending=new ByteArrayOutputStream();
+    private long appended;
+    private long written;
+    private boolean writing;
+    private IOException failure;
+
+    /**
+     * Opens the file for appending at the given position (the data after it is overwritten)
+     * @param file
+     * @param position
+     * @param syncPolicy
+     * @param syncIntervalMillis the sync interval of the INTERVAL policy
+     */
+    public AppendWriter(File file, long position, SyncPolicy syncPolicy, long syncIntervalMillis) {
+        this.syncPolicy=syncPolicy;
+        this.syncIntervalNanos=syncIntervalMillis*1_000_000;
+        try {
+            this.channel=FileChannel.open(file.toPath(),StandardOpenOption.CREATE,StandardOpenOption.WRITE);
+            this.channel.truncate(position);
+            this.channel.position(position);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Queues data to be written to the file
+     * @param data
+     * @return the ticket to wait for with commit
+     */
+    public synchronized long append(byte[] data) {
+        pending.write(data,0,data.length);
+        return ++appended;
+    }
+
+    /**
+     * Waits until the data of the ticket is written to the file (and forced to the disk if the sync policy says so)
+     *
+     * Implements the following algorithm
+     *
+     * While the data of the ticket is not written and another thread is writing
+     *   Wait for it
+     * If the data of the ticket is written
+     *   Return
+     * Take all the queued data (of this thread and of the threads that appended since the last write)
+     * Write it to the file in one write
+     * Force the file to the disk if the sync policy requires it
+     * Mark it written and wake up the waiting threads
+     *
+     * @param ticket
+     */
+    public void commit(long ticket) {
+        ByteBuffer batch;
+        long last;
+        synchronized(this){
+            while(written<ticket && writing){
+                waitForWriter();
+            }
+            if(failure!=null){
+                throw new RuntimeException(failure);
+            }
+            if(written>=ticket){
+                return;
+            }
+            writing=true;
+            batch=ByteBuffer.wrap(pending.toByteArray());
+            pending.reset();
+            last=appended;
+        }
+        try {
+            while(batch.hasRemaining()){
+                channel.write(batch);
+            }
+            sync(false);
+        } catch (IOException e) {
+            synchronized(this){
+                failure=e;
+                writing=false;
+                notifyAll();
+            }
+            throw new RuntimeException(e);
+        }
+        synchronized(this){
+            written=last;
+            writing=false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes all the queued data and forces the file to the disk
+     */
+    public void flush() {
+        long ticket;
+        synchronized(this){
+            ticket=appended;
+        }
+        commit(ticket);
+        try {
+            sync(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the size of the file, including the queued data
+     * @return
+     */
+    public synchronized long size() {
+        try {
+            return channel.size()+pending.size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the queued data and empties the file
+     */
+    public void truncate() {
+        flush();
+        synchronized(this){
+            while(writing){
+                waitForWriter();
+            }
+            try {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the queued data, forces the file to the disk and closes it
+     */
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void sync(boolean always) throws IOException {
+        long now=System.nanoTime();
+        if(always || syncPolicy==SyncPolicy.ALWAYS
+                || (syncPolicy==SyncPolicy.INTERVAL && now-lastSync>=syncIntervalNanos)){
+            channel.force(false);
+            lastSync=now;
+        }
+    }
+
+    private void waitForWriter() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
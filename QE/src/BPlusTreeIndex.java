@@ -0,0 +1,342 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A B+-tree index keeps the values of a table attribute sorted
+ * Inner nodes hold separator keys and children, leaves hold the keys with their list of tuples
+ * and are linked from left to right, so a range predicate (e.g. byear > 1990) is one descent followed by
+ * a walk along the leaves
+ *
+ * Keys are compared with their natural order (Integer, Double or String)
+ * Nodes are not merged when keys are deleted, the tree is rebuilt compact whenever it is loaded
+ * Null values are not indexed
+ */
+public class BPlusTreeIndex implements IRangeIndex {
+    private static final int ORDER=64;
+
+    private abstract static class Node {
+        int size;
+        Object[] keys=new Object[ORDER+1];
+    }
+
+    private static class Leaf extends Node {
+        List<ITuple>[] values=newValues();
+        Leaf next;
+    }
+
+    private static class Inner extends Node {
+        Node[] children=new Node[ORDER+2];
+    }
+
+    private String tableName;
+    private int column;
+    private Node root;
+    private Object splitKey;
+
+    /**
+     * constructor
+     * @param tableName
+     * @param column index of the attribute in the table schema
+     */
+    public BPlusTreeIndex(String tableName, int column) {
+        this.tableName=tableName;
+        this.column=column;
+        this.root=new Leaf();
+    }
+
+    @Override
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    @Override
+    public int getColumn() {
+        return this.column;
+    }
+
+    @Override
+    public String getType() {
+        return "BTREE";
+    }
+
+    /**
+     * Builds the tree bottom-up from keys that are already sorted (no key repeated)
+     *
+     * Implements the following algorithm
+     *
+     * Fill leaves from left to right with the keys and their tuples, linking every leaf to the next one
+     * While there is more than one node on the level
+     *   Group the nodes of the level under new inner nodes, using the smallest key of every child
+     *   (except the first) as separator
+     * The remaining node is the root
+     *
+     * @param keys
+     * @param values
+     */
+    public void bulkLoad(List<Object> keys, List<List<ITuple>> values) {
+        List<Node> level=new ArrayList<>();
+        List<Object> lowKeys=new ArrayList<>();
+        Leaf leaf=null;
+        for(int i=0;i<keys.size();i++){
+            if(leaf==null || leaf.size==ORDER){
+                Leaf next=new Leaf();
+                if(leaf!=null){
+                    leaf.next=next;
+                }
+                leaf=next;
+                level.add(leaf);
+                lowKeys.add(keys.get(i));
+            }
+            leaf.keys[leaf.size]=keys.get(i);
+            leaf.values[leaf.size++]=values.get(i);
+        }
+        if(level.isEmpty()){
+            this.root=new Leaf();
+            return;
+        }
+        while(level.size()>1){
+            List<Node> parents=new ArrayList<>();
+            List<Object> parentLowKeys=new ArrayList<>();
+            Inner parent=null;
+            for(int i=0;i<level.size();i++){
+                if(parent==null || parent.size==ORDER){
+                    parent=new Inner();
+                    parents.add(parent);
+                    parentLowKeys.add(lowKeys.get(i));
+                    parent.children[0]=level.get(i);
+                }else{
+                    parent.keys[parent.size++]=lowKeys.get(i);
+                    parent.children[parent.size]=level.get(i);
+                }
+            }
+            level=parents;
+            lowKeys=parentLowKeys;
+        }
+        this.root=level.get(0);
+    }
+
+    /**
+     * Adds the tuple under the key, splitting the nodes that overflow on the way back up
+     * @param key
+     * @param tuple
+     */
+    @Override
+    public void insert(Object key, ITuple tuple) {
+        if(key==null){
+            return;
+        }
+        Node sibling=insert(this.root,key,tuple);
+        if(sibling!=null){
+            Inner newRoot=new Inner();
+            newRoot.keys[0]=this.splitKey;
+            newRoot.children[0]=this.root;
+            newRoot.children[1]=sibling;
+            newRoot.size=1;
+            this.root=newRoot;
+        }
+    }
+
+    /**
+     * Inserts into the subtree, returns the new right sibling if the node was split (its first key is in splitKey)
+     */
+    private Node insert(Node node, Object key, ITuple tuple) {
+        int pos=search(node,key);
+        if(node instanceof Leaf){
+            Leaf leaf=(Leaf) node;
+            if(pos>=0){
+                leaf.values[pos].add(tuple);
+                return null;
+            }
+            pos=-pos-1;
+            System.arraycopy(leaf.keys,pos,leaf.keys,pos+1,leaf.size-pos);
+            System.arraycopy(leaf.values,pos,leaf.values,pos+1,leaf.size-pos);
+            leaf.keys[pos]=key;
+            leaf.values[pos]=new ArrayList<>(1);
+            leaf.values[pos].add(tuple);
+            leaf.size++;
+            if(leaf.size<=ORDER){
+                return null;
+            }
+            Leaf right=new Leaf();
+            int mid=leaf.size/2;
+            right.size=leaf.size-mid;
+            System.arraycopy(leaf.keys,mid,right.keys,0,right.size);
+            System.arraycopy(leaf.values,mid,right.values,0,right.size);
+            Arrays.fill(leaf.keys,mid,leaf.size,null);
+            Arrays.fill(leaf.values,mid,leaf.size,null);
+            leaf.size=mid;
+            right.next=leaf.next;
+            leaf.next=right;
+            this.splitKey=right.keys[0];
+            return right;
+        }
+        Inner inner=(Inner) node;
+        int child=pos>=0?pos+1:-pos-1;
+        Node sibling=insert(inner.children[child],key,tuple);
+        if(sibling==null){
+            return null;
+        }
+        System.arraycopy(inner.keys,child,inner.keys,child+1,inner.size-child);
+        System.arraycopy(inner.children,child+1,inner.children,child+2,inner.size-child);
+        inner.keys[child]=this.splitKey;
+        inner.children[child+1]=sibling;
+        inner.size++;
+        if(inner.size<=ORDER){
+            return null;
+        }
+        Inner right=new Inner();
+        int mid=inner.size/2;
+        Object up=inner.keys[mid];
+        right.size=inner.size-mid-1;
+        System.arraycopy(inner.keys,mid+1,right.keys,0,right.size);
+        System.arraycopy(inner.children,mid+1,right.children,0,right.size+1);
+        Arrays.fill(inner.keys,mid,inner.size,null);
+        Arrays.fill(inner.children,mid+1,inner.size+1,null);
+        inner.size=mid;
+        this.splitKey=up;
+        return right;
+    }
+
+    /**
+     * Removes the tuple (the same object, not an equal one) from the key, and the key once it has no tuples left
+     * @param key
+     * @param tuple
+     */
+    @Override
+    public void delete(Object key, ITuple tuple) {
+        if(key==null){
+            return;
+        }
+        Leaf leaf=findLeaf(key);
+        int pos=search(leaf,key);
+        if(pos<0){
+            return;
+        }
+        List<ITuple> tuples=leaf.values[pos];
+        for(int i=0;i<tuples.size();i++){
+            if(tuples.get(i)==tuple){
+                tuples.remove(i);
+                break;
+            }
+        }
+        if(tuples.isEmpty()){
+            System.arraycopy(leaf.keys,pos+1,leaf.keys,pos,leaf.size-pos-1);
+            System.arraycopy(leaf.values,pos+1,leaf.values,pos,leaf.size-pos-1);
+            leaf.size--;
+            leaf.keys[leaf.size]=null;
+            leaf.values[leaf.size]=null;
+        }
+    }
+
+    /**
+     * Returns the tuples holding the key
+     * @param key
+     * @return
+     */
+    @Override
+    public List<ITuple> lookup(Object key) {
+        return range(key,true,key,true);
+    }
+
+    /**
+     * Returns the tuples whose key is between low and high, in key order
+     * A null bound means the range is open on that side
+     * @param low
+     * @param lowInclusive
+     * @param high
+     * @param highInclusive
+     * @return
+     */
+    @Override
+    public List<ITuple> range(Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        List<ITuple> result=new ArrayList<>();
+        Leaf leaf;
+        int pos;
+        if(low==null){
+            leaf=leftmostLeaf();
+            pos=0;
+        }else{
+            leaf=findLeaf(low);
+            pos=search(leaf,low);
+            if(pos>=0){
+                pos=lowInclusive?pos:pos+1;
+            }else{
+                pos=-pos-1;
+            }
+        }
+        for(;leaf!=null;leaf=leaf.next,pos=0){
+            for(;pos<leaf.size;pos++){
+                if(high!=null){
+                    int c=compare(leaf.keys[pos],high);
+                    if(c>0 || (c==0 && !highInclusive)){
+                        return result;
+                    }
+                }
+                result.addAll(leaf.values[pos]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calls the action for every key and its tuples, in key order
+     * @param action
+     */
+    @Override
+    public void forEach(BiConsumer<Object, List<ITuple>> action) {
+        for(Leaf leaf=leftmostLeaf();leaf!=null;leaf=leaf.next){
+            for(int i=0;i<leaf.size;i++){
+                action.accept(leaf.keys[i],leaf.values[i]);
+            }
+        }
+    }
+
+    private Leaf findLeaf(Object key) {
+        Node node=this.root;
+        while(node instanceof Inner){
+            int pos=search(node,key);
+            node=((Inner) node).children[pos>=0?pos+1:-pos-1];
+        }
+        return (Leaf) node;
+    }
+
+    private Leaf leftmostLeaf() {
+        Node node=this.root;
+        while(node instanceof Inner){
+            node=((Inner) node).children[0];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Binary search of the key in the node, returns its position or (-(insertion point) - 1)
+     */
+    private static int search(Node node, Object key) {
+        int low=0;
+        int high=node.size-1;
+        while(low<=high){
+            int mid=(low+high)>>>1;
+            int c=compare(node.keys[mid],key);
+            if(c<0){
+                low=mid+1;
+            }else if(c>0){
+                high=mid-1;
+            }else{
+                return mid;
+            }
+        }
+        return -(low+1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ITuple>[] newValues() {
+        return (List<ITuple>[]) new List<?>[ORDER+1];
+    }
+}
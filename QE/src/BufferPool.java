@@ -0,0 +1,262 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the pages of PageFiles, shared by the tables stored in pages (see PagedTable)
+ *
+ * The pool has a fixed number of frames, each holding one page. A page is pinned while it is read or changed,
+ * and a pinned page is never evicted. When a page that is not in memory is needed, the clock algorithm chooses
+ * the frame to reuse: a hand goes round the frames, clearing the reference bit of the recently used ones and
+ * stopping at the first unpinned frame that was not used since the hand last passed; a changed (dirty) page is
+ * written back to its file before the frame is reused
+ *
+ * Pinning a page in memory takes no lock (the file records the frame of each of its pages), only loading
+ * a page does
+ */
+class BufferPool {
+    /**
+     * A frame of the pool: a page buffer, the page it holds and its pin count
+     * (-1 while the frame is being reused for another page)
+     */
+    static class Frame {
+        private volatile PageFile file;
+        private volatile int page=-1;
+        private ByteBuffer data=ByteBuffer.allocate(PageFile.PAGE_SIZE);
+        private AtomicInteger pins=new AtomicInteger();
+        private volatile boolean referenced;
+        private volatile boolean dirty;
+
+        /**
+         * Returns the content of the page (a heap buffer of PAGE_SIZE bytes, see array)
+         * @return
+         */
+        ByteBuffer getData() {
+            return this.data;
+        }
+
+        int getPage() {
+            return this.page;
+        }
+
+        private boolean pin() {
+            int p;
+            do {
+                p=pins.get();
+                if(p<0){
+                    return false;
+                }
+            } while(!pins.compareAndSet(p,p+1));
+            return true;
+        }
+    }
+
+    private Frame[] frames;
+    private int hand;
+    private AtomicLong hits=new AtomicLong();
+    private AtomicLong misses=new AtomicLong();
+    private AtomicLong writes=new AtomicLong();
+
+    /**
+     * constructor
+     * @param capacity the number of frames (the maximum number of pages in memory)
+     */
+    public BufferPool(int capacity) {
+        this.frames=new Frame[Math.max(2,capacity)];
+        for(int i=0;i<frames.length;i++){
+            frames[i]=new Frame();
+        }
+    }
+
+    public int getCapacity() {
+        return this.frames.length;
+    }
+
+    /**
+     * Pins a page in memory, reading it from the file if it is not in the pool
+     * The page must be unpinned when it is not used anymore
+     * @param file
+     * @param page
+     * @return the frame holding the page
+     */
+    public Frame pin(PageFile file, int page) {
+        Frame frame=pinResident(file,page);
+        if(frame!=null){
+            hits.incrementAndGet();
+            return frame;
+        }
+        return load(file,page,true);
+    }
+
+    /**
+     * Pins a new page, filled with zeros, without reading it from the file; the page is dirty
+     * @param file
+     * @param page
+     * @return
+     */
+    public Frame pinNew(PageFile file, int page) {
+        Frame frame=pinResident(file,page);
+        if(frame==null){
+            frame=load(file,page,false);
+        }
+        ByteBuffer data=frame.data;
+        data.clear();
+        while(data.hasRemaining()){
+            data.putLong(0);
+        }
+        data.clear();
+        frame.dirty=true;
+        return frame;
+    }
+
+    /**
+     * Unpins a page
+     * @param frame
+     * @param dirty whether the page was changed (it is then written back before its frame is reused)
+     */
+    public void unpin(Frame frame, boolean dirty) {
+        if(dirty){
+            frame.dirty=true;
+        }
+        frame.pins.decrementAndGet();
+    }
+
+    /**
+     * Moves a page in memory to another page of its file, the next write back of the page goes to the new page
+     * (the page must be pinned by the caller)
+     * @param frame
+     * @param page
+     */
+    public synchronized void move(Frame frame, int page) {
+        PageFile file=frame.file;
+        file.setFrame(frame.page,null);
+        frame.page=page;
+        file.setFrame(page,frame);
+        frame.dirty=true;
+    }
+
+    /**
+     * Writes back the dirty pages of a file (the file is not forced to the disk)
+     * @param file
+     */
+    public synchronized void flush(PageFile file) {
+        for(Frame frame: frames){
+            if(frame.file==file && frame.dirty){
+                frame.dirty=false;
+                file.write(frame.page,frame.data);
+                writes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the pages of a file from the pool, without writing them back (the file is closed or emptied)
+     * @param file
+     */
+    public synchronized void discard(PageFile file) {
+        for(Frame frame: frames){
+            if(frame.file==file && frame.pins.compareAndSet(0,-1)){
+                file.setFrame(frame.page,null);
+                frame.file=null;
+                frame.page=-1;
+                frame.dirty=false;
+                frame.pins.set(0);
+            }
+        }
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of pages written back to their files
+     * @return
+     */
+    public long getWrites() {
+        return this.writes.get();
+    }
+
+    /**
+     * Pins the page if it is in memory, else returns null
+     */
+    private Frame pinResident(PageFile file, int page) {
+        Frame frame=file.getFrame(page);
+        if(frame==null || !frame.pin()){
+            return null;
+        }
+        if(frame.file!=file || frame.page!=page){
+            // the frame was reused for another page in the meantime
+            frame.pins.decrementAndGet();
+            return null;
+        }
+        frame.referenced=true;
+        return frame;
+    }
+
+    /**
+     * Loads a page in a frame chosen by the clock algorithm
+     *
+     * Implements the following algorithm
+     *
+     * If the page was loaded by another thread in the meantime
+     *   Return its frame
+     * Repeat (at most twice round the frames)
+     *   Move the hand to the next frame
+     *   If the frame is pinned
+     *     Continue
+     *   If the frame was referenced
+     *     Clear its reference bit
+     *     Continue
+     *   Lock the frame
+     *   If its page is dirty
+     *     Write it back to its file
+     *   Read the page into the frame
+     *   Return the frame
+     * Throw an exception (all the frames are pinned)
+     */
+    private synchronized Frame load(PageFile file, int page, boolean read) {
+        Frame resident=pinResident(file,page);
+        if(resident!=null){
+            hits.incrementAndGet();
+            return resident;
+        }
+        misses.incrementAndGet();
+        for(int i=0;i<2*frames.length+1;i++){
+            Frame frame=frames[hand];
+            hand=(hand+1)%frames.length;
+            if(frame.pins.get()!=0){
+                continue;
+            }
+            if(frame.referenced){
+                frame.referenced=false;
+                continue;
+            }
+            if(!frame.pins.compareAndSet(0,-1)){
+                continue;
+            }
+            if(frame.file!=null){
+                if(frame.dirty){
+                    frame.file.write(frame.page,frame.data);
+                    writes.incrementAndGet();
+                }
+                frame.file.setFrame(frame.page,null);
+            }
+            frame.dirty=false;
+            if(read){
+                file.read(page,frame.data);
+            }
+            frame.file=file;
+            frame.page=page;
+            frame.referenced=true;
+            file.setFrame(page,frame);
+            frame.pins.set(1);
+            return frame;
+        }
+        throw new IllegalStateException("All the "+frames.length+" pages of the buffer pool are pinned");
+    }
+}
@@ -0,0 +1,298 @@
+import java.util.Arrays;
+
+/**
+ * Statistics of an attribute of a table: number of nulls, min and max values, a HyperLogLog sketch of the number
+ * of distinct values and, for Integer and Double attributes, an equi-depth histogram
+ *
+ * The histogram splits the sorted values into buckets holding the same number of values, so frequent values get
+ * narrow buckets and the fraction of values below a constant is estimated precisely even on skewed data
+ *
+ * The statistics are kept up to date when tuples are added or removed, but a removal cannot shrink the min and max
+ * nor the distinct count sketch: they stay upper bounds until the table is analyzed again
+ */
+class ColumnStatistics {
+    static final int BUCKETS=32;
+
+    private String type;
+    private long nullCount;
+    private Object min;
+    private Object max;
+    private HyperLogLog distinct;
+    private double[] bounds;
+    private long[] counts;
+
+    /**
+     * constructor (statistics of an empty attribute)
+     * @param type the attribute type (Integer, Double or String)
+     */
+    public ColumnStatistics(String type) {
+        this(type,0,null,null,new HyperLogLog(),null,null);
+    }
+
+    /**
+     * constructor
+     * @param type the attribute type (Integer, Double or String)
+     * @param nullCount
+     * @param min the smallest value, or null if there is none
+     * @param max the largest value, or null if there is none
+     * @param distinct
+     * @param bounds the bucket bounds of the histogram (one more than buckets), or null if there is no histogram
+     * @param counts the number of values in every bucket of the histogram
+     */
+    public ColumnStatistics(String type, long nullCount, Object min, Object max, HyperLogLog distinct,
+                            double[] bounds, long[] counts) {
+        this.type=type;
+        this.nullCount=nullCount;
+        this.min=min;
+        this.max=max;
+        this.distinct=distinct;
+        this.bounds=bounds;
+        this.counts=counts;
+    }
+
+    /**
+     * Computes the statistics of the values of an attribute
+     *
+     * Implements the following algorithm
+     *
+     * For each value
+     *   If it is null
+     *     Count it as a null
+     *   Else
+     *     Add it to the distinct count sketch and update the min and max
+     * If the attribute is a number and there are values
+     *   Sort the values
+     *   Split them into (at most) BUCKETS buckets of the same number of values
+     *   Keep the first value of every bucket and the last value as the bucket bounds
+     *
+     * @param type
+     * @param values the values of the attribute, in any order
+     * @return
+     */
+    public static ColumnStatistics analyze(String type, Iterable<Object> values) {
+        ColumnStatistics stats=new ColumnStatistics(type);
+        boolean numeric=!type.equals("String");
+        double[] sorted=new double[16];
+        int n=0;
+        for(Object v: values){
+            if(v==null){
+                stats.nullCount++;
+                continue;
+            }
+            stats.distinct.add(v);
+            stats.updateMinMax(v);
+            if(numeric){
+                if(n==sorted.length){
+                    sorted=Arrays.copyOf(sorted,n*2);
+                }
+                sorted[n++]=((Number) v).doubleValue();
+            }
+        }
+        if(numeric && n>0){
+            Arrays.sort(sorted,0,n);
+            int buckets=Math.min(BUCKETS,n);
+            stats.bounds=new double[buckets+1];
+            stats.counts=new long[buckets];
+            for(int b=0;b<buckets;b++){
+                int start=(int) ((long) b*n/buckets);
+                int end=(int) ((long) (b+1)*n/buckets);
+                stats.bounds[b]=sorted[start];
+                stats.counts[b]=end-start;
+            }
+            stats.bounds[buckets]=sorted[n-1];
+        }
+        return stats;
+    }
+
+    /**
+     * Updates the statistics for a value added to the attribute
+     * @param value
+     */
+    public void add(Object value) {
+        if(value==null){
+            nullCount++;
+            return;
+        }
+        distinct.add(value);
+        updateMinMax(value);
+        if(type.equals("String")){
+            return;
+        }
+        double v=((Number) value).doubleValue();
+        if(bounds==null){
+            bounds=new double[]{v,v};
+            counts=new long[]{0};
+        }
+        bounds[0]=Math.min(bounds[0],v);
+        bounds[bounds.length-1]=Math.max(bounds[bounds.length-1],v);
+        counts[bucket(v)]++;
+    }
+
+    /**
+     * Updates the statistics for a value removed from the attribute
+     * @param value
+     */
+    public void remove(Object value) {
+        if(value==null){
+            nullCount=Math.max(0,nullCount-1);
+        }else if(bounds!=null){
+            int b=bucket(((Number) value).doubleValue());
+            counts[b]=Math.max(0,counts[b]-1);
+        }
+    }
+
+    /**
+     * Returns the estimated fraction of the rows of the table whose value matches attribute operator value
+     *
+     * Implements the following algorithm
+     *
+     * If the table is empty
+     *   Return 0
+     * Let nonNull be the fraction of rows whose value is not null (null never matches)
+     * If the operator is =
+     *   Return 0 if the value is out of the min/max range, else nonNull / distinct values
+     * If the operator is !=
+     *   Return nonNull times (1 - 1 / distinct values)
+     * If there is a histogram
+     *   Count the values of the buckets entirely below (or above) the value
+     *   Add the part of the bucket holding the value, assuming its values are spread evenly
+     *   Return nonNull times that count over the number of values in the histogram
+     * Else
+     *   Return 0 or nonNull if the value is beyond the min or max, else nonNull / 3
+     *
+     * @param rows number of rows in the table
+     * @param op one of =, !=, <, <=, >, >=
+     * @param value the value, already converted to the attribute type
+     * @return
+     */
+    public double selectivity(long rows, String op, Object value) {
+        if(rows==0){
+            return 0;
+        }
+        double nonNull=Math.max(0,rows-nullCount)/(double) rows;
+        if(min==null){
+            return 0;
+        }
+        boolean outside=compare(value,min)<0 || compare(value,max)>0;
+        switch(op){
+            case "=":
+                return outside?0:nonNull/distinct(rows);
+            case "!=":
+                return nonNull*(1-1/distinct(rows));
+        }
+        boolean less=op.startsWith("<");
+        boolean inclusive=op.endsWith("=");
+        if(bounds!=null){
+            double total=0;
+            for(long c: counts){
+                total+=c;
+            }
+            if(total==0){
+                return 0;
+            }
+            double v=((Number) value).doubleValue();
+            double below=less?below(v,inclusive):total-below(v,!inclusive);
+            return nonNull*Math.min(1,Math.max(0,below/total));
+        }
+        if(compare(value,min)<0 || (compare(value,min)==0 && !inclusive)){
+            return less?0:nonNull;
+        }
+        if(compare(value,max)>0 || (compare(value,max)==0 && !inclusive)){
+            return less?nonNull:0;
+        }
+        return nonNull/3;
+    }
+
+    /**
+     * Returns the estimated number of distinct (non null) values of the attribute, at least 1
+     * @param rows number of rows in the table
+     * @return
+     */
+    public double distinct(long rows) {
+        return Math.max(1,Math.min(distinct.estimate(),rows-nullCount));
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public long getNullCount() {
+        return this.nullCount;
+    }
+
+    /**
+     * Returns the smallest value, or null if the attribute has no values
+     * @return
+     */
+    public Object getMin() {
+        return this.min;
+    }
+
+    /**
+     * Returns the largest value, or null if the attribute has no values
+     * @return
+     */
+    public Object getMax() {
+        return this.max;
+    }
+
+    public HyperLogLog getDistinct() {
+        return this.distinct;
+    }
+
+    /**
+     * Returns the bucket bounds of the histogram, or null if there is no histogram
+     * @return
+     */
+    public double[] getBounds() {
+        return this.bounds;
+    }
+
+    public long[] getCounts() {
+        return this.counts;
+    }
+
+    /**
+     * Returns the estimated number of values of the histogram below v (or equal to v if inclusive)
+     */
+    private double below(double v, boolean inclusive) {
+        double result=0;
+        for(int b=0;b<counts.length;b++){
+            double low=bounds[b];
+            double high=bounds[b+1];
+            if(v>high || (v==high && inclusive)){
+                result+=counts[b];
+            }else if(v>low){
+                result+=counts[b]*(v-low)/(high-low);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the histogram bucket holding the value (the first or last bucket for a value out of the bounds)
+     */
+    private int bucket(double v) {
+        int b=Arrays.binarySearch(bounds,1,bounds.length-1,v);
+        if(b<0){
+            b=-b-2;
+        }
+        return Math.max(0,Math.min(counts.length-1,b));
+    }
+
+    private void updateMinMax(Object value) {
+        if(min==null || compare(value,min)<0){
+            min=value;
+        }
+        if(max==null || compare(value,max)>0){
+            max=value;
+        }
+    }
+
+    private static int compare(Object a, Object b) {
+        if(a instanceof Number && b instanceof Number){
+            return Double.compare(((Number) a).doubleValue(),((Number) b).doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
+    }
+}
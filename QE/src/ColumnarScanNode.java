@@ -0,0 +1,132 @@
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Scan of a table stored by column that filters (on a condition) and projects directly
+ * over the column arrays, producing a result table stored by column
+ * The rows of a large table are filtered in parallel morsels of rows (see MorselExecutor), each filtered
+ * in batches of rows if the scan is vectorized (see ConditionCompiler.compileBatch)
+ */
+class ColumnarScanNode extends PlanNode {
+    private ColumnarTable table;
+    private Condition condition;
+    private Condition bound;
+    private int[] projection;
+    private ISchema schema;
+    private boolean vectorized;
+
+    /**
+     * constructor
+     * @param table
+     * @param projection the indexes of the kept attributes in the table schema
+     * @param schema the result schema
+     */
+    public ColumnarScanNode(ColumnarTable table, int[] projection, ISchema schema) {
+        this.table=table;
+        this.projection=projection;
+        this.schema=schema;
+        setEstimatedRows(table.size());
+    }
+
+    /**
+     * Keeps only the rows matching the condition (compiled over the column arrays when the scan starts)
+     * @param condition
+     * @throws InvalidQueryException if an attribute of the condition is not in the table schema, or a value
+     * does not have the attribute type
+     */
+    public void setCondition(Condition condition) throws InvalidQueryException {
+        ConditionCompiler.check(condition,table.getName(),table.getSchema());
+        this.condition=condition;
+        this.bound=condition.hasParameters()?null:condition;
+    }
+
+    /**
+     * Sets whether the condition is evaluated on batches of rows instead of row by row
+     * @param vectorized
+     */
+    void setVectorized(boolean vectorized) {
+        this.vectorized=vectorized;
+    }
+
+    /**
+     * Binds the values of the ? placeholders of the condition
+     * @param values
+     * @throws InvalidQueryException
+     */
+    @Override
+    void bindParameters(Object[] values) throws InvalidQueryException {
+        if(condition!=null && condition.hasParameters()){
+            Condition c=condition.bind(values);
+            ConditionCompiler.compile(c,table);
+            this.bound=c;
+        }
+    }
+
+    @Override
+    String getName() {
+        return "Result";
+    }
+
+    @Override
+    ISchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Returns the rows of the table, all read by the scan (not only those matching the condition)
+     */
+    @Override
+    long getRowsScanned() {
+        return getActualRows()<0?0:table.size();
+    }
+
+    @Override
+    ITable execute() {
+        int[] rows=null;
+        if(condition!=null){
+            try {
+                if(bound==null){
+                    throw new IllegalStateException("The parameters of the condition are not bound: "+condition);
+                }
+                List<int[]> morsels;
+                if(vectorized){
+                    ColumnarTable.BatchPredicate predicate=ConditionCompiler.compileBatch(bound,table);
+                    morsels=getExecutor().map(table.size(),(from,to)->table.select(predicate,from,to));
+                }else{
+                    IntPredicate predicate=ConditionCompiler.compile(bound,table);
+                    morsels=getExecutor().map(table.size(),(from,to)->table.select(predicate,from,to));
+                }
+                rows=morsels.size()==1?morsels.get(0):concat(morsels);
+            } catch (InvalidQueryException e) {
+                // the condition was already bound to the table by setCondition
+                throw new IllegalStateException(e);
+            }
+        }
+        return table.project("Result",schema,rows,projection);
+    }
+
+    private static int[] concat(List<int[]> morsels) {
+        int n=0;
+        for(int[] m: morsels){
+            n+=m.length;
+        }
+        int[] result=new int[n];
+        int i=0;
+        for(int[] m: morsels){
+            System.arraycopy(m,0,result,i,m.length);
+            i+=m.length;
+        }
+        return result;
+    }
+
+    @Override
+    String describe() {
+        StringBuilder names=new StringBuilder();
+        for(int i=0;i<projection.length;i++){
+            names.append(i>0?", ":"").append(schema.getName(i));
+        }
+        return "ColumnarScan "+table.getName()
+                +(condition==null?"":" ["+condition+"]")
+                +" project ["+names+"]"+(vectorized && condition!=null?" vectorized":"");
+    }
+}
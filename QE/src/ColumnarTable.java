@@ -0,0 +1,557 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A table stored by column instead of by tuple
+ * Integer attributes are stored in an int array, Double attributes in a double array and String attributes
+ * as int codes into a per-attribute dictionary of the distinct values (the types come from the schema)
+ * Null values are recorded in a bitmap per attribute
+ *
+ * getTuples returns a view of the table: every tuple is a small object holding only the table and the row
+ * number, reading and writing through to the column arrays
+ * Two tuples of the view are equal if they are the same row
+ * Rows are renumbered when tuples are removed, so tuples taken from the view before a removal must not be kept
+ */
+public class ColumnarTable implements ITable {
+    /**
+     * Number of rows a predicate on batches evaluates at a time (see BatchPredicate)
+     */
+    static final int BATCH_SIZE=2048;
+
+    private static final int INTEGER=0;
+    private static final int DOUBLE=1;
+    private static final int STRING=2;
+
+    private String name;
+    private ISchema schema;
+    private int size;
+    private int[] types;
+    private int[][] ints;
+    private double[][] doubles;
+    private BitSet[] nulls;
+    private List<List<String>> dictionaries;
+    private List<Map<String,Integer>> codes;
+    private List<ITuple> view;
+
+    /**
+     * constructor
+     * @param name
+     * @param schema
+     */
+    public ColumnarTable(String name, ISchema schema) {
+        this.name=name;
+        this.schema=schema;
+        int width=schema.getAttributes().size();
+        this.types=new int[width];
+        this.ints=new int[width][];
+        this.doubles=new double[width][];
+        this.nulls=new BitSet[width];
+        this.dictionaries=new ArrayList<>();
+        this.codes=new ArrayList<>();
+        for(int i=0;i<width;i++){
+            String type=schema.getType(i);
+            if(type.equals("Double")){
+                this.types[i]=DOUBLE;
+                this.doubles[i]=new double[16];
+            }else{
+                this.types[i]=type.equals("Integer")?INTEGER:STRING;
+                this.ints[i]=new int[16];
+            }
+            this.nulls[i]=new BitSet();
+            this.dictionaries.add(this.types[i]==STRING?new ArrayList<>():null);
+            this.codes.add(this.types[i]==STRING?new HashMap<>():null);
+        }
+        this.view=new TupleView();
+    }
+
+    /**
+     * Returns the table name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Adds a tuple to the table (its values are copied into the columns)
+     * @param tuple
+     */
+    @Override
+    public void addTuple(ITuple tuple) {
+        addRow(tuple.getValues());
+    }
+
+    /**
+     * Adds a row of values (in schema order) to the table
+     * @param values
+     */
+    public void addRow(Object[] values) {
+        if(size==capacity()){
+            grow();
+        }
+        size++;
+        for(int i=0;i<types.length;i++){
+            set(size-1,i,values[i]);
+        }
+    }
+
+    /**
+     * Returns the tuples of the table as a view over the columns
+     * @return
+     */
+    @Override
+    public List<ITuple> getTuples() {
+        return this.view;
+    }
+
+    /**
+     * Returns the table schema
+     * @return
+     */
+    @Override
+    public ISchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Returns the number of rows in the table
+     * @return
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the value of the attribute in the row (boxed)
+     * @param row
+     * @param column
+     * @return
+     */
+    public Object get(int row, int column) {
+        if(nulls[column].get(row)){
+            return null;
+        }
+        switch(types[column]){
+            case INTEGER: return ints[column][row];
+            case DOUBLE: return doubles[column][row];
+            default: return dictionaries.get(column).get(ints[column][row]);
+        }
+    }
+
+    /**
+     * Sets the value of the attribute in the row, converting it to the attribute type
+     * @param row
+     * @param column
+     * @param value
+     */
+    public void set(int row, int column, Object value) {
+        if(value==null){
+            nulls[column].set(row);
+            return;
+        }
+        nulls[column].clear(row);
+        switch(types[column]){
+            case INTEGER:
+                ints[column][row]=value instanceof Integer?(Integer) value:Integer.parseInt(value.toString());
+                break;
+            case DOUBLE:
+                doubles[column][row]=value instanceof Double?(Double) value:Double.parseDouble(value.toString());
+                break;
+            default:
+                String s=value.toString();
+                Integer code=codes.get(column).get(s);
+                if(code==null){
+                    code=dictionaries.get(column).size();
+                    dictionaries.get(column).add(s);
+                    codes.get(column).put(s,code);
+                }
+                ints[column][row]=code;
+        }
+    }
+
+    /**
+     * Returns the rows matching a predicate on the row numbers (see ConditionCompiler)
+     * @param predicate
+     * @return the matching row numbers in increasing order
+     */
+    public int[] select(IntPredicate predicate) {
+        return select(predicate,0,size);
+    }
+
+    /**
+     * Returns the rows between from (inclusive) and to (exclusive) matching a predicate on the row numbers
+     * (the rows of a morsel, see MorselExecutor)
+     * @param predicate
+     * @param from
+     * @param to
+     * @return the matching row numbers in increasing order
+     */
+    public int[] select(IntPredicate predicate, int from, int to) {
+        int[] rows=new int[16];
+        int count=0;
+        for(int r=from;r<to;r++){
+            if(predicate.test(r)){
+                if(count==rows.length){
+                    rows=Arrays.copyOf(rows,count*2);
+                }
+                rows[count++]=r;
+            }
+        }
+        return Arrays.copyOf(rows,count);
+    }
+
+    /**
+     * Returns the rows between from (inclusive) and to (exclusive) matching a predicate on batches of rows
+     * (see ConditionCompiler.compileBatch)
+     *
+     * Implements the following algorithm
+     *
+     * For each batch of BATCH_SIZE rows of the range
+     *   Evaluate the predicate into the selection bitmap of the batch
+     *   For each set bit of the bitmap
+     *     Add the row of the bit to the result
+     *
+     * @param predicate
+     * @param from
+     * @param to
+     * @return the matching row numbers in increasing order
+     */
+    public int[] select(BatchPredicate predicate, int from, int to) {
+        long[] selection=new long[BATCH_SIZE/64];
+        int[] rows=new int[Math.min(to-from,BATCH_SIZE)];
+        int count=0;
+        for(int start=from;start<to;start+=BATCH_SIZE){
+            int n=Math.min(BATCH_SIZE,to-start);
+            predicate.evaluate(start,n,selection);
+            for(int w=0;w<(n+63)/64;w++){
+                long bits=selection[w];
+                if(count+Long.bitCount(bits)>rows.length){
+                    rows=Arrays.copyOf(rows,Math.max(rows.length*2,count+64));
+                }
+                int base=start+w*64;
+                while(bits!=0){
+                    rows[count++]=base+Long.numberOfTrailingZeros(bits);
+                    bits&=bits-1;
+                }
+            }
+        }
+        return Arrays.copyOf(rows,count);
+    }
+
+    /**
+     * Returns the values of an Integer attribute, or the dictionary codes of a String attribute
+     * (the array can be longer than the number of rows)
+     * @param column
+     * @return
+     */
+    int[] intColumn(int column) {
+        return this.ints[column];
+    }
+
+    /**
+     * Returns the values of a Double attribute (the array can be longer than the number of rows)
+     * @param column
+     * @return
+     */
+    double[] doubleColumn(int column) {
+        return this.doubles[column];
+    }
+
+    /**
+     * Returns the rows where the attribute is null
+     * @param column
+     * @return
+     */
+    BitSet nullColumn(int column) {
+        return this.nulls[column];
+    }
+
+    /**
+     * Returns the distinct values of a String attribute, indexed by their code
+     * @param column
+     * @return
+     */
+    List<String> dictionary(int column) {
+        return this.dictionaries.get(column);
+    }
+
+    /**
+     * Creates a new columnar table with the given rows and attributes (copied column by column)
+     *
+     * Implements the following algorithm
+     *
+     * For each attribute of the new table
+     *   If it is an Integer or Double attribute
+     *     Copy the values of the rows (one array copy for all the rows, else a gather loop)
+     *   Else
+     *     Copy the codes of the rows that are not null, mapped to the codes of the new dictionary
+     *     (holding only the values copied)
+     *   Copy the null bits of the rows
+     *
+     * @param name
+     * @param schema the schema of the new table
+     * @param rows the row numbers to copy, or null for all the rows
+     * @param columns the attribute indexes (in this table) of the attributes of the new table
+     * @return
+     */
+    public ColumnarTable project(String name, ISchema schema, int[] rows, int[] columns) {
+        ColumnarTable result=new ColumnarTable(name,schema);
+        int n=rows==null?size:rows.length;
+        result.ensureCapacity(n);
+        result.size=n;
+        for(int i=0;i<columns.length;i++){
+            int c=columns[i];
+            BitSet nulls=this.nulls[c];
+            boolean nullable=!nulls.isEmpty();
+            if(types[c]==DOUBLE){
+                double[] from=doubles[c];
+                double[] to=result.doubles[i];
+                if(rows==null){
+                    System.arraycopy(from,0,to,0,n);
+                }else{
+                    for(int j=0;j<n;j++){
+                        to[j]=from[rows[j]];
+                    }
+                }
+            }else if(types[c]==INTEGER){
+                int[] from=ints[c];
+                int[] to=result.ints[i];
+                if(rows==null){
+                    System.arraycopy(from,0,to,0,n);
+                }else{
+                    for(int j=0;j<n;j++){
+                        to[j]=from[rows[j]];
+                    }
+                }
+            }else{
+                List<String> dictionary=dictionaries.get(c);
+                int[] remap=new int[dictionary.size()];
+                Arrays.fill(remap,-1);
+                int[] from=ints[c];
+                int[] to=result.ints[i];
+                for(int j=0;j<n;j++){
+                    int r=rows==null?j:rows[j];
+                    if(nullable && nulls.get(r)){
+                        continue;
+                    }
+                    int code=from[r];
+                    if(remap[code]==-1){
+                        remap[code]=result.dictionaries.get(i).size();
+                        result.dictionaries.get(i).add(dictionary.get(code));
+                        result.codes.get(i).put(dictionary.get(code),remap[code]);
+                    }
+                    to[j]=remap[code];
+                }
+            }
+            if(!nullable){
+                continue;
+            }
+            for(int j=0;j<n;j++){
+                if(nulls.get(rows==null?j:rows[j])){
+                    result.nulls[i].set(j);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tuples (views) of the given rows
+     * @param rows
+     * @return
+     */
+    public List<ITuple> tuples(int[] rows) {
+        List<ITuple> result=new ArrayList<>(rows.length);
+        for(int r: rows){
+            result.add(new RowTuple(r));
+        }
+        return result;
+    }
+
+    private int capacity() {
+        return types.length==0?Integer.MAX_VALUE:types[0]==DOUBLE?doubles[0].length:ints[0].length;
+    }
+
+    private void grow() {
+        ensureCapacity(Math.max(16,capacity()*2));
+    }
+
+    private void ensureCapacity(int n) {
+        for(int i=0;i<types.length;i++){
+            if(types[i]==DOUBLE){
+                if(doubles[i].length<n){
+                    doubles[i]=Arrays.copyOf(doubles[i],n);
+                }
+            }else if(ints[i].length<n){
+                ints[i]=Arrays.copyOf(ints[i],n);
+            }
+        }
+    }
+
+    /**
+     * Moves row from to row to (used to compact the columns when rows are removed)
+     */
+    private void move(int from, int to) {
+        for(int i=0;i<types.length;i++){
+            if(types[i]==DOUBLE){
+                doubles[i][to]=doubles[i][from];
+            }else{
+                ints[i][to]=ints[i][from];
+            }
+            nulls[i].set(to,nulls[i].get(from));
+        }
+    }
+
+    /**
+     * A predicate evaluated on a batch of consecutive rows at a time, over the column arrays
+     */
+    interface BatchPredicate {
+        /**
+         * Evaluates the predicate on the rows from (inclusive) to from+count (exclusive)
+         * @param from
+         * @param count at most BATCH_SIZE
+         * @param selection the bitmap receiving the result: bit i of word i/64 is set if row from+i matches,
+         * the bits past count are cleared
+         */
+        void evaluate(int from, int count, long[] selection);
+    }
+
+    /**
+     * A tuple of the table: reads and writes the values of one row in the columns
+     */
+    class RowTuple implements ITuple {
+        private int row;
+
+        RowTuple(int row) {
+            this.row=row;
+        }
+
+        /**
+         * Returns the row number of the tuple in the table
+         * @return
+         */
+        int getRow() {
+            return this.row;
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            set(row,index,value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getValue(int index) {
+            return (T) get(row,index);
+        }
+
+        @Override
+        public Object[] getValues() {
+            Object[] values=new Object[types.length];
+            for(int i=0;i<values.length;i++){
+                values[i]=get(row,i);
+            }
+            return values;
+        }
+
+        @Override
+        public void setValues(Object[] values) {
+            for(int i=0;i<values.length;i++){
+                set(row,i,values[i]);
+            }
+        }
+
+        /**
+         * Two tuples of the view are equal if they are the same row of the same table
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowTuple && ((RowTuple) o).row==row && ((RowTuple) o).table()==ColumnarTable.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return row;
+        }
+
+        private ColumnarTable table() {
+            return ColumnarTable.this;
+        }
+    }
+
+    /**
+     * The list of tuples of the table
+     * Tuples can be added and removed (removeIf and clear compact the columns in one pass)
+     */
+    private class TupleView extends AbstractList<ITuple> {
+        @Override
+        public ITuple get(int index) {
+            if(index<0 || index>=size){
+                throw new IndexOutOfBoundsException("Row "+index+" of "+size);
+            }
+            return new RowTuple(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(ITuple tuple) {
+            addTuple(tuple);
+            return true;
+        }
+
+        @Override
+        public ITuple remove(int index) {
+            ITuple removed=new Tuple(schema);
+            removed.setValues(get(index).getValues());
+            for(int r=index+1;r<size;r++){
+                move(r,r-1);
+            }
+            size--;
+            for(BitSet n: nulls){
+                n.clear(size);
+            }
+            return removed;
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super ITuple> filter) {
+            int kept=0;
+            RowTuple tuple=new RowTuple(0);
+            for(int r=0;r<size;r++){
+                tuple.row=r;
+                if(!filter.test(tuple)){
+                    if(kept!=r){
+                        move(r,kept);
+                    }
+                    kept++;
+                }
+            }
+            boolean removed=kept<size;
+            for(BitSet n: nulls){
+                n.clear(kept,size);
+            }
+            size=kept;
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            for(BitSet n: nulls){
+                n.clear();
+            }
+            size=0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * The commit timestamps of a database (multi-version concurrency control, see VersionedTable)
+ *
+ * Every insert or delete commits with the next timestamp: its versions are stamped with it before it becomes
+ * the last committed timestamp, so a reader taking the last committed timestamp as its snapshot sees either
+ * all the changes of a commit or none of them
+ * The clock keeps the snapshots in use, the vacuum only reclaims the versions none of them can see (see horizon)
+ */
+class CommitClock {
+    private volatile long committed;
+    private final Object commitLock=new Object();
+    private final TreeMap<Long,Integer> snapshots=new TreeMap<>();
+
+    /**
+     * Returns the last committed timestamp
+     * @return
+     */
+    long getCommitted() {
+        return this.committed;
+    }
+
+    /**
+     * Commits with the next timestamp: stamps the versions of the commit, then publishes the timestamp
+     * (commits are serialized, the stamping must be short)
+     * @param stamp sets the timestamp on the versions of the commit
+     * @return the timestamp of the commit
+     */
+    long commit(LongConsumer stamp) {
+        synchronized(commitLock){
+            long timestamp=committed+1;
+            stamp.accept(timestamp);
+            this.committed=timestamp;
+            return timestamp;
+        }
+    }
+
+    /**
+     * Takes the last committed timestamp as the snapshot of a reader, the snapshot must be closed when the reader
+     * has read its tables
+     * @return
+     */
+    long openSnapshot() {
+        synchronized(snapshots){
+            long snapshot=committed;
+            snapshots.merge(snapshot,1,Integer::sum);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Releases a snapshot taken by openSnapshot
+     * @param snapshot
+     */
+    void closeSnapshot(long snapshot) {
+        synchronized(snapshots){
+            snapshots.computeIfPresent(snapshot,(k,n)->n==1?null:n-1);
+        }
+    }
+
+    /**
+     * Returns the oldest snapshot in use (the last committed timestamp if there is none):
+     * versions deleted at or before it cannot be seen by any reader anymore
+     * @return
+     */
+    long horizon() {
+        synchronized(snapshots){
+            return snapshots.isEmpty()?committed:snapshots.firstKey();
+        }
+    }
+}
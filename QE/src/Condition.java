@@ -1,10 +1,32 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A condition is of the form operand1 operator operand2, e.g. sid = s1
+ * The operator is one of =, !=, <, <=, >, >= or LIKE (operand2 is then a pattern where % matches any text
+ * and _ any character)
+ *
+ * A condition can also be
+ * operand1 IN (value, ...) (the values are in getValues)
+ * condition AND condition, condition OR condition, NOT condition (the conditions are in getConditions)
+ *
+ * In a prepared query (see PreparedQuery), a value can be a ? placeholder: the condition then keeps the number
+ * of the parameter instead of the value (see getParameters), and bind returns the condition with the values
+ *
+ * In a having clause, operand1 can also be an aggregate (e.g. COUNT(*) > 1), it is then the normalized text
+ * of the aggregate (see Aggregate)
+ *
+ * Conditions are parsed from the text of a where clause, they are bound to a schema and compiled into
+ * a predicate by ConditionCompiler
  */
 public class Condition {
     private String operand1;
     private String operand2;
     private String operator;
+    private List<String> values=Collections.emptyList();
+    private List<Condition> conditions=Collections.emptyList();
+    private List<Integer> parameters=Collections.emptyList();
 
     /**
      * constructor
@@ -18,6 +40,50 @@ public class Condition {
         this.operator=operator;
     }
 
+    /**
+     * Returns the condition operand1 IN (values)
+     * @param operand1
+     * @param values
+     * @return
+     */
+    public static Condition in(String operand1, List<String> values) {
+        Condition c=new Condition(operand1,null,"IN");
+        c.values=values;
+        return c;
+    }
+
+    /**
+     * Returns the condition (conditions[0] AND conditions[1] AND ...)
+     * @param conditions
+     * @return
+     */
+    public static Condition and(List<Condition> conditions) {
+        return conditions.size()==1?conditions.get(0):logical("AND",conditions);
+    }
+
+    /**
+     * Returns the condition (conditions[0] OR conditions[1] OR ...)
+     * @param conditions
+     * @return
+     */
+    public static Condition or(List<Condition> conditions) {
+        return conditions.size()==1?conditions.get(0):logical("OR",conditions);
+    }
+
+    /**
+     * Returns the condition NOT condition
+     * @param condition
+     * @return
+     */
+    public static Condition not(Condition condition) {
+        return logical("NOT",Collections.singletonList(condition));
+    }
+
+    private static Condition logical(String operator, List<Condition> conditions) {
+        Condition c=new Condition(null,null,operator);
+        c.conditions=conditions;
+        return c;
+    }
 
     public String getOperand1() {
         return this.operand1;
@@ -42,4 +108,214 @@ public class Condition {
     public void setOperator(String operator) {
         this.operator=operator;
     }
+
+    /**
+     * Returns the values of an IN condition
+     * @return
+     */
+    public List<String> getValues() {
+        return this.values;
+    }
+
+    /**
+     * Returns the conditions of an AND, OR or NOT condition
+     * @return
+     */
+    public List<Condition> getConditions() {
+        return this.conditions;
+    }
+
+    /**
+     * Returns the parameter numbers (from 0) of the values of a comparison, LIKE or IN condition, one per value
+     * (-1 for a value that is not a ? placeholder), or an empty list if it has no placeholder
+     * @return
+     */
+    public List<Integer> getParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * Sets the parameter numbers of the values (see getParameters)
+     * @param parameters
+     */
+    public void setParameters(List<Integer> parameters) {
+        this.parameters=parameters;
+    }
+
+    /**
+     * Returns whether the condition (or one of its conditions) has a ? placeholder
+     * @return
+     */
+    public boolean hasParameters() {
+        if(isLogical()){
+            for(Condition c: conditions){
+                if(c.hasParameters()){
+                    return true;
+                }
+            }
+            return false;
+        }
+        return !parameters.isEmpty();
+    }
+
+    /**
+     * Returns the condition with its ? placeholders replaced by the values of the parameters
+     * @param values the parameter values (Integer, Double or String)
+     * @return
+     * @throws InvalidQueryException if a parameter is null
+     */
+    public Condition bind(Object[] values) throws InvalidQueryException {
+        if(!hasParameters()){
+            return this;
+        }
+        if(isLogical()){
+            List<Condition> bound=new ArrayList<>();
+            for(Condition c: conditions){
+                bound.add(c.bind(values));
+            }
+            return logical(operator,bound);
+        }
+        if(operator.equals("IN")){
+            List<String> bound=new ArrayList<>(this.values);
+            for(int i=0;i<bound.size();i++){
+                if(parameters.get(i)!=-1){
+                    bound.set(i,value(values,parameters.get(i)));
+                }
+            }
+            return in(operand1,bound);
+        }
+        return new Condition(operand1,value(values,parameters.get(0)),operator);
+    }
+
+    private static String value(Object[] values, int parameter) throws InvalidQueryException {
+        if(values[parameter]==null){
+            throw new InvalidQueryException("Parameter "+(parameter+1)+" of a condition cannot be null");
+        }
+        return values[parameter].toString();
+    }
+
+    /**
+     * Returns whether the condition is AND, OR or NOT
+     * @return
+     */
+    public boolean isLogical() {
+        return operator.equals("AND") || operator.equals("OR") || operator.equals("NOT");
+    }
+
+    /**
+     * Returns whether the condition compares an attribute with a value (=, !=, <, <=, >, >=)
+     * @return
+     */
+    public boolean isComparison() {
+        return !isLogical() && !operator.equals("IN") && !operator.equals("LIKE");
+    }
+
+    /**
+     * Returns the conditions that are all true when this condition is true (the conditions of an AND,
+     * or the condition itself)
+     * @return
+     */
+    public List<Condition> conjuncts() {
+        if(!operator.equals("AND")){
+            return Collections.singletonList(this);
+        }
+        List<Condition> result=new ArrayList<>();
+        for(Condition c: conditions){
+            result.addAll(c.conjuncts());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the attributes the condition refers to
+     * @return
+     */
+    public List<String> attributes() {
+        List<String> result=new ArrayList<>();
+        if(isLogical()){
+            for(Condition c: conditions){
+                result.addAll(c.attributes());
+            }
+        }else{
+            result.add(operand1);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        switch(operator){
+            case "NOT": return "NOT "+conditions.get(0);
+            case "AND":
+            case "OR":
+                StringBuilder s=new StringBuilder("(");
+                for(int i=0;i<conditions.size();i++){
+                    s.append(i>0?" "+operator+" ":"").append(conditions.get(i));
+                }
+                return s.append(")").toString();
+            case "IN":
+                List<String> list=new ArrayList<>();
+                for(int i=0;i<values.size();i++){
+                    list.add(parameters.isEmpty() || parameters.get(i)==-1?quote(values.get(i)):"?");
+                }
+                return operand1+" IN ("+String.join(", ",list)+")";
+            default: return operand1+" "+operator+" "+(parameters.isEmpty()?quote(operand2):"?");
+        }
+    }
+
+    /**
+     * Quotes a value that would not be read back as the same value by parse (a value with spaces,
+     * symbols or quotes, an empty value or a keyword)
+     */
+    private static String quote(String value) {
+        if(value.matches("[\\w.%+-]+") && !value.startsWith("--") && !Parser.isKeyword(value)){
+            return value;
+        }
+        return "'"+value.replace("'","''")+"'";
+    }
+
+    /**
+     * Returns whether the result of comparing operand1 with operand2 (negative, zero or positive)
+     * satisfies the operator (=, !=, <, <=, >, >=)
+     * @param comparison
+     * @param operator
+     * @return
+     */
+    public static boolean compare(int comparison, String operator) {
+        switch(operator){
+            case "=": return comparison==0;
+            case "!=": return comparison!=0;
+            case "<": return comparison<0;
+            case "<=": return comparison<=0;
+            case ">": return comparison>0;
+            default: return comparison>=0;
+        }
+    }
+
+    /**
+     * Parses the text of a where clause into a condition (see Parser for the grammar)
+     * Values can be quoted ('a b' or 'it''s'), keywords are case insensitive and <> is the same as !=
+     * An unquoted ? value is a placeholder, the placeholders are numbered from 0 in the order of the text
+     * @param whereClause
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static Condition parse(String whereClause) throws InvalidQueryException {
+        return Parser.parseCondition(whereClause);
+    }
+
+    /**
+     * Returns the number of ? placeholders of the condition (the highest parameter number plus one)
+     * @return
+     */
+    public int parameterCount() {
+        int count=0;
+        for(Condition c: conditions){
+            count=Math.max(count,c.parameterCount());
+        }
+        for(int p: parameters){
+            count=Math.max(count,p+1);
+        }
+        return count;
+    }
 }
@@ -0,0 +1,662 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a condition into a predicate before a scan starts
+ *
+ * The attributes of the condition are bound to their index in the schema and the values are converted to the
+ * attribute types once, then every comparison becomes a lambda specialized for the operator and the type
+ * (comparing unboxed ints, doubles or Strings), and AND, OR and NOT lambdas combine them
+ * A null value never matches a comparison, IN or LIKE (so NOT of such a comparison matches it)
+ *
+ * A condition on a table stored by column compiles to a predicate on the row numbers that reads the column arrays
+ * directly, or to a predicate on batches of rows (vectorized, see compileBatch); conditions on String attributes
+ * are evaluated once per dictionary entry, so the scan does no String work at all
+ * An equality on an encoded String attribute of a table stored by tuple compares the tuple value with the
+ * dictionary entry of the value (see StringDictionary) instead of comparing characters
+ */
+class ConditionCompiler {
+
+    private ConditionCompiler() {
+    }
+
+    /**
+     * Compiles a condition into a predicate on the tuples of a table
+     *
+     * Implements the following algorithm
+     *
+     * If the condition is AND, OR or NOT
+     *   Compile its conditions and combine their predicates
+     * Else
+     *   Find the index of the attribute in the schema
+     *   If the attribute is not in the schema
+     *     Throw an invalid query exception
+     *   Convert the value(s) to the attribute type
+     *   Return the predicate for the operator and the attribute type
+     *
+     * @param condition
+     * @param tableName the name of the table (to resolve qualified attributes)
+     * @param schema
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static Predicate<ITuple> compile(Condition condition, String tableName, ISchema schema)
+            throws InvalidQueryException {
+        return compile(condition,tableName,schema,null);
+    }
+
+    /**
+     * Compiles a condition into a predicate on the tuples of a table stored by tuple with dictionaries
+     * for its String attributes (see compile above), = and != on an encoded attribute compare the tuple value
+     * with the dictionary entry of the value
+     * @param condition
+     * @param tableName
+     * @param schema
+     * @param dictionaries the dictionaries of the attributes of the tuples (null for an attribute without one),
+     * or null
+     * @return
+     * @throws InvalidQueryException
+     */
+    static Predicate<ITuple> compile(Condition condition, String tableName, ISchema schema,
+            StringDictionary[] dictionaries) throws InvalidQueryException {
+        if(condition.isLogical()){
+            List<Predicate<ITuple>> list=new ArrayList<>();
+            for(Condition c: condition.getConditions()){
+                list.add(compile(c,tableName,schema,dictionaries));
+            }
+            return combine(condition.getOperator(),list);
+        }
+        int col=column(condition,tableName,schema);
+        String type=schema.getType(col);
+        switch(condition.getOperator()){
+            case "IN":
+                Set<Object> values=new HashSet<>(values(condition,type));
+                return t->{
+                    Object v=t.getValue(col);
+                    return v!=null && values.contains(v);
+                };
+            case "LIKE":
+                Predicate<String> like=like(condition.getOperand2());
+                return t->{
+                    Object v=t.getValue(col);
+                    return v!=null && like.test(v.toString());
+                };
+        }
+        Object value=Database.parseValue(type,condition.getOperand2());
+        if(value instanceof Integer){
+            return compare(col,condition.getOperator(),(int) (Integer) value);
+        }else if(value instanceof Double){
+            return compare(col,condition.getOperator(),(double) (Double) value);
+        }
+        StringDictionary dictionary=dictionaries==null?null:dictionaries[col];
+        String entry=dictionary==null?null:dictionary.lookup((String) value);
+        if(entry!=null && (condition.getOperator().equals("=") || condition.getOperator().equals("!="))){
+            return compare(col,condition.getOperator(),entry,dictionary);
+        }
+        return compare(col,condition.getOperator(),(String) value);
+    }
+
+    /**
+     * Checks that a condition can be compiled for the schema: its attributes are in the schema and its values
+     * have the attribute types (the values of ? placeholders are checked when they are bound)
+     * @param condition
+     * @param tableName
+     * @param schema
+     * @throws InvalidQueryException
+     */
+    public static void check(Condition condition, String tableName, ISchema schema) throws InvalidQueryException {
+        if(!condition.hasParameters()){
+            compile(condition,tableName,schema);
+        }else if(condition.isLogical()){
+            for(Condition c: condition.getConditions()){
+                check(c,tableName,schema);
+            }
+        }else{
+            column(condition,tableName,schema);
+        }
+    }
+
+    /**
+     * Compiles a condition into a predicate on the row numbers of a table stored by column
+     * The predicate reads the column arrays of the table as they are now, so it must be compiled again
+     * after tuples are added to the table
+     *
+     * Implements the following algorithm
+     *
+     * If the condition is AND, OR or NOT
+     *   Compile its conditions and combine their predicates
+     * Bind the attribute and convert the value(s) as for tuples
+     * If the attribute is a String
+     *   Evaluate the condition on every value of the dictionary of the attribute
+     *   Return the predicate reading the result of the row's dictionary code
+     * Else
+     *   Return the predicate comparing the int or double of the row with the value
+     *
+     * @param condition
+     * @param table
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static IntPredicate compile(Condition condition, ColumnarTable table) throws InvalidQueryException {
+        if(condition.isLogical()){
+            List<IntPredicate> list=new ArrayList<>();
+            for(Condition c: condition.getConditions()){
+                list.add(compile(c,table));
+            }
+            return combineRows(condition.getOperator(),list);
+        }
+        ISchema schema=table.getSchema();
+        int col=column(condition,table.getName(),schema);
+        String type=schema.getType(col);
+        BitSet nulls=table.nullColumn(col);
+        if(type.equals("String")){
+            Predicate<ITuple> test=compile(condition,table.getName(),schema);
+            List<String> dictionary=table.dictionary(col);
+            boolean[] matching=new boolean[dictionary.size()];
+            Tuple value=new Tuple(schema);
+            for(int c=0;c<matching.length;c++){
+                value.setValue(col,dictionary.get(c));
+                matching[c]=test.test(value);
+            }
+            int[] codes=table.intColumn(col);
+            return r->!nulls.get(r) && matching[codes[r]];
+        }
+        String op=condition.getOperator();
+        if(op.equals("LIKE")){
+            Predicate<ITuple> test=compile(condition,table.getName(),schema);
+            return r->!nulls.get(r) && test.test(table.getTuples().get(r));
+        }
+        if(type.equals("Integer")){
+            int[] data=table.intColumn(col);
+            if(op.equals("IN")){
+                int[] values=new int[condition.getValues().size()];
+                List<Object> list=values(condition,type);
+                for(int i=0;i<values.length;i++){
+                    values[i]=(Integer) list.get(i);
+                }
+                Arrays.sort(values);
+                return r->Arrays.binarySearch(values,data[r])>=0 && !nulls.get(r);
+            }
+            int x=(Integer) Database.parseValue(type,condition.getOperand2());
+            switch(op){
+                case "=": return r->data[r]==x && !nulls.get(r);
+                case "!=": return r->data[r]!=x && !nulls.get(r);
+                case "<": return r->data[r]<x && !nulls.get(r);
+                case "<=": return r->data[r]<=x && !nulls.get(r);
+                case ">": return r->data[r]>x && !nulls.get(r);
+                default: return r->data[r]>=x && !nulls.get(r);
+            }
+        }
+        double[] data=table.doubleColumn(col);
+        if(op.equals("IN")){
+            double[] values=new double[condition.getValues().size()];
+            List<Object> list=values(condition,type);
+            for(int i=0;i<values.length;i++){
+                values[i]=(Double) list.get(i);
+            }
+            Arrays.sort(values);
+            return r->Arrays.binarySearch(values,data[r])>=0 && !nulls.get(r);
+        }
+        double x=(Double) Database.parseValue(type,condition.getOperand2());
+        switch(op){
+            case "=": return r->data[r]==x && !nulls.get(r);
+            case "!=": return r->data[r]!=x && !nulls.get(r);
+            case "<": return r->data[r]<x && !nulls.get(r);
+            case "<=": return r->data[r]<=x && !nulls.get(r);
+            case ">": return r->data[r]>x && !nulls.get(r);
+            default: return r->data[r]>=x && !nulls.get(r);
+        }
+    }
+
+    /**
+     * Compiles a condition on a table stored by column into a predicate on batches of rows: every comparison
+     * becomes a loop over the column array that writes the selection bitmap of the batch, without a call per row
+     * (see ColumnarTable.BatchPredicate)
+     *
+     * Implements the following algorithm
+     *
+     * If the condition is AND, OR or NOT
+     *   If the condition is AND
+     *     Intersect the ranges of its comparisons of Integer attributes (other than !=), one range per attribute
+     *   Compile its other conditions and combine their bitmaps word by word
+     *   (AND stops once no row of the batch is left, OR once every row is)
+     * Bind the attribute and convert the value(s) as for tuples
+     * If the attribute is a String
+     *   Evaluate the condition on every value of the dictionary of the attribute
+     *   Return the predicate reading the result of the dictionary code of every row
+     * If the operator is IN or LIKE
+     *   Return the predicate testing every row with the predicate on the row numbers (see compile)
+     * Turn the comparison into a range of values (!= is the negation of =)
+     * Return the predicate testing whether the value of every row is in the range, clearing the bits of null rows
+     *
+     * @param condition
+     * @param table
+     * @return
+     * @throws InvalidQueryException
+     */
+    static ColumnarTable.BatchPredicate compileBatch(Condition condition, ColumnarTable table)
+            throws InvalidQueryException {
+        if(condition.isLogical()){
+            List<ColumnarTable.BatchPredicate> list=new ArrayList<>();
+            Map<Integer,long[]> ranges=new LinkedHashMap<>();
+            for(Condition c: condition.getConditions()){
+                if(condition.getOperator().equals("AND") && isIntRange(c,table)){
+                    int col=column(c,table.getName(),table.getSchema());
+                    long[] range=range(c.getOperator(),(Integer) Database.parseValue("Integer",c.getOperand2()));
+                    long[] both=ranges.getOrDefault(col,new long[]{Integer.MIN_VALUE,Integer.MAX_VALUE});
+                    ranges.put(col,new long[]{Math.max(both[0],range[0]),Math.min(both[1],range[1])});
+                }else{
+                    list.add(compileBatch(c,table));
+                }
+            }
+            for(Map.Entry<Integer,long[]> range: ranges.entrySet()){
+                int col=range.getKey();
+                list.add(0,range(table.intColumn(col),table.nullColumn(col),range.getValue()[0],range.getValue()[1],false));
+            }
+            return list.size()==1 && !condition.getOperator().equals("NOT")?list.get(0)
+                    :combineBatches(condition.getOperator(),list);
+        }
+        ISchema schema=table.getSchema();
+        int col=column(condition,table.getName(),schema);
+        String type=schema.getType(col);
+        BitSet nulls=table.nullColumn(col);
+        String op=condition.getOperator();
+        if(type.equals("String")){
+            Predicate<ITuple> test=compile(condition,table.getName(),schema);
+            List<String> dictionary=table.dictionary(col);
+            // null rows are read as well (and cleared after): their code is 0 even with an empty dictionary
+            byte[] matching=new byte[Math.max(1,dictionary.size())];
+            Tuple value=new Tuple(schema);
+            for(int c=0;c<dictionary.size();c++){
+                value.setValue(col,dictionary.get(c));
+                matching[c]=(byte) (test.test(value)?1:0);
+            }
+            int[] codes=table.intColumn(col);
+            return (from,count,selection)->{
+                for(int w=0;w*64<count;w++){
+                    int base=from+w*64;
+                    int n=Math.min(64,count-w*64);
+                    long bits=0;
+                    for(int i=0;i<n;i++){
+                        bits|=(long) matching[codes[base+i]]<<i;
+                    }
+                    selection[w]=bits;
+                }
+                clearNulls(nulls,from,count,selection);
+            };
+        }
+        if(op.equals("IN") || op.equals("LIKE")){
+            IntPredicate test=compile(condition,table);
+            return (from,count,selection)->{
+                for(int w=0;w*64<count;w++){
+                    int base=from+w*64;
+                    int n=Math.min(64,count-w*64);
+                    long bits=0;
+                    for(int i=0;i<n;i++){
+                        bits|=(test.test(base+i)?1L:0L)<<i;
+                    }
+                    selection[w]=bits;
+                }
+            };
+        }
+        boolean negate=op.equals("!=");
+        if(type.equals("Integer")){
+            long[] range=range(op,(Integer) Database.parseValue(type,condition.getOperand2()));
+            return range(table.intColumn(col),nulls,range[0],range[1],negate);
+        }
+        double x=(Double) Database.parseValue(type,condition.getOperand2());
+        double lo=op.equals("<") || op.equals("<=")?Double.NEGATIVE_INFINITY:op.equals(">")?Math.nextUp(x):x;
+        double hi=op.equals(">") || op.equals(">=")?Double.POSITIVE_INFINITY:op.equals("<")?Math.nextDown(x):x;
+        double[] data=table.doubleColumn(col);
+        return (from,count,selection)->{
+            for(int w=0;w*64<count;w++){
+                int base=from+w*64;
+                int n=Math.min(64,count-w*64);
+                long bits=0;
+                for(int i=0;i<n;i++){
+                    double v=data[base+i];
+                    bits|=(v>=lo & v<=hi?1L:0L)<<i;
+                }
+                selection[w]=negate?~bits&mask(n):bits;
+            }
+            clearNulls(nulls,from,count,selection);
+        };
+    }
+
+    /**
+     * Returns whether a condition compares an Integer attribute with a value (other than !=, IN and LIKE)
+     */
+    private static boolean isIntRange(Condition condition, ColumnarTable table) throws InvalidQueryException {
+        if(condition.isLogical() || condition.getOperator().equals("!=") || !"=<=>=".contains(condition.getOperator())){
+            return false;
+        }
+        return table.getSchema().getType(column(condition,table.getName(),table.getSchema())).equals("Integer");
+    }
+
+    /**
+     * Returns the range {lo, hi} (inclusive) of the ints matching a comparison with x, empty if lo>hi
+     */
+    private static long[] range(String op, int x) {
+        long lo=op.equals("<") || op.equals("<=")?Integer.MIN_VALUE:op.equals(">")?(long) x+1:x;
+        long hi=op.equals(">") || op.equals(">=")?Integer.MAX_VALUE:op.equals("<")?(long) x-1:x;
+        return new long[]{lo,hi};
+    }
+
+    /**
+     * Returns the predicate on batches matching the rows whose value is in [lo, hi] (or not in it if negate),
+     * null rows never match
+     */
+    private static ColumnarTable.BatchPredicate range(int[] data, BitSet nulls, long lo, long hi, boolean negate) {
+        if(lo>hi){
+            return (from,count,selection)->{
+                for(int w=0;w*64<count;w++){
+                    selection[w]=negate?mask(Math.min(64,count-w*64)):0;
+                }
+                clearNulls(nulls,from,count,selection);
+            };
+        }
+        int low=(int) lo;
+        // a value is in [lo, hi] if value-lo, unsigned, is at most hi-lo (flipping the sign bit compares unsigned),
+        // the bit of the value is the sign of (value-lo)-(hi-lo)-1 computed on longs, without a branch
+        long width=((int) (hi-lo)^Integer.MIN_VALUE)+1L;
+        return (from,count,selection)->{
+            for(int w=0;w*64<count;w++){
+                int base=from+w*64;
+                int n=Math.min(64,count-w*64);
+                long bits=0;
+                for(int i=0;i<n;i++){
+                    bits|=((((data[base+i]-low)^Integer.MIN_VALUE)-width)>>>63)<<i;
+                }
+                selection[w]=negate?~bits&mask(n):bits;
+            }
+            clearNulls(nulls,from,count,selection);
+        };
+    }
+
+    /**
+     * Returns the bitmap word with the n lowest bits set
+     */
+    private static long mask(int n) {
+        return n==64?-1L:(1L<<n)-1;
+    }
+
+    /**
+     * Clears the bits of the null rows of a batch
+     */
+    private static void clearNulls(BitSet nulls, int from, int count, long[] selection) {
+        for(int r=nulls.nextSetBit(from);r>=0 && r<from+count;r=nulls.nextSetBit(r+1)){
+            selection[(r-from)>>6]&=~(1L<<(r-from));
+        }
+    }
+
+    /**
+     * Returns a predicate on strings matching a LIKE pattern (% matches any text, _ any character)
+     * Patterns that are a prefix, a suffix or a substring use startsWith, endsWith or contains,
+     * other patterns are translated to a regular expression
+     * @param pattern
+     * @return
+     */
+    static Predicate<String> like(String pattern) {
+        if(pattern.indexOf('_')==-1){
+            String inner=pattern;
+            boolean leading=inner.startsWith("%");
+            boolean trailing=inner.length()>(leading?1:0) && inner.endsWith("%");
+            inner=inner.substring(leading?1:0,inner.length()-(trailing?1:0));
+            if(inner.indexOf('%')==-1){
+                String text=inner;
+                if(leading && trailing){
+                    return s->s.contains(text);
+                }else if(leading){
+                    return s->s.endsWith(text);
+                }else if(trailing){
+                    return s->s.startsWith(text);
+                }
+                return s->s.equals(text);
+            }
+        }
+        StringBuilder regex=new StringBuilder();
+        StringBuilder literal=new StringBuilder();
+        for(char c: pattern.toCharArray()){
+            if(c=='%' || c=='_'){
+                if(literal.length()>0){
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c=='%'?".*":".");
+            }else{
+                literal.append(c);
+            }
+        }
+        if(literal.length()>0){
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        Pattern compiled=Pattern.compile(regex.toString(),Pattern.DOTALL);
+        return s->compiled.matcher(s).matches();
+    }
+
+    private static int column(Condition condition, String tableName, ISchema schema) throws InvalidQueryException {
+        int col=Database.columnIndex(tableName,schema,condition.getOperand1());
+        if(col==-1){
+            throw new InvalidQueryException("Unknown attribute: "+condition.getOperand1());
+        }
+        return col;
+    }
+
+    private static List<Object> values(Condition condition, String type) throws InvalidQueryException {
+        List<Object> result=new ArrayList<>();
+        for(String v: condition.getValues()){
+            result.add(Database.parseValue(type,v));
+        }
+        return result;
+    }
+
+    private static Predicate<ITuple> combine(String operator, List<Predicate<ITuple>> list) {
+        if(operator.equals("NOT")){
+            Predicate<ITuple> p=list.get(0);
+            return t->!p.test(t);
+        }
+        if(list.size()==2){
+            Predicate<ITuple> a=list.get(0);
+            Predicate<ITuple> b=list.get(1);
+            return operator.equals("AND")?t->a.test(t) && b.test(t):t->a.test(t) || b.test(t);
+        }
+        @SuppressWarnings("unchecked")
+        Predicate<ITuple>[] all=(Predicate<ITuple>[]) list.toArray(new Predicate<?>[0]);
+        if(operator.equals("AND")){
+            return t->{
+                for(Predicate<ITuple> p: all){
+                    if(!p.test(t)){
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        return t->{
+            for(Predicate<ITuple> p: all){
+                if(p.test(t)){
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static IntPredicate combineRows(String operator, List<IntPredicate> list) {
+        if(operator.equals("NOT")){
+            IntPredicate p=list.get(0);
+            return r->!p.test(r);
+        }
+        if(list.size()==2){
+            IntPredicate a=list.get(0);
+            IntPredicate b=list.get(1);
+            return operator.equals("AND")?r->a.test(r) && b.test(r):r->a.test(r) || b.test(r);
+        }
+        IntPredicate[] all=list.toArray(new IntPredicate[0]);
+        if(operator.equals("AND")){
+            return r->{
+                for(IntPredicate p: all){
+                    if(!p.test(r)){
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        return r->{
+            for(IntPredicate p: all){
+                if(p.test(r)){
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static ColumnarTable.BatchPredicate combineBatches(String operator, List<ColumnarTable.BatchPredicate> list) {
+        ColumnarTable.BatchPredicate[] all=list.toArray(new ColumnarTable.BatchPredicate[0]);
+        if(operator.equals("NOT")){
+            return (from,count,selection)->{
+                all[0].evaluate(from,count,selection);
+                for(int w=0;w*64<count;w++){
+                    selection[w]=~selection[w]&mask(Math.min(64,count-w*64));
+                }
+            };
+        }
+        boolean and=operator.equals("AND");
+        return (from,count,selection)->{
+            int words=(count+63)/64;
+            all[0].evaluate(from,count,selection);
+            long[] other=new long[words];
+            for(int p=1;p<all.length;p++){
+                long any=0;
+                for(int w=0;w<words;w++){
+                    any|=and?selection[w]:~selection[w]&mask(Math.min(64,count-w*64));
+                }
+                if(any==0){
+                    return;
+                }
+                all[p].evaluate(from,count,other);
+                for(int w=0;w<words;w++){
+                    selection[w]=and?selection[w]&other[w]:selection[w]|other[w];
+                }
+            }
+        };
+    }
+
+    private static Predicate<ITuple> compare(int col, String op, int x) {
+        switch(op){
+            case "=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v==x;
+            };
+            case "!=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v!=x;
+            };
+            case "<": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v<x;
+            };
+            case "<=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v<=x;
+            };
+            case ">": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v>x;
+            };
+            default: return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Integer) v>=x;
+            };
+        }
+    }
+
+    private static Predicate<ITuple> compare(int col, String op, double x) {
+        switch(op){
+            case "=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v==x;
+            };
+            case "!=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v!=x;
+            };
+            case "<": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v<x;
+            };
+            case "<=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v<=x;
+            };
+            case ">": return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v>x;
+            };
+            default: return t->{
+                Object v=t.getValue(col);
+                return v!=null && (Double) v>=x;
+            };
+        }
+    }
+
+    /**
+     * Returns the predicate of = or != on an attribute with a dictionary
+     * While the attribute is encoded, every tuple with the value holds its dictionary entry; once the dictionary
+     * is dropped, tuples added since then hold their own Strings, which are compared by characters
+     * @param col
+     * @param op
+     * @param entry the dictionary entry of the value
+     * @param dictionary
+     * @return
+     */
+    private static Predicate<ITuple> compare(int col, String op, String entry, StringDictionary dictionary) {
+        if(op.equals("=")){
+            return t->{
+                Object v=t.getValue(col);
+                return v==entry || v!=null && !dictionary.isEncoded() && entry.equals(v);
+            };
+        }
+        return t->{
+            Object v=t.getValue(col);
+            return v!=null && v!=entry && (dictionary.isEncoded() || !entry.equals(v));
+        };
+    }
+
+    private static Predicate<ITuple> compare(int col, String op, String x) {
+        switch(op){
+            case "=": return t->x.equals(t.getValue(col));
+            case "!=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && !x.equals(v);
+            };
+            case "<": return t->{
+                Object v=t.getValue(col);
+                return v!=null && ((String) v).compareTo(x)<0;
+            };
+            case "<=": return t->{
+                Object v=t.getValue(col);
+                return v!=null && ((String) v).compareTo(x)<=0;
+            };
+            case ">": return t->{
+                Object v=t.getValue(col);
+                return v!=null && ((String) v).compareTo(x)>0;
+            };
+            default: return t->{
+                Object v=t.getValue(col);
+                return v!=null && ((String) v).compareTo(x)>=0;
+            };
+        }
+    }
+}
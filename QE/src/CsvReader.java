@@ -0,0 +1,316 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader of a table csv file
+ *
+ * The file is read through a FileChannel into a direct buffer and parsed byte by byte, every row is returned
+ * as an array of values already converted to the schema types (Integer, Double or String)
+ * A UTF-8 byte order mark at the start of the file is skipped, blank lines are ignored,
+ * fields can be quoted ("a, b" or "say ""hi""") and unquoted fields are trimmed
+ * An empty unquoted field is a null value
+ *
+ * The reader is an iterator, so a table can be scanned without loading all of its rows in memory
+ * It can also read only a byte range of the file, so several readers can parse one large file in parallel
+ * A strict reader also rejects the rows without exactly one value per attribute (see Database.copyData)
+ */
+class CsvReader implements Iterator<Object[]>, Closeable {
+    private static final int BUFFER_SIZE=1<<16;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private int[] types;
+    private byte[] field=new byte[64];
+    private int fieldLength;
+    private long line;
+    private long quotedLines;
+    private Object[] next;
+    private boolean eof;
+    private long remaining;
+    private boolean strict;
+
+    /**
+     * Opens the csv file of the table
+     * @param file
+     * @param schema
+     */
+    public CsvReader(File file, ISchema schema) {
+        this(file,schema,0,Long.MAX_VALUE);
+    }
+
+    /**
+     * Opens the csv file of the table to read the rows between two byte positions
+     * Both positions must be at the start of a row, not inside a quoted field (see IO.splitFile)
+     * @param file
+     * @param schema
+     * @param start position of the first byte to read
+     * @param end position after the last byte to read
+     */
+    public CsvReader(File file, ISchema schema, long start, long end) {
+        this(file,schema,start,end,1,false);
+    }
+
+    /**
+     * Opens the csv file of the table to read the rows between two byte positions (see above)
+     * @param file
+     * @param schema
+     * @param start position of the first byte to read
+     * @param end position after the last byte to read
+     * @param firstLine the number of the line at the start position (in the error messages)
+     * @param strict whether a row without exactly one value per attribute is an error
+     */
+    public CsvReader(File file, ISchema schema, long start, long end, long firstLine, boolean strict) {
+        this.line=firstLine-1;
+        this.strict=strict;
+        this.types=new int[schema.getAttributes().size()];
+        for(int i=0;i<types.length;i++){
+            String type=schema.getType(i);
+            this.types[i]=type.equals("Integer")?1:type.equals("Double")?2:0;
+        }
+        try {
+            this.channel=FileChannel.open(file.toPath(),StandardOpenOption.READ);
+            this.channel.position(start);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.remaining=end-start;
+        this.buffer=ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.limit(0);
+        if(start==0 && peek()==0xEF){
+            read();
+            if(read()!=0xBB || read()!=0xBF){
+                throw new IllegalArgumentException("Invalid UTF-8 byte order mark in "+file);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(next==null && !eof){
+            next=readRow();
+            eof=next==null;
+        }
+        return next!=null;
+    }
+
+    @Override
+    public Object[] next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        Object[] row=next;
+        next=null;
+        return row;
+    }
+
+    /**
+     * Parses the next row of the file
+     *
+     * Implements the following algorithm
+     *
+     * For each byte until the end of the line (outside quotes)
+     *   If the byte is a quote at the start of a field
+     *     Read the field up to the closing quote (a doubled quote is a quote in the value)
+     *   Else if the byte is a comma
+     *     Convert the field to its attribute type and start the next field
+     *   Else
+     *     Add the byte to the field
+     * Convert the last field
+     * If the reader is strict and the line does not have one field per attribute
+     *   Throw an illegal argument exception
+     * Skip the line if it was empty
+     *
+     * @return the row values, or null at the end of the file
+     */
+    private Object[] readRow() {
+        while(true){
+            // the line of the row is after the line breaks of the quoted values of the row before
+            line+=1+quotedLines;
+            quotedLines=0;
+            Object[] row=new Object[types.length];
+            int column=0;
+            boolean quoted=false;
+            boolean empty=true;
+            fieldLength=0;
+            int b;
+            while((b=read())!=-1 && b!='\n'){
+                if(b!='\r'){
+                    empty=false;
+                }
+                if(b=='"' && !quoted && isBlank()){
+                    quoted=true;
+                    fieldLength=0;
+                    while((b=read())!=-1){
+                        if(b=='"'){
+                            if(peek()!='"'){
+                                break;
+                            }
+                            read();
+                        }else if(b=='\n'){
+                            quotedLines++;
+                        }
+                        append(b);
+                    }
+                }else if(b==','){
+                    setField(row,column++,quoted);
+                    quoted=false;
+                    fieldLength=0;
+                }else if(b!='\r' && !(quoted && b<=' ')){
+                    append(b);
+                }
+            }
+            if(!empty){
+                setField(row,column,quoted);
+                if(strict && column!=types.length-1){
+                    throw new IllegalArgumentException("Expected "+types.length+" values on line "+line+" but found "
+                            +(column+1));
+                }
+                return row;
+            }
+            if(b==-1){
+                return null;
+            }
+        }
+    }
+
+    private boolean isBlank() {
+        for(int i=0;i<fieldLength;i++){
+            if((field[i]&0xFF)>' '){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(int b) {
+        if(fieldLength==field.length){
+            field=Arrays.copyOf(field,field.length*2);
+        }
+        field[fieldLength++]=(byte) b;
+    }
+
+    /**
+     * Converts the current field to the attribute type and stores it in the row
+     */
+    private void setField(Object[] row, int column, boolean quoted) {
+        if(column>=types.length){
+            return;
+        }
+        int start=0;
+        int end=fieldLength;
+        if(!quoted){
+            while(start<end && (field[start]&0xFF)<=' '){
+                start++;
+            }
+            while(end>start && (field[end-1]&0xFF)<=' '){
+                end--;
+            }
+            if(start==end){
+                return;
+            }
+        }
+        switch(types[column]){
+            case 1:
+                row[column]=parseInt(start,end);
+                break;
+            case 2:
+                row[column]=parseDouble(start,end);
+                break;
+            default:
+                row[column]=new String(field,start,end-start,StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses an int directly from the field bytes, falling back to Integer.parseInt for anything unusual
+     */
+    private Integer parseInt(int start, int end) {
+        int i=start;
+        boolean negative=field[i]=='-';
+        if(negative || field[i]=='+'){
+            i++;
+        }
+        if(i==end || end-i>9){
+            return parseIntSlow(start,end);
+        }
+        int value=0;
+        for(;i<end;i++){
+            int d=field[i]-'0';
+            if(d<0 || d>9){
+                return parseIntSlow(start,end);
+            }
+            value=value*10+d;
+        }
+        return negative?-value:value;
+    }
+
+    private Integer parseIntSlow(int start, int end) {
+        String s=new String(field,start,end-start,StandardCharsets.UTF_8);
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a valid Integer on line "+line+": "+s);
+        }
+    }
+
+    private Double parseDouble(int start, int end) {
+        String s=new String(field,start,end-start,StandardCharsets.UTF_8);
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a valid Double on line "+line+": "+s);
+        }
+    }
+
+    private int read() {
+        if(!buffer.hasRemaining() && !fill()){
+            return -1;
+        }
+        return buffer.get()&0xFF;
+    }
+
+    private int peek() {
+        if(!buffer.hasRemaining() && !fill()){
+            return -1;
+        }
+        return buffer.get(buffer.position())&0xFF;
+    }
+
+    private boolean fill() {
+        try {
+            if(remaining<=0){
+                return false;
+            }
+            buffer.clear();
+            if(remaining<buffer.capacity()){
+                buffer.limit((int) remaining);
+            }
+            int n;
+            do {
+                n=channel.read(buffer);
+            } while(n==0);
+            buffer.flip();
+            remaining-=Math.max(n,0);
+            return n>0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of a select query, read one tuple at a time as the plan produces them (see Database.openCursor)
+ * Scans, filters, projections and limits stream their tuples, so reading the first tuples of a large result
+ * only reads the tuples they come from; the memory used depends on the tuples read, not on the size of the tables
+ * (unless the plan has a join, an aggregate or a sort, which build their table when the cursor is opened)
+ *
+ * The tables stored by tuple are read as of the snapshot taken when the cursor was opened (see VersionedTable).
+ * The other tables have no snapshot: the results of a query reading them are computed when the cursor is opened,
+ * while they are locked for reading (see Database.lockForReading). A cursor must be closed (it is closed once its
+ * last tuple has been read)
+ */
+public class Cursor implements ITable, AutoCloseable {
+    private PlanNode plan;
+    private Runnable onClose;
+    private boolean closed;
+
+    /**
+     * constructor, opens the plan
+     * @param plan
+     * @param onClose run when the cursor is closed (releases the snapshot the plan reads)
+     */
+    Cursor(PlanNode plan, Runnable onClose) {
+        this.plan=plan;
+        this.onClose=onClose;
+        try {
+            plan.open();
+        } catch (RuntimeException e) {
+            onClose.run();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return plan.getName();
+    }
+
+    @Override
+    public ISchema getSchema() {
+        return plan.getSchema();
+    }
+
+    /**
+     * Returns the next result tuple, or null if there is none left
+     * @return
+     */
+    public ITuple next() {
+        if(closed){
+            return null;
+        }
+        ITuple t=plan.next();
+        if(t==null){
+            close();
+        }
+        return t;
+    }
+
+    /**
+     * Reads the tuples left (the cursor is then closed)
+     * @return
+     */
+    @Override
+    public List<ITuple> getTuples() {
+        List<ITuple> tuples=new ArrayList<>();
+        ITuple t;
+        while((t=next())!=null){
+            tuples.add(t);
+        }
+        return tuples;
+    }
+
+    @Override
+    public void addTuple(ITuple tuple) {
+        throw new UnsupportedOperationException("The results of a cursor cannot be changed");
+    }
+
+    @Override
+    public void close() {
+        if(!closed){
+            closed=true;
+            try {
+                plan.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+}
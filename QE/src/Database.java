@@ -1,17 +1,82 @@
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The main database class
  * Database as a list of tables, list of schemas and a folder name where the database is stored
  * Database is stored (on the disk) in the form of three csv files and schema text file
+ * Inserts and deletes are written to a write-ahead log first, and folded into the csv files by checkpoints
+ * (or into binary page files read through a buffer pool, if the database is paged, see PagedTable)
+ * Tables stored by tuple are versioned (see VersionedTable): selects read a snapshot of the database
+ * while inserts and deletes commit new versions, a background vacuum reclaims the versions no one can see anymore
  */
 class Database {
+    /**
+     * Default number of tuples an operator may hold in memory before spilling to disk
+     * (a quarter of the heap, counting roughly 256 bytes per tuple)
+     */
+    static final int DEFAULT_MEMORY_BUDGET=(int)Math.min(Integer.MAX_VALUE,Runtime.getRuntime().maxMemory()/1024);
+
     private List<ITable> tables;
     private List<ISchema> schemas;
     private String folderName;
+    private int joinMemoryBudget=DEFAULT_MEMORY_BUDGET;
+    private int sortMemoryBudget=DEFAULT_MEMORY_BUDGET;
+    private int aggregateMemoryBudget=DEFAULT_MEMORY_BUDGET;
+    private Map<String, List<IIndex>> indexes;
+    private Map<String, TableStatistics> statistics;
+    private WriteAheadLog log;
+    private Set<String> dirty=ConcurrentHashMap.newKeySet();
+    private ReadWriteLock checkpointLock=new ReentrantReadWriteLock();
+    private Map<String, ReadWriteLock> latches=new ConcurrentHashMap<>();
+    private ScheduledExecutorService checkpointer;
+    private CommitClock clock=new CommitClock();
+    private ScheduledExecutorService vacuum;
+    private long vacuumIntervalMillis=1000;
+    private AtomicBoolean checkpointRequested=new AtomicBoolean();
+    private long checkpointIntervalMillis=10_000;
+    private long checkpointLogSize=64L<<20;
+    private AppendWriter.SyncPolicy syncPolicy=AppendWriter.SyncPolicy.ALWAYS;
+    private long syncIntervalMillis=1000;
+    private boolean columnar;
+    private boolean offHeap;
+    private boolean paged;
+    private int bufferPoolPages=(int) Math.max(64,Runtime.getRuntime().maxMemory()/8/PageFile.PAGE_SIZE);
+    private BufferPool bufferPool;
+    private ExecutorService loadExecutor=ForkJoinPool.commonPool();
+    private long loadSplitSize=64L<<20;
+    private int parallelism=Runtime.getRuntime().availableProcessors();
+    private int parallelThreshold=100_000;
+    private boolean vectorized=true;
+    private ExecutorService queryExecutor=ForkJoinPool.commonPool();
+    private ResultCache resultCache=new ResultCache(1024,64L<<20);
+    private Map<String, AtomicLong> versions=new ConcurrentHashMap<>();
+    private QueryMetrics metrics;
 
     /**
      * Constructor
@@ -24,7 +89,10 @@ class Database {
     public Database(String folderName, String schemaFileName) {
         this.tables=new ArrayList<>();
         this.schemas=new ArrayList<>();
+        this.indexes=new HashMap<>();
+        this.statistics=new HashMap<>();
         this.folderName=folderName;
+        this.metrics=new QueryMetrics(folderName);
         IO.readSchema(schemaFileName,folderName,this);
     }
 
@@ -60,6 +128,241 @@ class Database {
         return this.schemas;
     }
 
+    /**
+     * Sets the maximum number of tuples a join keeps in its in-memory hash table
+     * Larger build sides are partitioned to temporary files
+     * @param joinMemoryBudget
+     */
+    public void setJoinMemoryBudget(int joinMemoryBudget) {
+        this.joinMemoryBudget=joinMemoryBudget;
+    }
+
+    /**
+     * Sets the maximum number of tuples the order by sorts in memory
+     * Larger results are sorted in runs written to temporary files and merged
+     * @param sortMemoryBudget
+     */
+    public void setSortMemoryBudget(int sortMemoryBudget) {
+        this.sortMemoryBudget=sortMemoryBudget;
+    }
+
+    /**
+     * Sets the maximum number of groups the group by keeps in memory
+     * The tuples of the other groups are partitioned to temporary files and aggregated afterwards
+     * @param aggregateMemoryBudget
+     */
+    public void setAggregateMemoryBudget(int aggregateMemoryBudget) {
+        this.aggregateMemoryBudget=aggregateMemoryBudget;
+    }
+
+    /**
+     * Sets whether populateDB loads the tables stored by column (ColumnarTable) instead of by tuple
+     * @param columnar
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar=columnar;
+    }
+
+    /**
+     * Sets whether populateDB loads the tables stored by tuple outside of the heap (OffHeapTable) instead of
+     * in versioned tuples of the heap (a columnar or paged database ignores it)
+     * Selects on an off-heap table do not read a snapshot, as on a columnar table
+     * @param offHeap
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap=offHeap;
+    }
+
+    /**
+     * Sets whether the tables are stored in binary page files (PagedTable) instead of csv files held in memory
+     * The csv file of a table is converted to pages by the first populateDB, later ones only open the page files
+     * @param paged
+     */
+    public void setPaged(boolean paged) {
+        this.paged=paged;
+    }
+
+    /**
+     * Sets the number of pages the buffer pool of a paged database holds in memory
+     * (an eighth of the heap by default), takes effect at the next populateDB
+     * @param bufferPoolPages
+     */
+    public void setBufferPoolPages(int bufferPoolPages) {
+        this.bufferPoolPages=bufferPoolPages;
+        this.bufferPool=null;
+    }
+
+    /**
+     * Returns the buffer pool of a paged database (null before populateDB)
+     * @return
+     */
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    /**
+     * Sets the executor populateDB uses to read the table files in parallel
+     * @param loadExecutor
+     */
+    public void setLoadExecutor(ExecutorService loadExecutor) {
+        this.loadExecutor=loadExecutor;
+    }
+
+    /**
+     * Sets the size (in bytes) of the ranges a large table file is split into, each range is parsed by its own task
+     * @param loadSplitSize
+     */
+    public void setLoadSplitSize(long loadSplitSize) {
+        this.loadSplitSize=loadSplitSize;
+    }
+
+    /**
+     * Sets the degree of parallelism of select queries: the number of workers filtering, projecting and sorting
+     * the tuples of a large input (see MorselExecutor), 1 to run every query on the calling thread
+     * A query can set its own degree with a hint: SELECT /*+ PARALLEL(n) *&#47; ...
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism=parallelism;
+    }
+
+    /**
+     * Sets the minimum number of tuples of an input processed in parallel, smaller inputs are processed serially
+     * @param parallelThreshold
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold=parallelThreshold;
+    }
+
+    /**
+     * Sets whether the conditions on tables stored by column are evaluated on batches of rows (vectorized, the
+     * default) instead of row by row (see ConditionCompiler.compileBatch)
+     * @param vectorized
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized=vectorized;
+    }
+
+    /**
+     * Returns whether the conditions on tables stored by column are evaluated on batches of rows
+     * @return
+     */
+    boolean isVectorized() {
+        return this.vectorized;
+    }
+
+    /**
+     * Sets the executor running the parallel workers of select queries
+     * @param queryExecutor
+     */
+    public void setQueryExecutor(ExecutorService queryExecutor) {
+        this.queryExecutor=queryExecutor;
+    }
+
+    /**
+     * Sets the maximum number of select results the result cache keeps, and their maximum total size in bytes
+     * (0 entries disables the cache)
+     * @param maxEntries
+     * @param maxBytes
+     */
+    public void setResultCache(int maxEntries, long maxBytes) {
+        this.resultCache.resize(maxEntries,maxBytes);
+    }
+
+    /**
+     * Returns the result cache of the select queries (with its hit, miss and eviction counters)
+     * @return
+     */
+    public ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Returns the version of a table, increased by every insert and delete on the table
+     * @param tableName
+     * @return
+     */
+    public long getVersion(String tableName) {
+        AtomicLong version=this.versions.get(tableName);
+        return version==null?0:version.get();
+    }
+
+    /**
+     * Sets when the write-ahead log entries of inserts and deletes are forced to the disk (see AppendWriter),
+     * ALWAYS by default
+     * @param syncPolicy
+     * @param syncIntervalMillis the interval of the INTERVAL policy
+     */
+    public void setSyncPolicy(AppendWriter.SyncPolicy syncPolicy, long syncIntervalMillis) {
+        checkpointLock.writeLock().lock();
+        try {
+            this.syncPolicy=syncPolicy;
+            this.syncIntervalMillis=syncIntervalMillis;
+            if(this.log!=null){
+                this.log.close();
+                this.log=new WriteAheadLog(folderName,syncPolicy,syncIntervalMillis);
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets how often the background checkpoint folds the write-ahead log into the table files
+     * (a checkpoint also starts as soon as the log is larger than the checkpoint log size)
+     * @param checkpointIntervalMillis
+     * @param checkpointLogSize in bytes
+     */
+    public void setCheckpoint(long checkpointIntervalMillis, long checkpointLogSize) {
+        this.checkpointIntervalMillis=checkpointIntervalMillis;
+        this.checkpointLogSize=checkpointLogSize;
+    }
+
+    /**
+     * Sets how often the background vacuum reclaims the deleted versions of the tables stored by tuple
+     * (see vacuum), takes effect at the next populateDB
+     * @param vacuumIntervalMillis
+     */
+    public void setVacuumInterval(long vacuumIntervalMillis) {
+        this.vacuumIntervalMillis=vacuumIntervalMillis;
+    }
+
+    /**
+     * Sets the duration from which a query is written to the slow query log of the database folder
+     * (slow_query.log, with its stats and plan), -1 to not log queries (the default)
+     * @param slowQueryThresholdMillis
+     */
+    public void setSlowQueryThreshold(long slowQueryThresholdMillis) {
+        this.metrics.setSlowQueryThresholdMillis(slowQueryThresholdMillis);
+    }
+
+    /**
+     * Returns the metrics of the queries run on the database (also registered as JMX MBeans by populateDB,
+     * see QueryMetrics)
+     * @return
+     */
+    public IQueryMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Starts the stats of a query run by the current thread outside of selectData, insertData and deleteData
+     * (a prepared query), they must be passed to finishQuery
+     * @param query
+     * @return
+     */
+    QueryStats startQuery(String query) {
+        return metrics.start(query);
+    }
+
+    /**
+     * Adds the stats of a query started by startQuery to the query metrics
+     * @param stats
+     */
+    void finishQuery(QueryStats stats) {
+        metrics.finish(stats);
+    }
+
     /**
      * The list of tables in the database is initialized with empty tables in the constructor
      * An empty table has a name and an empty list of tuples
@@ -77,324 +380,1589 @@ class Database {
 
     /**
      * Populates the database
+     * The table files are read in parallel on the load executor, a file larger than the load split size
+     * is split into ranges of lines that are parsed in parallel too
      *
      * Implements the following algorithm
      *
+     * Finish the checkpoint interrupted by a crash, if any (see recover)
      * For each table in the db (tables are initially empty)
-     *   Get the table's data from the csv file (by calling the read table method)
+     *   If the database is paged and the table has a page directory
+     *     Continue (the table is opened, not read)
+     *   Split the table's csv file into ranges of lines
+     *   For each range
+     *     Submit a task reading the range to the load executor
+     * For each table in the db
+     *   Create a new table (stored in pages if the database is paged, by column if it is columnar,
+     *   by tuple off the heap if it is off-heap, else by tuple with versions)
+     *   If the table is stored by tuple, read the dictionaries of its String attributes (see StringDictionary)
+     *   For each range of the table (in file order)
+     *     Wait for the range task and add its rows to the new table
+     *   If the table was converted from csv to pages
+     *     Mark it as changed (the next checkpoint writes its page directory)
      *   Update the table (by calling the udpate table method)
+     *   If the table is stored by tuple and had no dictionary file, write the dictionaries it was loaded with
+     *   Load the table's indexes
+     *   Load the table's statistics (computed again if the table changed since they were written)
+     * Replay the write-ahead log over the tables (the inserts and deletes not checkpointed yet)
+     * Start the background checkpoint and vacuum
      */
     public void populateDB() {
+        recover();
+        resultCache.clear();
+        closeTables();
+        if(paged && bufferPool==null){
+            bufferPool=new BufferPool(bufferPoolPages);
+        }
+        List<List<Future<List<?>>>> loads=new ArrayList<>();
+        List<Boolean> converted=new ArrayList<>();
         for(ITable t: this.tables){
-            ITable nt=IO.readTable(t.getName(),t.getSchema(),folderName);
+            List<Future<List<?>>> ranges=new ArrayList<>();
+            boolean convert=paged && !PagedTable.directoryFile(t.getName(),folderName).exists();
+            loads.add(ranges);
+            converted.add(convert);
+            if(paged && !convert){
+                continue;
+            }
+            File file=new File(folderName+"/"+t.getName()+".csv");
+            if(!file.exists()){
+                throw new RuntimeException(new java.io.FileNotFoundException(file.getPath()));
+            }
+            for(long[] range: IO.splitFile(file,loadSplitSize)){
+                ranges.add(loadExecutor.submit(()->IO.readRows(file,t.getSchema(),range[0],range[1])));
+            }
+        }
+        for(int i=0;i<this.tables.size();i++){
+            ITable t=this.tables.get(i);
+            ITable nt=paged?new PagedTable(t.getName(),t.getSchema(),folderName,bufferPool)
+                    :columnar?new ColumnarTable(t.getName(),t.getSchema())
+                    :offHeap?new OffHeapTable(t.getName(),t.getSchema())
+                    :new VersionedTable(t.getName(),t.getSchema(),clock);
+            boolean dictionaries=nt instanceof VersionedTable && IO.readDictionaries((VersionedTable) nt,folderName);
+            for(Future<List<?>> range: loads.get(i)){
+                @SuppressWarnings("unchecked")
+                List<Object[]> rows=(List<Object[]>) waitFor(range);
+                if(nt instanceof VersionedTable){
+                    VersionedTable versioned=(VersionedTable) nt;
+                    versioned.commit(versioned.append(rows),Collections.emptyList());
+                    continue;
+                }
+                for(Object[] row: rows){
+                    if(paged){
+                        ((PagedTable) nt).addRow(row);
+                    }else if(columnar){
+                        ((ColumnarTable) nt).addRow(row);
+                    }else{
+                        ((OffHeapTable) nt).addRow(row);
+                    }
+                }
+            }
+            if(converted.get(i)){
+                this.dirty.add(nt.getName());
+            }
             updateTable(nt);
+            if(nt instanceof VersionedTable && !dictionaries){
+                IO.writeDictionaries((VersionedTable) nt,folderName);
+            }
+            loadIndexes(nt);
+            loadStatistics(nt);
         }
+        replayLog();
+        startCheckpointer();
+        startVacuum();
+        metrics.register(folderName);
+    }
 
+    private static List<?> waitFor(Future<List<?>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     /**
-     * Insert data into a table based upon the insert query
-     * If the query is invalid throws an InvalidQueryException
+     * Returns the indexes of a table
+     * @param tableName
+     * @return
+     */
+    public List<IIndex> getIndexes(String tableName) {
+        return this.indexes.getOrDefault(tableName,Collections.emptyList());
+    }
+
+    /**
+     * Creates an index on a table attribute based upon the create index query
+     * CREATE INDEX ON table (attribute) [USING HASH|BTREE]
+     * Without a using clause, String attributes get a hash index and Integer/Double attributes a B+-tree
      *
      * Implements the following algorithm
      *
-     * Parse the insert into clause to get the table name, attribute name(s) and value(s)
-     * If the query in not valid
+     * Parse the query to get the table name, attribute name and index type
+     * If the query is not valid
      *   Throw an invalid query exception
      *   Exit
-     * Create a new tuple with the schema of the table
-     * Set the tuple values to the values from the query
-     * Open the file corresponding to the table name
-     * Append the tuple values (as comma separated values) to the end of the file
+     * Build the index from the tuples of the table
+     * Add the index to the table's indexes
+     * Write the index file to the folder (checkpointing first if the table file is not up to date)
      *
      * @param query
      * @throws InvalidQueryException
      */
-    public void insertData(String query) throws InvalidQueryException {
-        String TableName="";
-        List<String>attributes= new ArrayList<>();
-        List<String>values= new ArrayList<>();
-        int i=0;
-        String word="";
-        boolean isAttributes=false;
-        boolean isValues=false;
-        int into=query.toLowerCase().indexOf("into");
-        int par=query.indexOf('(',into);
-        TableName=query.substring(into+4,par).trim();
-        ITable table= findTable(TableName);
-        i=par;
-        while(i<query.length()){
-                char c=query.charAt(i);
-                if(c=='('){
-                    if(!isAttributes && !isValues){
-                        isAttributes= true;
-                        word="";
-                }else if(isAttributes){
-                        isValues=true;
-                        isAttributes=false;
-                        word="";
-                    }
-            }else if(c==')'){
-                    if(isAttributes){
-                        if(!word.trim().isEmpty()){
-                            attributes.add(word.trim());
-                        }
-                        isAttributes=false;
-                    }else if(isValues){
-                        if(!word.trim().isEmpty()){
-                            values.add(word.trim());
-                        }
-                        isValues=false;
-                    }
-                    word="";
-                }else if(c==','){
-                    if(isAttributes){
-                        attributes.add(word.trim());
-                        word="";
-                    }else if(isValues){
-                        values.add(word.trim());
-                        word="";
-                    }else{
-                        word=word+c;
-                    }
-                }else {
-                    word=word+c;
-                }
-                i++;
+    public void createIndex(String query) throws InvalidQueryException {
+        Matcher m=CREATE_INDEX.matcher(query);
+        if(!m.matches()){
+            throw new InvalidQueryException("Invalid create index query: "+query);
+        }
+        ITable table=findTable(m.group(1));
+        if(table==null){
+            throw new InvalidQueryException("Unknown table: "+m.group(1));
+        }
+        int col=columnIndex(table,m.group(2));
+        if(col==-1){
+            throw new InvalidQueryException("Unknown attribute: "+m.group(2));
+        }
+        String type=m.group(3);
+        if(type==null){
+            type=table.getSchema().getType(col).equals("String")?"HASH":"BTREE";
+        }
+        for(IIndex index: getIndexes(table.getName())){
+            if(index.getColumn()==col && index.getType().equalsIgnoreCase(type)){
+                return;
+            }
+        }
+        checkpointLock.writeLock().lock();
+        try {
+            IIndex index=buildIndex(table,col,type.toUpperCase());
+            this.indexes.computeIfAbsent(table.getName(),k->new ArrayList<>()).add(index);
+            if(this.dirty.contains(table.getName())){
+                // the index file numbers the tuples as they are in memory, the table file must match
+                checkpoint();
+            }else{
+                IO.writeIndex(index,table,tableFile(table.getName()),folderName);
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
 
+    private static final Pattern CREATE_INDEX=Pattern.compile(
+            "(?i)\\s*create\\s+index\\s+on\\s+(\\w+)\\s*\\(\\s*([\\w.]+)\\s*\\)\\s*(?:using\\s+(hash|btree))?\\s*;?\\s*");
 
+    /**
+     * Builds an index from the tuples of the table
+     * A B+-tree is built bottom-up from the tuples sorted on the attribute (sorted in parallel)
+     * @param table
+     * @param col
+     * @param type HASH or BTREE
+     * @return
+     */
+    private static IIndex buildIndex(ITable table, int col, String type) {
+        // the index of a versioned table holds the deleted versions older snapshots still see
+        List<ITuple> tuples=table instanceof VersionedTable
+                ?((VersionedTable) table).versions().getTuples():table.getTuples();
+        if(type.equals("HASH")){
+            IIndex index=new HashIndex(table.getName(),col);
+            for(ITuple t: tuples){
+                index.insert(t.getValue(col),t);
+            }
+            return index;
         }
-        ITuple tuple= new Tuple(table.getSchema());
-        for(int j=0;j<attributes.size();j++){
-            String attName= attributes.get(j);
-            boolean found=false;
-            for(int k=0;k<table.getSchema().getAttributes().size();k++){
-                String schemaAtt= table.getSchema().getAttributes().get(k).split(":")[0];
-                if(schemaAtt.equals(attName)){
-                    tuple.setValue(k, values.get(j));
-                    found=true;
-                    break;
-                }
+        List<ITuple> notNull=new ArrayList<>();
+        for(ITuple t: tuples){
+            if(t.getValue(col)!=null){
+                notNull.add(t);
+            }
+        }
+        ITuple[] sorted=notNull.toArray(new ITuple[0]);
+        Arrays.parallelSort(sorted,(a,b)->compareValues(a.getValue(col),b.getValue(col)));
+        List<Object> keys=new ArrayList<>();
+        List<List<ITuple>> values=new ArrayList<>();
+        for(ITuple t: sorted){
+            Object key=t.getValue(col);
+            if(keys.isEmpty() || compareValues(keys.get(keys.size()-1),key)!=0){
+                keys.add(key);
+                values.add(new ArrayList<>(1));
             }
+            values.get(values.size()-1).add(t);
+        }
+        BPlusTreeIndex index=new BPlusTreeIndex(table.getName(),col);
+        index.bulkLoad(keys,values);
+        return index;
+    }
 
+    /**
+     * Loads the indexes of a table from their files, an index file that does not match the table
+     * (the table file was written again, or changed, since it was written) or cannot be read is rebuilt
+     * from the tuples and written again
+     * @param table
+     */
+    private void loadIndexes(ITable table) {
+        List<IIndex> list=new ArrayList<>();
+        for(File f: IO.indexFiles(table.getName(),folderName)){
+            IIndex index=IO.readIndex(f,table,tableFile(table.getName()));
+            if(index==null){
+                String attribute=f.getName().substring(table.getName().length()+1,f.getName().length()-4);
+                int col;
+                try {
+                    col=columnIndex(table,attribute);
+                } catch (InvalidQueryException e) {
+                    // the attributes of a table are not qualified, only those of joined tables can be ambiguous
+                    throw new RuntimeException(e);
+                }
+                if(col==-1){
+                    continue;
+                }
+                String type=IO.readIndexType(f);
+                if(type==null){
+                    type=table.getSchema().getType(col).equals("String")?"HASH":"BTREE";
+                }
+                index=buildIndex(table,col,type);
+                IO.writeIndex(index,table,tableFile(table.getName()),folderName);
+            }
+            list.add(index);
+        }
+        if(!list.isEmpty()){
+            this.indexes.put(table.getName(),list);
         }
-        IO.writeTuple(TableName,tuple.getValues(),folderName);
-        table.addTuple(tuple);
     }
 
     /**
-     * Selects data from a table (and returns it in the form of a results table)
-     * If the query in not valid, throws an InvalidQueryException
-     *
-     * A query is valid if
-     *
-     * 1.	It has a select clause (select keyword followed by at least one attribute name)
-     * 2.	It has a from clause (from keyword followed by a table name)
-     * 3.	All the attribute names in the select clause are in the schema
-     * 4.	The table name in the from clause is in the schema
-     * 5.	All the attribute names in the where clause (if present) are in the schema
-     * 6.	The attribute name in the order by clause (if present) is in the schema
+     * Returns the statistics of a table, or null if the table is not loaded
+     * @param tableName
+     * @return
+     */
+    public TableStatistics getStatistics(String tableName) {
+        return this.statistics.get(tableName);
+    }
+
+    /**
+     * Computes the statistics of a table (or of all the tables) again based upon the analyze query
+     * ANALYZE [table]
      *
      * Implements the following algorithm
      *
-     * Parse the query to get the select, from, where and order by clauses and the attribute and table names and condition
-     * If the query is not valid
+     * Parse the query to get the table name
+     * If the query is not valid (or the table does not exist)
      *   Throw an invalid query exception
      *   Exit
-     * Create a new results schema based with the attributes from the select clause
-     * Create a new result table
-     * For each tuple in the table
-     *   If the tuple matches the where clause condition(s)
-     *     Create a new results tuple using the result schema
-     *     Set the results tuple values to the current tuple corresponding values
-     *     Add the results tuple to the result table
-     * Return results table
-     *
+     * For the table (or each table if no table is given)
+     *   Compute the statistics from the tuples of the table
+     *   Write them to the statistics file of the table (or let the next checkpoint write them if the table
+     *   file is not up to date)
      *
      * @param query
-     * @return
      * @throws InvalidQueryException
      */
-    public ITable selectData(String query) throws InvalidQueryException {
-        int selectStart = query.toLowerCase().indexOf("select") + 6;
-        int fromStart = query.toLowerCase().indexOf("from");
-        int whereStart = query.toLowerCase().indexOf("where");
-        String fromClause;
-        String selectClause= query.substring(selectStart,fromStart).trim();
-        if (whereStart == -1) {
-            fromClause = query.substring(fromStart + 4).trim();
-        } else {
-            fromClause = query.substring(fromStart + 4, whereStart).trim();
-        }
-        String whereClause;
-        if(whereStart==-1){
-            whereClause="";
-        }else{
-            whereClause=query.substring(whereStart+5).trim();
+    public void analyze(String query) throws InvalidQueryException {
+        Matcher m=ANALYZE.matcher(query);
+        if(!m.matches()){
+            throw new InvalidQueryException("Invalid analyze query: "+query);
         }
-        int orderStart=query.toLowerCase().indexOf("order by");
-        String orderClause;
-        if(orderStart==-1){
-            orderClause="";
-        }else{
-            orderClause=query.substring(orderStart+9).trim();
-        }
-        ITable table=findTable(fromClause);
-        String[] attributes=selectClause.split(",");
-        for(int i=0;i<attributes.length;i++){
-            attributes[i]=attributes[i].trim();
-        }
-        Map<Integer,String> schemaAtt= table.getSchema().getAttributes();
-        for(String s: attributes){
-            boolean found= false;
-            for(String t: schemaAtt.values()){
-                String SchemaAttributes=t.split(":")[0];
-                if(SchemaAttributes.equals(s)){
-                    found=true;
-                    break;
-                }
+        List<ITable> analyzed=this.tables;
+        if(m.group(1)!=null){
+            ITable table=findTable(m.group(1));
+            if(table==null){
+                throw new InvalidQueryException("Unknown table: "+m.group(1));
             }
+            analyzed=Collections.singletonList(table);
         }
-        Map<Integer, String>result= new HashMap<>();
-        int index=0;
-        for(String s: attributes){
-            for(int j=0;j<schemaAtt.size();j++ ){
-                String sv=schemaAtt.get(j);
-                String sa= sv.split(":")[0];
-                if(sa.equals(s)){
-                    result.put(index++,sv);
-                    break;
+        // a checkpoint does not start between the check of the table file and the write of the statistics
+        checkpointLock.readLock().lock();
+        try {
+            for(ITable table: analyzed){
+                TableStatistics stats=TableStatistics.analyze(table);
+                this.statistics.put(table.getName(),stats);
+                if(!this.dirty.contains(table.getName())){
+                    IO.writeStatistics(stats,table.getName(),folderName);
                 }
             }
+        } finally {
+            checkpointLock.readLock().unlock();
         }
-        ISchema resultSchema= new Schema(result);
-        ITable resultTable= new Table("Result",resultSchema);
-        for(ITuple t: table.getTuples()){
-            boolean isWhere=true;
-            if(!whereClause.isEmpty()){
-                String[]condition= whereClause.split("=");
-                if(condition.length==2){
-                    String col=condition[0].trim();
-                    String val= condition[1].trim();
-                    int colIndex=-1;
-                    for(int i=0;i<schemaAtt.size();i++){
-                        String schemaCol= schemaAtt.get(i).split(":")[0];
-                        if(schemaCol.equals(col)){
-                            colIndex=i;
-                            break;
-                        }
-                    }
-                    if(colIndex!=-1){
-                        if(!t.getValue(colIndex).equals(val)){
-                            isWhere=false;
-                        }
-                    }
-                }
-            }
-            if(isWhere){
-                ITuple resultTuple=new Tuple(resultSchema);
-                int Index=0;
-                for(String s: attributes){
-                    for(int i=0;i<schemaAtt.size();i++){
-                        String schemaCol=schemaAtt.get(i).split(":")[0];
-                        if(schemaCol.equals(s)){
-                            resultTuple.setValue(Index++,t.getValue(i));
-                            break;
-                        }
-                    }
-                }
-                resultTable.addTuple(resultTuple);
-            }
-            if(!orderClause.isEmpty()){
-                int OrderIndex=-1;
-                for(int i=0; i<schemaAtt.size();i++){
-                    String SchemaCol= schemaAtt.get(i).split(":")[0];
-                    if(SchemaCol.equals(orderClause)){
-                        OrderIndex=i;
-                        break;
-                    }
-                }
-                if(OrderIndex!=-1){
-                    List<ITuple> tupleList=resultTable.getTuples();
-                    for(int i=0;i<tupleList.size()-1;i++){
-                        for(int j=i+1;j<tupleList.size();j++){
-                            String val1=(String) tupleList.get(i).getValue(OrderIndex);
-                            String val2=(String) tupleList.get(j).getValue(OrderIndex);
-                            if(val1.compareTo(val2)>0){
-                                ITuple temp= tupleList.get(i);
-                                tupleList.set(i,tupleList.get(j));
-                                tupleList.set(j,temp);
-                            }
-                        }
-                    }
-                }
-            }
+    }
+
+    private static final Pattern ANALYZE=Pattern.compile("(?i)\\s*analyze(?:\\s+(\\w+))?\\s*;?\\s*");
+
+    /**
+     * Loads the statistics of a table from its file, statistics that do not match the table
+     * (the table changed since they were written) are computed again and written
+     * @param table
+     */
+    private void loadStatistics(ITable table) {
+        TableStatistics stats=IO.readStatistics(table,folderName);
+        if(stats==null){
+            stats=TableStatistics.analyze(table);
+            IO.writeStatistics(stats,table.getName(),folderName);
         }
-        return resultTable;
+        this.statistics.put(table.getName(),stats);
     }
+
     /**
-     * Delete data from a table
-     * If the query in not valid, throws an InvalidQueryException
+     * Insert data into a table based upon the insert query
+     * INSERT INTO table [(attribute, ...)] VALUES (value, ...) [, (value, ...) ...]
+     * If the query is invalid throws an InvalidQueryException
      *
      * Implements the following algorithm
      *
-     * Parse the query to get the from and where clauses
-     * Parse the from clause to get the table name
+     * Parse the insert into clause to get the table name, attribute name(s) and row(s) of values
      * If the query in not valid
      *   Throw an invalid query exception
      *   Exit
-     * If where clause is not empty
-     *   Parse the where clause to get the the condition
-     *   For each tuple in the table
-     *     If the where clause condition is true
-     *       Remove the tuple from the table
-     * Else
-     *   For each tuple in the table
-     *     Remove the tuple from the table
-     * Write the table to the file
+     * For each row of values
+     *   Create a new tuple with the schema of the table
+     *   Set the tuple values to the values from the query (converted to the attribute types)
+     * Lock the table
+     *   Add the tuples to the table (not seen by readers yet), its indexes and statistics
+     *   Queue an insert entry with the tuples values on the write-ahead log
+     * Wait for the log to write the entry (group commit, see AppendWriter)
+     * Commit the tuples (readers see them from now on), or remove them if the log could not be written
+     * (the table file is written by the next checkpoint)
+     * Record the time spent parsing and running the query in the query metrics (see QueryMetrics)
      *
      * @param query
      * @throws InvalidQueryException
      */
-    public void deleteData(String query) throws InvalidQueryException {
-        int fromStart= query.toLowerCase().indexOf("from");
-        int whereStart= query.toLowerCase().indexOf("where");
-        String fromClause;
-        String whereClause;
-        if(whereStart==-1){
-            fromClause=query.substring(fromStart+4).trim();
-            whereClause="";
-        }else{
-            fromClause=query.substring(fromStart+4,whereStart).trim();
-            whereClause=query.substring(whereStart+5).trim();
-        }
-        ITable table=findTable(fromClause);
-        Map<Integer,String> schemaAtt=table.getSchema().getAttributes();
-        List<ITuple>tuples=table.getTuples();
-        List<ITuple>nt=new ArrayList<>();
-        if(!whereClause.isEmpty()){
-            String[]condition=whereClause.split("=");
-            String col=condition[0].trim();
-            String val=condition[1].trim();
-            int colIndex=-1;
-            for(int i=0;i<schemaAtt.size();i++){
-                String schemaCol=schemaAtt.get(i).split(":")[0];
-                if(schemaCol.equals(col)){
-                    colIndex=i;
-                    break;
+    public void insertData(String query) throws InvalidQueryException {
+        QueryStats stats=metrics.start(query);
+        try {
+            InsertQuery insert=InsertQuery.parse(query);
+            ITable table=insertTable(insert);
+            ISchema schema=table.getSchema();
+            int width=schema.getAttributes().size();
+            int[] columns=insertColumns(table,insert);
+            if(!insert.getParameters().isEmpty()){
+                throw new InvalidQueryException("A query with ? placeholders must be prepared: "+query);
+            }
+            List<Object[]> rows=new ArrayList<>();
+            for(List<String> values: insert.getRows()){
+                if(values.size()!=columns.length){
+                    throw new InvalidQueryException("The number of values does not match the attributes: "+values);
                 }
+                Object[] row=new Object[width];
+                for(int i=0;i<columns.length;i++){
+                    String value=values.get(i);
+                    row[columns[i]]=value==null?null:parseValue(schema.getType(columns[i]),value);
+                }
+                rows.add(row);
             }
-            for(ITuple t: tuples){
-                if(!t.getValue(colIndex).equals(val)){
-                    nt.add(t);
+            stats.parsed();
+            insertRows(table,rows);
+            stats.executed(rows.size());
+        } finally {
+            metrics.finish(stats);
+        }
+    }
+
+    /**
+     * Returns the table of an insert query
+     * @param insert
+     * @return
+     * @throws InvalidQueryException if the table is not in the database
+     */
+    ITable insertTable(InsertQuery insert) throws InvalidQueryException {
+        ITable table=findTable(insert.getTable());
+        if(table==null){
+            throw new InvalidQueryException("Unknown table: "+insert.getTable());
+        }
+        return table;
+    }
+
+    /**
+     * Returns the indexes in the table schema of the attributes given values by an insert query
+     * @param table
+     * @param insert
+     * @return
+     * @throws InvalidQueryException if an attribute is not in the table schema
+     */
+    static int[] insertColumns(ITable table, InsertQuery insert) throws InvalidQueryException {
+        int width=table.getSchema().getAttributes().size();
+        int[] columns=new int[insert.getAttributes().isEmpty()?width:insert.getAttributes().size()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=insert.getAttributes().isEmpty()?i:columnIndex(table,insert.getAttributes().get(i));
+            if(columns[i]==-1){
+                throw new InvalidQueryException("Unknown attribute: "+insert.getAttributes().get(i));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Inserts rows of values (in schema order, converted to the attribute types) into a table:
+     * logs them in the write-ahead log and adds them to the table, its indexes and statistics
+     * Readers only see the rows once the log entry is written: the rows of a versioned table are staged and
+     * committed after the log write (concurrent inserts share it, see AppendWriter), the rows of other tables
+     * are added after it
+     * @param table
+     * @param rows
+     * @throws RuntimeException if the log could not be written, the table is then unchanged
+     */
+    void insertRows(ITable table, List<Object[]> rows) {
+        WriteAheadLog log;
+        checkpointLock.readLock().lock();
+        try {
+            log=log();
+            if(table instanceof VersionedTable){
+                VersionedTable versioned=(VersionedTable) table;
+                VersionedTable.Change change;
+                long ticket;
+                synchronized(table){
+                    change=versioned.stage(append(versioned,rows),Collections.emptyList());
+                    ticket=log.logInsert(table.getName(),rows);
                 }
+                this.dirty.add(table.getName());
+                commit(versioned,change,log,ticket);
+            }else{
+                synchronized(table){
+                    log.commit(log.logInsert(table.getName(),rows));
+                    Lock latch=latch(table).writeLock();
+                    latch.lock();
+                    try {
+                        insert(table,rows);
+                    } finally {
+                        latch.unlock();
+                    }
+                }
+                this.dirty.add(table.getName());
             }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        requestCheckpointIfFull(log);
+    }
 
+    /**
+     * Waits for the log to write the entry of a staged change to a versioned table, then commits the change,
+     * or aborts it (and restores the table statistics) if the log could not be written
+     * The caller must hold the checkpoint read lock, so that the log is not emptied before the change is committed
+     * @param table
+     * @param change
+     * @param log
+     * @param ticket
+     */
+    private void commit(VersionedTable table, VersionedTable.Change change, WriteAheadLog log, long ticket) {
+        try {
+            log.commit(ticket);
+        } catch (RuntimeException e) {
+            table.abort(change);
+            synchronized(table){
+                updateStatistics(table,change.getInserted(),false);
+                updateStatistics(table,change.getDeleted(),true);
+            }
+            throw e;
         }
-        tuples.clear();
-        tuples.addAll(nt);
-        IO.writeTable(table, folderName);
+        table.commit(change);
+        changed(table);
     }
+
+    /**
+     * Appends rows to a versioned table (not committed) and adds them to its indexes and statistics
+     * @param table
+     * @param rows
+     * @return the new versions
+     */
+    private List<ITuple> append(VersionedTable table, List<Object[]> rows) {
+        List<ITuple> added=table.append(rows);
+        List<IIndex> tableIndexes=getIndexes(table.getName());
+        if(!tableIndexes.isEmpty()){
+            table.getIndexLatch().writeLock().lock();
+            try {
+                for(ITuple t: added){
+                    for(IIndex index: tableIndexes){
+                        index.insert(t.getValue(index.getColumn()),t);
+                    }
+                }
+            } finally {
+                table.getIndexLatch().writeLock().unlock();
+            }
+        }
+        updateStatistics(table,added,true);
+        return added;
+    }
+
+    /**
+     * Adds rows to a table, its indexes and statistics (in memory only)
+     * The rows of a versioned table are appended, added to the indexes and then committed
+     */
+    private void insert(ITable table, List<Object[]> rows) {
+        if(table instanceof VersionedTable){
+            VersionedTable versioned=(VersionedTable) table;
+            versioned.commit(append(versioned,rows),Collections.emptyList());
+            changed(table);
+            return;
+        }
+        List<ITuple> added=new ArrayList<>();
+        for(Object[] row: rows){
+            ITuple tuple=new Tuple(table.getSchema());
+            tuple.setValues(row);
+            table.addTuple(tuple);
+            ITuple stored=table.getTuples().get(table.getTuples().size()-1);
+            for(IIndex index: getIndexes(table.getName())){
+                index.insert(stored.getValue(index.getColumn()),stored);
+            }
+            added.add(stored);
+        }
+        updateStatistics(table,added,true);
+        changed(table);
+    }
+
+    /**
+     * Loads the rows of a csv file into a table based upon the copy query
+     * COPY table FROM 'file'
+     * The file has the format of the table files (one row per line, one value per attribute in schema order,
+     * an empty value is null), its path is relative to the working directory
+     * If the query is invalid (or a row of the file is) throws an InvalidQueryException, and the table is unchanged
+     *
+     * Implements the following algorithm
+     *
+     * Parse the query to get the table name and the file
+     * If the query is not valid (or the table or the file does not exist)
+     *   Throw an invalid query exception
+     *   Exit
+     * Split the file into ranges of lines and parse them in parallel on the load executor
+     * (checking that every row has one value of the attribute type per attribute)
+     * If a row is not valid
+     *   Throw an invalid query exception with the line of the row
+     *   Exit
+     * Stop the inserts and deletes (until the copy is done)
+     *   Add the rows to the table, in file order
+     *   Build the indexes of the table again (a B+-tree bottom-up from the sorted tuples, see buildIndex)
+     *   Add the rows to the statistics of the table
+     *   Checkpoint (the rows are not logged: the checkpoint writes the table file sequentially, with its indexes
+     *   and statistics, and a crash before it is done leaves the table as it was before the copy)
+     * Record the time spent parsing and running the query in the query metrics (see QueryMetrics)
+     *
+     * @param query
+     * @throws InvalidQueryException
+     */
+    public void copyData(String query) throws InvalidQueryException {
+        QueryStats stats=metrics.start(query);
+        try {
+            Matcher m=COPY.matcher(query);
+            if(!m.matches()){
+                throw new InvalidQueryException("Invalid copy query: "+query);
+            }
+            ITable table=findTable(m.group(1));
+            if(table==null){
+                throw new InvalidQueryException("Unknown table: "+m.group(1));
+            }
+            File file=new File(m.group(2));
+            if(!file.isFile()){
+                throw new InvalidQueryException("File not found: "+m.group(2));
+            }
+            List<List<Object[]>> ranges=readRanges(file,table.getSchema());
+            stats.parsed();
+            long count=0;
+            checkpointLock.writeLock().lock();
+            try {
+                Lock latch=latch(table).writeLock();
+                synchronized(table){
+                    latch.lock();
+                    try {
+                        count=copy(table,ranges);
+                    } finally {
+                        latch.unlock();
+                    }
+                }
+                this.dirty.add(table.getName());
+                checkpoint();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            stats.executed(count);
+        } finally {
+            metrics.finish(stats);
+        }
+    }
+
+    private static final Pattern COPY=Pattern.compile("(?i)\\s*copy\\s+(\\w+)\\s+from\\s+'([^']*)'\\s*;?\\s*");
+
+    /**
+     * Parses the ranges of lines of a file to copy into a table in parallel, on the load executor
+     * @param file
+     * @param schema
+     * @return the rows of every range, in file order
+     * @throws InvalidQueryException if a row does not have one value of the attribute type per attribute
+     */
+    private List<List<Object[]>> readRanges(File file, ISchema schema) throws InvalidQueryException {
+        List<long[]> split=IO.splitFile(file,loadSplitSize);
+        List<Future<List<Object[]>>> loads=new ArrayList<>();
+        for(long[] range: split){
+            loads.add(loadExecutor.submit(()->IO.readRows(file,schema,range[0],range[1],1,true)));
+        }
+        List<List<Object[]>> ranges=new ArrayList<>();
+        for(int i=0;i<loads.size();i++){
+            try {
+                ranges.add(loads.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                for(Future<List<Object[]>> load: loads){
+                    load.cancel(false);
+                }
+                if(!(e.getCause() instanceof IllegalArgumentException)){
+                    throw new RuntimeException(e.getCause());
+                }
+                // the lines of a range are numbered from 1, read it again numbered from its line in the file
+                String message=e.getCause().getMessage();
+                long[] range=split.get(i);
+                try {
+                    IO.readRows(file,schema,range[0],range[1],IO.countLines(file,range[0])+1,true);
+                } catch (IllegalArgumentException again) {
+                    message=again.getMessage();
+                }
+                throw new InvalidQueryException("Invalid row in "+file.getPath()+": "+message);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Adds the rows of a copy to a table (in memory only), builds the indexes of the table again and adds the
+     * rows to its statistics
+     * The rows of a versioned table are appended, indexed and then committed
+     * @return the number of rows added
+     */
+    private long copy(ITable table, List<List<Object[]>> ranges) {
+        List<IIndex> tableIndexes=getIndexes(table.getName());
+        List<ITuple> added;
+        if(table instanceof VersionedTable){
+            VersionedTable versioned=(VersionedTable) table;
+            added=new ArrayList<>();
+            for(List<Object[]> rows: ranges){
+                added.addAll(versioned.append(rows));
+            }
+            if(!tableIndexes.isEmpty()){
+                versioned.getIndexLatch().writeLock().lock();
+                try {
+                    this.indexes.put(table.getName(),rebuildIndexes(table,tableIndexes));
+                } finally {
+                    versioned.getIndexLatch().writeLock().unlock();
+                }
+            }
+            updateStatistics(table,added,true);
+            versioned.commit(added,Collections.emptyList());
+        }else{
+            int before=table.getTuples().size();
+            for(List<Object[]> rows: ranges){
+                for(Object[] row: rows){
+                    if(table instanceof PagedTable){
+                        ((PagedTable) table).addRow(row);
+                    }else if(table instanceof ColumnarTable){
+                        ((ColumnarTable) table).addRow(row);
+                    }else if(table instanceof OffHeapTable){
+                        ((OffHeapTable) table).addRow(row);
+                    }else{
+                        ITuple tuple=new Tuple(table.getSchema());
+                        tuple.setValues(row);
+                        table.addTuple(tuple);
+                    }
+                }
+            }
+            if(!tableIndexes.isEmpty()){
+                this.indexes.put(table.getName(),rebuildIndexes(table,tableIndexes));
+            }
+            added=table.getTuples().subList(before,table.getTuples().size());
+            updateStatistics(table,added,true);
+        }
+        changed(table);
+        return added.size();
+    }
+
+    /**
+     * Increases the version of a table after its tuples changed (the cached results using it become stale)
+     */
+    private void changed(ITable table) {
+        this.versions.computeIfAbsent(table.getName(),k->new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Folds the write-ahead log into the table files
+     * The table files are replaced atomically: a crash during a checkpoint leaves either the old files and the
+     * whole log, or the new files (see recover)
+     *
+     * Implements the following algorithm
+     *
+     * Stop the inserts and deletes (until the checkpoint is done)
+     * For each table changed since the last checkpoint
+     *   Write the table to a temporary file and force it to the disk
+     *   (for a paged table, write its changed pages and its page directory to a temporary file, see PagedTable)
+     * Create the checkpoint marker file (from now on, the temporary files are the tables)
+     * For each changed table
+     *   Rename the temporary file to the table file
+     *   Write its indexes, statistics and String dictionaries (see StringDictionary), each to a temporary file
+     *   renamed to its file (a crash leaves the old files, found stale and rebuilt when the database is opened)
+     * Empty the log
+     * Delete the checkpoint marker file
+     */
+    public void checkpoint() {
+        checkpointLock.writeLock().lock();
+        try {
+            List<ITable> changed=new ArrayList<>();
+            for(String name: this.dirty){
+                changed.add(findTable(name));
+            }
+            if(changed.isEmpty()){
+                return;
+            }
+            for(ITable table: changed){
+                if(table instanceof PagedTable){
+                    ((PagedTable) table).writeCheckpoint(checkpointFile(table.getName()));
+                }else{
+                    IO.writeTable(table,checkpointFile(table.getName()));
+                }
+            }
+            File marker=new File(folderName+"/"+CHECKPOINT_MARKER);
+            IO.createFile(marker);
+            for(ITable table: changed){
+                IO.replaceFile(checkpointFile(table.getName()),tableFile(table.getName()));
+                if(table instanceof PagedTable){
+                    ((PagedTable) table).checkpointed();
+                }
+                IO.writeIndexes(getIndexes(table.getName()),table,tableFile(table.getName()),folderName);
+                if(this.statistics.containsKey(table.getName())){
+                    IO.writeStatistics(this.statistics.get(table.getName()),table.getName(),folderName);
+                }
+                if(table instanceof VersionedTable){
+                    IO.writeDictionaries((VersionedTable) table,folderName);
+                }
+            }
+            if(this.log!=null){
+                this.log.truncate();
+            }else{
+                // the log was only replayed since the database was opened
+                IO.createFile(WriteAheadLog.file(folderName));
+            }
+            IO.deleteFile(marker);
+            this.dirty.clear();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    private static final String CHECKPOINT_MARKER="checkpoint";
+
+    /**
+     * Returns the file a checkpoint replaces: the csv file of the table, or its page directory if the database is paged
+     */
+    private File tableFile(String tableName) {
+        return paged?PagedTable.directoryFile(tableName,folderName):new File(folderName+"/"+tableName+".csv");
+    }
+
+    private File checkpointFile(String tableName) {
+        return new File(tableFile(tableName).getPath()+".checkpoint");
+    }
+
+    /**
+     * Finishes a checkpoint interrupted by a crash, before the table files are read
+     *
+     * Implements the following algorithm
+     *
+     * If the checkpoint marker file exists (the temporary table files were all written)
+     *   Rename the temporary files left to the table files
+     *   Empty the log (its entries are in the table files)
+     *   Delete the marker file
+     * Else
+     *   Delete the temporary table files (the table files and the log are still valid)
+     * Delete the temporary index, statistics and dictionary files left (the files they were replacing are read
+     * instead, and rebuilt if they are stale)
+     */
+    private void recover() {
+        File marker=new File(folderName+"/"+CHECKPOINT_MARKER);
+        for(ITable table: this.tables){
+            IO.deleteTemporaryFiles(table.getName(),folderName);
+            File file=checkpointFile(table.getName());
+            if(file.exists()){
+                if(marker.exists()){
+                    IO.replaceFile(file,tableFile(table.getName()));
+                }else{
+                    IO.deleteFile(file);
+                }
+            }
+        }
+        if(marker.exists()){
+            IO.createFile(WriteAheadLog.file(folderName));
+            IO.deleteFile(marker);
+        }
+    }
+
+    /**
+     * Applies the entries of the write-ahead log to the tables read from their files
+     */
+    private void replayLog() {
+        for(WriteAheadLog.Entry entry: WriteAheadLog.read(WriteAheadLog.file(folderName))){
+            ITable table=findTable(entry.getTable());
+            if(table==null){
+                continue;
+            }
+            try {
+                if(entry.getType()==WriteAheadLog.INSERT){
+                    insert(table,entry.getRows());
+                }else{
+                    String where=entry.getWhereClause();
+                    delete(table,where.isEmpty()?null:Condition.parse(where));
+                }
+            } catch (InvalidQueryException e) {
+                throw new RuntimeException(e);
+            }
+            this.dirty.add(table.getName());
+        }
+    }
+
+    /**
+     * Reclaims the deleted versions of the tables stored by tuple that no reader can see anymore
+     * (run by the background vacuum every vacuum interval)
+     *
+     * Implements the following algorithm
+     *
+     * Take the oldest snapshot in use (see CommitClock.horizon)
+     * For each versioned table with deleted versions
+     *   Lock the table (readers are not blocked)
+     *   Remove the versions deleted at or before the oldest snapshot from the table (see VersionedTable.vacuum)
+     *   If they are more than an eighth of the versions left
+     *     Rebuild the indexes of the table from its versions
+     *   Else
+     *     Remove the versions from the indexes of the table
+     */
+    public void vacuum() {
+        long horizon=clock.horizon();
+        for(ITable table: this.tables){
+            if(!(table instanceof VersionedTable) || !((VersionedTable) table).hasDeletedVersions()){
+                continue;
+            }
+            VersionedTable versioned=(VersionedTable) table;
+            checkpointLock.readLock().lock();
+            try {
+                synchronized(table){
+                    List<ITuple> removed=versioned.vacuum(horizon);
+                    List<IIndex> tableIndexes=getIndexes(table.getName());
+                    if(removed.isEmpty() || tableIndexes.isEmpty()){
+                        continue;
+                    }
+                    if(removed.size()*8L>versioned.versions().getTuples().size()){
+                        this.indexes.put(table.getName(),rebuildIndexes(table,tableIndexes));
+                        continue;
+                    }
+                    versioned.getIndexLatch().writeLock().lock();
+                    try {
+                        for(ITuple t: removed){
+                            for(IIndex index: tableIndexes){
+                                index.delete(t.getValue(index.getColumn()),t);
+                            }
+                        }
+                    } finally {
+                        versioned.getIndexLatch().writeLock().unlock();
+                    }
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Starts the background thread running the vacuum every vacuum interval
+     */
+    private synchronized void startVacuum() {
+        if(this.vacuum!=null){
+            return;
+        }
+        this.vacuum=Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread=new Thread(r,"vacuum "+folderName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.vacuum.scheduleWithFixedDelay(()->{
+            try {
+                vacuum();
+            } catch (RuntimeException e) {
+                // keep the vacuum thread running, the deleted versions are reclaimed by the next vacuum
+                metrics.backgroundFailed("vacuum",e);
+            }
+        },vacuumIntervalMillis,vacuumIntervalMillis,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the write-ahead log, opening it on first use
+     */
+    private synchronized WriteAheadLog log() {
+        if(this.log==null){
+            this.log=new WriteAheadLog(folderName,syncPolicy,syncIntervalMillis);
+        }
+        return this.log;
+    }
+
+    /**
+     * Starts the background thread checkpointing the database every checkpoint interval
+     */
+    private synchronized void startCheckpointer() {
+        if(this.checkpointer!=null){
+            return;
+        }
+        this.checkpointer=Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread=new Thread(r,"checkpoint "+folderName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.checkpointer.scheduleWithFixedDelay(this::backgroundCheckpoint,
+                checkpointIntervalMillis,checkpointIntervalMillis,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a background checkpoint if the log is larger than the checkpoint log size
+     */
+    private void requestCheckpointIfFull(WriteAheadLog log) {
+        if(this.checkpointer!=null && log.size()>=checkpointLogSize && checkpointRequested.compareAndSet(false,true)){
+            this.checkpointer.execute(this::backgroundCheckpoint);
+        }
+    }
+
+    private void backgroundCheckpoint() {
+        checkpointRequested.set(false);
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            // keep the checkpoint thread running, the log still has the changes and the next checkpoint retries
+            metrics.backgroundFailed("checkpoint",e);
+        }
+    }
+
+    /**
+     * Checkpoints the database, stops the background checkpoint and vacuum, closes the write-ahead log
+     * and the page files
+     */
+    public void close() {
+        synchronized(this){
+            if(this.checkpointer!=null){
+                this.checkpointer.shutdown();
+                this.checkpointer=null;
+            }
+            if(this.vacuum!=null){
+                this.vacuum.shutdown();
+                this.vacuum=null;
+            }
+        }
+        metrics.unregister();
+        checkpoint();
+        checkpointLock.writeLock().lock();
+        try {
+            if(this.log!=null){
+                this.log.close();
+                this.log=null;
+            }
+            closeTables();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the paged tables (see PagedTable.close) and releases the memory of the off-heap tables
+     */
+    private void closeTables() {
+        for(ITable table: this.tables){
+            if(table instanceof PagedTable){
+                ((PagedTable) table).close();
+            }else if(table instanceof OffHeapTable){
+                ((OffHeapTable) table).close();
+            }
+        }
+    }
+
+    /**
+     * Adds (or removes) tuples to the statistics of a table
+     * (they are written to the statistics file by the next checkpoint)
+     * @param table
+     * @param tuples
+     * @param added true if the tuples were added to the table, false if they are being removed
+     */
+    private void updateStatistics(ITable table, Collection<ITuple> tuples, boolean added) {
+        TableStatistics stats=this.statistics.get(table.getName());
+        if(stats==null){
+            return;
+        }
+        for(ITuple t: tuples){
+            if(added){
+                stats.add(t);
+            }else{
+                stats.remove(t);
+            }
+        }
+    }
+
+    /**
+     * Selects data from a table (and returns it in the form of a results table)
+     * If the query in not valid, throws an InvalidQueryException
+     *
+     * A query is valid if
+     *
+     * 1.	It has a select clause (select keyword followed by at least one attribute name)
+     * 2.	It has a from clause (from keyword followed by a table name, optionally followed by
+     *      join table on table.attribute = table.attribute clauses)
+     * 3.	All the attribute names in the select clause are in the schema
+     * 4.	The table names in the from clause are in the schema
+     * 5.	All the attribute names in the where clause (if present) are in the schema
+     * 6.	The attribute names in the group by clause (if present) are in the schema, and every attribute of
+     *      the select clause that is not an aggregate (COUNT, SUM, AVG, MIN, MAX) is one of them
+     * 7.	The having clause (if present) is on group by attributes and aggregates
+     * 8.	The attribute names in the order by clause (if present) are in the schema, each one optionally
+     *      followed by asc or desc
+     * 9.	The limit clause (if present) is a number of tuples, optionally followed by offset and the number of
+     *      skipped tuples
+     *
+     * A /*+ PARALLEL(n) *&#47; hint after the select keyword sets the degree of parallelism of the query
+     * (see setParallelism)
+     *
+     * Implements the following algorithm
+     *
+     * Parse the query to get the select attributes, the from table and its joins, the where condition,
+     * the group by attributes, the having condition, the order by attributes and the limit
+     * If the query is not valid
+     *   Throw an invalid query exception
+     *   Exit
+     * If the result cache has a result of the same query computed from the current versions of its tables
+     *   Return it
+     * Take the versions of the tables of the query
+     * Take a snapshot of the database (the last committed timestamp, see CommitClock)
+     * Lock the tables of the query not stored by tuple for reading, until the plan has run (see lockForReading)
+     * Let the planner create the query plan (see Planner.plan)
+     * Run the plan on the snapshot to get the results table (large inputs are processed in parallel)
+     * Add the results table to the result cache with the table versions
+     * Record the time spent parsing, planning and running the query and the rows it read and returned
+     * in the query metrics (see QueryMetrics)
+     * Return results table
+     *
+     *
+     * @param query
+     * @return the results table (it can be shared with the result cache, it must not be modified)
+     * @throws InvalidQueryException
+     */
+    public ITable selectData(String query) throws InvalidQueryException {
+        QueryStats stats=metrics.start(query);
+        try {
+            String key=ResultCache.normalize(query);
+            ITable cached=resultCache.get(key,this::getVersion);
+            if(cached!=null){
+                stats.executed(cached.getTuples().size());
+                return cached;
+            }
+            SelectQuery select=parseSelect(query,false);
+            stats.parsed();
+            Map<String, Long> tableVersions=new HashMap<>();
+            tableVersions.put(select.getTable(),getVersion(select.getTable()));
+            for(SelectQuery.Join join: select.getJoins()){
+                tableVersions.put(join.getTable(),getVersion(join.getTable()));
+            }
+            long snapshot=clock.openSnapshot();
+            List<Lock> latched=lockForReading(select.getTables());
+            ITable result;
+            try {
+                PlanNode plan=new Planner(this).plan(select);
+                stats.planned(plan);
+                plan.setSnapshot(snapshot);
+                result=plan.run();
+                stats.executed(result.getTuples().size());
+            } finally {
+                unlock(latched);
+                clock.closeSnapshot(snapshot);
+            }
+            resultCache.put(key,tableVersions,result);
+            return result;
+        } finally {
+            metrics.finish(stats);
+        }
+    }
+
+    /**
+     * Opens a cursor returning the results of a select query one tuple at a time (see Cursor)
+     * If the query is not valid, throws an InvalidQueryException
+     *
+     * Implements the following algorithm
+     *
+     * Parse the query (see selectData)
+     * If the query is not valid
+     *   Throw an invalid query exception
+     *   Exit
+     * Take a snapshot of the database, kept until the cursor is closed
+     * Let the planner create the query plan (see Planner.plan)
+     * If the query reads tables not stored by tuple
+     *   Run the plan while they are locked for reading (see lockForReading)
+     *   Return a cursor over the results table
+     * Open the plan: scans, filters, projections and limits pull their tuples one at a time,
+     * a limit stops reading its input once it has its tuples
+     * Return the cursor over the plan
+     *
+     * Cursors do not use the result cache, the cursor must be closed
+     *
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public Cursor openCursor(String query) throws InvalidQueryException {
+        SelectQuery select=parseSelect(query,false);
+        long snapshot=clock.openSnapshot();
+        List<Lock> latched=lockForReading(select.getTables());
+        try {
+            return openCursor(new Planner(this).plan(select),snapshot,latched);
+        } catch (InvalidQueryException | RuntimeException e) {
+            clock.closeSnapshot(snapshot);
+            throw e;
+        } finally {
+            unlock(latched);
+        }
+    }
+
+    /**
+     * Runs a select query and returns its plan, with the estimated and actual number of rows of every step
+     * @param query the select query, with or without the EXPLAIN keyword before it (EXPLAIN SELECT ...)
+     * @return
+     * @throws InvalidQueryException
+     */
+    public String explain(String query) throws InvalidQueryException {
+        SelectQuery select=parseSelect(query,true);
+        long snapshot=clock.openSnapshot();
+        List<Lock> latched=lockForReading(select.getTables());
+        try {
+            PlanNode plan=new Planner(this).plan(select);
+            plan.setSnapshot(snapshot);
+            plan.run();
+            return plan.explain();
+        } finally {
+            unlock(latched);
+            clock.closeSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the database for a reader (see CommitClock), the plans read with it must be made
+     * after it is taken
+     * @return
+     */
+    long openSnapshot() {
+        return clock.openSnapshot();
+    }
+
+    /**
+     * Releases a snapshot taken by openSnapshot
+     * @param snapshot
+     */
+    void closeSnapshot(long snapshot) {
+        clock.closeSnapshot(snapshot);
+    }
+
+    /**
+     * Locks the tables not stored by tuple among the tables of a query for reading, in name order
+     * Their readers have no snapshot: they hold the read latch of the table while they plan and run the query,
+     * inserts, deletes and copies hold its write latch while they change it (outside of the log write)
+     * @param names
+     * @return the latches to unlock once the query has run (see unlock), none if all the tables are versioned
+     */
+    List<Lock> lockForReading(Collection<String> names) {
+        List<Lock> latched=new ArrayList<>();
+        for(String name: new TreeSet<>(names)){
+            ITable table=findTable(name);
+            if(table!=null && !(table instanceof VersionedTable)){
+                Lock latch=latch(table).readLock();
+                latch.lock();
+                latched.add(latch);
+            }
+        }
+        return latched;
+    }
+
+    static void unlock(List<Lock> latched) {
+        for(Lock latch: latched){
+            latch.unlock();
+        }
+    }
+
+    private ReadWriteLock latch(ITable table) {
+        return latches.computeIfAbsent(table.getName(),name->new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Opens a cursor over a plan read at a snapshot, the snapshot is released when the cursor is closed
+     * A plan reading tables not stored by tuple is run while the caller holds their read latches, the cursor
+     * returns its results table: it cannot keep the latches, the inserts and deletes of the thread reading it
+     * would wait for it
+     * @param plan
+     * @param snapshot
+     * @param latched the read latches of the tables of the plan (see lockForReading)
+     * @return
+     */
+    Cursor openCursor(PlanNode plan, long snapshot, List<Lock> latched) {
+        plan.setSnapshot(snapshot);
+        return new Cursor(latched.isEmpty()?plan:new ScanNode(plan.run()),()->clock.closeSnapshot(snapshot));
+    }
+
+    /**
+     * Parses a select query run directly, without ? placeholders
+     * @param explain whether the query can start with the EXPLAIN keyword (see SelectQuery.parseExplain)
+     */
+    private static SelectQuery parseSelect(String query, boolean explain) throws InvalidQueryException {
+        SelectQuery select=explain?SelectQuery.parseExplain(query):SelectQuery.parse(query);
+        if(select.getWhere()!=null && select.getWhere().hasParameters()){
+            throw new InvalidQueryException("A query with ? placeholders must be prepared: "+query);
+        }
+        return select;
+    }
+
+    /**
+     * Prepares a select, insert or delete query to run it many times, with ? placeholders for values of its
+     * where clause or of its inserted rows (bound before every execution, see PreparedQuery)
+     * If the query in not valid, throws an InvalidQueryException
+     *
+     * Implements the following algorithm
+     *
+     * Parse the query
+     * Find its tables and attributes
+     * If the query in not valid
+     *   Throw an invalid query exception
+     *   Exit
+     * If the query is a select
+     *   Let the planner create the query plan (see Planner.plan), a placeholder is estimated from the statistics
+     *   of its attribute
+     * If the query is an insert
+     *   Convert its values to the attribute types and keep the positions of its placeholders
+     * Return the prepared query
+     *
+     * Prepared selects are not cached (see selectData)
+     *
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public PreparedQuery prepare(String query) throws InvalidQueryException {
+        return new PreparedQuery(this,query);
+    }
+
+    /**
+     * Delete data from a table
+     * If the query in not valid, throws an InvalidQueryException
+     *
+     * Implements the following algorithm
+     *
+     * Parse the query to get the table name and the where condition (see DeleteQuery.parse)
+     * If the query in not valid
+     *   Throw an invalid query exception
+     *   Exit
+     * Lock the table
+     *   Delete the tuples matching the where clause from the table, its indexes and statistics (see delete)
+     *   Queue a delete entry with the where clause on the write-ahead log
+     * Wait for the log to write the entry (group commit, see AppendWriter)
+     * (the table file is written by the next checkpoint)
+     * Record the time spent parsing and running the query in the query metrics (see QueryMetrics)
+     *
+     * @param query
+     * @throws InvalidQueryException
+     */
+    public void deleteData(String query) throws InvalidQueryException {
+        QueryStats stats=metrics.start(query);
+        try {
+            DeleteQuery delete=DeleteQuery.parse(query);
+            ITable table=findTable(delete.getTable());
+            if(table==null){
+                throw new InvalidQueryException("Unknown table: "+delete.getTable());
+            }
+            Condition condition=delete.getWhere();
+            if(condition!=null && condition.hasParameters()){
+                throw new InvalidQueryException("A query with ? placeholders must be prepared: "+query);
+            }
+            stats.parsed();
+            stats.executed(deleteRows(table,condition,condition==null?"":condition.toString()));
+        } finally {
+            metrics.finish(stats);
+        }
+    }
+
+    /**
+     * Deletes the tuples of a table matching a condition: logs the delete in the write-ahead log and removes
+     * the tuples from the table, its indexes and statistics
+     * Readers see the tuples until the log entry is written (see insertRows): the delete of a versioned table is
+     * staged (once the changes staged before it are committed, so that it deletes the tuples they insert as the log
+     * replay would) and committed after the log write, the tuples of other tables are removed after it
+     * @param table
+     * @param condition the condition, or null to delete all the tuples
+     * @param whereClause the text of the condition (logged, and parsed again when the log is replayed)
+     * @return the number of deleted tuples
+     * @throws InvalidQueryException
+     * @throws RuntimeException if the log could not be written, the table is then unchanged
+     */
+    int deleteRows(ITable table, Condition condition, String whereClause) throws InvalidQueryException {
+        WriteAheadLog log;
+        int deleted;
+        checkpointLock.readLock().lock();
+        try {
+            log=log();
+            if(table instanceof VersionedTable){
+                VersionedTable versioned=(VersionedTable) table;
+                VersionedTable.Change change;
+                long ticket;
+                synchronized(table){
+                    versioned.awaitStaged();
+                    change=versioned.stage(Collections.emptyList(),deletedVersions(versioned,condition));
+                    ticket=log.logDelete(table.getName(),whereClause);
+                }
+                this.dirty.add(table.getName());
+                commit(versioned,change,log,ticket);
+                deleted=change.getDeleted().size();
+                if(condition==null){
+                    synchronized(table){
+                        deletedAll(table,deleted);
+                    }
+                }
+            }else{
+                synchronized(table){
+                    if(condition!=null){
+                        // the condition is checked before the log write, an invalid one is not logged
+                        ConditionCompiler.check(condition,table.getName(),table.getSchema());
+                    }
+                    log.commit(log.logDelete(table.getName(),whereClause));
+                    Lock latch=latch(table).writeLock();
+                    latch.lock();
+                    try {
+                        deleted=delete(table,condition);
+                    } finally {
+                        latch.unlock();
+                    }
+                }
+                this.dirty.add(table.getName());
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        requestCheckpointIfFull(log);
+        return deleted;
+    }
+
+    /**
+     * Deletes the tuples of a table matching a where condition (in memory only)
+     *
+     * Implements the following algorithm
+     *
+     * If the table is versioned
+     *   Get the tuples matching the condition (all the tuples if there is none)
+     *   Remove them from the table statistics
+     *   Commit their deletion (the vacuum removes them from the table and its indexes once no one can see them)
+     * Else if there is a where condition
+     *   Get the tuples matching the condition (from an index if possible)
+     *   Remove the matching tuples from the table indexes
+     *   (the indexes of a table stored by column or in pages are rebuilt instead, as its rows are renumbered)
+     *   Remove the matching tuples from the table statistics
+     *   Remove the matching tuples from the table
+     * Else
+     *   Remove all the tuples from the table and its indexes, reset its statistics
+     *
+     * @param table
+     * @param condition the where condition, null to delete all the tuples
+     * @return the number of deleted tuples
+     * @throws InvalidQueryException
+     */
+    private int delete(ITable table, Condition condition) throws InvalidQueryException {
+        List<ITuple>tuples=table.getTuples();
+        List<IIndex> tableIndexes=getIndexes(table.getName());
+        int count;
+        if(table instanceof VersionedTable){
+            Set<ITuple> deleted=deletedVersions((VersionedTable) table,condition);
+            count=deleted.size();
+            ((VersionedTable) table).commit(Collections.emptyList(),deleted);
+            if(condition==null){
+                deletedAll(table,count);
+                return count;
+            }
+        }else if(condition==null){
+            count=tuples.size();
+            tuples.clear();
+            if(!tableIndexes.isEmpty()){
+                this.indexes.put(table.getName(),rebuildIndexes(table,tableIndexes));
+            }
+            if(this.statistics.containsKey(table.getName())){
+                this.statistics.put(table.getName(),TableStatistics.analyze(table));
+            }
+        }else if(table instanceof ColumnarTable || table instanceof PagedTable || table instanceof OffHeapTable){
+            Set<ITuple> deleted=new HashSet<>(matchingTuples(table,condition));
+            count=deleted.size();
+            updateStatistics(table,deleted,false);
+            tuples.removeIf(deleted::contains);
+            if(!tableIndexes.isEmpty()){
+                this.indexes.put(table.getName(),rebuildIndexes(table,tableIndexes));
+            }
+        }else{
+            Set<ITuple> deleted=Collections.newSetFromMap(new IdentityHashMap<>());
+            deleted.addAll(matchingTuples(table,condition));
+            count=deleted.size();
+            for(ITuple t: deleted){
+                for(IIndex index: tableIndexes){
+                    index.delete(t.getValue(index.getColumn()),t);
+                }
+            }
+            updateStatistics(table,deleted,false);
+            tuples.removeIf(deleted::contains);
+        }
+        changed(table);
+        if(condition==null){
+            QueryStats.scanned(count,0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the versions of a versioned table a delete removes (the tuples of the last committed snapshot
+     * matching the condition, all of them if there is none), and removes them from the table statistics
+     * (the statistics are computed again once all the tuples are deleted, see deletedAll)
+     * @param table
+     * @param condition
+     * @return
+     * @throws InvalidQueryException
+     */
+    private Set<ITuple> deletedVersions(VersionedTable table, Condition condition) throws InvalidQueryException {
+        Set<ITuple> deleted=Collections.newSetFromMap(new IdentityHashMap<>());
+        deleted.addAll(condition==null?table.getTuples():matchingTuples(table,condition));
+        if(condition!=null){
+            updateStatistics(table,deleted,false);
+        }
+        return deleted;
+    }
+
+    /**
+     * Finishes a delete of all the tuples of a table: resets its statistics and records the scan
+     * @param table
+     * @param count the number of deleted tuples
+     */
+    private void deletedAll(ITable table, int count) {
+        if(this.statistics.containsKey(table.getName())){
+            this.statistics.put(table.getName(),TableStatistics.analyze(table));
+        }
+        changed(table);
+        QueryStats.scanned(count,0);
+    }
+
+    /**
+     * Returns the tuples of the table matching the condition,
+     * read through the access path chosen by the planner (index lookup or scan)
+     * @param table
+     * @param condition
+     * @return
+     * @throws InvalidQueryException
+     */
+    private List<ITuple> matchingTuples(ITable table, Condition condition) throws InvalidQueryException {
+        PlanNode access=new Planner(this).access(table,condition);
+        List<ITuple> matching=access.run().getTuples();
+        QueryStats.scanned(access);
+        return matching;
+    }
+
+    /**
+     * Converts a value from the query text to the attribute type
+     * @param type
+     * @param value
+     * @return
+     * @throws InvalidQueryException
+     */
+    static Object parseValue(String type, String value) throws InvalidQueryException {
+        try {
+            if(type.equals("Integer")){
+                return Integer.parseInt(value);
+            }else if(type.equals("Double")){
+                return Double.parseDouble(value);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new InvalidQueryException("Not a valid "+type+": "+value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static List<IIndex> rebuildIndexes(ITable table, List<IIndex> old) {
+        List<IIndex> rebuilt=new ArrayList<>();
+        for(IIndex index: old){
+            rebuilt.add(buildIndex(table,index.getColumn(),index.getType()));
+        }
+        return rebuilt;
+    }
+    /**
+     * Returns the index of the attribute in the table schema or -1 if it is not there
+     * The attribute can be qualified with the table name (table.attribute), attributes of joined tables
+     * can be referred to without the table name if only one of the tables has them
+     * @param table
+     * @param attribute
+     * @return
+     * @throws InvalidQueryException if the attribute is not qualified and more than one joined table has it
+     */
+    static int columnIndex(ITable table, String attribute) throws InvalidQueryException {
+        return columnIndex(table.getName(),table.getSchema(),attribute);
+    }
+
+    /**
+     * Returns the index of the attribute in the schema of the named table or -1 if it is not there
+     * @param tableName
+     * @param schema
+     * @param attribute
+     * @return
+     * @throws InvalidQueryException if the attribute is not qualified and more than one joined table has it
+     */
+    static int columnIndex(String tableName, ISchema schema, String attribute) throws InvalidQueryException {
+        int found=-1;
+        for(int i=0;i<schema.getAttributes().size();i++){
+            String name=schema.getName(i);
+            if(name.equals(attribute) || attribute.equals(tableName+"."+name)){
+                return i;
+            }
+            if(name.endsWith("."+attribute)){
+                if(found!=-1){
+                    throw new InvalidQueryException("Ambiguous attribute: "+attribute);
+                }
+                found=i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the table with the given name, or null if there is none
+     * @param name
+     * @return
+     */
+    ITable getTable(String name) {
+        return findTable(name);
+    }
+
+    int getJoinMemoryBudget() {
+        return this.joinMemoryBudget;
+    }
+
+    int getSortMemoryBudget() {
+        return this.sortMemoryBudget;
+    }
+
+    int getAggregateMemoryBudget() {
+        return this.aggregateMemoryBudget;
+    }
+
+    /**
+     * Returns the executor of a select query with the given degree of parallelism (0 for the database default)
+     * @param parallelism
+     * @return
+     */
+    MorselExecutor getQueryExecutor(int parallelism) {
+        return new MorselExecutor(queryExecutor,parallelism>0?parallelism:this.parallelism,parallelThreshold);
+    }
+
+    /**
+     * Returns the folder where operators write their temporary files
+     * @return
+     */
+    File getSpillFolder() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
     private ITable findTable(String s){
         for(ITable t: tables){
             if(t.getName().equals(s)){
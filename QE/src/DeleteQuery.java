@@ -0,0 +1,53 @@
+/**
+ * A parsed delete query: the table and the where condition
+ */
+class DeleteQuery implements IQuery {
+    private String table;
+    private Condition where;
+
+    public String getTable() {
+        return this.table;
+    }
+
+    /**
+     * Returns the where condition, or null if the query has no where clause (all the tuples are deleted)
+     * @return
+     */
+    public Condition getWhere() {
+        return this.where;
+    }
+
+    /**
+     * Parses a delete query
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static DeleteQuery parse(String query) throws InvalidQueryException {
+        Parser parser=new Parser(query);
+        if(!parser.getLexer().isWord("DELETE")){
+            throw parser.error("DELETE");
+        }
+        DeleteQuery result=parse(parser);
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Parses a delete query from the delete keyword
+     * DELETE FROM table [WHERE condition]
+     * @param parser
+     * @return
+     * @throws InvalidQueryException
+     */
+    static DeleteQuery parse(Parser parser) throws InvalidQueryException {
+        DeleteQuery result=new DeleteQuery();
+        parser.expect("DELETE");
+        parser.expect("FROM");
+        result.table=parser.name("table");
+        if(parser.keyword("WHERE")){
+            result.where=parser.condition();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the tuples of its child matching a condition
+ * (or attribute = attribute when the condition compares two attributes)
+ * The condition is compiled into a predicate when the node is created (see ConditionCompiler),
+ * or when the values of its ? placeholders are bound
+ */
+class FilterNode extends PlanNode {
+    private PlanNode child;
+    private Condition condition;
+    private Condition bound;
+    private Predicate<ITuple> predicate;
+    private String description;
+    private boolean vectorized;
+
+    /**
+     * Filter on a condition
+     * @param child
+     * @param condition
+     * @throws InvalidQueryException if an attribute of the condition is not in the child schema, or a value
+     * does not have the attribute type
+     */
+    public FilterNode(PlanNode child, Condition condition) throws InvalidQueryException {
+        this.child=child;
+        this.condition=condition;
+        if(condition.hasParameters()){
+            ConditionCompiler.check(condition,child.getName(),child.getSchema());
+        }else{
+            this.predicate=ConditionCompiler.compile(condition,child.getName(),child.getSchema(),
+                    child.getDictionaries());
+        }
+        this.description=condition.toString();
+    }
+
+    /**
+     * Filter on attribute = attribute
+     * @param child
+     * @param column
+     * @param otherColumn
+     */
+    public FilterNode(PlanNode child, int column, int otherColumn) {
+        this.child=child;
+        this.predicate=t->{
+            Object v=t.getValue(column);
+            Object other=t.getValue(otherColumn);
+            return v!=null && other!=null && Database.compareValues(v,other)==0;
+        };
+        this.description=child.getSchema().getName(column)+" = "+child.getSchema().getName(otherColumn);
+    }
+
+    /**
+     * Sets whether the condition is evaluated on batches of rows when the child is a table stored by column
+     * (see ConditionCompiler.compileBatch)
+     * @param vectorized
+     */
+    void setVectorized(boolean vectorized) {
+        this.vectorized=vectorized;
+    }
+
+    /**
+     * Compiles the condition with the values of its ? placeholders
+     * @param values
+     * @throws InvalidQueryException
+     */
+    @Override
+    void bindParameters(Object[] values) throws InvalidQueryException {
+        if(condition!=null && condition.hasParameters()){
+            this.bound=condition.bind(values);
+            this.predicate=ConditionCompiler.compile(bound,child.getName(),child.getSchema(),child.getDictionaries());
+        }
+    }
+
+    @Override
+    String getName() {
+        return child.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return child.getSchema();
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Collections.singletonList(child);
+    }
+
+    @Override
+    StringDictionary[] getDictionaries() {
+        return child.getDictionaries();
+    }
+
+    /**
+     * Filters the tuples of the child, in parallel morsels of tuples if the child is large enough
+     * (see MorselExecutor), the tuples keep the child order
+     * @return
+     */
+    @Override
+    ITable execute() {
+        checkBound();
+        ITable input=child.run();
+        ITable result=new Table(input.getName(),input.getSchema());
+        if(input instanceof ColumnarTable && condition!=null){
+            ColumnarTable columnar=(ColumnarTable) input;
+            List<int[]> morsels;
+            if(vectorized){
+                ColumnarTable.BatchPredicate rows=batchPredicate(columnar);
+                morsels=getExecutor().map(columnar.size(),(from,to)->columnar.select(rows,from,to));
+            }else{
+                IntPredicate rows=rowPredicate(columnar);
+                morsels=getExecutor().map(columnar.size(),(from,to)->columnar.select(rows,from,to));
+            }
+            for(int[] morsel: morsels){
+                for(ITuple t: columnar.tuples(morsel)){
+                    result.addTuple(t);
+                }
+            }
+            return result;
+        }
+        List<ITuple> tuples=input.getTuples();
+        for(List<ITuple> morsel: getExecutor().map(tuples.size(),(from,to)->{
+            List<ITuple> matching=new ArrayList<>();
+            for(int i=from;i<to;i++){
+                ITuple t=tuples.get(i);
+                if(predicate.test(t)){
+                    matching.add(t);
+                }
+            }
+            return matching;
+        })){
+            for(ITuple t: morsel){
+                result.addTuple(t);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pulls the tuples of the child until one matches
+     */
+    @Override
+    void openNode() {
+        checkBound();
+        child.open();
+    }
+
+    @Override
+    ITuple nextTuple() {
+        ITuple t;
+        while((t=child.next())!=null){
+            if(predicate.test(t)){
+                return t;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    void closeNode() {
+        child.close();
+    }
+
+    private void checkBound() {
+        if(predicate==null){
+            throw new IllegalStateException("The parameters of the condition are not bound: "+condition);
+        }
+    }
+
+    private IntPredicate rowPredicate(ColumnarTable table) {
+        try {
+            return ConditionCompiler.compile(condition.hasParameters()?bound:condition,table);
+        } catch (InvalidQueryException e) {
+            // the condition was already bound to the same schema when the node was created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ColumnarTable.BatchPredicate batchPredicate(ColumnarTable table) {
+        try {
+            return ConditionCompiler.compileBatch(condition.hasParameters()?bound:condition,table);
+        } catch (InvalidQueryException e) {
+            // the condition was already bound to the same schema when the node was created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    String describe() {
+        return "Filter ["+description+"]";
+    }
+}
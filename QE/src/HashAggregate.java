@@ -0,0 +1,447 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash aggregation of the tuples of a table (group by clause and aggregate functions)
+ *
+ * Every group gets a number when its first tuple is seen, and every aggregate keeps its state for all the groups
+ * in primitive arrays indexed by that number (a long count, a long or double sum, an int or double minimum...),
+ * so adding a tuple to its group allocates nothing for Integer and Double attributes
+ * Null values are ignored by the aggregates (COUNT(*) counts every tuple), an aggregate of a group without
+ * any value is null (0 for COUNT); tuples with null group attributes form one group
+ *
+ * If the table has more groups than the memory budget, the tuples of the groups that do not fit are written
+ * to spill files partitioned by the hash of their group, and every partition is aggregated after the groups
+ * in memory are done (a group is either completely in memory or completely in one partition)
+ */
+class HashAggregate {
+    private static final int PARTITIONS=16;
+    private static final int MAX_DEPTH=4;
+
+    private int[] groupColumns;
+    private List<Aggregate> aggregates;
+    private int[] aggregateColumns;
+    private ISchema inputSchema;
+    private int memoryBudget;
+    private File spillFolder;
+
+    /**
+     * constructor
+     * @param groupColumns the indexes of the group by attributes in the input schema
+     * @param aggregates the aggregate functions
+     * @param aggregateColumns the indexes of the aggregated attributes in the input schema (-1 for COUNT(*))
+     * @param inputSchema
+     * @param memoryBudget maximum number of groups kept in memory at once
+     * @param spillFolder folder where the tuples of the groups that do not fit are written
+     */
+    public HashAggregate(int[] groupColumns, List<Aggregate> aggregates, int[] aggregateColumns, ISchema inputSchema,
+                         int memoryBudget, File spillFolder) {
+        this.groupColumns=groupColumns;
+        this.aggregates=aggregates;
+        this.aggregateColumns=aggregateColumns;
+        this.inputSchema=inputSchema;
+        this.memoryBudget=Math.max(1,memoryBudget);
+        this.spillFolder=spillFolder;
+    }
+
+    /**
+     * Aggregates the tuples of a table, the result has the group by attributes followed by the aggregates
+     *
+     * Implements the following algorithm
+     *
+     * For each tuple of the table
+     *   Find the group of its group by values
+     *   If there is no such group
+     *     If there are fewer groups than the memory budget (or no group by attribute)
+     *       Create the group and its aggregate states
+     *     Else
+     *       Write the tuple to the spill file of the hash of its group by values
+     *       Continue
+     *   Add the aggregated values of the tuple to the aggregate states of the group
+     * For each group
+     *   Add a tuple with the group by values and the aggregate results to the result
+     * For each spill file
+     *   Aggregate its tuples the same way (recursively)
+     *
+     * @param input
+     * @param schema the result schema
+     * @return
+     */
+    public ITable aggregate(ITable input, ISchema schema) {
+        ITable result=new Table(input.getName(),schema);
+        List<ITuple> tuples=input.getTuples();
+        int width=groupColumns.length+aggregateColumns.length;
+        aggregate(new Input() {
+            private int next=0;
+            public Object[] next() {
+                if(next>=tuples.size()){
+                    return null;
+                }
+                ITuple t=tuples.get(next++);
+                Object[] row=new Object[width];
+                for(int i=0;i<groupColumns.length;i++){
+                    row[i]=t.getValue(groupColumns[i]);
+                }
+                for(int i=0;i<aggregateColumns.length;i++){
+                    row[groupColumns.length+i]=aggregateColumns[i]==-1?null:t.getValue(aggregateColumns[i]);
+                }
+                return row;
+            }
+        },schema,result,0);
+        return result;
+    }
+
+    /**
+     * Aggregates rows made of the group by values followed by the aggregated values
+     */
+    private void aggregate(Input input, ISchema schema, ITable result, int depth) {
+        int groups=groupColumns.length;
+        int width=groups+aggregateColumns.length;
+        Map<Object,Integer> numbers=new HashMap<>();
+        List<Object[]> keys=new ArrayList<>();
+        Accumulator[] accumulators=new Accumulator[aggregateColumns.length];
+        for(int i=0;i<accumulators.length;i++){
+            accumulators[i]=accumulator(aggregates.get(i),aggregateColumns[i]);
+        }
+        SpillFile[] partitions=null;
+        if(groups==0){
+            newGroup(accumulators,keys,new Object[0]);
+        }
+        for(Object[] row=input.next();row!=null;row=input.next()){
+            int group;
+            if(groups==0){
+                group=0;
+            }else{
+                Object key=groups==1?row[0]:Arrays.asList(Arrays.copyOf(row,groups));
+                Integer number=numbers.get(key);
+                if(number==null){
+                    if(keys.size()>=memoryBudget && depth<MAX_DEPTH){
+                        if(partitions==null){
+                            partitions=new SpillFile[PARTITIONS];
+                            for(int p=0;p<PARTITIONS;p++){
+                                partitions[p]=new SpillFile(spillFolder,width);
+                            }
+                        }
+                        partitions[Math.floorMod(hash(key,depth),PARTITIONS)].write(row);
+                        continue;
+                    }
+                    number=keys.size();
+                    numbers.put(key,number);
+                    newGroup(accumulators,keys,Arrays.copyOf(row,groups));
+                }
+                group=number;
+            }
+            for(int i=0;i<accumulators.length;i++){
+                accumulators[i].add(group,row[groups+i]);
+            }
+        }
+        for(int g=0;g<keys.size();g++){
+            Object[] values=Arrays.copyOf(keys.get(g),width);
+            for(int i=0;i<accumulators.length;i++){
+                values[groups+i]=accumulators[i].result(g);
+            }
+            ITuple tuple=new Tuple(schema);
+            tuple.setValues(values);
+            result.addTuple(tuple);
+        }
+        if(partitions!=null){
+            numbers=null;
+            keys=null;
+            accumulators=null;
+            for(SpillFile partition: partitions){
+                try(SpillFile p=partition){
+                    if(p.size()>0){
+                        aggregate(p::read,schema,result,depth+1);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void newGroup(Accumulator[] accumulators, List<Object[]> keys, Object[] key) {
+        keys.add(key);
+        for(Accumulator a: accumulators){
+            a.ensureCapacity(keys.size());
+        }
+    }
+
+    /**
+     * Hash of the group, mixed with the recursion depth so a partition is split differently at every level
+     */
+    private static int hash(Object key, int depth) {
+        int h=(key==null?0:key.hashCode())*(0x9E3779B1+2*depth);
+        return h^(h>>>16);
+    }
+
+    /**
+     * Creates the state of an aggregate for the type of its attribute
+     */
+    private Accumulator accumulator(Aggregate aggregate, int column) {
+        String type=column==-1?"Integer":inputSchema.getType(column);
+        Accumulator result;
+        switch(aggregate.getFunction()){
+            case "COUNT":
+                result=new Count(column==-1);
+                break;
+            case "SUM":
+                result=type.equals("Integer")?new IntSum():new DoubleSum(false);
+                break;
+            case "AVG":
+                result=new DoubleSum(true);
+                break;
+            default:
+                boolean max=aggregate.getFunction().equals("MAX");
+                if(type.equals("Integer")){
+                    result=new IntExtreme(max);
+                }else if(type.equals("Double")){
+                    result=new DoubleExtreme(max);
+                }else{
+                    result=new StringExtreme(max);
+                }
+                // the minimum and maximum of the distinct values are those of all the values
+                return result;
+        }
+        return aggregate.isDistinct()?new Distinct(result):result;
+    }
+
+    private interface Input {
+        Object[] next();
+    }
+
+    /**
+     * The states of an aggregate for all the groups, indexed by group number
+     */
+    private abstract static class Accumulator {
+        /**
+         * Makes room for the state of one more group (the given number of groups)
+         */
+        abstract void ensureCapacity(int groups);
+
+        /**
+         * Adds a value (possibly null) to the state of the group
+         */
+        abstract void add(int group, Object value);
+
+        /**
+         * Returns the value of the aggregate for the group
+         */
+        abstract Object result(int group);
+
+        /**
+         * Returns the new length of a state array that is full (groups are added one at a time)
+         */
+        static int grow(int length) {
+            return Math.max(16,length*2);
+        }
+    }
+
+    private static class Count extends Accumulator {
+        private boolean all;
+        private long[] counts=new long[0];
+
+        Count(boolean all) {
+            this.all=all;
+        }
+
+        void ensureCapacity(int groups) {
+            if(counts.length<groups){
+                counts=Arrays.copyOf(counts,grow(counts.length));
+            }
+        }
+
+        void add(int group, Object value) {
+            if(all || value!=null){
+                counts[group]++;
+            }
+        }
+
+        Object result(int group) {
+            return Math.toIntExact(counts[group]);
+        }
+    }
+
+    private static class IntSum extends Accumulator {
+        private long[] sums=new long[0];
+        private BitSet seen=new BitSet();
+
+        void ensureCapacity(int groups) {
+            if(sums.length<groups){
+                sums=Arrays.copyOf(sums,grow(sums.length));
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                sums[group]+=(Integer) value;
+                seen.set(group);
+            }
+        }
+
+        Object result(int group) {
+            return seen.get(group)?Math.toIntExact(sums[group]):null;
+        }
+    }
+
+    /**
+     * Sum or average of Integer or Double values, computed with a double sum and a count
+     */
+    private static class DoubleSum extends Accumulator {
+        private boolean average;
+        private double[] sums=new double[0];
+        private long[] counts=new long[0];
+
+        DoubleSum(boolean average) {
+            this.average=average;
+        }
+
+        void ensureCapacity(int groups) {
+            if(sums.length<groups){
+                sums=Arrays.copyOf(sums,grow(sums.length));
+                counts=Arrays.copyOf(counts,sums.length);
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                sums[group]+=((Number) value).doubleValue();
+                counts[group]++;
+            }
+        }
+
+        Object result(int group) {
+            if(counts[group]==0){
+                return null;
+            }
+            return average?sums[group]/counts[group]:sums[group];
+        }
+    }
+
+    private static class IntExtreme extends Accumulator {
+        private boolean max;
+        private int[] values=new int[0];
+        private BitSet seen=new BitSet();
+
+        IntExtreme(boolean max) {
+            this.max=max;
+        }
+
+        void ensureCapacity(int groups) {
+            if(values.length<groups){
+                values=Arrays.copyOf(values,grow(values.length));
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                int v=(Integer) value;
+                if(!seen.get(group) || (max?v>values[group]:v<values[group])){
+                    values[group]=v;
+                    seen.set(group);
+                }
+            }
+        }
+
+        Object result(int group) {
+            return seen.get(group)?values[group]:null;
+        }
+    }
+
+    private static class DoubleExtreme extends Accumulator {
+        private boolean max;
+        private double[] values=new double[0];
+        private BitSet seen=new BitSet();
+
+        DoubleExtreme(boolean max) {
+            this.max=max;
+        }
+
+        void ensureCapacity(int groups) {
+            if(values.length<groups){
+                values=Arrays.copyOf(values,grow(values.length));
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                double v=(Double) value;
+                if(!seen.get(group) || (max?v>values[group]:v<values[group])){
+                    values[group]=v;
+                    seen.set(group);
+                }
+            }
+        }
+
+        Object result(int group) {
+            return seen.get(group)?values[group]:null;
+        }
+    }
+
+    private static class StringExtreme extends Accumulator {
+        private boolean max;
+        private String[] values=new String[0];
+
+        StringExtreme(boolean max) {
+            this.max=max;
+        }
+
+        void ensureCapacity(int groups) {
+            if(values.length<groups){
+                values=Arrays.copyOf(values,grow(values.length));
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                String v=value.toString();
+                String current=values[group];
+                if(current==null || (max?v.compareTo(current)>0:v.compareTo(current)<0)){
+                    values[group]=v;
+                }
+            }
+        }
+
+        Object result(int group) {
+            return values[group];
+        }
+    }
+
+    /**
+     * Keeps the distinct values of every group and gives them to the aggregate when the result is read
+     */
+    private static class Distinct extends Accumulator {
+        private Accumulator aggregate;
+        private List<Set<Object>> values=new ArrayList<>();
+
+        Distinct(Accumulator aggregate) {
+            this.aggregate=aggregate;
+        }
+
+        void ensureCapacity(int groups) {
+            aggregate.ensureCapacity(groups);
+            while(values.size()<groups){
+                values.add(new HashSet<>());
+            }
+        }
+
+        void add(int group, Object value) {
+            if(value!=null){
+                values.get(group).add(value);
+            }
+        }
+
+        Object result(int group) {
+            for(Object value: values.get(group)){
+                aggregate.add(group,value);
+            }
+            values.set(group,null);
+            return aggregate.result(group);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A hash index maps every value of a table attribute to the list of tuples holding that value
+ * It answers equality lookups (e.g. sid = s1) in constant time, but not range predicates
+ * Null values are not indexed
+ */
+public class HashIndex implements IIndex {
+    private String tableName;
+    private int column;
+    private Map<Object, List<ITuple>> entries;
+
+    /**
+     * constructor
+     * @param tableName
+     * @param column index of the attribute in the table schema
+     */
+    public HashIndex(String tableName, int column) {
+        this.tableName=tableName;
+        this.column=column;
+        this.entries=new HashMap<>();
+    }
+
+    @Override
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    @Override
+    public int getColumn() {
+        return this.column;
+    }
+
+    @Override
+    public String getType() {
+        return "HASH";
+    }
+
+    /**
+     * Adds the tuple to the list of tuples of the key
+     * @param key
+     * @param tuple
+     */
+    @Override
+    public void insert(Object key, ITuple tuple) {
+        if(key!=null){
+            this.entries.computeIfAbsent(key,k->new ArrayList<>(1)).add(tuple);
+        }
+    }
+
+    /**
+     * Removes the tuple (the same object, not an equal one) from the list of tuples of the key
+     * @param key
+     * @param tuple
+     */
+    @Override
+    public void delete(Object key, ITuple tuple) {
+        List<ITuple> tuples=this.entries.get(key);
+        if(tuples==null){
+            return;
+        }
+        for(int i=0;i<tuples.size();i++){
+            if(tuples.get(i)==tuple){
+                tuples.remove(i);
+                break;
+            }
+        }
+        if(tuples.isEmpty()){
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Returns the tuples holding the key
+     * @param key
+     * @return
+     */
+    @Override
+    public List<ITuple> lookup(Object key) {
+        List<ITuple> tuples=this.entries.get(key);
+        return tuples==null?Collections.emptyList():tuples;
+    }
+
+    /**
+     * Calls the action for every key and its tuples (in no particular order)
+     * @param action
+     */
+    @Override
+    public void forEach(BiConsumer<Object, List<ITuple>> action) {
+        this.entries.forEach(action);
+    }
+}
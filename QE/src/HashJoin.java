@@ -0,0 +1,205 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Equi-join of two tables on one column of each table (e.g. enroll.sid = student.sid)
+ *
+ * The smaller table is the build side: its tuples are loaded into an in-memory hash table keyed on the join column
+ * The larger table is the probe side: each of its tuples is looked up in the hash table
+ * If the build side holds more tuples than the memory budget, both sides are hash partitioned into spill files
+ * and every pair of partitions is joined on its own (grace hash join)
+ *
+ * The result schema has the attributes of the left table followed by the ones of the right table,
+ * all qualified with their table name (table.attribute:type)
+ */
+class HashJoin {
+    private static final int MAX_DEPTH=4;
+    private static final int MAX_PARTITIONS=256;
+
+    private int memoryBudget;
+    private File spillFolder;
+
+    /**
+     * Source of tuple values for the join, either a table in memory or a spill file
+     */
+    private interface Input {
+        long size();
+        Object[] next();
+    }
+
+    /**
+     * constructor
+     * @param memoryBudget maximum number of build tuples held in memory at once
+     * @param spillFolder folder where the partitions are written when the build side does not fit
+     */
+    public HashJoin(int memoryBudget, File spillFolder) {
+        this.memoryBudget=memoryBudget;
+        this.spillFolder=spillFolder;
+    }
+
+    /**
+     * Joins the two tables
+     *
+     * Implements the following algorithm
+     *
+     * Create the result schema (left attributes then right attributes)
+     * Choose the smaller table as the build side and the larger one as the probe side
+     * If the build side fits in the memory budget
+     *   Put the build tuples in a hash table (join value to list of tuples)
+     *   For each probe tuple
+     *     For each build tuple with the same join value
+     *       Add the combined tuple to the result
+     * Else
+     *   Write the build and probe tuples to partition files (by hash of the join value)
+     *   Join each build partition with the probe partition of the same number (recursively)
+     *
+     * @param left
+     * @param leftCol
+     * @param right
+     * @param rightCol
+     * @return
+     */
+    public ITable join(ITable left, int leftCol, ITable right, int rightCol) {
+        ISchema schema=joinSchema(left,right);
+        ITable result=new Table(left.getName()+"_"+right.getName(),schema);
+        int leftWidth=left.getSchema().getAttributes().size();
+        boolean buildLeft=left.getTuples().size()<=right.getTuples().size();
+        ITable build=buildLeft?left:right;
+        ITable probe=buildLeft?right:left;
+        join(input(build.getTuples()),buildLeft?leftCol:rightCol,
+                input(probe.getTuples()),buildLeft?rightCol:leftCol,
+                buildLeft,leftWidth,schema,result,0);
+        return result;
+    }
+
+    /**
+     * Creates the result schema, attribute names are qualified with the table name unless they already are
+     * @param left
+     * @param right
+     * @return
+     */
+    static ISchema joinSchema(ITable left, ITable right) {
+        return joinSchema(left.getName(),left.getSchema(),right.getName(),right.getSchema());
+    }
+
+    /**
+     * Creates the result schema of joining the table leftName (with schema left) and the table rightName
+     * @param leftName
+     * @param left
+     * @param rightName
+     * @param right
+     * @return
+     */
+    static ISchema joinSchema(String leftName, ISchema left, String rightName, ISchema right) {
+        Map<Integer,String> attributes=new HashMap<>();
+        int index=0;
+        for(int side=0;side<2;side++){
+            String name=side==0?leftName:rightName;
+            Map<Integer,String> att=(side==0?left:right).getAttributes();
+            for(int i=0;i<att.size();i++){
+                String a=att.get(i);
+                if(a.substring(0,a.indexOf(':')).contains(".")){
+                    attributes.put(index++,a);
+                }else{
+                    attributes.put(index++,name+"."+a);
+                }
+            }
+        }
+        return new Schema(attributes);
+    }
+
+    private void join(Input build, int buildCol, Input probe, int probeCol, boolean buildLeft, int leftWidth,
+                      ISchema schema, ITable result, int depth) {
+        if(build.size()<=memoryBudget || depth>=MAX_DEPTH){
+            Map<Object,List<Object[]>> hashTable=new HashMap<>();
+            for(Object[] row=build.next();row!=null;row=build.next()){
+                if(row[buildCol]!=null){
+                    hashTable.computeIfAbsent(row[buildCol],k->new ArrayList<>(1)).add(row);
+                }
+            }
+            for(Object[] row=probe.next();row!=null;row=probe.next()){
+                if(row[probeCol]==null){
+                    continue;
+                }
+                List<Object[]> matches=hashTable.get(row[probeCol]);
+                if(matches!=null){
+                    for(Object[] match: matches){
+                        result.addTuple(combine(buildLeft?match:row,buildLeft?row:match,schema,leftWidth));
+                    }
+                }
+            }
+            return;
+        }
+        int width=schema.getAttributes().size();
+        int buildWidth=buildLeft?leftWidth:width-leftWidth;
+        int parts=(int)Math.min(MAX_PARTITIONS,2*(build.size()/memoryBudget+1));
+        SpillFile[] buildParts=partition(build,buildCol,buildWidth,parts,depth);
+        SpillFile[] probeParts=partition(probe,probeCol,width-buildWidth,parts,depth);
+        for(int p=0;p<parts;p++){
+            try(SpillFile b=buildParts[p]; SpillFile pr=probeParts[p]){
+                if(b.size()>0 && pr.size()>0){
+                    join(input(b),buildCol,input(pr),probeCol,buildLeft,leftWidth,schema,result,depth+1);
+                }
+            }
+        }
+    }
+
+    private SpillFile[] partition(Input input, int col, int width, int parts, int depth) {
+        SpillFile[] files=new SpillFile[parts];
+        for(int p=0;p<parts;p++){
+            files[p]=new SpillFile(spillFolder,width);
+        }
+        for(Object[] row=input.next();row!=null;row=input.next()){
+            if(row[col]!=null){
+                files[Math.floorMod(hash(row[col],depth),parts)].write(row);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Hash of the join value, mixed with the recursion depth so a partition is split differently at every level
+     * @param key
+     * @param depth
+     * @return
+     */
+    private static int hash(Object key, int depth) {
+        int h=key.hashCode()*(0x9E3779B1+2*depth);
+        return h^(h>>>16);
+    }
+
+    private static ITuple combine(Object[] left, Object[] right, ISchema schema, int leftWidth) {
+        Object[] values=new Object[leftWidth+right.length];
+        System.arraycopy(left,0,values,0,leftWidth);
+        System.arraycopy(right,0,values,leftWidth,right.length);
+        ITuple tuple=new Tuple(schema);
+        tuple.setValues(values);
+        return tuple;
+    }
+
+    private static Input input(List<ITuple> tuples) {
+        return new Input() {
+            private int next=0;
+            public long size() {
+                return tuples.size();
+            }
+            public Object[] next() {
+                return next<tuples.size()?tuples.get(next++).getValues():null;
+            }
+        };
+    }
+
+    private static Input input(SpillFile file) {
+        return new Input() {
+            public long size() {
+                return file.size();
+            }
+            public Object[] next() {
+                return file.read();
+            }
+        };
+    }
+}
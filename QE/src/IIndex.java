@@ -0,0 +1,12 @@
+import java.util.List;
+import java.util.function.BiConsumer;
+
+public interface IIndex {
+    String getTableName();
+    int getColumn();
+    String getType();
+    void insert(Object key, ITuple tuple);
+    void delete(Object key, ITuple tuple);
+    List<ITuple> lookup(Object key);
+    void forEach(BiConsumer<Object, List<ITuple>> action);
+}
@@ -0,0 +1,13 @@
+/**
+ * The latencies of a phase of the queries of a database, as a JMX MBean (see QueryMetrics)
+ */
+public interface ILatencyHistogram {
+    long getCount();
+    double getMeanMicros();
+    double getMaxMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getP999Micros();
+    void reset();
+}
@@ -1,7 +1,18 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * this is the IO utility class
@@ -14,10 +25,9 @@ public class IO {
      * Implement the following algorithm
      *
      * Open the csv file from the folder (corresponding to the tablename)
-     *   For each line in the csv file
-     *     Parse the line to get attribute values
+     *   For each row in the csv file (parsed into typed values by the csv reader)
      *     Create a new tuple with the schema of the table
-     *     Set the tuple values to the attribute values
+     *     Set the tuple values to the row values
      *     Add the tuple to the table
      * Close file
      *
@@ -28,35 +38,188 @@ public class IO {
      * @return
      */
     public static ITable readTable(String tablename, ISchema schema, String folder) {
-        ITable table=new Table(tablename,schema);
-        try(Scanner FileInput=new Scanner(new File(folder+"/"+tablename+".csv"))){
-            while(FileInput.hasNextLine()){
-                String line=FileInput.nextLine().trim();
-                ITuple tuple= new Tuple(schema);
-                int index=0;
-                String s="";
-                for(int i=0; i< line.length();i++){
-                    char current=line.charAt(i);
-                    if(current==','){
-                        index++;
-                        tuple.setValue(index,s.trim());
-                        s="";
-
-                    }else {
-                        s=s+current;
-                    }
-                }
-                if(!s.isEmpty()){
-                    tuple.setValue(index,s.trim());
+        return readTable(tablename,schema,folder,new Table(tablename,schema));
+    }
+
+    /**
+     * Reads the table's data from a csv file into the given (empty) table
+     * A table stored by column (or off the heap) receives the row values directly, without creating tuples
+     * @param tablename
+     * @param schema
+     * @param folder
+     * @param table
+     * @return
+     */
+    public static ITable readTable(String tablename, ISchema schema, String folder, ITable table) {
+        File file=new File(folder+"/"+tablename+".csv");
+        if(!file.exists()){
+            throw new RuntimeException(new FileNotFoundException(file.getPath()));
+        }
+        try(CsvReader reader=new CsvReader(file,schema)){
+            while(reader.hasNext()){
+                Object[] values=reader.next();
+                if(table instanceof ColumnarTable){
+                    ((ColumnarTable) table).addRow(values);
+                }else if(table instanceof OffHeapTable){
+                    ((OffHeapTable) table).addRow(values);
+                }else{
+                    ITuple tuple=new Tuple(schema);
+                    tuple.setValues(values);
+                    table.addTuple(tuple);
                 }
-                table.addTuple(tuple);
             }
+        }
+        return table;
+    }
+
+    /**
+     * Reads the rows of a table csv file between two byte positions (each at the start of a line)
+     * @param file
+     * @param schema
+     * @param start
+     * @param end
+     * @return the rows values, converted to the schema types
+     */
+    public static List<Object[]> readRows(File file, ISchema schema, long start, long end) {
+        return readRows(file,schema,start,end,1,false);
+    }
+
+    /**
+     * Reads the rows of a csv file between two byte positions (see above)
+     * @param file
+     * @param schema
+     * @param start
+     * @param end
+     * @param firstLine the number of the line at the start position (in the error messages)
+     * @param strict whether a row without exactly one value per attribute is an error (see CsvReader)
+     * @return the rows values, converted to the schema types
+     * @throws IllegalArgumentException if a value does not have its attribute type (or, if strict,
+     * a row does not have one value per attribute)
+     */
+    public static List<Object[]> readRows(File file, ISchema schema, long start, long end, long firstLine,
+            boolean strict) {
+        List<Object[]> rows=new ArrayList<>();
+        try(CsvReader reader=new CsvReader(file,schema,start,end,firstLine,strict)){
+            while(reader.hasNext()){
+                rows.add(reader.next());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the rows of a table csv file between two byte positions (each at the start of a line) as tuples
+     * @param file
+     * @param schema
+     * @param start
+     * @param end
+     * @return
+     */
+    public static List<ITuple> readTuples(File file, ISchema schema, long start, long end) {
+        List<ITuple> tuples=new ArrayList<>();
+        try(CsvReader reader=new CsvReader(file,schema,start,end)){
+            while(reader.hasNext()){
+                ITuple tuple=new Tuple(schema);
+                tuple.setValues(reader.next());
+                tuples.add(tuple);
+            }
+        }
+        return tuples;
+    }
 
-        }catch (FileNotFoundException e){
+    /**
+     * Splits a file into byte ranges of about splitSize bytes that start and end on row boundaries
+     * (a quoted field can span several lines, see CsvReader)
+     *
+     * Implements the following algorithm
+     *
+     * Start the first range at the beginning of the file
+     * For each byte of the file, tracking whether it is in a quoted field as CsvReader does
+     *   If it is a line break outside quotes at least splitSize bytes after the range start
+     *     End the current range after it and start the next one
+     * End the last range at the end of the file
+     *
+     * @param file
+     * @param splitSize
+     * @return the [start, end) positions of the ranges
+     */
+    public static List<long[]> splitFile(File file, long splitSize) {
+        List<long[]> ranges=new ArrayList<>();
+        long size=file.length();
+        try(InputStream in=new FileInputStream(file)){
+            byte[] buffer=new byte[1<<16];
+            long position=0;
+            long start=0;
+            boolean quoted=false;
+            boolean closing=false;
+            boolean fieldStart=true;
+            int n;
+            while((n=in.read(buffer))>0){
+                for(int i=0;i<n;i++){
+                    int b=buffer[i]&0xFF;
+                    if(quoted){
+                        if(!closing){
+                            closing=b=='"';
+                            continue;
+                        }
+                        closing=false;
+                        if(b=='"'){
+                            // a doubled quote in the value
+                            continue;
+                        }
+                        quoted=false;
+                        fieldStart=false;
+                    }
+                    if(b=='\n'){
+                        fieldStart=true;
+                        if(position+i>=start+splitSize){
+                            ranges.add(new long[]{start,position+i+1});
+                            start=position+i+1;
+                        }
+                    }else if(b==','){
+                        fieldStart=true;
+                    }else if(b=='"' && fieldStart){
+                        quoted=true;
+                    }else if(b>' ' && !(position+i<3 && b>=0x80)){
+                        // (the bytes of a byte order mark are skipped as blanks)
+                        fieldStart=false;
+                    }
+                }
+                position+=n;
+            }
+            if(start<size){
+                ranges.add(new long[]{start,size});
+            }
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return table;
+        return ranges;
+    }
 
+    /**
+     * Returns the number of lines of a file before a byte position
+     * @param file
+     * @param end
+     * @return
+     */
+    public static long countLines(File file, long end) {
+        long lines=0;
+        try(InputStream in=new BufferedInputStream(new FileInputStream(file))){
+            byte[] buffer=new byte[1<<16];
+            long position=0;
+            int n;
+            while(position<end && (n=in.read(buffer,0,(int) Math.min(buffer.length,end-position)))>0){
+                for(int i=0;i<n;i++){
+                    if(buffer[i]=='\n'){
+                        lines++;
+                    }
+                }
+                position+=n;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return lines;
     }
 
     /**
@@ -73,26 +236,126 @@ public class IO {
      * @param folder
      */
     public static void writeTable(ITable table, String folder) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(folder + "/" + table.getName() + ".csv")))) {
-           ISchema schema=table.getSchema();
-           int schemaSize=schema.getAttributes().size();
+        writeTable(table,new File(folder + "/" + table.getName() + ".csv"));
+    }
 
+    /**
+     * Writes the tuples of the table to a csv file, and forces the file to the disk
+     * @param table
+     * @param file
+     */
+    public static void writeTable(ITable table, File file) {
+        try (FileOutputStream out=new FileOutputStream(file);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out,StandardCharsets.UTF_8))) {
             for (ITuple t : table.getTuples()) {
-                StringBuilder line= new StringBuilder();
-                for (int i = 0; i < schemaSize; i++) {
-                    if (t.getValue(i) != null) {
-                        line.append(t.getValue(i).toString());
-                    }
-                    if (i <schemaSize-1) {
-                        line.append(",");
-                    }
-                }
-                writer.write(line.toString());
+                writer.write(csvLine(t.getValues()));
                 writer.newLine();
             }
+            writer.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates an empty file (or empties it) and forces it and its folder to the disk
+     * @param file
+     */
+    public static void createFile(File file) {
+        try (FileOutputStream out=new FileOutputStream(file)) {
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        syncFolder(file);
+    }
+
+    /**
+     * Replaces a file by another one in one atomic rename, and forces the folder to the disk
+     * @param source
+     * @param target
+     */
+    public static void replaceFile(File source, File target) {
+        try {
+            Files.move(source.toPath(),target.toPath(),StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        syncFolder(target);
+    }
+
+    /**
+     * Deletes a file, and forces its folder to the disk
+     * @param file
+     */
+    public static void deleteFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        syncFolder(file);
+    }
+
+    /**
+     * Writes a file whole or not at all: the content is written to a new temporary file next to it, forced to the disk
+     * and renamed to the file (see replaceFile), so a crash leaves either the old file or the new one
+     * (and maybe a temporary file, see deleteTemporaryFiles)
+     * @param file
+     * @param writer writes the content of the file
+     */
+    private static void writeFile(File file, IFileWriter writer) {
+        File temporary;
+        try {
+            temporary=File.createTempFile(file.getName()+".",".tmp",file.getAbsoluteFile().getParentFile());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try (FileOutputStream out=new FileOutputStream(temporary);
+             DataOutputStream data=new DataOutputStream(new BufferedOutputStream(out))) {
+            writer.write(data);
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            temporary.delete();
+            throw new RuntimeException(e);
+        }
+        replaceFile(temporary,file);
+    }
+
+    /**
+     * Writes the content of a file (see writeFile)
+     */
+    private interface IFileWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Deletes the temporary files of a table (of its indexes, statistics and dictionaries) left by a crash
+     * in the middle of their writes (see writeFile)
+     * @param tableName
+     * @param folder
+     */
+    public static void deleteTemporaryFiles(String tableName, String folder) {
+        File[] files=new File(folder).listFiles((dir,name)->name.startsWith(tableName+".") && name.endsWith(".tmp"));
+        if(files!=null){
+            for(File f: files){
+                deleteFile(f);
+            }
+        }
+    }
+
+    /**
+     * Forces the folder of the file to the disk, so that the file creations, renames and deletions survive a crash
+     * (not all file systems allow it, the folder is then left to the OS)
+     */
+    private static void syncFolder(File file) {
+        try (FileChannel folder=FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(),StandardOpenOption.READ)) {
+            folder.force(true);
+        } catch (IOException e) {
+            // folders cannot be opened for sync on some platforms
+        }
     }
 
 
@@ -128,29 +391,466 @@ public class IO {
      *
      * Implements the following algorithm
      *
-     * Open the csv file from the folder (corresponding to the tablename)
+     * Open the csv file from the folder (corresponding to the tablename) in append mode
      * Append the tuple (as array of strings) in the csv format to the file
+     * (Database inserts go through the write-ahead log instead, see Database.insertData)
      *
      * @param tableName
      * @param values
      * @param folder
      */
     public static void writeTuple(String tableName, Object[] values, String folder) {
-        try(BufferedWriter writer= new BufferedWriter(new FileWriter(new File(folder+"/"+tableName+".csv")))){
-            for(int i=0;i< values.length;i++){
-                if(values[i]!=null){
-                    writer.write(values[i].toString());
-                }
-                if(i< values.length-1){
-                    writer.write(",");
-                }
-            }
+        try(BufferedWriter writer= new BufferedWriter(new FileWriter(new File(folder+"/"+tableName+".csv"),true))){
+            writer.write(csvLine(values));
             writer.newLine();
         }catch(IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Formats values as a csv line (without the line break), as read back by CsvReader:
+     * a null value is an empty field, a value that is empty, has a comma, a quote, a line break or
+     * spaces around it is quoted (quotes doubled)
+     * @param values
+     * @return
+     */
+    public static String csvLine(Object[] values) {
+        StringBuilder line=new StringBuilder();
+        for(int i=0;i<values.length;i++){
+            if(i>0){
+                line.append(',');
+            }
+            if(values[i]==null){
+                continue;
+            }
+            String value=values[i].toString();
+            boolean quote=value.isEmpty() || !value.trim().equals(value) || value.charAt(0)=='"';
+            for(int j=0;j<value.length() && !quote;j++){
+                char c=value.charAt(j);
+                quote=c==',' || c=='\n' || c=='\r';
+            }
+            if(quote){
+                line.append('"').append(value.replace("\"","\"\"")).append('"');
+            }else{
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Writes an index to its file in the folder (tablename.attribute.idx), next to the table csv file
+     * Tuples are stored as their position in the table, so the file is only valid for the table as it is now:
+     * it keeps the version of the table file (see fileVersion) it was written for
+     * @param index
+     * @param table
+     * @param tableFile the file the table was read from (or is written to), as it is now
+     * @param folder
+     */
+    public static void writeIndex(IIndex index, ITable table, File tableFile, String folder) {
+        writeIndexes(Collections.singletonList(index),table,tableFile,folder);
+    }
+
+    /**
+     * Writes the indexes of a table to their files in the folder (see writeIndex)
+     *
+     * Implements the following algorithm
+     *
+     * Number the tuples of the table by position (once for all the indexes)
+     * For each index
+     *   Open a temporary file next to the index file (renamed to the index file once written, see writeFile)
+     *   Write the index type, the attribute index, the version of the table file and the number of tuples in the table
+     *   For each key of the index (in index order)
+     *     Write the key and the positions of its tuples in the table (tuples not in the table are skipped,
+     *     keys left without tuples are not written)
+     *
+     * @param indexes
+     * @param table
+     * @param tableFile the file the table was read from (or is written to), as it is now
+     * @param folder
+     */
+    public static void writeIndexes(List<IIndex> indexes, ITable table, File tableFile, String folder) {
+        if(indexes.isEmpty()){
+            return;
+        }
+        long[] version=fileVersion(tableFile);
+        List<ITuple> tuples=table.getTuples();
+        Map<ITuple,Integer> positions=new HashMap<>(tuples.size()*4/3+1);
+        for(int i=0;i<tuples.size();i++){
+            positions.put(tuples.get(i),i);
+        }
+        for(IIndex index: indexes){
+            File file=indexFile(index.getTableName(),table.getSchema().getName(index.getColumn()),folder);
+            writeFile(file,out->{
+                out.writeUTF(index.getType());
+                out.writeInt(index.getColumn());
+                out.writeLong(version[0]);
+                out.writeLong(version[1]);
+                out.writeInt(tuples.size());
+                List<Object> keys=new ArrayList<>();
+                List<int[]> values=new ArrayList<>();
+                index.forEach((k,v)->{
+                    // the index of a versioned table also has the deleted versions not reclaimed yet
+                    int[] written=new int[v.size()];
+                    int n=0;
+                    for(ITuple t: v){
+                        Integer position=positions.get(t);
+                        if(position!=null){
+                            written[n++]=position;
+                        }
+                    }
+                    if(n>0){
+                        keys.add(k);
+                        values.add(n==written.length?written:Arrays.copyOf(written,n));
+                    }
+                });
+                out.writeInt(keys.size());
+                for(int i=0;i<keys.size();i++){
+                    writeValue(out,keys.get(i));
+                    out.writeInt(values.get(i).length);
+                    for(int position: values.get(i)){
+                        out.writeInt(position);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads an index file written by writeIndex for the given table
+     * Returns null if the file does not match the table anymore (it was written for another version of the table
+     * file, or the table has a different number of tuples) or cannot be read, the index then has to be rebuilt
+     * from the table
+     *
+     * @param file
+     * @param table
+     * @param tableFile the file the table was read from
+     * @return
+     */
+    public static IIndex readIndex(File file, ITable table, File tableFile) {
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            String type=in.readUTF();
+            int column=in.readInt();
+            long[] version=fileVersion(tableFile);
+            List<ITuple> tuples=table.getTuples();
+            if(in.readLong()!=version[0] || in.readLong()!=version[1] || in.readInt()!=tuples.size()){
+                return null;
+            }
+            int count=in.readInt();
+            if(count<0 || count>tuples.size()){
+                return null;
+            }
+            List<Object> keys=new ArrayList<>(count);
+            List<List<ITuple>> values=new ArrayList<>(count);
+            for(int i=0;i<count;i++){
+                keys.add(readValue(in));
+                int n=in.readInt();
+                if(n<0 || n>tuples.size()){
+                    return null;
+                }
+                List<ITuple> list=new ArrayList<>(n);
+                for(int j=0;j<n;j++){
+                    list.add(tuples.get(in.readInt()));
+                }
+                values.add(list);
+            }
+            if(type.equals("BTREE")){
+                BPlusTreeIndex index=new BPlusTreeIndex(table.getName(),column);
+                index.bulkLoad(keys,values);
+                return index;
+            }
+            IIndex index=new HashIndex(table.getName(),column);
+            for(int i=0;i<count;i++){
+                for(ITuple t: values.get(i)){
+                    index.insert(keys.get(i),t);
+                }
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            // a file cut short (or damaged) is as stale as a file written for another table file
+            return null;
+        }
+    }
+
+    /**
+     * Returns the version of a table file: its length and last modification time
+     * A table file is only ever written whole (to a temporary file renamed to it, see replaceFile), so a table file
+     * written by another checkpoint, or changed outside of the database, has another version
+     * @param file
+     * @return {length, last modified in nanoseconds}, {0, 0} if there is no file
+     */
+    public static long[] fileVersion(File file) {
+        try {
+            BasicFileAttributes attributes=Files.readAttributes(file.toPath(),BasicFileAttributes.class);
+            return new long[]{attributes.size(),attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)};
+        } catch (IOException e) {
+            return new long[]{0,0};
+        }
+    }
+
+    /**
+     * Returns the type (HASH or BTREE) of the index stored in the file, or null if the file cannot be read
+     * @param file
+     * @return
+     */
+    public static String readIndexType(File file) {
+        try(DataInputStream in=new DataInputStream(new FileInputStream(file))){
+            String type=in.readUTF();
+            return type.equals("HASH") || type.equals("BTREE")?type:null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the files of the indexes of a table in the folder
+     * @param tableName
+     * @param folder
+     * @return
+     */
+    public static File[] indexFiles(String tableName, String folder) {
+        File[] files=new File(folder).listFiles((dir,name)->name.startsWith(tableName+".") && name.endsWith(".idx"));
+        return files==null?new File[0]:files;
+    }
+
+    /**
+     * Returns the file of the index on the attribute of the table
+     * @param tableName
+     * @param attribute
+     * @param folder
+     * @return
+     */
+    public static File indexFile(String tableName, String attribute, String folder) {
+        return new File(folder+"/"+tableName+"."+attribute+".idx");
+    }
+
+    /**
+     * Writes the statistics of a table to its statistics file (table.stats, next to the schema file)
+     *
+     * Implements the following algorithm
+     *
+     * Write the number of rows and of attributes
+     * For each attribute
+     *   Write its type, number of nulls, min and max values
+     *   Write the registers of its distinct count sketch
+     *   Write the bounds and counts of its histogram (if it has one)
+     *
+     * @param statistics
+     * @param tableName
+     * @param folder
+     */
+    public static void writeStatistics(TableStatistics statistics, String tableName, String folder) {
+        writeFile(statisticsFile(tableName,folder),out->{
+            out.writeLong(statistics.getRowCount());
+            out.writeInt(statistics.getColumnCount());
+            for(int i=0;i<statistics.getColumnCount();i++){
+                ColumnStatistics column=statistics.getColumn(i);
+                out.writeUTF(column.getType());
+                out.writeLong(column.getNullCount());
+                out.writeBoolean(column.getMin()!=null);
+                if(column.getMin()!=null){
+                    writeValue(out,column.getMin());
+                    writeValue(out,column.getMax());
+                }
+                out.write(column.getDistinct().getRegisters());
+                double[] bounds=column.getBounds();
+                out.writeInt(bounds==null?0:column.getCounts().length);
+                if(bounds!=null){
+                    for(double b: bounds){
+                        out.writeDouble(b);
+                    }
+                    for(long c: column.getCounts()){
+                        out.writeLong(c);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the statistics file of a table written by writeStatistics
+     * Returns null if there is no file, it does not match the table anymore (the table has a different number
+     * of tuples or attributes) or it cannot be read, the statistics then have to be computed again from the table
+     *
+     * @param table
+     * @param folder
+     * @return
+     */
+    public static TableStatistics readStatistics(ITable table, String folder) {
+        File file=statisticsFile(table.getName(),folder);
+        if(!file.exists()){
+            return null;
+        }
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            long rows=in.readLong();
+            int count=in.readInt();
+            if(rows!=table.getTuples().size() || count!=table.getSchema().getAttributes().size()){
+                return null;
+            }
+            ColumnStatistics[] columns=new ColumnStatistics[count];
+            for(int i=0;i<count;i++){
+                String type=in.readUTF();
+                long nulls=in.readLong();
+                Object min=null;
+                Object max=null;
+                if(in.readBoolean()){
+                    min=readValue(in);
+                    max=readValue(in);
+                }
+                byte[] registers=new byte[1<<HyperLogLog.PRECISION];
+                in.readFully(registers);
+                int buckets=in.readInt();
+                double[] bounds=null;
+                long[] counts=null;
+                if(buckets>0){
+                    bounds=new double[buckets+1];
+                    counts=new long[buckets];
+                    for(int b=0;b<=buckets;b++){
+                        bounds[b]=in.readDouble();
+                    }
+                    for(int b=0;b<buckets;b++){
+                        counts[b]=in.readLong();
+                    }
+                }
+                columns[i]=new ColumnStatistics(type,nulls,min,max,new HyperLogLog(registers),bounds,counts);
+            }
+            return new TableStatistics(rows,columns);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the statistics file of the table
+     * @param tableName
+     * @param folder
+     * @return
+     */
+    public static File statisticsFile(String tableName, String folder) {
+        return new File(folder+"/"+tableName+".stats");
+    }
+
+    /**
+     * Writes the dictionaries of the String attributes of a table stored by tuple to its dictionary file
+     * (see StringDictionary), so that the next load keeps the codes of the values and does not encode
+     * the attributes with too many distinct values
+     *
+     * Implements the following algorithm
+     *
+     * Open a temporary file next to the dictionary file (renamed to the dictionary file once written, see writeFile)
+     * Write the number of attributes
+     * For each attribute
+     *   Write whether it has a dictionary
+     *   If it has one, write whether it is encoded, then the number of values and the values in code order
+     *
+     * @param table
+     * @param folder
+     */
+    public static void writeDictionaries(VersionedTable table, String folder) {
+        StringDictionary[] dictionaries=table.getDictionaries();
+        writeFile(dictionaryFile(table.getName(),folder),out->{
+            out.writeInt(dictionaries.length);
+            for(StringDictionary dictionary: dictionaries){
+                out.writeBoolean(dictionary!=null);
+                if(dictionary!=null){
+                    out.writeBoolean(dictionary.isEncoded());
+                    List<String> values=dictionary.values();
+                    out.writeInt(values.size());
+                    for(String v: values){
+                        out.writeUTF(v);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the dictionary file of a table written by writeDictionaries into the (empty) dictionaries of the table
+     * Returns false if there is no file, it does not match the table schema or it cannot be read (the dictionaries
+     * are then left empty), the dictionaries are then built from the values as they are added
+     *
+     * @param table
+     * @param folder
+     * @return
+     */
+    public static boolean readDictionaries(VersionedTable table, String folder) {
+        File file=dictionaryFile(table.getName(),folder);
+        if(!file.exists()){
+            return false;
+        }
+        StringDictionary[] dictionaries=table.getDictionaries();
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt()!=dictionaries.length){
+                return false;
+            }
+            List<List<String>> values=new ArrayList<>();
+            boolean[] encoded=new boolean[dictionaries.length];
+            for(int i=0;i<dictionaries.length;i++){
+                if(in.readBoolean()!=(dictionaries[i]!=null)){
+                    return false;
+                }
+                List<String> column=new ArrayList<>();
+                if(dictionaries[i]!=null){
+                    encoded[i]=in.readBoolean();
+                    int n=in.readInt();
+                    for(int j=0;j<n;j++){
+                        column.add(in.readUTF());
+                    }
+                }
+                values.add(column);
+            }
+            for(int i=0;i<dictionaries.length;i++){
+                if(dictionaries[i]==null){
+                    continue;
+                }
+                if(!encoded[i]){
+                    dictionaries[i].drop();
+                }
+                for(String v: values.get(i)){
+                    dictionaries[i].intern(v);
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the dictionary file of a table
+     * @param tableName
+     * @param folder
+     * @return
+     */
+    public static File dictionaryFile(String tableName, String folder) {
+        return new File(folder+"/"+tableName+".dict");
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if(value instanceof Integer){
+            out.writeByte(2);
+            out.writeInt((Integer) value);
+        }else if(value instanceof Double){
+            out.writeByte(3);
+            out.writeDouble((Double) value);
+        }else{
+            out.writeByte(1);
+            out.writeUTF(value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag=in.readByte();
+        if(tag==2){
+            return in.readInt();
+        }else if(tag==3){
+            return in.readDouble();
+        }
+        return in.readUTF();
+    }
+
+
     /**
      * Reads and parses the schema, creates schema objects and (empty) tables and adds them to the provided database
      * The schema is stored in a text file:
@@ -177,14 +877,15 @@ public class IO {
             while(scanner.hasNextLine()){
                 String line=scanner.nextLine().trim();
                 if(line.length()>0){
-                    String[]seperate=line.split(" ");
-                    String TName= seperate[0];
+                    int open=line.indexOf('(');
+                    String TName= line.substring(0,open).trim();
+                    String[]seperate=line.substring(open+1,line.lastIndexOf(')')).split(",");
                     Map<Integer,String> attributes= new HashMap<>();
-                    for(int i=1;i<seperate.length;i++){
-                        String[]attPart=seperate[i].split(":");
-                        String AName= attPart[0];
-                        String AType= attPart[1];
-                        attributes.put(i-1,AName+":"+AType);
+                    for(int i=0;i<seperate.length;i++){
+                        String[]attPart=seperate[i].trim().split(":");
+                        String AName= attPart[0].trim();
+                        String AType= attPart[1].trim();
+                        attributes.put(i,AName+":"+AType);
                     }
                     ISchema schema=new Schema(attributes);
                     ITable table= new Table(TName,schema);
@@ -0,0 +1,10 @@
+/**
+ * Interface for a parsed query (SelectQuery, InsertQuery or DeleteQuery, see Parser)
+ */
+public interface IQuery {
+    /**
+     * Returns the name of the table the query reads (the from table of a select) or changes
+     * @return
+     */
+    String getTable();
+}
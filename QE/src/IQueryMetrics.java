@@ -0,0 +1,18 @@
+/**
+ * The counters of the queries of a database, as a JMX MBean (see QueryMetrics)
+ */
+public interface IQueryMetrics {
+    long getQueries();
+    long getFailedQueries();
+    long getSlowQueries();
+    long getRowsScanned();
+    long getRowsReturned();
+    long getBytesRead();
+    long getIndexHits();
+    long getSlowQueryLogFailures();
+    long getBackgroundFailures();
+    String getLastBackgroundFailure();
+    long getSlowQueryThresholdMillis();
+    void setSlowQueryThresholdMillis(long slowQueryThresholdMillis);
+    void reset();
+}
@@ -0,0 +1,5 @@
+import java.util.List;
+
+public interface IRangeIndex extends IIndex {
+    List<ITuple> range(Object low, boolean lowInclusive, Object high, boolean highInclusive);
+}
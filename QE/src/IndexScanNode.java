@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads the tuples of a table matching a condition attribute operator value from an index on the attribute
+ */
+class IndexScanNode extends PlanNode {
+    private ITable table;
+    private IIndex index;
+    private String operator;
+    private Object value;
+    private int parameter=-1;
+    private Iterator<ITuple> iterator;
+
+    /**
+     * constructor
+     * @param table
+     * @param index
+     * @param operator one of =, <, <=, >, >= (only = for an index that is not an IRangeIndex)
+     * @param value the value, converted to the attribute type
+     */
+    public IndexScanNode(ITable table, IIndex index, String operator, Object value) {
+        this.table=table;
+        this.index=index;
+        this.operator=operator;
+        this.value=value;
+    }
+
+    /**
+     * Makes the value the value of a ? placeholder of a prepared query, set when the parameters are bound
+     * @param parameter the parameter number (from 0)
+     */
+    void setParameter(int parameter) {
+        this.parameter=parameter;
+        this.value=null;
+    }
+
+    @Override
+    void bindParameters(Object[] values) throws InvalidQueryException {
+        if(parameter!=-1){
+            if(values[parameter]==null){
+                throw new InvalidQueryException("Parameter "+(parameter+1)+" of a condition cannot be null");
+            }
+            this.value=Database.parseValue(table.getSchema().getType(index.getColumn()),values[parameter].toString());
+        }
+    }
+
+        @Override
+    String getName() {
+        return table.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return table.getSchema();
+    }
+
+    @Override
+    long getIndexHits() {
+        return Math.max(0,getActualRows());
+    }
+
+    @Override
+    StringDictionary[] getDictionaries() {
+        return table instanceof VersionedTable?((VersionedTable) table).getDictionaries():null;
+    }
+
+    @Override
+    ITable execute() {
+        ITable result=new Table(table.getName(),table.getSchema());
+        for(ITuple t: lookup()){
+            result.addTuple(t);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the tuples from the index as they are pulled
+     */
+    @Override
+    void openNode() {
+        this.iterator=lookup().iterator();
+    }
+
+    @Override
+    ITuple nextTuple() {
+        return iterator.hasNext()?iterator.next():null;
+    }
+
+    @Override
+    void closeNode() {
+        this.iterator=null;
+    }
+
+    /**
+     * Returns the tuples of the index matching the condition, for a versioned table the versions seen by the
+     * snapshot, read under the index latch
+     */
+    private Iterable<ITuple> lookup() {
+        if(value==null){
+            throw new IllegalStateException("The parameter of the index lookup is not bound");
+        }
+        if(table instanceof VersionedTable){
+            VersionedTable versioned=(VersionedTable) table;
+            long snapshot=getSnapshot()<0?versioned.getCommitted():getSnapshot();
+            List<ITuple> visible=new ArrayList<>();
+            versioned.getIndexLatch().readLock().lock();
+            try {
+                for(ITuple t: lookupIndex()){
+                    if(VersionedTable.isVisible(t,snapshot)){
+                        visible.add(t);
+                    }
+                }
+            } finally {
+                versioned.getIndexLatch().readLock().unlock();
+            }
+            return visible;
+        }
+        return lookupIndex();
+    }
+
+    private List<ITuple> lookupIndex() {
+        if(operator.equals("=")){
+            return index.lookup(value);
+        }
+        IRangeIndex range=(IRangeIndex) index;
+        switch(operator){
+            case "<": return range.range(null,false,value,false);
+            case "<=": return range.range(null,false,value,true);
+            case ">": return range.range(value,false,null,false);
+            default: return range.range(value,true,null,false);
+        }
+    }
+
+    @Override
+    String describe() {
+        return "IndexScan "+table.getName()+" using "+index.getType()+" index ["
+                +table.getSchema().getName(index.getColumn())+" "+operator+" "+(value==null?"?":value)+"]";
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed insert query: the table, the attributes given values and the rows of values (as written in the query)
+ */
+class InsertQuery implements IQuery {
+    private String table;
+    private List<String> attributes=new ArrayList<>();
+    private List<List<String>> rows=new ArrayList<>();
+    private List<int[]> parameters=new ArrayList<>();
+
+    public String getTable() {
+        return this.table;
+    }
+
+    /**
+     * Returns the attributes of the attribute list, or an empty list if the query has none (all the attributes
+     * are given values, in schema order)
+     * @return
+     */
+    public List<String> getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * Returns the rows of values, a value is null for an unquoted NULL
+     * @return
+     */
+    public List<List<String>> getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the positions of the ? placeholders as {row, value index in the row}, in the order of the query
+     * (their value in getRows is null)
+     * @return
+     */
+    public List<int[]> getParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * Parses an insert query
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static InsertQuery parse(String query) throws InvalidQueryException {
+        Parser parser=new Parser(query);
+        if(!parser.getLexer().isWord("INSERT")){
+            throw parser.error("INSERT");
+        }
+        InsertQuery result=parse(parser);
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Parses an insert query from the insert keyword
+     * INSERT INTO table [(attribute, ...)] VALUES (value, ...) [, (value, ...) ...]
+     * Values can be quoted ('a, b' or 'it''s'), an unquoted NULL is a null value, an unquoted ? is a placeholder
+     * for a value bound later (see PreparedQuery), other unquoted values are the words up to the next comma
+     *
+     * Implements the following algorithm
+     *
+     * Read the insert into keywords and the table name
+     * If there is an attribute list
+     *   Read the attribute names
+     * Read the values keyword
+     * Do
+     *   Read a row: the values between parentheses, separated by commas
+     *   If the row has a different number of values than the attribute list
+     *     Throw an invalid query exception
+     * While there is a comma
+     *
+     * @param parser
+     * @return
+     * @throws InvalidQueryException
+     */
+    static InsertQuery parse(Parser parser) throws InvalidQueryException {
+        InsertQuery result=new InsertQuery();
+        parser.expect("INSERT");
+        parser.expect("INTO");
+        result.table=parser.name("table");
+        if(parser.symbol("(")){
+            do {
+                result.attributes.add(parser.name("attribute"));
+            } while(parser.symbol(","));
+            parser.expectSymbol(")");
+        }
+        parser.expect("VALUES");
+        do {
+            parser.expectSymbol("(");
+            List<String> row=new ArrayList<>(Math.max(4,result.attributes.size()));
+            do {
+                row.add(value(parser,result,row.size()));
+            } while(parser.symbol(","));
+            parser.expectSymbol(")");
+            if(!result.attributes.isEmpty() && row.size()!=result.attributes.size()){
+                throw new InvalidQueryException("The number of values does not match the attributes: "+row);
+            }
+            result.rows.add(row);
+        } while(parser.symbol(","));
+        return result;
+    }
+
+    /**
+     * Reads a value of a row, records it if it is a placeholder
+     */
+    private static String value(Parser parser, InsertQuery result, int index) throws InvalidQueryException {
+        Lexer lexer=parser.getLexer();
+        if(lexer.getType()==Lexer.QUOTED){
+            String value=lexer.value();
+            lexer.next();
+            return value;
+        }
+        if(lexer.getType()!=Lexer.WORD){
+            throw parser.error("value");
+        }
+        if(lexer.isWord("NULL") || lexer.isWord("?")){
+            if(lexer.isWord("?")){
+                result.parameters.add(new int[]{result.rows.size(),index});
+                parser.nextParameter();
+            }
+            lexer.next();
+            return null;
+        }
+        // an unquoted value can have several words (John Smith)
+        int start=lexer.getStart();
+        int end=lexer.getEnd();
+        for(lexer.next();lexer.getType()==Lexer.WORD;lexer.next()){
+            end=lexer.getEnd();
+        }
+        return lexer.getText().substring(start,end);
+    }
+}
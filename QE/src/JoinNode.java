@@ -0,0 +1,61 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash join of its two children on left attribute = right attribute
+ */
+class JoinNode extends PlanNode {
+    private PlanNode left;
+    private PlanNode right;
+    private int leftCol;
+    private int rightCol;
+    private ISchema schema;
+    private int memoryBudget;
+    private File spillFolder;
+
+    /**
+     * constructor
+     * @param left
+     * @param right
+     * @param leftCol the join attribute index in the left schema
+     * @param rightCol the join attribute index in the right schema
+     * @param memoryBudget
+     * @param spillFolder
+     */
+    public JoinNode(PlanNode left, PlanNode right, int leftCol, int rightCol, int memoryBudget, File spillFolder) {
+        this.left=left;
+        this.right=right;
+        this.leftCol=leftCol;
+        this.rightCol=rightCol;
+        this.memoryBudget=memoryBudget;
+        this.spillFolder=spillFolder;
+        this.schema=HashJoin.joinSchema(left.getName(),left.getSchema(),right.getName(),right.getSchema());
+    }
+
+    @Override
+    String getName() {
+        return left.getName()+"_"+right.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return this.schema;
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Arrays.asList(left,right);
+    }
+
+    @Override
+    ITable execute() {
+        return new HashJoin(memoryBudget,spillFolder).join(left.run(),leftCol,right.run(),rightCol);
+    }
+
+    @Override
+    String describe() {
+        return "HashJoin ["+schema.getName(leftCol)+" = "
+                +schema.getName(left.getSchema().getAttributes().size()+rightCol)+"]";
+    }
+}
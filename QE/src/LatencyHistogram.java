@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with a bounded relative error (HDR histogram layout)
+ *
+ * Values below 2^SUB_BITS have a bucket each; above, every power of two range is split into 2^(SUB_BITS-1) buckets
+ * of equal width, so a value is counted in a bucket at most 1/2^(SUB_BITS-1) (0.8%) wider than itself whatever
+ * its magnitude. The histogram has a fixed size (about 7300 counters) and recording a value is a single atomic
+ * increment, so it can be shared by concurrent queries
+ */
+class LatencyHistogram implements ILatencyHistogram {
+    private static final int SUB_BITS=8;
+    private static final int HALF=1<<(SUB_BITS-1);
+    private static final int BUCKETS=(64-SUB_BITS)*HALF+(1<<SUB_BITS);
+
+    private final AtomicLongArray counts=new AtomicLongArray(BUCKETS);
+    private final LongAdder count=new LongAdder();
+    private final LongAdder sum=new LongAdder();
+    private final AtomicLong max=new AtomicLong();
+
+    /**
+     * Records a latency
+     * @param nanos
+     */
+    void record(long nanos) {
+        long v=Math.max(0,nanos);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulateAndGet(v,Math::max);
+    }
+
+    /**
+     * Returns the bucket of a value
+     *
+     * Implements the following algorithm
+     *
+     * If the value is below 2^SUB_BITS, its bucket is the value
+     * Else
+     *   Let shift be the number of low bits dropped to keep the SUB_BITS highest bits of the value
+     *   Return shift * 2^(SUB_BITS-1) + the SUB_BITS highest bits of the value (at least 2^(SUB_BITS-1))
+     */
+    private static int bucket(long value) {
+        int high=63-Long.numberOfLeadingZeros(value);
+        if(high<SUB_BITS){
+            return (int) value;
+        }
+        int shift=high-SUB_BITS+1;
+        return shift*HALF+(int) (value>>>shift);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket
+     */
+    private static long highestValue(int bucket) {
+        if(bucket<1<<SUB_BITS){
+            return bucket;
+        }
+        int shift=bucket/HALF-1;
+        long sub=bucket-(long) shift*HALF;
+        return ((sub+1)<<shift)-1;
+    }
+
+    /**
+     * Returns the latency at or below which the given percentage of the recorded latencies are (within the
+     * histogram precision), 0 if nothing was recorded
+     * @param percentile between 0 and 100
+     * @return
+     */
+    long percentile(double percentile) {
+        long total=count.sum();
+        if(total==0){
+            return 0;
+        }
+        long rank=Math.max(1,(long) Math.ceil(percentile/100*total));
+        long seen=0;
+        for(int i=0;i<BUCKETS;i++){
+            seen+=counts.get(i);
+            if(seen>=rank){
+                return Math.min(highestValue(i),max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n=count.sum();
+        return n==0?0:sum.sum()/(double) n/1000;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get()/1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentile(50)/1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return percentile(90)/1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentile(99)/1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentile(99.9)/1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for(int i=0;i<BUCKETS;i++){
+            counts.set(i,0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * Splits the text of a query into tokens in one pass, without copying it: the current token is its type
+ * and its start and end in the text, and only the values the parser keeps are copied (see value)
+ *
+ * Tokens are
+ * words: runs of characters other than spaces, quotes and symbols (keywords, names, numbers, ? and *)
+ * quoted values: 'a b' ('it''s' is the value it's)
+ * symbols: ( ) , ; = != <> < <= > >=
+ * hints: the text of a /*+ ... *&#47; comment (other comments, /* ... *&#47; and -- to the end of the line, are skipped)
+ */
+class Lexer {
+    static final int END=0;
+    static final int WORD=1;
+    static final int QUOTED=2;
+    static final int SYMBOL=3;
+    static final int HINT=4;
+
+    private String text;
+    private int limit;
+    private int position;
+    private int type;
+    private int start;
+    private int end;
+    private boolean escaped;
+
+    /**
+     * constructor, reads the first token
+     * @param text
+     * @throws InvalidQueryException
+     */
+    public Lexer(String text) throws InvalidQueryException {
+        this(text,0,text.length());
+    }
+
+    /**
+     * constructor, reads the first token of the part of the text from (inclusive) to to (exclusive)
+     * @param text
+     * @param from
+     * @param to
+     * @throws InvalidQueryException
+     */
+    public Lexer(String text, int from, int to) throws InvalidQueryException {
+        this.text=text;
+        this.position=from;
+        this.limit=to;
+        next();
+    }
+
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Returns the type of the current token (END after the last token)
+     * @return
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the start of the current token in the text (for a quoted value or a hint, after the opening quote
+     * or comment)
+     * @return
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Returns the end (exclusive) of the current token in the text
+     * @return
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Reads the next token
+     *
+     * Implements the following algorithm
+     *
+     * Skip the spaces and comments
+     * If the text is read
+     *   The token is the end
+     * Else if the character is a quote
+     *   The token is the text up to the closing quote (a doubled quote is a quote in the value)
+     *   If there is no closing quote
+     *     Throw an invalid query exception
+     * Else if the characters are a symbol
+     *   The token is the symbol (the longest one)
+     * Else
+     *   The token is the word up to the next space, quote or symbol
+     *
+     * @throws InvalidQueryException
+     */
+    public void next() throws InvalidQueryException {
+        escaped=false;
+        while(position<limit){
+            char c=text.charAt(position);
+            if(Character.isWhitespace(c)){
+                position++;
+            }else if(c=='-' && position+1<limit && text.charAt(position+1)=='-'){
+                while(position<limit && text.charAt(position)!='\n'){
+                    position++;
+                }
+            }else if(c=='/' && position+1<limit && text.charAt(position+1)=='*'){
+                int close=text.indexOf("*/",position+2);
+                if(close==-1 || close+2>limit){
+                    throw new InvalidQueryException("Unclosed comment at position "+position+": "+text);
+                }
+                boolean hint=position+2<close && text.charAt(position+2)=='+';
+                int from=position+(hint?3:2);
+                position=close+2;
+                if(hint){
+                    set(HINT,from,close);
+                    return;
+                }
+            }else{
+                break;
+            }
+        }
+        if(position>=limit){
+            set(END,limit,limit);
+            return;
+        }
+        char c=text.charAt(position);
+        if(c=='\''){
+            int i=position+1;
+            while(true){
+                if(i>=limit){
+                    throw new InvalidQueryException("Unclosed quote at position "+position+": "+text);
+                }
+                if(text.charAt(i)=='\''){
+                    if(i+1<limit && text.charAt(i+1)=='\''){
+                        escaped=true;
+                        i+=2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            set(QUOTED,position+1,i);
+            position=i+1;
+        }else if(c=='(' || c==')' || c==',' || c==';' || c=='='){
+            set(SYMBOL,position,position+1);
+            position++;
+        }else if(c=='<' || c=='>' || c=='!'){
+            int e=position+1;
+            if(e<limit && (text.charAt(e)=='=' || (c=='<' && text.charAt(e)=='>'))){
+                e++;
+            }else if(c=='!'){
+                throw new InvalidQueryException("Unexpected ! at position "+position+": "+text);
+            }
+            set(SYMBOL,position,e);
+            position=e;
+        }else{
+            int e=position;
+            while(e<limit && !isDelimiter(text.charAt(e))){
+                e++;
+            }
+            set(WORD,position,e);
+            position=e;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c=='(' || c==')' || c==',' || c==';' || c=='=' || c=='<' || c=='>'
+                || c=='!' || c=='\'';
+    }
+
+    private void set(int type, int start, int end) {
+        this.type=type;
+        this.start=start;
+        this.end=end;
+    }
+
+    /**
+     * Returns whether the current token is the given word, ignoring case
+     * @param keyword
+     * @return
+     */
+    public boolean isWord(String keyword) {
+        // compare the first character (ignoring case) before the whole word
+        return type==WORD && end-start==keyword.length() && (text.charAt(start)&~0x20)==(keyword.charAt(0)&~0x20)
+                && text.regionMatches(true,start,keyword,0,keyword.length());
+    }
+
+    /**
+     * Returns whether the current token is the given symbol
+     * @param symbol
+     * @return
+     */
+    public boolean isSymbol(String symbol) {
+        return type==SYMBOL && end-start==symbol.length() && text.startsWith(symbol,start);
+    }
+
+    /**
+     * Returns whether the current token is one of the given words, ignoring case
+     * @param keywords
+     * @return
+     */
+    public boolean isOneOf(String[] keywords) {
+        for(String keyword: keywords){
+            if(isWord(keyword)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the current token is one of the given symbols
+     * @param symbols
+     * @return
+     */
+    public boolean isOneOfSymbols(String[] symbols) {
+        for(String symbol: symbols){
+            if(isSymbol(symbol)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of the current token (a quoted value without its quotes)
+     * @return
+     */
+    public String value() {
+        if(!escaped){
+            return text.substring(start,end);
+        }
+        StringBuilder value=new StringBuilder(end-start);
+        for(int i=start;i<end;i++){
+            char c=text.charAt(i);
+            value.append(c);
+            if(c=='\''){
+                // doubled quote
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Parses the current token as a non negative int (up to 9 digits), returns -1 if it is not one
+     * @return
+     */
+    public int intValue() {
+        if(type!=WORD || end-start>9){
+            return -1;
+        }
+        int value=0;
+        for(int i=start;i<end;i++){
+            char c=text.charAt(i);
+            if(c<'0' || c>'9'){
+                return -1;
+            }
+            value=value*10+(c-'0');
+        }
+        return end>start?value:-1;
+    }
+
+    /**
+     * Returns a description of the current token for error messages
+     * @return
+     */
+    public String describe() {
+        return type==END?"end of query":"'"+text.substring(type==QUOTED?start-1:start,type==QUOTED?end+1:end)
+                +"' at position "+start;
+    }
+}
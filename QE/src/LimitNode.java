@@ -0,0 +1,93 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Skips the first offset tuples of its child and keeps at most limit tuples after them (limit clause)
+ * The tuples are pulled from the child (see PlanNode.open), so a scan, filter or projection below stops
+ * being read once the limit is reached
+ */
+class LimitNode extends PlanNode {
+    private PlanNode child;
+    private int limit;
+    private int offset;
+    private int skipped;
+    private int returned;
+
+    /**
+     * constructor
+     * @param child
+     * @param limit the maximum number of tuples, -1 for no limit
+     * @param offset the number of tuples skipped
+     */
+    public LimitNode(PlanNode child, int limit, int offset) {
+        this.child=child;
+        this.limit=limit;
+        this.offset=offset;
+        double rows=Math.max(0,child.getEstimatedRows()-offset);
+        setEstimatedRows(limit<0?rows:Math.min(rows,limit));
+    }
+
+    @Override
+    String getName() {
+        return child.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return child.getSchema();
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Collections.singletonList(child);
+    }
+
+    @Override
+    ITable execute() {
+        ITable result=new Table(getName(),getSchema());
+        openNode();
+        try {
+            ITuple t;
+            while((t=nextTuple())!=null){
+                result.addTuple(t);
+            }
+        } finally {
+            closeNode();
+        }
+        return result;
+    }
+
+    @Override
+    void openNode() {
+        this.skipped=0;
+        this.returned=0;
+        child.open();
+    }
+
+    @Override
+    ITuple nextTuple() {
+        if(limit>=0 && returned>=limit){
+            return null;
+        }
+        for(;skipped<offset;skipped++){
+            if(child.next()==null){
+                return null;
+            }
+        }
+        ITuple t=child.next();
+        if(t!=null){
+            returned++;
+        }
+        return t;
+    }
+
+    @Override
+    void closeNode() {
+        child.close();
+    }
+
+    @Override
+    String describe() {
+        return "Limit ["+(limit<0?"all":String.valueOf(limit))+(offset>0?" offset "+offset:"")+"]";
+    }
+}
@@ -9,30 +9,56 @@ public class Main {
      *
      * Implements the following algorithm
      *
-     * Determine the type of query (from select, insert or delete)
-     * If select query
+     * Determine the type of query from its first keyword (explain, select, insert, delete, create index, analyze
+     * or copy)
+     * If explain query
+     *   Run the select query after the explain keyword
+     *   Print its plan with the estimated and actual number of rows of every step
+     * Else if select query
      *   Select data
      *   Print results
      * Else if insert query
      *   Insert data
      * Else if delete is given
      *   Delete data
+     * Else if create index is given
+     *   Create the index
+     * Else if analyze is given
+     *   Compute the statistics of the table
+     * Else if copy is given
+     *   Load the rows of the file into the table
      *
      * @param query
      * @param db
+     * @throws InvalidQueryException
      */
-    public static void runQuery(String query, Database db) {
-        if (query.contains("SELECT")){
-            db.selectData(query);
+    public static void runQuery(String query, Database db) throws InvalidQueryException {
+        String command=Parser.command(query);
+        if(command==null){
+            throw new InvalidQueryException("Not a valid query type: "+query);
         }
-        else if (query.contains("INSERT")) {
-            db.insertData(query);
-        }
-        else if (query.contains("DELETE")) {
-            db.deleteData(query);
-        }
-        else {
-            throw new IllegalArgumentException("Not a valid Query type");
+        switch(command){
+            case "EXPLAIN":
+                System.out.print(db.explain(query));
+                break;
+            case "SELECT":
+                ITable result=db.selectData(query);
+                IO.printTable(result,result.getSchema());
+                break;
+            case "INSERT":
+                db.insertData(query);
+                break;
+            case "DELETE":
+                db.deleteData(query);
+                break;
+            case "CREATE":
+                db.createIndex(query);
+                break;
+            case "COPY":
+                db.copyData(query);
+                break;
+            default:
+                db.analyze(query);
         }
     }
 }
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the work of a plan node over the rows of its input in parallel
+ *
+ * The rows are split into morsels (ranges of consecutive rows), and up to parallelism workers (the calling thread
+ * and tasks submitted to the executor) repeatedly take the next morsel not processed yet until there is none left,
+ * so faster workers process more morsels. The results are returned in morsel order, so concatenating them gives
+ * the same order as processing the rows one after the other
+ * Inputs with fewer rows than the threshold are processed by the calling thread alone
+ */
+class MorselExecutor {
+    /**
+     * Number of rows of a morsel
+     */
+    static final int MORSEL_SIZE=16_384;
+
+    /**
+     * Executor processing every input on the calling thread
+     */
+    static final MorselExecutor SERIAL=new MorselExecutor(null,1,Integer.MAX_VALUE);
+
+    /**
+     * The work on a morsel
+     * @param <R>
+     */
+    interface Task<R> {
+        /**
+         * Processes the rows from (inclusive) to to (exclusive)
+         * @param from
+         * @param to
+         * @return
+         */
+        R run(int from, int to);
+    }
+
+    private ExecutorService executor;
+    private int parallelism;
+    private int threshold;
+
+    /**
+     * constructor
+     * @param executor the executor running the workers other than the calling thread
+     * @param parallelism maximum number of workers processing the morsels of one input
+     * @param threshold minimum number of rows of an input processed in parallel
+     */
+    public MorselExecutor(ExecutorService executor, int parallelism, int threshold) {
+        this.executor=executor;
+        this.parallelism=Math.max(1,parallelism);
+        this.threshold=threshold;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Returns whether an input of the given number of rows is processed in parallel
+     * @param rows
+     * @return
+     */
+    public boolean isParallel(int rows) {
+        return parallelism>1 && rows>=threshold && rows>MORSEL_SIZE;
+    }
+
+    /**
+     * Processes the rows in morsels of MORSEL_SIZE rows
+     * @param rows
+     * @param task
+     * @param <R>
+     * @return the results of the morsels in row order
+     */
+    public <R> List<R> map(int rows, Task<R> task) {
+        return map(rows,MORSEL_SIZE,task);
+    }
+
+    /**
+     * Processes the rows in morsels of the given size
+     *
+     * Implements the following algorithm
+     *
+     * If the input is not processed in parallel
+     *   Return the result of the task on all the rows
+     * Submit parallelism - 1 workers to the executor
+     * Run a worker on the calling thread
+     *   (a worker takes the next morsel and runs the task on it, until all the morsels are taken)
+     * For each submitted worker
+     *   If it has not started, cancel it (the other workers did all the morsels), else wait for it to finish
+     * Return the results of the morsels in morsel order
+     *
+     * @param rows
+     * @param morselSize
+     * @param task
+     * @param <R>
+     * @return the results of the morsels in row order
+     */
+    public <R> List<R> map(int rows, int morselSize, Task<R> task) {
+        if(!isParallel(rows)){
+            return new ArrayList<>(Arrays.asList(task.run(0,rows)));
+        }
+        int morsels=(rows+morselSize-1)/morselSize;
+        Object[] results=new Object[morsels];
+        AtomicInteger next=new AtomicInteger();
+        Runnable worker=()->{
+            for(int m=next.getAndIncrement();m<morsels;m=next.getAndIncrement()){
+                results[m]=task.run(m*morselSize,Math.min(rows,(m+1)*morselSize));
+            }
+        };
+        List<Future<?>> workers=new ArrayList<>();
+        List<AtomicBoolean> started=new ArrayList<>();
+        QueryStats stats=QueryStats.current();
+        RuntimeException failure=null;
+        try {
+            for(int i=1;i<Math.min(parallelism,morsels);i++){
+                AtomicBoolean start=new AtomicBoolean();
+                started.add(start);
+                workers.add(executor.submit(()->{
+                    if(start.compareAndSet(false,true)){
+                        QueryStats.runWith(stats,worker);
+                    }
+                }));
+            }
+            worker.run();
+        } catch (RuntimeException e) {
+            // stop the other workers at their next morsel
+            next.set(morsels);
+            failure=e;
+        }
+        for(int i=0;i<workers.size();i++){
+            if(started.get(i).compareAndSet(false,true)){
+                // not started, the other workers did its morsels
+                workers.get(i).cancel(false);
+                continue;
+            }
+            try {
+                workers.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure=failure!=null?failure:new RuntimeException(e);
+            } catch (ExecutionException e) {
+                next.set(morsels);
+                failure=failure!=null?failure:e.getCause() instanceof RuntimeException
+                        ?(RuntimeException) e.getCause():new RuntimeException(e.getCause());
+            }
+        }
+        if(failure!=null){
+            throw failure;
+        }
+        List<R> list=new ArrayList<>(morsels);
+        for(Object r: results){
+            @SuppressWarnings("unchecked")
+            R result=(R) r;
+            list.add(result);
+        }
+        return list;
+    }
+}
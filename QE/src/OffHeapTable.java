@@ -0,0 +1,468 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A table stored by tuple outside of the Java heap, in direct buffers, so a table much larger than the heap can
+ * be held in memory without the garbage collector ever scanning or copying its tuples
+ *
+ * A tuple is a fixed-width row derived from the schema: a null bitmap, then an int for Integer attributes, a double
+ * for Double attributes and, for String attributes, the chunk, offset and length of the UTF-8 bytes of the value in
+ * the string arena (the same layout as the records of PagedTable, with the Strings moved out of the row)
+ * The first StringDictionary.MAX_VALUES distinct values of a String attribute are kept once on the heap instead,
+ * in a dictionary of the attribute as for ColumnarTable: the row holds the code of the value (as a negative chunk),
+ * so reading the attribute neither decodes nor creates a String
+ * The rows are in chunks of ROW_CHUNK bytes (a power of two number of rows), the Strings in chunks of STRING_CHUNK
+ * bytes (a larger String has a chunk of its own); the String bytes of removed or changed rows are garbage until
+ * the arena is compacted, when the garbage is more than half of it
+ *
+ * getTuples returns a view of the table, as for ColumnarTable: every tuple holds only the table and its row number
+ * and reads and writes through to the row; two tuples are equal if they are the same row
+ * Rows are renumbered when tuples are removed, so tuples taken from the view before a removal must not be kept
+ *
+ * The off-heap memory is bounded by -XX:MaxDirectMemorySize (the maximum heap size by default), it is released
+ * when the table is closed (or garbage collected)
+ */
+public class OffHeapTable implements ITable {
+    static final int ROW_CHUNK=1<<22;
+    static final int STRING_CHUNK=1<<22;
+    private static final int INTEGER=0;
+    private static final int DOUBLE=1;
+    private static final int STRING=2;
+
+    private String name;
+    private ISchema schema;
+    private int[] types;
+    private int[] offsets;
+    private int rowSize;
+    private int chunkShift;
+    private int chunkMask;
+    private int size;
+    private ByteBuffer[] rows=new ByteBuffer[16];
+    private ByteBuffer[] strings=new ByteBuffer[16];
+    private int stringChunks;
+    private long stringBytes;
+    private long garbage;
+    private List<List<String>> dictionaries=new ArrayList<>();
+    private List<Map<String,Integer>> codes=new ArrayList<>();
+    private List<ITuple> view=new TupleView();
+
+    /**
+     * constructor
+     * @param name
+     * @param schema
+     */
+    public OffHeapTable(String name, ISchema schema) {
+        this.name=name;
+        this.schema=schema;
+        int width=schema.getAttributes().size();
+        this.types=new int[width];
+        this.offsets=new int[width];
+        int offset=(width+7)/8;
+        for(int i=0;i<width;i++){
+            String type=schema.getType(i);
+            types[i]=type.equals("Integer")?INTEGER:type.equals("Double")?DOUBLE:STRING;
+            offsets[i]=offset;
+            offset+=types[i]==INTEGER?4:types[i]==DOUBLE?8:12;
+            dictionaries.add(types[i]==STRING?new ArrayList<>():null);
+            codes.add(types[i]==STRING?new HashMap<>():null);
+        }
+        this.rowSize=Math.max(1,offset);
+        this.chunkShift=31-Integer.numberOfLeadingZeros(Math.max(1,ROW_CHUNK/rowSize));
+        this.chunkMask=(1<<chunkShift)-1;
+    }
+
+    /**
+     * Returns the table name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Adds a tuple to the table (its values are copied into a new row)
+     * @param tuple
+     */
+    @Override
+    public void addTuple(ITuple tuple) {
+        addRow(tuple.getValues());
+    }
+
+    /**
+     * Adds a row of values (in schema order) to the table
+     * @param values
+     */
+    public void addRow(Object[] values) {
+        int chunk=size>>>chunkShift;
+        if(chunk==rows.length){
+            rows=Arrays.copyOf(rows,chunk*2);
+        }
+        if(rows[chunk]==null){
+            rows[chunk]=allocate(rowSize<<chunkShift);
+        }
+        int start=(size&chunkMask)*rowSize;
+        for(int i=0;i<(types.length+7)/8;i++){
+            rows[chunk].put(start+i,(byte) -1);
+        }
+        size++;
+        for(int i=0;i<types.length;i++){
+            set(size-1,i,values[i]);
+        }
+    }
+
+    /**
+     * Returns the tuples of the table as a view over the rows
+     * @return
+     */
+    @Override
+    public List<ITuple> getTuples() {
+        return this.view;
+    }
+
+    /**
+     * Returns the table schema
+     * @return
+     */
+    @Override
+    public ISchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Returns the number of rows in the table
+     * @return
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of bytes the table holds off the heap (its row and string chunks)
+     * @return
+     */
+    public long offHeapBytes() {
+        long bytes=0;
+        for(ByteBuffer chunk: rows){
+            bytes+=chunk==null?0:chunk.capacity();
+        }
+        for(int i=0;i<stringChunks;i++){
+            bytes+=strings[i].capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases the chunks of the table, which is empty afterwards
+     */
+    public void close() {
+        Arrays.fill(rows,null);
+        releaseStrings();
+        size=0;
+    }
+
+    /**
+     * Returns the value of the attribute in the row (boxed, a String is decoded from the arena)
+     * @param row
+     * @param column
+     * @return
+     */
+    public Object get(int row, int column) {
+        ByteBuffer chunk=rows[row>>>chunkShift];
+        int start=(row&chunkMask)*rowSize;
+        if((chunk.get(start+(column>>3))&(1<<(column&7)))!=0){
+            return null;
+        }
+        int offset=start+offsets[column];
+        switch(types[column]){
+            case INTEGER: return chunk.getInt(offset);
+            case DOUBLE: return chunk.getDouble(offset);
+            default:
+                int arena=chunk.getInt(offset);
+                if(arena<0){
+                    return dictionaries.get(column).get(-1-arena);
+                }
+                byte[] bytes=new byte[chunk.getInt(offset+8)];
+                strings[arena].get(chunk.getInt(offset+4),bytes);
+                return new String(bytes,StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Sets the value of the attribute in the row, converting it to the attribute type
+     * (the bytes of the String it replaces become garbage of the arena)
+     * @param row
+     * @param column
+     * @param value
+     */
+    public void set(int row, int column, Object value) {
+        ByteBuffer chunk=rows[row>>>chunkShift];
+        int start=(row&chunkMask)*rowSize;
+        int offset=start+offsets[column];
+        int nulls=start+(column>>3);
+        byte bit=(byte) (1<<(column&7));
+        if(types[column]==STRING && (chunk.get(nulls)&bit)==0 && chunk.getInt(offset)>=0){
+            garbage+=chunk.getInt(offset+8);
+        }
+        if(value==null){
+            chunk.put(nulls,(byte) (chunk.get(nulls)|bit));
+            return;
+        }
+        chunk.put(nulls,(byte) (chunk.get(nulls)&~bit));
+        switch(types[column]){
+            case INTEGER:
+                chunk.putInt(offset,value instanceof Integer?(Integer) value:Integer.parseInt(value.toString()));
+                break;
+            case DOUBLE:
+                chunk.putDouble(offset,value instanceof Number?((Number) value).doubleValue()
+                        :Double.parseDouble(value.toString()));
+                break;
+            default:
+                String string=value.toString();
+                Integer code=codes.get(column).get(string);
+                if(code==null && dictionaries.get(column).size()<StringDictionary.MAX_VALUES){
+                    code=dictionaries.get(column).size();
+                    dictionaries.get(column).add(string);
+                    codes.get(column).put(string,code);
+                }
+                if(code!=null){
+                    chunk.putInt(offset,-1-code);
+                    chunk.putInt(offset+8,0);
+                }else{
+                    writeString(chunk,offset,string.getBytes(StandardCharsets.UTF_8));
+                }
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies the bytes of a String to the end of the arena and points the attribute of a row to them
+     *
+     * Implements the following algorithm
+     *
+     * If the last chunk of the arena has no room for the bytes
+     *   Add a chunk (of STRING_CHUNK bytes, or of the length of the bytes if they are longer)
+     * Copy the bytes at the end of the last chunk
+     * Write the chunk, offset and length of the bytes to the attribute
+     */
+    private void writeString(ByteBuffer chunk, int offset, byte[] bytes) {
+        ByteBuffer last=stringChunks==0?null:strings[stringChunks-1];
+        if(last==null || last.capacity()-last.position()<bytes.length){
+            if(stringChunks==strings.length){
+                strings=Arrays.copyOf(strings,stringChunks*2);
+            }
+            last=allocate(Math.max(STRING_CHUNK,bytes.length));
+            strings[stringChunks++]=last;
+        }
+        int position=last.position();
+        last.put(bytes);
+        stringBytes+=bytes.length;
+        chunk.putInt(offset,stringChunks-1);
+        chunk.putInt(offset+4,position);
+        chunk.putInt(offset+8,bytes.length);
+    }
+
+    private void releaseStrings() {
+        strings=new ByteBuffer[16];
+        stringChunks=0;
+        stringBytes=0;
+        garbage=0;
+    }
+
+    /**
+     * Adds the bytes of the Strings of a row to the garbage of the arena (the row is being removed)
+     */
+    private void discard(int row) {
+        ByteBuffer chunk=rows[row>>>chunkShift];
+        int start=(row&chunkMask)*rowSize;
+        for(int i=0;i<types.length;i++){
+            if(types[i]==STRING && (chunk.get(start+(i>>3))&(1<<(i&7)))==0){
+                garbage+=chunk.getInt(start+offsets[i]+8);
+            }
+        }
+    }
+
+    /**
+     * Moves row from to row to (used to compact the rows when rows are removed)
+     */
+    private void move(int from, int to) {
+        rows[to>>>chunkShift].put((to&chunkMask)*rowSize,rows[from>>>chunkShift],(from&chunkMask)*rowSize,rowSize);
+    }
+
+    /**
+     * Ends a removal: releases the row chunks past the last row and compacts the arena if it is mostly garbage
+     *
+     * Implements the following algorithm
+     *
+     * Release the row chunks after the chunk of the last row
+     * If the table is empty
+     *   Release the arena
+     * Else if the garbage is more than half of the arena (and more than a chunk)
+     *   Copy the Strings of every row to a new arena, in row order
+     *   Replace the arena with the new one
+     */
+    private void removed() {
+        int chunks=(size+chunkMask)>>>chunkShift;
+        Arrays.fill(rows,chunks,rows.length,null);
+        if(size==0){
+            releaseStrings();
+            return;
+        }
+        if(garbage<=stringBytes/2 || garbage<STRING_CHUNK){
+            return;
+        }
+        ByteBuffer[] old=strings;
+        releaseStrings();
+        for(int r=0;r<size;r++){
+            ByteBuffer chunk=rows[r>>>chunkShift];
+            int start=(r&chunkMask)*rowSize;
+            for(int i=0;i<types.length;i++){
+                int offset=start+offsets[i];
+                if(types[i]==STRING && (chunk.get(start+(i>>3))&(1<<(i&7)))==0 && chunk.getInt(offset)>=0){
+                    byte[] bytes=new byte[chunk.getInt(offset+8)];
+                    old[chunk.getInt(offset)].get(chunk.getInt(offset+4),bytes);
+                    writeString(chunk,offset,bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * A tuple of the table: reads and writes the values of one row off the heap
+     */
+    class RowTuple implements ITuple {
+        private int row;
+
+        RowTuple(int row) {
+            this.row=row;
+        }
+
+        /**
+         * Returns the row number of the tuple in the table
+         * @return
+         */
+        int getRow() {
+            return this.row;
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            set(row,index,value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getValue(int index) {
+            return (T) get(row,index);
+        }
+
+        @Override
+        public Object[] getValues() {
+            Object[] values=new Object[types.length];
+            for(int i=0;i<values.length;i++){
+                values[i]=get(row,i);
+            }
+            return values;
+        }
+
+        @Override
+        public void setValues(Object[] values) {
+            for(int i=0;i<values.length;i++){
+                set(row,i,values[i]);
+            }
+        }
+
+        /**
+         * Two tuples of the view are equal if they are the same row of the same table
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowTuple && ((RowTuple) o).row==row && ((RowTuple) o).table()==OffHeapTable.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return row;
+        }
+
+        private OffHeapTable table() {
+            return OffHeapTable.this;
+        }
+    }
+
+    /**
+     * The list of tuples of the table
+     * Tuples can be added and removed (removeIf and clear compact the rows in one pass)
+     */
+    private class TupleView extends AbstractList<ITuple> {
+        @Override
+        public ITuple get(int index) {
+            if(index<0 || index>=size){
+                throw new IndexOutOfBoundsException("Row "+index+" of "+size);
+            }
+            return new RowTuple(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(ITuple tuple) {
+            addTuple(tuple);
+            return true;
+        }
+
+        @Override
+        public ITuple remove(int index) {
+            ITuple removed=new Tuple(schema);
+            removed.setValues(get(index).getValues());
+            discard(index);
+            for(int r=index+1;r<size;r++){
+                move(r,r-1);
+            }
+            size--;
+            removed();
+            return removed;
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super ITuple> filter) {
+            int kept=0;
+            RowTuple tuple=new RowTuple(0);
+            for(int r=0;r<size;r++){
+                tuple.row=r;
+                if(filter.test(tuple)){
+                    discard(r);
+                }else{
+                    if(kept!=r){
+                        move(r,kept);
+                    }
+                    kept++;
+                }
+            }
+            boolean removed=kept<size;
+            size=kept;
+            removed();
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            size=0;
+            removed();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A binary file of fixed-size pages, read and written with positional FileChannel I/O
+ * (page p is at offset p * PAGE_SIZE)
+ *
+ * The file only reads and writes whole pages; the pages are cached by a BufferPool, which records in the file
+ * which of its pages are in memory (see getFrame)
+ */
+class PageFile implements AutoCloseable {
+    /**
+     * Size of a page in bytes
+     */
+    static final int PAGE_SIZE=8192;
+
+    private File file;
+    private FileChannel channel;
+    private volatile BufferPool.Frame[] frames=new BufferPool.Frame[16];
+
+    /**
+     * constructor, opens (or creates) the file
+     * @param file
+     */
+    public PageFile(File file) {
+        this.file=file;
+        try {
+            this.channel=FileChannel.open(file.toPath(),StandardOpenOption.CREATE,StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the number of pages in the file
+     * @return
+     */
+    public int pages() {
+        try {
+            return (int) (channel.size()/PAGE_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a page into the buffer (a page past the end of the file reads as zeros)
+     * @param page
+     * @param buffer a buffer of PAGE_SIZE bytes
+     */
+    public void read(int page, ByteBuffer buffer) {
+        buffer.clear();
+        try {
+            long position=(long) page*PAGE_SIZE;
+            while(buffer.hasRemaining()){
+                int n=channel.read(buffer,position+buffer.position());
+                if(n<0){
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        QueryStats.readFromDisk(buffer.position());
+        while(buffer.hasRemaining()){
+            buffer.put((byte) 0);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffer to a page
+     * @param page
+     * @param buffer a buffer of PAGE_SIZE bytes
+     */
+    public void write(int page, ByteBuffer buffer) {
+        ByteBuffer data=buffer.duplicate();
+        data.clear();
+        try {
+            long position=(long) page*PAGE_SIZE;
+            while(data.hasRemaining()){
+                channel.write(data,position+data.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Forces the written pages to the disk
+     */
+    public void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Cuts the file to the given number of pages
+     * @param pages
+     */
+    public void truncate(int pages) {
+        try {
+            channel.truncate((long) pages*PAGE_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the frame of the buffer pool holding the page, or null if the page is not in memory
+     * @param page
+     * @return
+     */
+    BufferPool.Frame getFrame(int page) {
+        BufferPool.Frame[] f=frames;
+        return page<f.length?f[page]:null;
+    }
+
+    /**
+     * Records the frame holding the page (null when it is evicted), called by the buffer pool only
+     */
+    synchronized void setFrame(int page, BufferPool.Frame frame) {
+        BufferPool.Frame[] f=frames;
+        if(page>=f.length){
+            f=Arrays.copyOf(f,Math.max(page+1,f.length*2));
+        }
+        f[page]=frame;
+        frames=f;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
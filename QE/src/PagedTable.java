@@ -0,0 +1,528 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A table stored in slotted pages of a binary file (table.pages) instead of in memory, the pages are cached
+ * by a BufferPool, so only the pages in use are in memory whatever the size of the table
+ *
+ * A tuple is a record of its page: a null bitmap, then a fixed part (an int for Integer attributes, a double for
+ * Double attributes, the offset and length of the value for String attributes) and the UTF-8 bytes of the Strings,
+ * so an attribute is read without decoding the others (see SlottedPage for the page layout)
+ * The tuples are in the order of the pages (the logical pages, each stored in a physical page of the file),
+ * new tuples are added to the last page
+ *
+ * The page directory file (table.pdir) lists the physical page and the number of tuples of each logical page;
+ * opening the table only reads it. Pages are never changed in place between two checkpoints: the first change
+ * of a page written by the last checkpoint moves it to a free physical page, so the file always holds the table
+ * as of the last checkpoint, plus the new pages (see writeCheckpoint)
+ *
+ * getTuples returns a view of the table, as for ColumnarTable: every tuple holds only its page and slot and reads
+ * and writes through the buffer pool; two tuples are equal if they are the same record
+ * Tuples are renumbered when tuples are removed, so tuples taken from the view before a removal must not be kept
+ */
+public class PagedTable implements ITable {
+    private static final int MAGIC=0x51455047;
+    private static final int INTEGER=0;
+    private static final int DOUBLE=1;
+    private static final int STRING=2;
+
+    private String name;
+    private ISchema schema;
+    private PageFile file;
+    private BufferPool pool;
+    private int[] types;
+    private int[] fixedOffsets;
+    private int fixedSize;
+    private int size;
+    private int pages;
+    private int[] physical=new int[16];
+    private int[] counts=new int[16];
+    private int[] firstRows=new int[16];
+    private BitSet committed=new BitSet();
+    private BitSet used=new BitSet();
+    private BitSet released=new BitSet();
+    private byte[] record=new byte[SlottedPage.MAX_RECORD];
+    private ByteBuffer recordBuffer=ByteBuffer.wrap(record);
+    private List<ITuple> view=new TupleView();
+
+    /**
+     * constructor, opens the table stored in the folder (or creates an empty one if it has no page directory)
+     * @param name
+     * @param schema
+     * @param folder
+     * @param pool
+     */
+    public PagedTable(String name, ISchema schema, String folder, BufferPool pool) {
+        this.name=name;
+        this.schema=schema;
+        this.pool=pool;
+        int width=schema.getAttributes().size();
+        this.types=new int[width];
+        this.fixedOffsets=new int[width];
+        int offset=(width+7)/8;
+        for(int i=0;i<width;i++){
+            String type=schema.getType(i);
+            types[i]=type.equals("Integer")?INTEGER:type.equals("Double")?DOUBLE:STRING;
+            fixedOffsets[i]=offset;
+            offset+=types[i]==DOUBLE?8:4;
+        }
+        this.fixedSize=offset;
+        this.file=new PageFile(pagesFile(name,folder));
+        File directory=directoryFile(name,folder);
+        if(directory.exists()){
+            readDirectory(directory);
+        }else{
+            // pages left by a table that was never checkpointed
+            file.truncate(0);
+        }
+    }
+
+    /**
+     * Returns the file of the pages of a table
+     * @param tableName
+     * @param folder
+     * @return
+     */
+    public static File pagesFile(String tableName, String folder) {
+        return new File(folder+"/"+tableName+".pages");
+    }
+
+    /**
+     * Returns the page directory file of a table
+     * @param tableName
+     * @param folder
+     * @return
+     */
+    public static File directoryFile(String tableName, String folder) {
+        return new File(folder+"/"+tableName+".pdir");
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void addTuple(ITuple tuple) {
+        addRow(tuple.getValues());
+    }
+
+    /**
+     * Adds a row of values (in schema order, of the attribute types) to the last page, or to a new page
+     * if it does not fit
+     * @param values
+     */
+    public void addRow(Object[] values) {
+        int length=encode(values);
+        BufferPool.Frame frame=null;
+        if(pages>0){
+            frame=pool.pin(file,physical[pages-1]);
+            if(SlottedPage.freeSpace(frame.getData())<length+4){
+                pool.unpin(frame,false);
+                frame=null;
+            }else{
+                writable(pages-1,frame);
+            }
+        }
+        if(frame==null){
+            frame=newPage();
+        }
+        SlottedPage.add(frame.getData(),record,length);
+        pool.unpin(frame,true);
+        counts[pages-1]++;
+        size++;
+    }
+
+    @Override
+    public List<ITuple> getTuples() {
+        return this.view;
+    }
+
+    @Override
+    public ISchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Returns the number of tuples
+     * @return
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of pages of the table
+     * @return
+     */
+    public int pages() {
+        return this.pages;
+    }
+
+    /**
+     * Writes the table for a checkpoint: the changed pages to the page file, forced to the disk,
+     * and the page directory to the given file, forced to the disk
+     * The table is in a consistent state on disk once the directory file replaces the page directory of the table
+     * (see checkpointed)
+     * @param directory
+     */
+    public void writeCheckpoint(File directory) {
+        pool.flush(file);
+        file.force();
+        try (FileOutputStream out=new FileOutputStream(directory);
+             DataOutputStream data=new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(MAGIC);
+            data.writeInt(PageFile.PAGE_SIZE);
+            data.writeInt(pages);
+            for(int p=0;p<pages;p++){
+                data.writeInt(physical[p]);
+                data.writeInt(counts[p]);
+            }
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Called once the directory written by writeCheckpoint is the page directory of the table: the physical pages
+     * of the previous checkpoint that were moved are free again (the free pages at the end of the file are cut),
+     * the current ones must now be moved when changed
+     */
+    public void checkpointed() {
+        used.andNot(released);
+        released.clear();
+        committed.clear();
+        for(int p=0;p<pages;p++){
+            committed.set(physical[p]);
+        }
+        if(file.pages()>used.length()){
+            file.truncate(used.length());
+        }
+    }
+
+    /**
+     * Closes the page file, dropping its pages from the buffer pool
+     */
+    public void close() {
+        pool.discard(file);
+        file.close();
+    }
+
+    /**
+     * Reads the page directory written by writeCheckpoint
+     */
+    private void readDirectory(File directory) {
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(directory)))){
+            if(in.readInt()!=MAGIC || in.readInt()!=PageFile.PAGE_SIZE){
+                throw new IOException("Invalid page directory: "+directory);
+            }
+            int n=in.readInt();
+            ensurePages(n);
+            for(int p=0;p<n;p++){
+                physical[p]=in.readInt();
+                counts[p]=in.readInt();
+                firstRows[p]=size;
+                size+=counts[p];
+                committed.set(physical[p]);
+                used.set(physical[p]);
+            }
+            this.pages=n;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Makes a pinned page writable: if the page is part of the last checkpoint, moves it to a free physical page
+     */
+    private void writable(int page, BufferPool.Frame frame) {
+        if(committed.get(physical[page])){
+            released.set(physical[page]);
+            physical[page]=allocate();
+            pool.move(frame,physical[page]);
+        }
+    }
+
+    /**
+     * Adds an empty page at the end of the table and pins it
+     */
+    private BufferPool.Frame newPage() {
+        ensurePages(pages+1);
+        physical[pages]=allocate();
+        counts[pages]=0;
+        firstRows[pages]=size;
+        pages++;
+        return pool.pinNew(file,physical[pages-1]);
+    }
+
+    private int allocate() {
+        int page=used.nextClearBit(0);
+        used.set(page);
+        return page;
+    }
+
+    private void ensurePages(int n) {
+        if(physical.length<n){
+            int length=Math.max(n,physical.length*2);
+            physical=Arrays.copyOf(physical,length);
+            counts=Arrays.copyOf(counts,length);
+            firstRows=Arrays.copyOf(firstRows,length);
+        }
+    }
+
+    /**
+     * Returns the logical page of a row: the last page starting at or before the row
+     * (empty pages start at the same row as the next page)
+     */
+    private int page(int row) {
+        int low=0;
+        int high=pages-1;
+        while(low<high){
+            int mid=(low+high+1)>>>1;
+            if(firstRows[mid]<=row){
+                low=mid;
+            }else{
+                high=mid-1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the values to the record buffer and returns the length of the record
+     */
+    private int encode(Object[] values) {
+        Arrays.fill(record,0,fixedSize,(byte) 0);
+        int end=fixedSize;
+        for(int i=0;i<types.length;i++){
+            Object value=values[i];
+            int offset=fixedOffsets[i];
+            if(value==null){
+                record[i>>3]|=1<<(i&7);
+            }else if(types[i]==INTEGER){
+                recordBuffer.putInt(offset,(Integer) value);
+            }else if(types[i]==DOUBLE){
+                recordBuffer.putDouble(offset,((Number) value).doubleValue());
+            }else{
+                byte[] bytes=value.toString().getBytes(StandardCharsets.UTF_8);
+                if(end+bytes.length>record.length){
+                    throw new IllegalArgumentException("Tuple too large for a page of table "+name);
+                }
+                recordBuffer.putChar(offset,(char) end);
+                recordBuffer.putChar(offset+2,(char) bytes.length);
+                System.arraycopy(bytes,0,record,end,bytes.length);
+                end+=bytes.length;
+            }
+        }
+        return end;
+    }
+
+    private Object read(ByteBuffer page, int record, int column) {
+        if((page.get(record+(column>>3))&(1<<(column&7)))!=0){
+            return null;
+        }
+        int offset=record+fixedOffsets[column];
+        switch(types[column]){
+            case INTEGER: return page.getInt(offset);
+            case DOUBLE: return page.getDouble(offset);
+            default: return new String(page.array(),page.arrayOffset()+record+page.getChar(offset),
+                    page.getChar(offset+2),StandardCharsets.UTF_8);
+        }
+    }
+
+    private Object get(int page, int slot, int column) {
+        BufferPool.Frame frame=pool.pin(file,physical[page]);
+        try {
+            ByteBuffer data=frame.getData();
+            return read(data,SlottedPage.offset(data,slot),column);
+        } finally {
+            pool.unpin(frame,false);
+        }
+    }
+
+    private Object[] getValues(int page, int slot) {
+        BufferPool.Frame frame=pool.pin(file,physical[page]);
+        try {
+            ByteBuffer data=frame.getData();
+            int offset=SlottedPage.offset(data,slot);
+            Object[] values=new Object[types.length];
+            for(int i=0;i<values.length;i++){
+                values[i]=read(data,offset,i);
+            }
+            return values;
+        } finally {
+            pool.unpin(frame,false);
+        }
+    }
+
+    private void setValues(int page, int slot, Object[] values) {
+        int length=encode(values);
+        BufferPool.Frame frame=pool.pin(file,physical[page]);
+        try {
+            writable(page,frame);
+            if(!SlottedPage.replace(frame.getData(),slot,record,length)){
+                throw new IllegalStateException("The tuple does not fit in its page of table "+name+" anymore");
+            }
+        } finally {
+            pool.unpin(frame,true);
+        }
+    }
+
+    /**
+     * A tuple of the table: reads and writes the values of one record through the buffer pool
+     */
+    class PageTuple implements ITuple {
+        private int page;
+        private int slot;
+
+        PageTuple(int page, int slot) {
+            this.page=page;
+            this.slot=slot;
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            Object[] values=PagedTable.this.getValues(page,slot);
+            values[index]=value;
+            PagedTable.this.setValues(page,slot,values);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getValue(int index) {
+            return (T) get(page,slot,index);
+        }
+
+        @Override
+        public Object[] getValues() {
+            return PagedTable.this.getValues(page,slot);
+        }
+
+        @Override
+        public void setValues(Object[] values) {
+            PagedTable.this.setValues(page,slot,values);
+        }
+
+        /**
+         * Two tuples of the view are equal if they are the same record of the same table
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PageTuple && ((PageTuple) o).page==page && ((PageTuple) o).slot==slot
+                    && ((PageTuple) o).table()==PagedTable.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return page*1021+slot;
+        }
+
+        private PagedTable table() {
+            return PagedTable.this;
+        }
+    }
+
+    /**
+     * The list of tuples of the table
+     * Tuples can be added and removed (removeIf compacts every page in one pass)
+     */
+    private class TupleView extends AbstractList<ITuple> {
+        @Override
+        public ITuple get(int index) {
+            if(index<0 || index>=size){
+                throw new IndexOutOfBoundsException("Row "+index+" of "+size);
+            }
+            int page=page(index);
+            return new PageTuple(page,index-firstRows[page]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(ITuple tuple) {
+            addTuple(tuple);
+            return true;
+        }
+
+        @Override
+        public ITuple remove(int index) {
+            PageTuple removed=(PageTuple) get(index);
+            ITuple copy=new Tuple(schema);
+            copy.setValues(removed.getValues());
+            removeIf(removed::equals);
+            return copy;
+        }
+
+        /**
+         * Implements the following algorithm
+         *
+         * For each page
+         *   Find the records of the page matching the filter
+         *   If there are some
+         *     Make the page writable (see writable)
+         *     Remove the records from the page and compact it
+         * Number the rows of the pages again
+         */
+        @Override
+        public boolean removeIf(Predicate<? super ITuple> filter) {
+            PageTuple tuple=new PageTuple(0,0);
+            int removedRows=0;
+            BitSet removed=new BitSet();
+            for(int p=0;p<pages;p++){
+                removed.clear();
+                tuple.page=p;
+                for(int s=0;s<counts[p];s++){
+                    tuple.slot=s;
+                    if(filter.test(tuple)){
+                        removed.set(s);
+                    }
+                }
+                if(!removed.isEmpty()){
+                    BufferPool.Frame frame=pool.pin(file,physical[p]);
+                    writable(p,frame);
+                    SlottedPage.remove(frame.getData(),removed);
+                    pool.unpin(frame,true);
+                    counts[p]-=removed.cardinality();
+                    removedRows+=removed.cardinality();
+                }
+            }
+            size=0;
+            for(int p=0;p<pages;p++){
+                firstRows[p]=size;
+                size+=counts[p];
+            }
+            return removedRows>0;
+        }
+
+        @Override
+        public void clear() {
+            for(int p=0;p<pages;p++){
+                if(committed.get(physical[p])){
+                    released.set(physical[p]);
+                }else{
+                    used.clear(physical[p]);
+                }
+            }
+            pages=0;
+            size=0;
+        }
+    }
+}
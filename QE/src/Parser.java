@@ -0,0 +1,404 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recursive descent parser of queries, reading the tokens of a Lexer
+ *
+ * query      := select | insert | delete                 (see SelectQuery, InsertQuery and DeleteQuery)
+ * explain    := EXPLAIN select                          (see SelectQuery.parseExplain)
+ * condition  := and {OR and}
+ * and        := unary {AND unary}
+ * unary      := NOT unary | ( condition ) | predicate
+ * predicate  := operand operator value | operand [NOT] IN ( value {, value} ) | operand [NOT] LIKE value
+ * operand    := attribute | aggregate
+ * aggregate  := function ( [DISTINCT] attribute ) | COUNT ( * )
+ *
+ * Keywords are case insensitive and cannot be used as names or unquoted values, <> is the same as !=
+ * An unquoted ? value is a placeholder for a value bound later (see PreparedQuery), the placeholders are numbered
+ * from 0 in the order of the query
+ * Hints before the first keyword of a query are skipped as comments (hints are read after SELECT, see parallelHint)
+ * An invalid query throws an InvalidQueryException telling what was expected and where
+ */
+class Parser {
+    private static final String[] KEYWORDS={"SELECT","FROM","JOIN","ON","WHERE","GROUP","BY","HAVING","ORDER","ASC",
+            "DESC","LIMIT","OFFSET","AND","OR","NOT","IN","LIKE","DISTINCT","INSERT","INTO","VALUES","DELETE","NULL"};
+    private static final String[] FUNCTIONS={"COUNT","SUM","AVG","MIN","MAX"};
+    private static final String[] OPERATORS={"=","!=","<>","<","<=",">",">="};
+    private static final String[] COMMANDS={"SELECT","INSERT","DELETE","EXPLAIN","CREATE","ANALYZE","COPY"};
+
+    private Lexer lexer;
+    private int parameterCount;
+    private int parameter=-1;
+
+    /**
+     * constructor
+     * @param text
+     * @throws InvalidQueryException
+     */
+    public Parser(String text) throws InvalidQueryException {
+        this.lexer=new Lexer(text);
+        skipHints(lexer);
+    }
+
+    /**
+     * Parser of the part of the text from (inclusive) to to (exclusive)
+     */
+    private Parser(String text, int from, int to) throws InvalidQueryException {
+        this.lexer=new Lexer(text,from,to);
+    }
+
+    /**
+     * Parses a select, insert or delete query
+     *
+     * Implements the following algorithm
+     *
+     * Read the first keyword of the query
+     * If it is SELECT, INSERT or DELETE
+     *   Parse the query (see SelectQuery.parse, InsertQuery.parse and DeleteQuery.parse)
+     * Else
+     *   Throw an invalid query exception
+     * If there is text after the query (other than a semicolon)
+     *   Throw an invalid query exception
+     *
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static IQuery parse(String query) throws InvalidQueryException {
+        Parser parser=new Parser(query);
+        IQuery result;
+        if(parser.lexer.isWord("SELECT")){
+            result=SelectQuery.parse(parser);
+        }else if(parser.lexer.isWord("INSERT")){
+            result=InsertQuery.parse(parser);
+        }else if(parser.lexer.isWord("DELETE")){
+            result=DeleteQuery.parse(parser);
+        }else{
+            throw parser.error("SELECT, INSERT or DELETE");
+        }
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Returns the first keyword of a query in upper case (SELECT, INSERT, DELETE, EXPLAIN, CREATE or ANALYZE),
+     * or null if it starts with another word
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static String command(String query) throws InvalidQueryException {
+        Lexer lexer=new Lexer(query);
+        skipHints(lexer);
+        for(String command: COMMANDS){
+            if(lexer.isWord(command)){
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static void skipHints(Lexer lexer) throws InvalidQueryException {
+        while(lexer.getType()==Lexer.HINT){
+            lexer.next();
+        }
+    }
+
+    /**
+     * Parses the text of a where or having clause
+     * @param text
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static Condition parseCondition(String text) throws InvalidQueryException {
+        Parser parser=new Parser(text);
+        Condition result=parser.condition();
+        parser.end();
+        return result;
+    }
+
+    Lexer getLexer() {
+        return this.lexer;
+    }
+
+    /**
+     * Reads the current token if it is the given keyword
+     * @param keyword
+     * @return whether it was read
+     * @throws InvalidQueryException
+     */
+    boolean keyword(String keyword) throws InvalidQueryException {
+        if(lexer.isWord(keyword)){
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the given keyword, throws an invalid query exception if it is not the current token
+     * @param keyword
+     * @throws InvalidQueryException
+     */
+    void expect(String keyword) throws InvalidQueryException {
+        if(!keyword(keyword)){
+            throw error(keyword);
+        }
+    }
+
+    /**
+     * Reads the current token if it is the given symbol
+     * @param symbol
+     * @return whether it was read
+     * @throws InvalidQueryException
+     */
+    boolean symbol(String symbol) throws InvalidQueryException {
+        if(lexer.isSymbol(symbol)){
+            lexer.next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the given symbol, throws an invalid query exception if it is not the current token
+     * @param symbol
+     * @throws InvalidQueryException
+     */
+    void expectSymbol(String symbol) throws InvalidQueryException {
+        if(!symbol(symbol)){
+            throw error(symbol);
+        }
+    }
+
+    /**
+     * Reads a table or attribute name (a word that is not a keyword or *)
+     * @param what what the name is, for the error message
+     * @return
+     * @throws InvalidQueryException
+     */
+    String name(String what) throws InvalidQueryException {
+        if(lexer.getType()!=Lexer.WORD || lexer.isOneOf(KEYWORDS) || lexer.isWord("*")){
+            throw error(what);
+        }
+        String name=lexer.value();
+        lexer.next();
+        return name;
+    }
+
+    /**
+     * Reads an attribute or an aggregate and returns its name (the normalized text of an aggregate, see Aggregate)
+     * @return
+     * @throws InvalidQueryException
+     */
+    String operand() throws InvalidQueryException {
+        String function=null;
+        for(String f: FUNCTIONS){
+            if(lexer.isWord(f)){
+                function=f;
+            }
+        }
+        String name=name("attribute");
+        if(function==null || !symbol("(")){
+            return name;
+        }
+        boolean distinct=keyword("DISTINCT");
+        String attribute;
+        if(!distinct && lexer.isWord("*")){
+            attribute="*";
+            lexer.next();
+        }else{
+            attribute=name("attribute");
+        }
+        expectSymbol(")");
+        return Aggregate.create(function,attribute,distinct).toString();
+    }
+
+    /**
+     * Reads a value: a quoted value, or a word that is not a keyword (an unquoted ? is a placeholder,
+     * see getParameter)
+     * @return
+     * @throws InvalidQueryException
+     */
+    String value() throws InvalidQueryException {
+        parameter=-1;
+        if(lexer.getType()==Lexer.QUOTED){
+            String value=lexer.value();
+            lexer.next();
+            return value;
+        }
+        if(lexer.getType()!=Lexer.WORD || lexer.isOneOf(KEYWORDS)){
+            throw error("value");
+        }
+        if(lexer.isWord("?")){
+            parameter=parameterCount++;
+        }
+        String value=lexer.value();
+        lexer.next();
+        return value;
+    }
+
+    /**
+     * Returns the number of the placeholder if the last value read was an unquoted ?, else -1
+     * @return
+     */
+    int getParameter() {
+        return this.parameter;
+    }
+
+    /**
+     * Returns the number of placeholders read so far, the number of the next placeholder
+     * @return
+     */
+    int nextParameter() {
+        return parameterCount++;
+    }
+
+    /**
+     * Reads a condition (see the grammar above)
+     * @return
+     * @throws InvalidQueryException
+     */
+    Condition condition() throws InvalidQueryException {
+        List<Condition> list=new ArrayList<>();
+        list.add(and());
+        while(keyword("OR")){
+            list.add(and());
+        }
+        return Condition.or(list);
+    }
+
+    private Condition and() throws InvalidQueryException {
+        List<Condition> list=new ArrayList<>();
+        list.add(unary());
+        while(keyword("AND")){
+            list.add(unary());
+        }
+        return Condition.and(list);
+    }
+
+    private Condition unary() throws InvalidQueryException {
+        if(keyword("NOT")){
+            return Condition.not(unary());
+        }
+        if(symbol("(")){
+            Condition c=condition();
+            expectSymbol(")");
+            return c;
+        }
+        String attribute=operand();
+        boolean not=keyword("NOT");
+        if(keyword("IN")){
+            expectSymbol("(");
+            List<String> values=new ArrayList<>();
+            List<Integer> parameters=new ArrayList<>();
+            boolean placeholders=false;
+            do {
+                values.add(value());
+                parameters.add(parameter);
+                placeholders|=parameter!=-1;
+            } while(symbol(","));
+            expectSymbol(")");
+            Condition c=Condition.in(attribute,values);
+            if(placeholders){
+                c.setParameters(parameters);
+            }
+            return not?Condition.not(c):c;
+        }
+        if(keyword("LIKE")){
+            Condition c=new Condition(attribute,value(),"LIKE");
+            c.setParameters(parameters(parameter));
+            return not?Condition.not(c):c;
+        }
+        if(not || !lexer.isOneOfSymbols(OPERATORS)){
+            throw error(not?"IN or LIKE":"comparison operator");
+        }
+        String op=lexer.isSymbol("<>")?"!=":lexer.value();
+        lexer.next();
+        Condition c=new Condition(attribute,value(),op);
+        c.setParameters(parameters(parameter));
+        return c;
+    }
+
+    private static List<Integer> parameters(int parameter) {
+        return parameter==-1?Collections.emptyList():Collections.singletonList(parameter);
+    }
+
+    /**
+     * Reads a non negative int (a number of rows)
+     * @param what the description of the number for the error message
+     * @return
+     * @throws InvalidQueryException
+     */
+    int count(String what) throws InvalidQueryException {
+        int count=lexer.intValue();
+        if(count<0){
+            throw error(what);
+        }
+        lexer.next();
+        return count;
+    }
+
+    /**
+     * Reads a /*+ PARALLEL(n) *&#47; hint if it is the current token
+     * @return the degree of parallelism, or 0 if there is no such hint
+     * @throws InvalidQueryException
+     */
+    int parallelHint() throws InvalidQueryException {
+        if(lexer.getType()!=Lexer.HINT){
+            return 0;
+        }
+        Parser hint=new Parser(lexer.getText(),lexer.getStart(),lexer.getEnd());
+        lexer.next();
+        if(!hint.keyword("PARALLEL")){
+            // not a hint of this database
+            return 0;
+        }
+        hint.expectSymbol("(");
+        int parallelism=hint.lexer.intValue();
+        if(parallelism<1){
+            throw hint.error("degree of parallelism");
+        }
+        hint.lexer.next();
+        hint.expectSymbol(")");
+        if(hint.lexer.getType()!=Lexer.END){
+            throw hint.error("end of hint");
+        }
+        return parallelism;
+    }
+
+    /**
+     * Reads the end of the query (an optional semicolon), throws an invalid query exception if there is more text
+     * @throws InvalidQueryException
+     */
+    void end() throws InvalidQueryException {
+        symbol(";");
+        if(lexer.getType()!=Lexer.END){
+            throw error("end of query");
+        }
+    }
+
+    /**
+     * Returns the exception for an unexpected current token
+     * @param expected what was expected instead
+     * @return
+     */
+    InvalidQueryException error(String expected) {
+        return new InvalidQueryException("Expected "+expected+" but found "+lexer.describe()+": "+lexer.getText());
+    }
+
+    /**
+     * Returns whether the text is a keyword (a value equal to a keyword must be quoted)
+     * @param text
+     * @return
+     */
+    static boolean isKeyword(String text) {
+        for(String keyword: KEYWORDS){
+            if(keyword.equalsIgnoreCase(text)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of a query plan (scan, filter, project, sort, join...)
+ * Every node produces a table from the tables of its children
+ * The planner sets the estimated number of rows of the node, running the node records the actual number
+ *
+ * A plan can also be pulled one tuple at a time (open, next until null, close): scans, filters, projections and
+ * limits then stream their tuples without building tables, so a limit stops reading its input as soon as it has
+ * its tuples (see Cursor); the other nodes build their table when they are opened
+ */
+abstract class PlanNode {
+    private double estimatedRows;
+    private long actualRows=-1;
+    private MorselExecutor executor=MorselExecutor.SERIAL;
+    private long snapshot=-1;
+    private List<ITuple> opened;
+    private int position;
+
+    /**
+     * Returns the name of the table produced by the node
+     * @return
+     */
+    abstract String getName();
+
+    /**
+     * Returns the schema of the table produced by the node
+     * @return
+     */
+    abstract ISchema getSchema();
+
+    /**
+     * Produces the table of the node
+     * @return
+     */
+    abstract ITable execute();
+
+    /**
+     * Returns a one line description of the node for explain
+     * @return
+     */
+    abstract String describe();
+
+    /**
+     * Returns the children of the node
+     * @return
+     */
+    List<PlanNode> getChildren() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Executes the node and records the number of rows it produced
+     * @return
+     */
+    ITable run() {
+        ITable result=execute();
+        this.actualRows=result.getTuples().size();
+        return result;
+    }
+
+    /**
+     * Prepares the node to return its tuples one at a time (see next)
+     */
+    final void open() {
+        this.actualRows=0;
+        openNode();
+    }
+
+    /**
+     * Returns the next tuple of the node, or null if there is none left
+     * @return
+     */
+    final ITuple next() {
+        ITuple t=nextTuple();
+        if(t!=null){
+            this.actualRows++;
+        }
+        return t;
+    }
+
+    /**
+     * Releases what the node holds since it was opened
+     */
+    final void close() {
+        closeNode();
+    }
+
+    /**
+     * Opens the node, by default executes it and keeps its tuples for nextTuple
+     * (nodes streaming their tuples open their children instead)
+     */
+    void openNode() {
+        this.opened=execute().getTuples();
+        this.position=0;
+    }
+
+    /**
+     * Returns the next tuple of the node, or null
+     * @return
+     */
+    ITuple nextTuple() {
+        return position<opened.size()?opened.get(position++):null;
+    }
+
+    /**
+     * Closes the node, the nodes streaming their tuples close their children
+     */
+    void closeNode() {
+        this.opened=null;
+    }
+
+    double getEstimatedRows() {
+        return this.estimatedRows;
+    }
+
+    void setEstimatedRows(double estimatedRows) {
+        this.estimatedRows=estimatedRows;
+    }
+
+    long getActualRows() {
+        return this.actualRows;
+    }
+
+    /**
+     * Returns the dictionaries of the String attributes of the tuples of the node when they are tuples of a table
+     * stored by tuple (see VersionedTable), null otherwise
+     * @return
+     */
+    StringDictionary[] getDictionaries() {
+        return null;
+    }
+
+    /**
+     * Returns the number of table rows read by the plan from this node down when it last ran
+     * (a leaf reads the rows it returns), 0 if it did not run
+     * @return
+     */
+    long getRowsScanned() {
+        if(getChildren().isEmpty()){
+            return Math.max(0,actualRows);
+        }
+        long rows=0;
+        for(PlanNode child: getChildren()){
+            rows+=child.getRowsScanned();
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the number of table rows found through an index by the plan from this node down when it last ran
+     * @return
+     */
+    long getIndexHits() {
+        long rows=0;
+        for(PlanNode child: getChildren()){
+            rows+=child.getIndexHits();
+        }
+        return rows;
+    }
+
+    /**
+     * Binds the values of the ? placeholders of a prepared query to this node and the nodes below it
+     * (see PreparedQuery), before the plan runs
+     * @param values
+     * @throws InvalidQueryException if a value cannot be converted to the type of its attribute
+     */
+    void bind(Object[] values) throws InvalidQueryException {
+        bindParameters(values);
+        for(PlanNode child: getChildren()){
+            child.bind(values);
+        }
+    }
+
+    /**
+     * Binds the values of the ? placeholders used by this node (nodes without placeholders do nothing)
+     * @param values
+     * @throws InvalidQueryException
+     */
+    void bindParameters(Object[] values) throws InvalidQueryException {
+    }
+
+    /**
+     * Returns the executor of the node for work that can be split into morsels (serial by default)
+     * @return
+     */
+    MorselExecutor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Sets the executor of this node and of the nodes below it
+     * @param executor
+     */
+    void parallelize(MorselExecutor executor) {
+        this.executor=executor;
+        for(PlanNode child: getChildren()){
+            child.parallelize(executor);
+        }
+    }
+
+    /**
+     * Returns the snapshot the versioned tables are read with (see VersionedTable), -1 to read the last
+     * committed one when the node runs
+     * @return
+     */
+    long getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Sets the snapshot of this node and of the nodes below it
+     * @param snapshot
+     */
+    void setSnapshot(long snapshot) {
+        this.snapshot=snapshot;
+        for(PlanNode child: getChildren()){
+            child.setSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Returns the plan from this node down, one node per line indented under its parent,
+     * with the estimated and (once the plan ran) actual number of rows
+     * @return
+     */
+    String explain() {
+        StringBuilder out=new StringBuilder();
+        explain(out,0);
+        return out.toString();
+    }
+
+    private void explain(StringBuilder out, int depth) {
+        for(int i=0;i<depth;i++){
+            out.append("  ");
+        }
+        out.append(describe()).append(" (estimated rows: ").append(Math.round(estimatedRows));
+        if(actualRows>=0){
+            out.append(", actual rows: ").append(actualRows);
+        }
+        out.append(")\n");
+        for(PlanNode child: getChildren()){
+            child.explain(out,depth+1);
+        }
+    }
+}
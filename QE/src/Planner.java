@@ -0,0 +1,700 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns a parsed select query into a plan
+ *
+ * The planner chooses, using the table statistics (see TableStatistics), how every table is read (full scan or index lookup)
+ * and in which order the tables are joined; the estimated number of rows of every node is kept in the plan
+ * so that explain can show it next to the actual number
+ */
+class Planner {
+    private static final double EQUALITY_SELECTIVITY=0.1;
+    private static final double RANGE_SELECTIVITY=1/3.0;
+    private static final double NOT_EQUAL_SELECTIVITY=0.9;
+    /**
+     * Cost of reading one tuple through an index, relative to reading one tuple in a scan
+     */
+    private static final double INDEX_TUPLE_COST=2.0;
+
+    private Database db;
+
+    /**
+     * constructor
+     * @param db
+     */
+    public Planner(Database db) {
+        this.db=db;
+    }
+
+    /**
+     * Creates the plan of a select query
+     *
+     * Implements the following algorithm
+     *
+     * Find the tables of the from clause
+     * If the query is not valid (unknown table or attribute)
+     *   Throw an invalid query exception
+     *   Exit
+     * Split the where condition into the conditions joined by AND
+     * Give each condition to the first table having all its attributes (conditions on attributes of several tables
+     * are kept for after the joins)
+     * If there is a single table stored by column, no aggregate, no order by, no limit, and no index cheaper than a scan
+     *   Return a columnar scan (filter and project over the column arrays)
+     * For each table
+     *   Choose its access path for its conditions (scan + filter or index lookup, see access)
+     * Start with the table with the fewest estimated rows
+     * While some tables are not joined
+     *   Among the join conditions between a joined table and a table not joined yet,
+     *   choose the one whose join has the fewest estimated rows
+     *   Hash join the current plan with that table
+     *   Filter on the other join conditions that now have both tables joined
+     * Filter on the conditions on attributes of several tables
+     * If there is a group by clause or an aggregate
+     *   Hash aggregate on the group by attributes (see aggregate)
+     *   Filter on the having condition
+     * If there is an order by clause
+     *   Sort on the order by attributes (keeping only the offset + limit first tuples if there is a limit)
+     * Project on the select attributes (all the attributes of the tables for SELECT *)
+     * If there is a limit clause
+     *   Skip the offset first tuples and keep the limit next ones (the plan below stops being read after them)
+     * Set the executor of the query on the plan (database degree of parallelism, or the one of the query hint)
+     *
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public PlanNode plan(SelectQuery query) throws InvalidQueryException {
+        List<ITable> tables=new ArrayList<>();
+        tables.add(table(query.getTable()));
+        for(SelectQuery.Join join: query.getJoins()){
+            tables.add(table(join.getTable()));
+        }
+        List<List<Condition>> tableConditions=new ArrayList<>();
+        for(int i=0;i<tables.size();i++){
+            tableConditions.add(new ArrayList<>());
+        }
+        List<Condition> joinedConditions=new ArrayList<>();
+        if(query.getWhere()!=null){
+            for(Condition c: query.getWhere().conjuncts()){
+                int table=conditionTable(tables,c);
+                if(table==-1){
+                    joinedConditions.add(c);
+                }else{
+                    tableConditions.get(table).add(c);
+                }
+            }
+        }
+        boolean aggregated=isAggregated(query);
+        List<String> attributes=selectAttributes(query,tables,aggregated);
+        boolean limited=query.getLimit()>=0 || query.getOffset()>0;
+        if(tables.size()==1 && tables.get(0) instanceof ColumnarTable && query.getOrderBy().isEmpty() && !aggregated
+                && !limited){
+            PlanNode columnarScan=columnarScan((ColumnarTable) tables.get(0),where(tableConditions.get(0)),attributes);
+            if(columnarScan!=null){
+                columnarScan.parallelize(db.getQueryExecutor(query.getParallelism()));
+                return columnarScan;
+            }
+        }
+        List<PlanNode> access=new ArrayList<>();
+        for(int i=0;i<tables.size();i++){
+            access.add(access(tables.get(i),where(tableConditions.get(i))));
+        }
+        PlanNode current=joinTables(tables,access,query.getJoins());
+        if(!joinedConditions.isEmpty()){
+            double rows=current.getEstimatedRows();
+            current=new FilterNode(current,Condition.and(joinedConditions));
+            current.setEstimatedRows(rows*Math.pow(RANGE_SELECTIVITY,joinedConditions.size()));
+        }
+        if(aggregated){
+            current=aggregate(current,tables,query);
+            if(query.getHaving()!=null){
+                double rows=current.getEstimatedRows();
+                current=new FilterNode(current,query.getHaving());
+                current.setEstimatedRows(rows*Math.pow(RANGE_SELECTIVITY,query.getHaving().conjuncts().size()));
+            }
+        }else if(query.getHaving()!=null){
+            throw new InvalidQueryException("A having clause needs a group by clause or an aggregate");
+        }
+        if(!query.getOrderBy().isEmpty()){
+            List<Sort.Key> keys=new ArrayList<>();
+            for(SelectQuery.Order order: query.getOrderBy()){
+                keys.add(new Sort.Key(column(current,attributeName(order.getAttribute())),order.isAscending()));
+            }
+            SortNode sort=new SortNode(current,keys,db.getSortMemoryBudget(),db.getSpillFolder());
+            if(query.getLimit()>=0){
+                sort.setLimit((int) Math.min(Integer.MAX_VALUE,(long) query.getOffset()+query.getLimit()));
+            }
+            current=sort;
+        }
+        int[] columns=new int[attributes.size()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=column(current,attributeName(attributes.get(i)));
+        }
+        PlanNode project=new ProjectNode(current,columns,projectSchema(current.getSchema(),columns));
+        project.setEstimatedRows(current.getEstimatedRows());
+        if(limited){
+            project=new LimitNode(project,query.getLimit(),query.getOffset());
+        }
+        project.parallelize(db.getQueryExecutor(query.getParallelism()));
+        return project;
+    }
+
+    /**
+     * Creates the hash aggregate of a query over the plan of its from and where clauses
+     *
+     * Implements the following algorithm
+     *
+     * Find the group by attributes in the plan schema
+     * Collect the aggregates of the select, having and order by clauses (each one once)
+     * Find their attributes in the plan schema and compute their types
+     * If an attribute of the select clause is neither an aggregate nor a group by attribute
+     *   Throw an invalid query exception
+     * Estimate the number of groups (the product of the distinct values of the group by attributes,
+     * at most the number of rows)
+     * Return the hash aggregate, its schema is the group by attributes followed by the aggregates
+     *
+     * @param current
+     * @param tables the tables of the from clause
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    private PlanNode aggregate(PlanNode current, List<ITable> tables, SelectQuery query) throws InvalidQueryException {
+        ISchema input=current.getSchema();
+        Map<Integer,String> attributes=new HashMap<>();
+        int[] groupColumns=new int[query.getGroupBy().size()];
+        double groups=1;
+        for(int i=0;i<groupColumns.length;i++){
+            String attribute=query.getGroupBy().get(i);
+            groupColumns[i]=column(current,attribute);
+            attributes.put(i,input.getAttributes().get(groupColumns[i]));
+            for(ITable table: tables){
+                int col=Database.columnIndex(table,attribute);
+                if(col!=-1){
+                    groups*=distinct(table,col);
+                    break;
+                }
+            }
+        }
+        Map<String,Aggregate> aggregates=new LinkedHashMap<>();
+        List<String> used=new ArrayList<>(query.getAttributes());
+        if(query.getHaving()!=null){
+            used.addAll(query.getHaving().attributes());
+        }
+        for(SelectQuery.Order order: query.getOrderBy()){
+            used.add(order.getAttribute());
+        }
+        for(String attribute: used){
+            Aggregate aggregate=Aggregate.parse(attribute);
+            if(aggregate!=null){
+                aggregates.putIfAbsent(aggregate.toString(),aggregate);
+            }
+        }
+        List<Aggregate> list=new ArrayList<>(aggregates.values());
+        int[] aggregateColumns=new int[list.size()];
+        for(int i=0;i<aggregateColumns.length;i++){
+            Aggregate aggregate=list.get(i);
+            boolean all=aggregate.getAttribute().equals("*");
+            aggregateColumns[i]=all?-1:column(current,aggregate.getAttribute());
+            String type=aggregate.type(all?"Integer":input.getType(aggregateColumns[i]));
+            attributes.put(groupColumns.length+i,aggregate+":"+type);
+        }
+        ISchema schema=new Schema(attributes);
+        for(String attribute: query.getAttributes()){
+            if(Aggregate.parse(attribute)==null && Database.columnIndex(current.getName(),schema,attribute)==-1){
+                if(Database.columnIndex(current.getName(),input,attribute)==-1){
+                    throw new InvalidQueryException("Unknown attribute: "+attribute);
+                }
+                throw new InvalidQueryException("The attribute "+attribute+" must be in the group by clause");
+            }
+        }
+        PlanNode result=new AggregateNode(current,groupColumns,list,aggregateColumns,schema,
+                db.getAggregateMemoryBudget(),db.getSpillFolder());
+        result.setEstimatedRows(groupColumns.length==0?1:Math.max(1,Math.min(groups,current.getEstimatedRows())));
+        return result;
+    }
+
+    /**
+     * Returns whether the query has a group by clause or an aggregate in its select clause
+     */
+    /**
+     * Returns the attributes of the select clause, for SELECT * the attributes of the from table followed by
+     * those of each join table (named table.attribute if there are joins)
+     */
+    private static List<String> selectAttributes(SelectQuery query, List<ITable> tables, boolean aggregated)
+            throws InvalidQueryException {
+        if(!query.getAttributes().equals(List.of(SelectQuery.ALL))){
+            return query.getAttributes();
+        }
+        if(aggregated){
+            throw new InvalidQueryException("SELECT * cannot be used with a group by clause");
+        }
+        List<String> attributes=new ArrayList<>();
+        for(ITable table: tables){
+            ISchema schema=table.getSchema();
+            for(int i=0;i<schema.getAttributes().size();i++){
+                attributes.add(tables.size()==1?schema.getName(i):table.getName()+"."+schema.getName(i));
+            }
+        }
+        return attributes;
+    }
+
+    private static boolean isAggregated(SelectQuery query) throws InvalidQueryException {
+        if(!query.getGroupBy().isEmpty()){
+            return true;
+        }
+        for(String attribute: query.getAttributes()){
+            if(Aggregate.parse(attribute)!=null){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the name of an attribute of the select or order by clause in the plan schema
+     * (the normalized text of an aggregate)
+     */
+    private static String attributeName(String attribute) throws InvalidQueryException {
+        Aggregate aggregate=Aggregate.parse(attribute);
+        return aggregate==null?attribute:aggregate.toString();
+    }
+
+    /**
+     * Chooses how to read the tuples of a table matching a condition
+     *
+     * Implements the following algorithm
+     *
+     * If there is no condition
+     *   Return a scan of the table
+     * Estimate the number of matching tuples (table size times the selectivity of the condition)
+     * For each comparison of the condition joined by AND (attribute operator value)
+     *   If the table has an index answering the comparison
+     *     Estimate the cost of reading the tuples matching the comparison through the index
+     * If the cheapest index lookup costs less than scanning the table
+     *   Return the index lookup, followed by a filter on the other conditions (if any)
+     * Else
+     *   Return a scan of the table followed by a filter
+     *
+     * @param table
+     * @param condition the condition, or null to read all the tuples
+     * @return
+     * @throws InvalidQueryException
+     */
+    public PlanNode access(ITable table, Condition condition) throws InvalidQueryException {
+        PlanNode scan=new ScanNode(table);
+        if(condition==null){
+            return scan;
+        }
+        ConditionCompiler.check(condition,table.getName(),table.getSchema());
+        double rows=rows(table);
+        double estimate=rows*selectivity(table,condition);
+        List<Condition> conjuncts=condition.conjuncts();
+        Condition best=null;
+        IIndex bestIndex=null;
+        double bestCost=rows;
+        for(Condition c: conjuncts){
+            if(!c.isComparison()){
+                continue;
+            }
+            int col=Database.columnIndex(table,c.getOperand1());
+            IIndex index=findIndex(table,col,c.getOperator());
+            double cost=indexCost(rows,rows*selectivity(table,c));
+            if(index!=null && cost<bestCost){
+                best=c;
+                bestIndex=index;
+                bestCost=cost;
+            }
+        }
+        PlanNode result;
+        if(best!=null){
+            int col=bestIndex.getColumn();
+            if(best.getParameters().isEmpty()){
+                result=new IndexScanNode(table,bestIndex,best.getOperator(),
+                        Database.parseValue(table.getSchema().getType(col),best.getOperand2()));
+            }else{
+                IndexScanNode lookup=new IndexScanNode(table,bestIndex,best.getOperator(),null);
+                lookup.setParameter(best.getParameters().get(0));
+                result=lookup;
+            }
+            result.setEstimatedRows(rows*selectivity(table,best));
+            List<Condition> others=new ArrayList<>(conjuncts);
+            others.remove(best);
+            if(!others.isEmpty()){
+                result=new FilterNode(result,Condition.and(others));
+            }
+        }else{
+            FilterNode filter=new FilterNode(scan,condition);
+            filter.setVectorized(db.isVectorized());
+            result=filter;
+        }
+        result.setEstimatedRows(estimate);
+        return result;
+    }
+
+    /**
+     * Returns the fraction of the tuples of the table expected to match a condition
+     *
+     * Implements the following algorithm
+     *
+     * If the condition is an AND
+     *   Return the product of the selectivities of its conditions (assumed independent)
+     * If the condition is an OR
+     *   Return 1 minus the product of the selectivities of the negations of its conditions
+     * If the condition is a NOT
+     *   Return 1 minus the selectivity of its condition
+     * If a value is a ? placeholder
+     *   Return the selectivity of the operator for any value (see parameterSelectivity)
+     * If the condition is an IN
+     *   Return the sum of the selectivities of attribute = value for its values (at most 1)
+     * If the condition is a LIKE
+     *   Return the selectivity of attribute = pattern for a pattern without wildcard, else the range selectivity
+     * Else
+     *   Return the selectivity of the comparison (see selectivity of attribute operator value)
+     *
+     * @param table
+     * @param condition
+     * @return
+     * @throws InvalidQueryException
+     */
+    double selectivity(ITable table, Condition condition) throws InvalidQueryException {
+        switch(condition.getOperator()){
+            case "AND":
+            case "OR":
+                boolean and=condition.getOperator().equals("AND");
+                double product=1;
+                for(Condition c: condition.getConditions()){
+                    double s=selectivity(table,c);
+                    product*=and?s:1-s;
+                }
+                return and?product:1-product;
+            case "NOT":
+                return 1-selectivity(table,condition.getConditions().get(0));
+        }
+        int col=Database.columnIndex(table,condition.getOperand1());
+        if(col==-1){
+            throw new InvalidQueryException("Unknown attribute: "+condition.getOperand1());
+        }
+        String type=table.getSchema().getType(col);
+        if(!condition.getParameters().isEmpty()){
+            return parameterSelectivity(table,col,condition);
+        }
+        switch(condition.getOperator()){
+            case "IN":
+                double sum=0;
+                for(String v: condition.getValues()){
+                    sum+=selectivity(table,col,"=",Database.parseValue(type,v));
+                }
+                return Math.min(1,sum);
+            case "LIKE":
+                String pattern=condition.getOperand2();
+                if(pattern.indexOf('%')==-1 && pattern.indexOf('_')==-1 && type.equals("String")){
+                    return selectivity(table,col,"=",pattern);
+                }
+                return RANGE_SELECTIVITY;
+            default:
+                return selectivity(table,col,condition.getOperator(),
+                        Database.parseValue(type,condition.getOperand2()));
+        }
+    }
+
+    /**
+     * Returns the fraction of the tuples of the table expected to match a condition whose value is a ? placeholder
+     * (the value is not known when the plan is made): one over the number of distinct values of the attribute
+     * for = (per value for IN), and the fixed fractions for the other operators
+     */
+    private double parameterSelectivity(ITable table, int col, Condition condition) {
+        double equal=statistics(table)!=null?1/Math.max(1,distinct(table,col)):EQUALITY_SELECTIVITY;
+        switch(condition.getOperator()){
+            case "=": return equal;
+            case "IN": return Math.min(1,equal*condition.getValues().size());
+            case "!=": return statistics(table)!=null?1-equal:NOT_EQUAL_SELECTIVITY;
+            default: return RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Returns the fraction of the tuples of the table expected to match attribute operator value
+     * (from the table statistics, or a fixed fraction per operator for a table without statistics)
+     * @param table
+     * @param col
+     * @param op
+     * @param value
+     * @return
+     */
+    double selectivity(ITable table, int col, String op, Object value) {
+        TableStatistics stats=statistics(table);
+        if(stats!=null){
+            return stats.selectivity(col,op,value);
+        }
+        switch(op){
+            case "=": return EQUALITY_SELECTIVITY;
+            case "!=": return NOT_EQUAL_SELECTIVITY;
+            default: return RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Returns the expected number of distinct values of an attribute of a table
+     * (without statistics, the attribute is assumed to be a key)
+     * @param table
+     * @param col
+     * @return
+     */
+    double distinct(ITable table, int col) {
+        TableStatistics stats=statistics(table);
+        if(stats!=null){
+            return stats.distinct(col);
+        }
+        return Math.max(1,rows(table));
+    }
+
+    /**
+     * Returns the statistics of a table of the database, or null for an intermediate result
+     */
+    private TableStatistics statistics(ITable table) {
+        if(db.getTable(table.getName())!=table){
+            return null;
+        }
+        return db.getStatistics(table.getName());
+    }
+
+    /**
+     * Returns the position of the first table having all the attributes of the condition, or -1 if there is none
+     * (the condition is then on attributes of several tables)
+     * @throws InvalidQueryException if an attribute is in none of the tables, or is not qualified and in more than one
+     */
+    private static int conditionTable(List<ITable> tables, Condition condition) throws InvalidQueryException {
+        List<String> attributes=condition.attributes();
+        for(String attribute: attributes){
+            checkUnambiguous(tables,attribute);
+        }
+        for(int i=0;i<tables.size();i++){
+            boolean all=true;
+            for(String attribute: attributes){
+                all&=Database.columnIndex(tables.get(i),attribute)!=-1;
+            }
+            if(all){
+                return i;
+            }
+        }
+        for(String attribute: attributes){
+            boolean found=false;
+            for(ITable table: tables){
+                found|=Database.columnIndex(table,attribute)!=-1;
+            }
+            if(!found){
+                throw new InvalidQueryException("Unknown attribute: "+attribute);
+            }
+        }
+        return -1;
+    }
+
+    private static Condition where(List<Condition> conditions) {
+        return conditions.isEmpty()?null:Condition.and(conditions);
+    }
+
+    /**
+     * Returns the number of tuples of a table (without building the snapshot of a versioned table)
+     * @param table
+     * @return
+     */
+    static int rows(ITable table) {
+        if(table instanceof VersionedTable){
+            return ((VersionedTable) table).size();
+        }
+        return table.getTuples().size();
+    }
+
+    private static double indexCost(double rows, double estimate) {
+        return Math.log(rows+1)/Math.log(2)+estimate*INDEX_TUPLE_COST;
+    }
+
+    /**
+     * Returns an index of the table that can answer the condition on the attribute with the operator,
+     * or null if there is none (a hash index only answers =, a B+-tree answers all but !=)
+     */
+    private IIndex findIndex(ITable table, int col, String op) {
+        if(db.getTable(table.getName())!=table || op.equals("!=")){
+            return null;
+        }
+        for(IIndex index: db.getIndexes(table.getName())){
+            if(index.getColumn()==col && (op.equals("=") || index instanceof IRangeIndex)){
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the columnar scan of the query, or null if an index lookup is cheaper
+     */
+    private PlanNode columnarScan(ColumnarTable table, Condition where, List<String> attributes)
+            throws InvalidQueryException {
+        int[] columns=new int[attributes.size()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=Database.columnIndex(table,attributes.get(i));
+            if(columns[i]==-1){
+                throw new InvalidQueryException("Unknown attribute: "+attributes.get(i));
+            }
+        }
+        ColumnarScanNode scan=new ColumnarScanNode(table,columns,projectSchema(table.getSchema(),columns));
+        scan.setVectorized(db.isVectorized());
+        if(where!=null){
+            PlanNode access=access(table,where);
+            if(!(access instanceof FilterNode) || !(access.getChildren().get(0) instanceof ScanNode)){
+                return null;
+            }
+            scan.setCondition(where);
+            scan.setEstimatedRows(access.getEstimatedRows());
+        }
+        return scan;
+    }
+
+    /**
+     * Joins the tables in the cheapest order found greedily (see plan)
+     */
+    private PlanNode joinTables(List<ITable> tables, List<PlanNode> access, List<SelectQuery.Join> joins)
+            throws InvalidQueryException {
+        // every join condition as {left table, left attribute, right table, right attribute}
+        List<int[]> conditions=new ArrayList<>();
+        for(int j=0;j<joins.size();j++){
+            SelectQuery.Join join=joins.get(j);
+            // the attributes of a join condition are those of the tables joined so far
+            checkUnambiguous(tables.subList(0,j+2),join.getLeftAttribute());
+            checkUnambiguous(tables.subList(0,j+2),join.getRightAttribute());
+            int[] c=joinCondition(tables,j+1,join.getLeftAttribute(),join.getRightAttribute());
+            if(c==null){
+                c=joinCondition(tables,j+1,join.getRightAttribute(),join.getLeftAttribute());
+            }
+            if(c==null){
+                throw new InvalidQueryException("Invalid join condition: "
+                        +join.getLeftAttribute()+" = "+join.getRightAttribute());
+            }
+            conditions.add(c);
+        }
+        int start=0;
+        for(int i=1;i<access.size();i++){
+            if(access.get(i).getEstimatedRows()<access.get(start).getEstimatedRows()){
+                start=i;
+            }
+        }
+        Set<Integer> joined=new HashSet<>();
+        joined.add(start);
+        PlanNode current=access.get(start);
+        List<int[]> pending=new ArrayList<>(conditions);
+        while(joined.size()<tables.size()){
+            int[] best=null;
+            double bestRows=Double.MAX_VALUE;
+            for(int[] c: pending){
+                boolean leftJoined=joined.contains(c[0]);
+                if(leftJoined==joined.contains(c[2])){
+                    continue;
+                }
+                int other=leftJoined?c[2]:c[0];
+                double rows=current.getEstimatedRows()*access.get(other).getEstimatedRows()
+                        /Math.max(distinct(tables.get(c[0]),c[1]),distinct(tables.get(c[2]),c[3]));
+                if(rows<bestRows){
+                    best=c;
+                    bestRows=rows;
+                }
+            }
+            if(best==null){
+                throw new InvalidQueryException("The from clause tables are not all joined by a join condition");
+            }
+            pending.remove(best);
+            boolean leftJoined=joined.contains(best[0]);
+            int inner=leftJoined?best[0]:best[2];
+            int other=leftJoined?best[2]:best[0];
+            int currentCol=column(current,qualified(tables.get(inner),leftJoined?best[1]:best[3]));
+            PlanNode next=access.get(other);
+            current=new JoinNode(current,next,currentCol,leftJoined?best[3]:best[1],
+                    db.getJoinMemoryBudget(),db.getSpillFolder());
+            current.setEstimatedRows(bestRows);
+            joined.add(other);
+            for(int i=pending.size()-1;i>=0;i--){
+                int[] c=pending.get(i);
+                if(joined.contains(c[0]) && joined.contains(c[2])){
+                    pending.remove(i);
+                    double rows=current.getEstimatedRows();
+                    current=new FilterNode(current,column(current,qualified(tables.get(c[0]),c[1])),
+                            column(current,qualified(tables.get(c[2]),c[3])));
+                    current.setEstimatedRows(rows/Math.max(distinct(tables.get(c[0]),c[1]),1));
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Resolves left = right where right is an attribute of the table at position right
+     * and left an attribute of one of the tables before it, returns null if that is not the case
+     */
+    private static int[] joinCondition(List<ITable> tables, int right, String leftAttribute, String rightAttribute)
+            throws InvalidQueryException {
+        int rightCol=Database.columnIndex(tables.get(right),rightAttribute);
+        if(rightCol==-1){
+            return null;
+        }
+        for(int i=0;i<right;i++){
+            int leftCol=Database.columnIndex(tables.get(i),leftAttribute);
+            if(leftCol!=-1){
+                return new int[]{i,leftCol,right,rightCol};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that at most one of the tables has the attribute (an attribute without the table name can be in
+     * several joined tables)
+     * @param tables
+     * @param attribute
+     * @throws InvalidQueryException if more than one table has it
+     */
+    private static void checkUnambiguous(List<ITable> tables, String attribute) throws InvalidQueryException {
+        int found=0;
+        for(ITable table: tables){
+            if(Database.columnIndex(table,attribute)!=-1){
+                found++;
+            }
+        }
+        if(found>1){
+            throw new InvalidQueryException("Ambiguous attribute: "+attribute);
+        }
+    }
+
+    private static String qualified(ITable table, int col) {
+        return table.getName()+"."+table.getSchema().getName(col);
+    }
+
+    private static int column(PlanNode node, String attribute) throws InvalidQueryException {
+        int col=Database.columnIndex(node.getName(),node.getSchema(),attribute);
+        if(col==-1){
+            throw new InvalidQueryException("Unknown attribute: "+attribute);
+        }
+        return col;
+    }
+
+    private static ISchema projectSchema(ISchema schema, int[] columns) {
+        Map<Integer,String> attributes=new HashMap<>();
+        for(int i=0;i<columns.length;i++){
+            attributes.put(i,schema.getAttributes().get(columns[i]));
+        }
+        return new Schema(attributes);
+    }
+
+    private ITable table(String name) throws InvalidQueryException {
+        ITable table=db.getTable(name);
+        if(table==null){
+            throw new InvalidQueryException("Unknown table: "+name);
+        }
+        return table;
+    }
+}
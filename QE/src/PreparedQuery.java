@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A select, insert or delete query parsed once and executed many times (see Database.prepare)
+ *
+ * The values of the query can be ? placeholders, numbered from 1 in the order of the query; their values are
+ * bound with the set methods before every execution and kept until they are bound again or cleared
+ * Placeholders can be values of the where clause of a select or delete, or values of an insert
+ *
+ * The query is parsed and its table and attributes are resolved when it is prepared. A select is also planned
+ * then, the plan reading its placeholders when it runs (an index is chosen for a placeholder from the number of
+ * distinct values of its attribute); the plan is made again only if an index of one of its tables changed
+ * An insert keeps its rows converted to the attribute types, executing it only copies them and sets the values
+ * of the placeholders
+ *
+ * A prepared query is not thread safe: every thread prepares its own
+ */
+class PreparedQuery {
+    private enum Kind { SELECT, INSERT, DELETE }
+
+    private Database db;
+    private String sql;
+    private Kind kind;
+    private Object[] values;
+    private boolean[] bound;
+    // select
+    private SelectQuery select;
+    private PlanNode plan;
+    private Map<String,ITable> planTables=new HashMap<>();
+    private Map<String,List<IIndex>> planIndexes=new HashMap<>();
+    // insert and delete
+    private String table;
+    private List<Object[]> rows;
+    private int[][] slots;
+    private Condition where;
+
+    /**
+     * Parses and plans a query of the database (see Database.prepare)
+     * @param db
+     * @param sql
+     * @throws InvalidQueryException
+     */
+    PreparedQuery(Database db, String sql) throws InvalidQueryException {
+        this.db=db;
+        this.sql=sql;
+        IQuery query=Parser.parse(sql);
+        int parameters;
+        if(query instanceof SelectQuery){
+            this.kind=Kind.SELECT;
+            this.select=(SelectQuery) query;
+            if(select.getHaving()!=null && select.getHaving().hasParameters()){
+                throw new InvalidQueryException("? placeholders are only allowed in the where clause: "+sql);
+            }
+            parameters=select.getWhere()==null?0:select.getWhere().parameterCount();
+            plan();
+        }else if(query instanceof InsertQuery){
+            this.kind=Kind.INSERT;
+            prepareInsert((InsertQuery) query);
+            parameters=slots.length;
+        }else{
+            this.kind=Kind.DELETE;
+            prepareDelete((DeleteQuery) query);
+            parameters=where==null?0:where.parameterCount();
+        }
+        this.values=new Object[parameters];
+        this.bound=new boolean[parameters];
+    }
+
+    /**
+     * Returns the text of the query
+     * @return
+     */
+    public String getSql() {
+        return this.sql;
+    }
+
+    /**
+     * Returns the number of ? placeholders of the query
+     * @return
+     */
+    public int getParameterCount() {
+        return this.values.length;
+    }
+
+    /**
+     * Binds an Integer value to a placeholder (it can also be the value of a Double or String attribute)
+     * @param parameter the placeholder number, from 1
+     * @param value
+     */
+    public void setInt(int parameter, int value) {
+        set(parameter,value);
+    }
+
+    /**
+     * Binds a Double value to a placeholder
+     * @param parameter the placeholder number, from 1
+     * @param value
+     */
+    public void setDouble(int parameter, double value) {
+        set(parameter,value);
+    }
+
+    /**
+     * Binds a String value to a placeholder (it is converted when the attribute is an Integer or a Double)
+     * @param parameter the placeholder number, from 1
+     * @param value
+     */
+    public void setString(int parameter, String value) {
+        set(parameter,value);
+    }
+
+    /**
+     * Binds null to a placeholder (only a value of an insert can be null)
+     * @param parameter the placeholder number, from 1
+     */
+    public void setNull(int parameter) {
+        set(parameter,null);
+    }
+
+    /**
+     * Unbinds all the placeholders
+     */
+    public void clearParameters() {
+        Arrays.fill(values,null);
+        Arrays.fill(bound,false);
+    }
+
+    /**
+     * Runs a prepared select query with the bound values and returns its results table
+     *
+     * Implements the following algorithm
+     *
+     * If a placeholder is not bound
+     *   Throw an invalid query exception
+     * Take a snapshot of the database (see Database.openSnapshot)
+     * Lock the tables of the query not stored by tuple for reading, until the plan has run (see Database.lockForReading)
+     * If a table of the query was reloaded, or one of its indexes created or rebuilt, since the plan was made
+     *   Make the plan again
+     * Bind the values to the plan (convert them and compile the conditions)
+     * Run the plan on the snapshot
+     * Record the time spent binding and running the query in the query metrics (see QueryMetrics)
+     *
+     * @return
+     * @throws InvalidQueryException
+     */
+    public ITable executeQuery() throws InvalidQueryException {
+        QueryStats stats=db.startQuery(sql);
+        long snapshot=db.openSnapshot();
+        List<Lock> latched=db.lockForReading(planTables.keySet());
+        try {
+            PlanNode plan=boundPlan();
+            stats.planned(plan);
+            plan.setSnapshot(snapshot);
+            ITable result=plan.run();
+            stats.executed(result.getTuples().size());
+            return result;
+        } finally {
+            Database.unlock(latched);
+            db.closeSnapshot(snapshot);
+            db.finishQuery(stats);
+        }
+    }
+
+    /**
+     * Opens a cursor over the results of the prepared select query with the bound values (see Database.openCursor)
+     * The plan of the query is shared by its executions: the cursor must be closed before the query runs again
+     * @return
+     * @throws InvalidQueryException
+     */
+    public Cursor openCursor() throws InvalidQueryException {
+        long snapshot=db.openSnapshot();
+        List<Lock> latched=db.lockForReading(planTables.keySet());
+        try {
+            return db.openCursor(boundPlan(),snapshot,latched);
+        } catch (InvalidQueryException | RuntimeException e) {
+            db.closeSnapshot(snapshot);
+            throw e;
+        } finally {
+            Database.unlock(latched);
+        }
+    }
+
+    /**
+     * Returns the plan of the select query, made again if needed and bound to the values (see executeQuery)
+     */
+    private PlanNode boundPlan() throws InvalidQueryException {
+        if(kind!=Kind.SELECT){
+            throw new InvalidQueryException("Not a select query: "+sql);
+        }
+        checkBound();
+        for(String name: planTables.keySet()){
+            if(db.getTable(name)!=planTables.get(name) || !db.getIndexes(name).equals(planIndexes.get(name))){
+                plan();
+                break;
+            }
+        }
+        plan.bind(values);
+        return plan;
+    }
+
+    /**
+     * Runs a prepared insert or delete query with the bound values
+     *
+     * Implements the following algorithm
+     *
+     * If a placeholder is not bound
+     *   Throw an invalid query exception
+     * If the query is an insert
+     *   Copy the rows of the query and set the placeholder values, converted to the attribute types
+     *   Insert the rows (see Database.insertData)
+     * Else
+     *   Replace the placeholders of the where condition with their values
+     *   Delete the tuples matching the condition (see Database.deleteData)
+     * Record the time spent binding and running the query in the query metrics (see QueryMetrics)
+     *
+     * @throws InvalidQueryException
+     */
+    public void executeUpdate() throws InvalidQueryException {
+        if(kind==Kind.SELECT){
+            throw new InvalidQueryException("Not an insert or delete query: "+sql);
+        }
+        QueryStats stats=db.startQuery(sql);
+        try {
+            update(stats);
+        } finally {
+            db.finishQuery(stats);
+        }
+    }
+
+    private void update(QueryStats stats) throws InvalidQueryException {
+        checkBound();
+        ITable t=table();
+        if(kind==Kind.INSERT){
+            List<Object[]> copy=new ArrayList<>(rows.size());
+            for(Object[] row: rows){
+                copy.add(row.clone());
+            }
+            ISchema schema=t.getSchema();
+            for(int p=0;p<slots.length;p++){
+                int col=slots[p][1];
+                copy.get(slots[p][0])[col]=convert(schema.getType(col),p);
+            }
+            stats.parsed();
+            db.insertRows(t,copy);
+            stats.executed(copy.size());
+        }else{
+            Condition condition=where==null?null:where.bind(values);
+            stats.parsed();
+            stats.executed(db.deleteRows(t,condition,condition==null?"":condition.toString()));
+        }
+    }
+
+    private void plan() throws InvalidQueryException {
+        this.plan=new Planner(db).plan(select);
+        planTables.clear();
+        planIndexes.clear();
+        snapshot(select.getTable());
+        for(SelectQuery.Join join: select.getJoins()){
+            snapshot(join.getTable());
+        }
+    }
+
+    /**
+     * Keeps the table and the indexes the plan was made with
+     */
+    private void snapshot(String name) {
+        planTables.put(name,db.getTable(name));
+        planIndexes.put(name,new ArrayList<>(db.getIndexes(name)));
+    }
+
+    /**
+     * Converts the rows of the insert to the attribute types, leaving the placeholders to be set
+     */
+    private void prepareInsert(InsertQuery insert) throws InvalidQueryException {
+        ITable t=db.insertTable(insert);
+        this.table=t.getName();
+        ISchema schema=t.getSchema();
+        int[] columns=Database.insertColumns(t,insert);
+        this.rows=new ArrayList<>();
+        for(List<String> values: insert.getRows()){
+            if(values.size()!=columns.length){
+                throw new InvalidQueryException("The number of values does not match the attributes: "+values);
+            }
+            Object[] row=new Object[schema.getAttributes().size()];
+            for(int i=0;i<columns.length;i++){
+                String value=values.get(i);
+                row[columns[i]]=value==null?null:Database.parseValue(schema.getType(columns[i]),value);
+            }
+            rows.add(row);
+        }
+        this.slots=new int[insert.getParameters().size()][];
+        for(int p=0;p<slots.length;p++){
+            int[] position=insert.getParameters().get(p);
+            slots[p]=new int[]{position[0],columns[position[1]]};
+        }
+    }
+
+    /**
+     * Resolves the table and the attributes of the where condition of a delete query
+     */
+    private void prepareDelete(DeleteQuery delete) throws InvalidQueryException {
+        this.table=delete.getTable();
+        this.where=delete.getWhere();
+        ITable t=table();
+        if(where!=null){
+            ConditionCompiler.check(where,t.getName(),t.getSchema());
+        }
+    }
+
+    private ITable table() throws InvalidQueryException {
+        ITable t=db.getTable(table);
+        if(t==null){
+            throw new InvalidQueryException("Unknown table: "+table);
+        }
+        return t;
+    }
+
+    /**
+     * Converts the value of a placeholder of an insert to the attribute type
+     */
+    private Object convert(String type, int parameter) throws InvalidQueryException {
+        Object value=values[parameter];
+        if(value==null || value instanceof String){
+            return value==null?null:Database.parseValue(type,(String) value);
+        }
+        if(type.equals("String")){
+            return value.toString();
+        }
+        if(type.equals("Double")){
+            return ((Number) value).doubleValue();
+        }
+        if(value instanceof Double){
+            throw new InvalidQueryException("Parameter "+(parameter+1)+" is a Double, the attribute is an Integer");
+        }
+        return value;
+    }
+
+    private void set(int parameter, Object value) {
+        if(parameter<1 || parameter>values.length){
+            throw new IllegalArgumentException("No parameter "+parameter+" (the query has "+values.length+")");
+        }
+        values[parameter-1]=value;
+        bound[parameter-1]=true;
+    }
+
+    private void checkBound() throws InvalidQueryException {
+        for(int p=0;p<bound.length;p++){
+            if(!bound[p]){
+                throw new InvalidQueryException("Parameter "+(p+1)+" is not bound");
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the given attributes of the tuples of its child (select clause)
+ * The tuples of a large child are projected in parallel morsels (see MorselExecutor), keeping their order
+ */
+class ProjectNode extends PlanNode {
+    private PlanNode child;
+    private int[] columns;
+    private ISchema schema;
+
+    /**
+     * constructor
+     * @param child
+     * @param columns the indexes of the kept attributes in the child schema
+     * @param schema the result schema
+     */
+    public ProjectNode(PlanNode child, int[] columns, ISchema schema) {
+        this.child=child;
+        this.columns=columns;
+        this.schema=schema;
+    }
+
+    @Override
+    String getName() {
+        return "Result";
+    }
+
+    @Override
+    ISchema getSchema() {
+        return this.schema;
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Collections.singletonList(child);
+    }
+
+    @Override
+    ITable execute() {
+        ITable input=child.run();
+        ITable result=new Table("Result",schema);
+        List<ITuple> tuples=input.getTuples();
+        for(List<ITuple> morsel: getExecutor().map(tuples.size(),(from,to)->{
+            List<ITuple> projected=new ArrayList<>(to-from);
+            for(int r=from;r<to;r++){
+                projected.add(project(tuples.get(r)));
+            }
+            return projected;
+        })){
+            for(ITuple t: morsel){
+                result.addTuple(t);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    void openNode() {
+        child.open();
+    }
+
+    @Override
+    ITuple nextTuple() {
+        ITuple t=child.next();
+        return t==null?null:project(t);
+    }
+
+    @Override
+    void closeNode() {
+        child.close();
+    }
+
+    private ITuple project(ITuple t) {
+        Object[] values=new Object[columns.length];
+        for(int i=0;i<columns.length;i++){
+            values[i]=t.getValue(columns[i]);
+        }
+        ITuple result=new Tuple(schema);
+        result.setValues(values);
+        return result;
+    }
+
+    @Override
+    String describe() {
+        StringBuilder names=new StringBuilder();
+        for(int i=0;i<columns.length;i++){
+            names.append(i>0?", ":"").append(schema.getName(i));
+        }
+        return "Project ["+names+"]";
+    }
+}
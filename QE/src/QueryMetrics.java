@@ -0,0 +1,301 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The metrics of the queries of a database: latency histograms of the parse, plan and execute phases and of the
+ * whole query, and counters of the rows scanned and returned, bytes read from the disk and index hits
+ * (see QueryStats)
+ *
+ * The metrics are JMX MBeans (domain QE, named after the database folder), and the queries slower than the slow
+ * query threshold are appended to the slow query log of the database folder with their stats and their plan
+ *
+ * The failures of the background tasks of the database (checkpoint, vacuum) are counted, the last one is kept and
+ * they are appended to the error log of the database folder with their stack trace
+ */
+class QueryMetrics implements IQueryMetrics {
+    static final String SLOW_QUERY_LOG="slow_query.log";
+    static final String ERROR_LOG="error.log";
+
+    private final LatencyHistogram parse=new LatencyHistogram();
+    private final LatencyHistogram plan=new LatencyHistogram();
+    private final LatencyHistogram execute=new LatencyHistogram();
+    private final LatencyHistogram total=new LatencyHistogram();
+    private final LongAdder queries=new LongAdder();
+    private final LongAdder failedQueries=new LongAdder();
+    private final LongAdder slowQueries=new LongAdder();
+    private final LongAdder rowsScanned=new LongAdder();
+    private final LongAdder rowsReturned=new LongAdder();
+    private final LongAdder bytesRead=new LongAdder();
+    private final LongAdder indexHits=new LongAdder();
+    private final LongAdder slowQueryLogFailures=new LongAdder();
+    private final LongAdder backgroundFailures=new LongAdder();
+    private volatile String lastBackgroundFailure;
+    private volatile long slowQueryThresholdMillis=-1;
+    private final File slowQueryLog;
+    private final File errorLog;
+    private final List<ObjectName> registered=new ArrayList<>();
+
+    /**
+     * constructor
+     * @param folder the database folder (where the slow query log and the error log are written)
+     */
+    QueryMetrics(String folder) {
+        this.slowQueryLog=new File(folder,SLOW_QUERY_LOG);
+        this.errorLog=new File(folder,ERROR_LOG);
+    }
+
+    /**
+     * Starts the stats of a query run by the current thread
+     * @param query
+     * @return
+     */
+    QueryStats start(String query) {
+        QueryStats stats=new QueryStats(query);
+        stats.start();
+        return stats;
+    }
+
+    /**
+     * Ends the stats of a query and adds them to the metrics
+     *
+     * Implements the following algorithm
+     *
+     * If the query failed
+     *   Count it as failed
+     *   Exit
+     * Record the latency of its phases in the histograms
+     * Add its rows scanned and returned, bytes read and index hits to the counters
+     * If it took longer than the slow query threshold
+     *   Append its stats and plan to the slow query log
+     *   (if the log cannot be written, count the failure: the query itself succeeded)
+     *
+     * @param stats
+     */
+    void finish(QueryStats stats) {
+        stats.finish();
+        if(!stats.isExecuted()){
+            failedQueries.increment();
+            return;
+        }
+        queries.increment();
+        parse.record(stats.getParseNanos());
+        plan.record(stats.getPlanNanos());
+        execute.record(stats.getExecuteNanos());
+        total.record(stats.getTotalNanos());
+        rowsScanned.add(stats.getRowsScanned());
+        rowsReturned.add(stats.getRowsReturned());
+        bytesRead.add(stats.getBytesRead());
+        indexHits.add(stats.getIndexHits());
+        long threshold=slowQueryThresholdMillis;
+        if(threshold>=0 && stats.getTotalNanos()>=threshold*1_000_000){
+            slowQueries.increment();
+            logSlowQuery(stats);
+        }
+    }
+
+    private synchronized void logSlowQuery(QueryStats stats) {
+        StringBuilder entry=new StringBuilder();
+        entry.append("# ").append(LocalDateTime.now())
+                .append(" total ").append(millis(stats.getTotalNanos())).append(" ms")
+                .append(" (parse ").append(millis(stats.getParseNanos()))
+                .append(" ms, plan ").append(millis(stats.getPlanNanos()))
+                .append(" ms, execute ").append(millis(stats.getExecuteNanos())).append(" ms)")
+                .append(" rows scanned: ").append(stats.getRowsScanned())
+                .append(", rows returned: ").append(stats.getRowsReturned())
+                .append(", bytes read: ").append(stats.getBytesRead())
+                .append(", index hits: ").append(stats.getIndexHits()).append('\n');
+        entry.append(stats.getQuery().trim()).append('\n');
+        String p=stats.getPlan();
+        if(p!=null){
+            entry.append(p);
+        }
+        entry.append('\n');
+        try(Writer out=new FileWriter(slowQueryLog,true)){
+            out.write(entry.toString());
+        } catch (IOException e) {
+            // finish runs once the query is done (often in a finally block), its result must not be lost
+            slowQueryLogFailures.increment();
+        }
+    }
+
+    /**
+     * Records the failure of a background task of the database: counts it, keeps it as the last failure and
+     * appends it with its stack trace to the error log
+     * The task keeps running (it is retried at its next run), so the failure is not thrown again
+     * @param task the name of the task (e.g. checkpoint)
+     * @param failure
+     */
+    synchronized void backgroundFailed(String task, RuntimeException failure) {
+        this.lastBackgroundFailure=LocalDateTime.now()+" "+task+": "+failure;
+        StringWriter trace=new StringWriter();
+        failure.printStackTrace(new PrintWriter(trace));
+        try(Writer out=new FileWriter(errorLog,true)){
+            out.write("# "+lastBackgroundFailure+"\n"+trace+"\n");
+        } catch (IOException e) {
+            // the failure is still counted and kept as the last failure
+        }
+        backgroundFailures.increment();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f",nanos/1e6);
+    }
+
+    LatencyHistogram getParseLatency() {
+        return this.parse;
+    }
+
+    LatencyHistogram getPlanLatency() {
+        return this.plan;
+    }
+
+    LatencyHistogram getExecuteLatency() {
+        return this.execute;
+    }
+
+    LatencyHistogram getTotalLatency() {
+        return this.total;
+    }
+
+    /**
+     * Registers the metrics and the histograms as MBeans of the platform MBean server:
+     * QE:type=QueryMetrics,database=folder and QE:type=QueryLatency,database=folder,phase=parse|plan|execute|total
+     * (replacing the MBeans of another database of the same folder)
+     * @param database the database folder
+     */
+    synchronized void register(String database) {
+        MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+        String name="QE:database="+ObjectName.quote(database);
+        try {
+            register(server,new ObjectName(name+",type=QueryMetrics"),new StandardMBean(this,IQueryMetrics.class));
+            String[] phases={"parse","plan","execute","total"};
+            LatencyHistogram[] histograms={parse,plan,execute,total};
+            for(int i=0;i<phases.length;i++){
+                register(server,new ObjectName(name+",type=QueryLatency,phase="+phases[i]),
+                        new StandardMBean(histograms[i],ILatencyHistogram.class));
+            }
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if(server.isRegistered(name)){
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean,name);
+        registered.add(name);
+    }
+
+    /**
+     * Unregisters the MBeans registered by register
+     */
+    synchronized void unregister() {
+        MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+        for(ObjectName name: registered){
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+        registered.clear();
+    }
+
+    @Override
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getFailedQueries() {
+        return failedQueries.sum();
+    }
+
+    @Override
+    public long getSlowQueries() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getIndexHits() {
+        return indexHits.sum();
+    }
+
+    /**
+     * Returns the number of slow queries that could not be written to the slow query log
+     * @return
+     */
+    @Override
+    public long getSlowQueryLogFailures() {
+        return slowQueryLogFailures.sum();
+    }
+
+    @Override
+    public long getBackgroundFailures() {
+        return backgroundFailures.sum();
+    }
+
+    /**
+     * Returns the time, task and exception of the last background task failure, or null if none failed
+     * @return
+     */
+    @Override
+    public String getLastBackgroundFailure() {
+        return this.lastBackgroundFailure;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return this.slowQueryThresholdMillis;
+    }
+
+    /**
+     * Sets the duration from which a query is written to the slow query log, -1 to not log queries
+     * @param slowQueryThresholdMillis
+     */
+    @Override
+    public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis=slowQueryThresholdMillis;
+    }
+
+    @Override
+    public void reset() {
+        for(LatencyHistogram h: new LatencyHistogram[]{parse,plan,execute,total}){
+            h.reset();
+        }
+        for(LongAdder c: new LongAdder[]{queries,failedQueries,slowQueries,rowsScanned,rowsReturned,bytesRead,indexHits,
+                slowQueryLogFailures,backgroundFailures}){
+            c.reset();
+        }
+        this.lastBackgroundFailure=null;
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What one query did: the time spent parsing, planning and executing it, the table rows it read (rows scanned,
+ * and among them the rows found through an index), the rows it returned (or inserted, or deleted) and the bytes
+ * it read from the disk (pages of paged tables, spill files of joins and sorts)
+ *
+ * The stats of the query a thread runs are its current stats (see start), so the code reading from the disk or
+ * running a plan for the query adds to them without them being passed down (morsel workers run with the stats
+ * of the query they work for, see MorselExecutor)
+ */
+class QueryStats {
+    private static final ThreadLocal<QueryStats> CURRENT=new ThreadLocal<>();
+
+    private final String query;
+    private final long start;
+    private long last;
+    private long parseNanos;
+    private long planNanos;
+    private long executeNanos;
+    private long totalNanos=-1;
+    private long rowsScanned;
+    private long rowsReturned;
+    private long indexHits;
+    private final LongAdder bytesRead=new LongAdder();
+    private PlanNode plan;
+    private QueryStats previous;
+
+    /**
+     * constructor, the query starts now
+     * @param query
+     */
+    QueryStats(String query) {
+        this.query=query;
+        this.start=System.nanoTime();
+        this.last=start;
+    }
+
+    /**
+     * Returns the stats of the query run by the current thread, or null
+     * @return
+     */
+    static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the stats the current stats of the thread (until finish)
+     */
+    void start() {
+        this.previous=CURRENT.get();
+        CURRENT.set(this);
+    }
+
+    /**
+     * Restores the current stats of the thread from before start
+     */
+    void finish() {
+        if(previous==null){
+            CURRENT.remove();
+        }else{
+            CURRENT.set(previous);
+        }
+        this.previous=null;
+    }
+
+    /**
+     * Runs a task on another thread with the given current stats
+     * @param stats the stats of the query the task works for, or null
+     * @param task
+     */
+    static void runWith(QueryStats stats, Runnable task) {
+        QueryStats previous=CURRENT.get();
+        CURRENT.set(stats);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Adds bytes read from the disk to the current query, if any
+     * @param bytes
+     */
+    static void readFromDisk(long bytes) {
+        QueryStats stats=CURRENT.get();
+        if(stats!=null){
+            stats.bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Adds the rows read by a plan that ran (see PlanNode.getRowsScanned) to the current query, if any
+     * @param plan
+     */
+    static void scanned(PlanNode plan) {
+        scanned(plan.getRowsScanned(),plan.getIndexHits());
+    }
+
+    /**
+     * Adds rows read from a table to the current query, if any
+     * @param rows
+     * @param indexHits the rows among them found through an index
+     */
+    static void scanned(long rows, long indexHits) {
+        QueryStats stats=CURRENT.get();
+        if(stats!=null){
+            stats.rowsScanned+=rows;
+            stats.indexHits+=indexHits;
+        }
+    }
+
+    /**
+     * Marks the end of the parsing
+     */
+    void parsed() {
+        long now=System.nanoTime();
+        this.parseNanos=now-last;
+        this.last=now;
+    }
+
+    /**
+     * Marks the end of the planning
+     * @param plan the plan of the query, added to the stats once it has run (see executed)
+     */
+    void planned(PlanNode plan) {
+        long now=System.nanoTime();
+        this.planNanos=now-last;
+        this.last=now;
+        this.plan=plan;
+    }
+
+    /**
+     * Marks the end of the execution
+     * @param rowsReturned the rows returned, inserted or deleted by the query
+     */
+    void executed(long rowsReturned) {
+        long now=System.nanoTime();
+        this.executeNanos=now-last;
+        this.totalNanos=now-start;
+        this.rowsReturned=rowsReturned;
+        if(plan!=null){
+            this.rowsScanned+=plan.getRowsScanned();
+            this.indexHits+=plan.getIndexHits();
+        }
+    }
+
+    String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Returns whether the query ran to the end (it did not fail)
+     * @return
+     */
+    boolean isExecuted() {
+        return this.totalNanos>=0;
+    }
+
+    long getParseNanos() {
+        return this.parseNanos;
+    }
+
+    long getPlanNanos() {
+        return this.planNanos;
+    }
+
+    long getExecuteNanos() {
+        return this.executeNanos;
+    }
+
+    long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    long getRowsScanned() {
+        return this.rowsScanned;
+    }
+
+    long getRowsReturned() {
+        return this.rowsReturned;
+    }
+
+    long getIndexHits() {
+        return this.indexHits;
+    }
+
+    long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * Returns the plan of the query with the estimated and actual rows of every step, or null for a query
+     * without plan (insert, delete without condition, result read from the cache)
+     * @return
+     */
+    String getPlan() {
+        return plan==null?null:plan.explain();
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache of the results of select queries, keyed by the normalized query text (see normalize)
+ *
+ * Every table has a version number that every insert and delete increases (see Database.getVersion).
+ * A result is cached with the versions of the tables of its query taken before it ran, and a cached result is
+ * only returned while all these tables still have the same versions, so it is never older than the tables
+ * (a result computed while a table changed is stale as soon as it is cached)
+ *
+ * The cache holds at most maxEntries results and maxBytes bytes (estimated size of the results);
+ * when it is full, the least recently used results are evicted
+ * It counts the hits, the misses, the evictions and the invalidations (stale results found by a lookup)
+ */
+class ResultCache {
+    /**
+     * A cached result and the table versions it was computed from
+     */
+    private static class Entry {
+        private ITable result;
+        private Map<String,Long> versions;
+        private long bytes;
+
+        Entry(ITable result, Map<String,Long> versions, long bytes) {
+            this.result=result;
+            this.versions=versions;
+            this.bytes=bytes;
+        }
+    }
+
+    private LinkedHashMap<String,Entry> entries=new LinkedHashMap<>(16,0.75f,true);
+    private int maxEntries;
+    private long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * constructor
+     * @param maxEntries maximum number of cached results (0 disables the cache)
+     * @param maxBytes maximum estimated size of the cached results
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries=maxEntries;
+        this.maxBytes=maxBytes;
+    }
+
+    /**
+     * Returns the normalized text of a query: the query without the final semicolon, with every run of spaces
+     * replaced by one space and the keywords in upper case (outside quoted values)
+     * Only the keywords the parser reserves are upper-cased (see Parser.isKeyword): other words, such as function
+     * names, can be unquoted values, where case matters
+     * @param query
+     * @return
+     */
+    public static String normalize(String query) {
+        StringBuilder result=new StringBuilder(query.length());
+        boolean quoted=false;
+        boolean space=false;
+        int i=0;
+        while(i<query.length()){
+            char c=query.charAt(i);
+            if(!quoted && Character.isWhitespace(c)){
+                space=true;
+                i++;
+                continue;
+            }
+            if(space && result.length()>0){
+                result.append(' ');
+            }
+            space=false;
+            if(!quoted && Character.isLetter(c)){
+                int end=i;
+                while(end<query.length() && (Character.isLetterOrDigit(query.charAt(end)) || query.charAt(end)=='_')){
+                    end++;
+                }
+                String word=query.substring(i,end);
+                result.append(Parser.isKeyword(word)?word.toUpperCase():word);
+                i=end;
+                continue;
+            }
+            if(c=='\''){
+                quoted=!quoted;
+            }
+            result.append(c);
+            i++;
+        }
+        while(result.length()>0 && result.charAt(result.length()-1)==';'){
+            result.setLength(result.length()-1);
+        }
+        return result.toString().trim();
+    }
+
+    /**
+     * Returns the cached result of a query, or null if there is none or it is stale
+     * @param key the normalized query text
+     * @param versions the current version of a table
+     * @return
+     */
+    public synchronized ITable get(String key, ToLongFunction<String> versions) {
+        Entry entry=entries.get(key);
+        if(entry!=null){
+            for(Map.Entry<String,Long> v: entry.versions.entrySet()){
+                if(versions.applyAsLong(v.getKey())!=v.getValue()){
+                    remove(key);
+                    invalidations++;
+                    entry=null;
+                    break;
+                }
+            }
+        }
+        if(entry==null){
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Caches the result of a query, evicting the least recently used results if the cache is full
+     * Results larger than the whole cache are not cached
+     * @param key the normalized query text
+     * @param versions the versions of the tables of the query, taken before it ran
+     * @param result
+     */
+    public synchronized void put(String key, Map<String,Long> versions, ITable result) {
+        long size=size(result);
+        if(maxEntries<=0 || size>maxBytes){
+            return;
+        }
+        remove(key);
+        entries.put(key,new Entry(result,versions,size));
+        bytes+=size;
+        Iterator<Map.Entry<String,Entry>> eldest=entries.entrySet().iterator();
+        while(entries.size()>maxEntries || bytes>maxBytes){
+            Entry e=eldest.next().getValue();
+            eldest.remove();
+            bytes-=e.bytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all the cached results
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes=0;
+    }
+
+    /**
+     * Changes the bounds of the cache, evicting results if it holds more
+     * @param maxEntries
+     * @param maxBytes
+     */
+    public synchronized void resize(int maxEntries, long maxBytes) {
+        this.maxEntries=maxEntries;
+        this.maxBytes=maxBytes;
+        Iterator<Map.Entry<String,Entry>> eldest=entries.entrySet().iterator();
+        while(entries.size()>Math.max(0,maxEntries) || bytes>maxBytes){
+            Entry e=eldest.next().getValue();
+            eldest.remove();
+            bytes-=e.bytes;
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the number of cached results found stale by a lookup (a table changed since they were computed)
+     * @return
+     */
+    public synchronized long getInvalidations() {
+        return this.invalidations;
+    }
+
+    /**
+     * Returns the number of cached results
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated size of the cached results in bytes
+     * @return
+     */
+    public synchronized long bytes() {
+        return this.bytes;
+    }
+
+    private void remove(String key) {
+        Entry old=entries.remove(key);
+        if(old!=null){
+            bytes-=old.bytes;
+        }
+    }
+
+    /**
+     * Estimates the heap size of a result: 48 bytes per tuple plus 16 bytes per Integer or Double
+     * and 40 bytes plus the characters per String
+     */
+    private static long size(ITable result) {
+        List<ITuple> tuples=result.getTuples();
+        long size=64;
+        for(ITuple t: tuples){
+            size+=48;
+            for(Object v: t.getValues()){
+                if(v instanceof String){
+                    size+=40+2L*((String) v).length();
+                }else if(v!=null){
+                    size+=16;
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Full scan of a database table
+ */
+class ScanNode extends PlanNode {
+    private ITable table;
+
+    /**
+     * constructor
+     * @param table
+     */
+    public ScanNode(ITable table) {
+        this.table=table;
+        setEstimatedRows(Planner.rows(table));
+    }
+
+    @Override
+    String getName() {
+        return table.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return table.getSchema();
+    }
+
+    /**
+     * Returns the table itself (nodes above must not modify it), or its snapshot for a versioned table
+     * @return
+     */
+    @Override
+    StringDictionary[] getDictionaries() {
+        return table instanceof VersionedTable?((VersionedTable) table).getDictionaries():null;
+    }
+
+    @Override
+    ITable execute() {
+        if(table instanceof VersionedTable){
+            VersionedTable versioned=(VersionedTable) table;
+            return getSnapshot()<0?versioned.snapshot(versioned.getCommitted()):versioned.snapshot(getSnapshot());
+        }
+        return table;
+    }
+
+    @Override
+    String describe() {
+        return "Scan "+table.getName();
+    }
+}
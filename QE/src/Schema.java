@@ -1,4 +1,3 @@
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -13,7 +12,6 @@ public class Schema implements ISchema {
      * @param attributes the given Map of attributes
      */
     public Schema(Map<Integer, String> attributes) {
-        attributes = new HashMap<>();
         this.attributes = attributes;
     }
 
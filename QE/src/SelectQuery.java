@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed select query: the select attributes (or aggregates), the from table with its joins, the where condition,
+ * the group by attributes, the having condition, the order by keys and the limit
+ */
+class SelectQuery implements IQuery {
+    /**
+     * The select attribute of SELECT *, replaced by the attributes of the from and join tables when the query is
+     * planned (see Planner)
+     */
+    static final String ALL="*";
+
+    /**
+     * A join table on leftAttribute = rightAttribute clause of the from clause
+     */
+    static class Join {
+        private String table;
+        private String leftAttribute;
+        private String rightAttribute;
+
+        public Join(String table, String leftAttribute, String rightAttribute) {
+            this.table=table;
+            this.leftAttribute=leftAttribute;
+            this.rightAttribute=rightAttribute;
+        }
+
+        public String getTable() {
+            return this.table;
+        }
+
+        public String getLeftAttribute() {
+            return this.leftAttribute;
+        }
+
+        public String getRightAttribute() {
+            return this.rightAttribute;
+        }
+    }
+
+    /**
+     * An attribute of the order by clause with its direction
+     */
+    static class Order {
+        private String attribute;
+        private boolean ascending;
+
+        public Order(String attribute, boolean ascending) {
+            this.attribute=attribute;
+            this.ascending=ascending;
+        }
+
+        public String getAttribute() {
+            return this.attribute;
+        }
+
+        public boolean isAscending() {
+            return this.ascending;
+        }
+    }
+
+    private List<String> attributes=new ArrayList<>();
+    private String table;
+    private List<Join> joins=new ArrayList<>();
+    private Condition where;
+    private List<String> groupBy=new ArrayList<>();
+    private Condition having;
+    private List<Order> orderBy=new ArrayList<>();
+    private int limit=-1;
+    private int offset;
+    private int parallelism;
+
+    /**
+     * Returns the select attributes and aggregates, or ALL alone for SELECT *
+     * @return
+     */
+    public List<String> getAttributes() {
+        return this.attributes;
+    }
+
+    public String getTable() {
+        return this.table;
+    }
+
+    public List<Join> getJoins() {
+        return this.joins;
+    }
+
+    /**
+     * Returns the from table and the tables of the joins
+     * @return
+     */
+    public List<String> getTables() {
+        List<String> names=new ArrayList<>();
+        names.add(this.table);
+        for(Join join: this.joins){
+            names.add(join.getTable());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the where condition, or null if the query has no where clause
+     * @return
+     */
+    public Condition getWhere() {
+        return this.where;
+    }
+
+    /**
+     * Returns the attributes of the group by clause, empty if the query has none
+     * @return
+     */
+    public List<String> getGroupBy() {
+        return this.groupBy;
+    }
+
+    /**
+     * Returns the having condition, or null if the query has no having clause
+     * @return
+     */
+    public Condition getHaving() {
+        return this.having;
+    }
+
+    public List<Order> getOrderBy() {
+        return this.orderBy;
+    }
+
+    /**
+     * Returns the maximum number of result tuples of the limit clause, or -1 if the query has none
+     * @return
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Returns the number of result tuples skipped by the offset clause (0 if the query has none)
+     * @return
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Returns the degree of parallelism of the PARALLEL hint, or 0 if the query has none
+     * @return
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Parses a select query
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static SelectQuery parse(String query) throws InvalidQueryException {
+        return parse(query,false);
+    }
+
+    /**
+     * Parses the select query of an explain query: EXPLAIN select (the EXPLAIN keyword can be left out)
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    public static SelectQuery parseExplain(String query) throws InvalidQueryException {
+        return parse(query,true);
+    }
+
+    private static SelectQuery parse(String query, boolean explain) throws InvalidQueryException {
+        Parser parser=new Parser(query);
+        if(explain){
+            parser.keyword("EXPLAIN");
+        }
+        if(!parser.getLexer().isWord("SELECT")){
+            throw parser.error("SELECT");
+        }
+        SelectQuery result=parse(parser);
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Parses a select query from the select keyword
+     * SELECT [/*+ PARALLEL(n) *&#47;] *|attribute|aggregate, ... FROM table [JOIN table ON attribute = attribute ...] [WHERE condition]
+     * [GROUP BY attribute, ...] [HAVING condition] [ORDER BY attribute|aggregate [ASC|DESC], ...] [LIMIT n [OFFSET m]]
+     * where an aggregate is COUNT(*), COUNT([DISTINCT] attribute), SUM, AVG, MIN or MAX([DISTINCT] attribute),
+     * and * alone selects all the attributes of the tables (see ALL)
+     *
+     * Implements the following algorithm
+     *
+     * Read the select keyword and the parallel hint (if any) to get the degree of parallelism
+     * Read * or the attributes and aggregates up to the from keyword
+     * Read the from table, then each join table and its on attributes
+     * If there is a where keyword
+     *   Read the where condition
+     * If there are group by keywords
+     *   Read the group by attributes
+     * If there is a having keyword
+     *   Read the having condition
+     * If there are order by keywords
+     *   Read the order by attributes and aggregates, each with its direction (ascending if none)
+     * If there is a limit keyword
+     *   Read the number of tuples, and the number of skipped tuples if there is an offset keyword
+     * If a clause is missing or invalid
+     *   Throw an invalid query exception
+     *
+     * @param parser
+     * @return
+     * @throws InvalidQueryException
+     */
+    static SelectQuery parse(Parser parser) throws InvalidQueryException {
+        SelectQuery result=new SelectQuery();
+        parser.expect("SELECT");
+        result.parallelism=parser.parallelHint();
+        if(parser.keyword(ALL)){
+            result.attributes.add(ALL);
+        }else{
+            do {
+                result.attributes.add(parser.operand());
+            } while(parser.symbol(","));
+        }
+        parser.expect("FROM");
+        result.table=parser.name("table");
+        while(parser.keyword("JOIN")){
+            String table=parser.name("table");
+            parser.expect("ON");
+            String left=parser.name("attribute");
+            parser.expectSymbol("=");
+            result.joins.add(new Join(table,left,parser.name("attribute")));
+        }
+        if(parser.keyword("WHERE")){
+            result.where=parser.condition();
+        }
+        if(parser.keyword("GROUP")){
+            parser.expect("BY");
+            do {
+                result.groupBy.add(parser.name("attribute"));
+            } while(parser.symbol(","));
+        }
+        if(parser.keyword("HAVING")){
+            result.having=parser.condition();
+        }
+        if(parser.keyword("ORDER")){
+            parser.expect("BY");
+            do {
+                String attribute=parser.operand();
+                boolean ascending=!parser.keyword("DESC");
+                if(ascending){
+                    parser.keyword("ASC");
+                }
+                result.orderBy.add(new Order(attribute,ascending));
+            } while(parser.symbol(","));
+        }
+        if(parser.keyword("LIMIT")){
+            result.limit=parser.count("number of tuples");
+            if(parser.keyword("OFFSET")){
+                result.offset=parser.count("number of skipped tuples");
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * The layout of a slotted page of PageFile.PAGE_SIZE bytes
+ *
+ * The page starts with a header (the number of slots and the start of the record area, 2 bytes each)
+ * followed by the slot directory (the offset and the length of each record, 2 bytes each); the records are
+ * written from the end of the page towards the directory, so the free space is between the two
+ * Slots are kept dense (0 to count - 1), removing records compacts the page
+ *
+ * A page filled with zeros is an empty page
+ */
+class SlottedPage {
+    private static final int HEADER=4;
+    private static final int SLOT=4;
+
+    /**
+     * Largest record that fits in an empty page
+     */
+    static final int MAX_RECORD=PageFile.PAGE_SIZE-HEADER-SLOT;
+
+    private SlottedPage() {
+    }
+
+    /**
+     * Returns the number of records of the page
+     * @param page
+     * @return
+     */
+    static int count(ByteBuffer page) {
+        return page.getChar(0);
+    }
+
+    /**
+     * Returns the offset of a record in the page
+     * @param page
+     * @param slot
+     * @return
+     */
+    static int offset(ByteBuffer page, int slot) {
+        return page.getChar(HEADER+slot*SLOT);
+    }
+
+    /**
+     * Returns the length of a record
+     * @param page
+     * @param slot
+     * @return
+     */
+    static int length(ByteBuffer page, int slot) {
+        return page.getChar(HEADER+slot*SLOT+2);
+    }
+
+    /**
+     * Returns the free space of the page, the largest record that can be added is 4 bytes smaller (its slot)
+     * @param page
+     * @return
+     */
+    static int freeSpace(ByteBuffer page) {
+        return recordStart(page)-HEADER-count(page)*SLOT;
+    }
+
+    /**
+     * Adds a record at the end of the page if it fits
+     * @param page
+     * @param record
+     * @param length
+     * @return whether the record was added
+     */
+    static boolean add(ByteBuffer page, byte[] record, int length) {
+        if(freeSpace(page)<length+SLOT){
+            return false;
+        }
+        add(page,record,0,length);
+        return true;
+    }
+
+    /**
+     * Replaces a record by another one (the page is compacted if the new record is longer)
+     * @param page
+     * @param slot
+     * @param record
+     * @param length
+     * @return whether the new record fits in the page (the page is unchanged if it does not)
+     */
+    static boolean replace(ByteBuffer page, int slot, byte[] record, int length) {
+        if(length<=length(page,slot)){
+            System.arraycopy(record,0,page.array(),page.arrayOffset()+offset(page,slot),length);
+            page.putChar(HEADER+slot*SLOT+2,(char) length);
+            return true;
+        }
+        int used=0;
+        for(int s=0;s<count(page);s++){
+            used+=s==slot?length:length(page,s);
+        }
+        if(HEADER+count(page)*SLOT+used>PageFile.PAGE_SIZE){
+            return false;
+        }
+        byte[] copy=new byte[PageFile.PAGE_SIZE];
+        System.arraycopy(page.array(),page.arrayOffset(),copy,0,PageFile.PAGE_SIZE);
+        ByteBuffer old=ByteBuffer.wrap(copy);
+        int count=count(old);
+        clear(page);
+        for(int s=0;s<count;s++){
+            if(s==slot){
+                add(page,record,0,length);
+            }else{
+                add(page,copy,offset(old,s),length(old,s));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes records, the records kept are renumbered in order
+     * @param page
+     * @param removed the slots of the removed records
+     */
+    static void remove(ByteBuffer page, BitSet removed) {
+        byte[] copy=new byte[PageFile.PAGE_SIZE];
+        System.arraycopy(page.array(),page.arrayOffset(),copy,0,PageFile.PAGE_SIZE);
+        ByteBuffer old=ByteBuffer.wrap(copy);
+        int count=count(old);
+        clear(page);
+        for(int s=0;s<count;s++){
+            if(!removed.get(s)){
+                add(page,copy,offset(old,s),length(old,s));
+            }
+        }
+    }
+
+    /**
+     * Empties the page
+     * @param page
+     */
+    static void clear(ByteBuffer page) {
+        page.putChar(0,(char) 0);
+        page.putChar(2,(char) 0);
+    }
+
+    private static void add(ByteBuffer page, byte[] source, int from, int length) {
+        int count=count(page);
+        int offset=recordStart(page)-length;
+        System.arraycopy(source,from,page.array(),page.arrayOffset()+offset,length);
+        page.putChar(HEADER+count*SLOT,(char) offset);
+        page.putChar(HEADER+count*SLOT+2,(char) length);
+        page.putChar(0,(char) (count+1));
+        page.putChar(2,(char) offset);
+    }
+
+    /**
+     * Start of the record area (0 in an empty page means the end of the page)
+     */
+    private static int recordStart(ByteBuffer page) {
+        int start=page.getChar(2);
+        return start==0?PageFile.PAGE_SIZE:start;
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+/**
+ * Sorts the tuples of a table on one or more attributes (order by clause)
+ *
+ * Values are compared according to their schema type, so Integer and Double attributes sort numerically
+ * Every key can be ascending or descending, null values come first in ascending order
+ * If the table has more tuples than the memory budget, the sort becomes an external merge sort:
+ * sorted runs of at most memoryBudget tuples are written to spill files and merged back
+ * The input can also be pulled one tuple at a time (see sort(Supplier, ISchema, MorselExecutor)): the runs are
+ * then written while it is read, and merged as the sorted tuples are read, so at most one run is held in memory
+ */
+class Sort {
+    /**
+     * A sort key is an attribute index in the schema and a direction
+     */
+    static class Key {
+        private int column;
+        private boolean ascending;
+
+        /**
+         * constructor
+         * @param column
+         * @param ascending
+         */
+        public Key(int column, boolean ascending) {
+            this.column=column;
+            this.ascending=ascending;
+        }
+
+        public int getColumn() {
+            return this.column;
+        }
+
+        public boolean isAscending() {
+            return this.ascending;
+        }
+    }
+
+    private Comparator<Object[]> comparator;
+    private int memoryBudget;
+    private File spillFolder;
+
+    /**
+     * constructor
+     * @param keys the sort keys, most significant first
+     * @param schema the schema of the tables to sort
+     * @param memoryBudget maximum number of tuples sorted in memory at once
+     * @param spillFolder folder where the sorted runs are written
+     */
+    public Sort(List<Key> keys, ISchema schema, int memoryBudget, File spillFolder) {
+        this.comparator=comparator(keys,schema);
+        this.memoryBudget=memoryBudget;
+        this.spillFolder=spillFolder;
+    }
+
+    /**
+     * Builds the tuple comparator for the keys, each key compares with the type of its attribute
+     * @param keys
+     * @param schema
+     * @return
+     */
+    static Comparator<Object[]> comparator(List<Key> keys, ISchema schema) {
+        Comparator<Object[]> result=null;
+        for(Key k: keys){
+            int c=k.getColumn();
+            String type=schema.getType(c);
+            Comparator<Object> values;
+            if(type.equals("Integer")){
+                values=(a,b)->Integer.compare((Integer) a,(Integer) b);
+            }else if(type.equals("Double")){
+                values=(a,b)->Double.compare((Double) a,(Double) b);
+            }else{
+                values=(a,b)->a.toString().compareTo(b.toString());
+            }
+            Comparator<Object[]> key=Comparator.comparing(row->row[c],Comparator.nullsFirst(values));
+            if(!k.isAscending()){
+                key=key.reversed();
+            }
+            result=result==null?key:result.thenComparing(key);
+        }
+        return result==null?(a,b)->0:result;
+    }
+
+    /**
+     * Sorts the tuples of the table in place
+     *
+     * Implements the following algorithm
+     *
+     * If the table fits in the memory budget
+     *   Sort the tuples in memory
+     * Else
+     *   Write sorted runs of memoryBudget tuples to spill files (see sort(Supplier, ISchema, MorselExecutor))
+     *   Remove the tuples from the table
+     *   Merge the runs (always taking the smallest head tuple) back into the table
+     *
+     * @param table
+     */
+    public void sort(ITable table) {
+        sort(table,MorselExecutor.SERIAL);
+    }
+
+    /**
+     * Sorts the tuples of the table in place, the tuples sorted in memory (the table or its runs) are sorted
+     * in parallel if there are enough of them (see sortInMemory)
+     * @param table
+     * @param executor
+     */
+    public void sort(ITable table, MorselExecutor executor) {
+        List<ITuple> tuples=table.getTuples();
+        if(tuples.size()<=memoryBudget){
+            sortInMemory(tuples,executor);
+            return;
+        }
+        Iterator<ITuple> input=tuples.iterator();
+        try(Merge merge=sort(()->input.hasNext()?input.next():null,table.getSchema(),executor)){
+            tuples.clear();
+            ITuple t;
+            while((t=merge.next())!=null){
+                table.addTuple(t);
+            }
+        }
+    }
+
+    /**
+     * Sorts the tuples of an input read once, holding at most memoryBudget of them in memory
+     * (the tuples with equal keys keep their input order)
+     *
+     * Implements the following algorithm
+     *
+     * While the input has tuples
+     *   Read the next memoryBudget tuples (or the tuples left) and sort them in memory (see sortInMemory)
+     *   If it is the last chunk
+     *     Keep it in memory as the last run (the input fits in memory if it is the only one)
+     *   Else
+     *     Write it to a spill file (a sorted run)
+     * Return a merge of the runs: the sorted tuples are read one at a time, always taking the smallest head tuple
+     * of the runs (from the earlier run on equal keys)
+     *
+     * @param input returns the next tuple, or null when there is none left
+     * @param schema the schema of the input tuples
+     * @param executor
+     * @return the sorted tuples, to read until null and close
+     */
+    public Merge sort(Supplier<ITuple> input, ISchema schema, MorselExecutor executor) {
+        int width=schema.getAttributes().size();
+        List<SpillFile> runs=new ArrayList<>();
+        List<ITuple> chunk=new ArrayList<>();
+        try {
+            ITuple t=input.get();
+            while(t!=null){
+                chunk.add(t);
+                t=input.get();
+                if(t!=null && chunk.size()>=memoryBudget){
+                    sortInMemory(chunk,executor);
+                    SpillFile run=new SpillFile(spillFolder,width);
+                    runs.add(run);
+                    for(ITuple sorted: chunk){
+                        run.write(sorted.getValues());
+                    }
+                    chunk.clear();
+                }
+            }
+            sortInMemory(chunk,executor);
+        } catch (RuntimeException e) {
+            for(SpillFile run: runs){
+                run.close();
+            }
+            throw e;
+        }
+        return new Merge(runs,chunk,schema);
+    }
+
+    /**
+     * Sorts tuples in memory, in parallel if there are enough of them (see MorselExecutor): they are split into
+     * one chunk per worker, the chunks are sorted in parallel and merged (the result is the same as a serial sort,
+     * tuples with equal keys keep their order)
+     * @param tuples
+     * @param executor
+     */
+    private void sortInMemory(List<ITuple> tuples, MorselExecutor executor) {
+        Comparator<ITuple> byValues=(a,b)->comparator.compare(a.getValues(),b.getValues());
+        if(executor.isParallel(tuples.size())){
+            int n=tuples.size();
+            List<List<ITuple>> chunks=executor.map(n,(n+executor.getParallelism()-1)/executor.getParallelism(),
+                    (from,to)->{
+                        List<ITuple> chunk=new ArrayList<>(tuples.subList(from,to));
+                        chunk.sort(byValues);
+                        return chunk;
+                    });
+            merge(chunks,tuples,byValues);
+        }else{
+            tuples.sort(byValues);
+        }
+    }
+
+    /**
+     * The tuples of a sort, in sort order: the sorted runs written to spill files and the last run (in memory),
+     * merged as the tuples are read
+     */
+    class Merge implements Closeable {
+        private List<SpillFile> runs;
+        private List<ITuple> last;
+        private int position;
+        private PriorityQueue<Object[]> heads;
+        private Tuple prototype;
+
+        Merge(List<SpillFile> runs, List<ITuple> last, ISchema schema) {
+            this.runs=runs;
+            this.last=last;
+            if(runs.isEmpty()){
+                return;
+            }
+            this.prototype=new Tuple(schema);
+            // a head is {values, run number, tuple of the last run}, on equal keys the earlier run comes first
+            this.heads=new PriorityQueue<>(runs.size()+1,(a,b)->{
+                int c=comparator.compare((Object[]) a[0],(Object[]) b[0]);
+                return c!=0?c:Integer.compare((Integer) a[1],(Integer) b[1]);
+            });
+            for(int r=0;r<runs.size();r++){
+                Object[] values=runs.get(r).read();
+                if(values!=null){
+                    heads.add(new Object[]{values,r,null});
+                }
+            }
+            advanceLast(new Object[3]);
+        }
+
+        /**
+         * Returns the next tuple in sort order, or null if there is none left
+         * @return
+         */
+        ITuple next() {
+            if(heads==null){
+                return position<last.size()?last.get(position++):null;
+            }
+            Object[] head=heads.poll();
+            if(head==null){
+                return null;
+            }
+            int r=(Integer) head[1];
+            if(r==runs.size()){
+                ITuple t=(ITuple) head[2];
+                advanceLast(head);
+                return t;
+            }
+            ITuple t=new Tuple(prototype,(Object[]) head[0]);
+            Object[] values=runs.get(r).read();
+            if(values!=null){
+                head[0]=values;
+                heads.add(head);
+            }
+            return t;
+        }
+
+        /**
+         * Makes the next tuple of the last run its head (reusing the entry of the previous one)
+         */
+        private void advanceLast(Object[] head) {
+            if(position<last.size()){
+                ITuple t=last.get(position++);
+                head[0]=t.getValues();
+                head[1]=runs.size();
+                head[2]=t;
+                heads.add(head);
+            }
+        }
+
+        /**
+         * Closes and deletes the spill files of the runs
+         */
+        @Override
+        public void close() {
+            for(SpillFile run: runs){
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the n first tuples in sort order, reading the input once and keeping only n tuples in memory
+     * (order by with a limit); the result is the same as sorting all the tuples and keeping the first n
+     *
+     * Implements the following algorithm
+     *
+     * For each input tuple (numbered in input order, to keep the order of tuples with equal keys)
+     *   If the heap has fewer than n tuples
+     *     Add the tuple to the heap
+     *   Else if the tuple comes before the last tuple of the heap (its root)
+     *     Replace the root with the tuple
+     * Sort the tuples of the heap
+     *
+     * @param input returns the next tuple, or null when there is none left
+     * @param n
+     * @return
+     */
+    public List<ITuple> top(Supplier<ITuple> input, int n) {
+        Comparator<Object[]> ranked=(a,b)->{
+            int c=comparator.compare((Object[]) a[0],(Object[]) b[0]);
+            return c!=0?c:Long.compare((Long) a[1],(Long) b[1]);
+        };
+        PriorityQueue<Object[]> heap=new PriorityQueue<>(Math.min(n,1024)+1,ranked.reversed());
+        long sequence=0;
+        ITuple t;
+        while((t=input.get())!=null){
+            Object[] values=t.getValues();
+            if(heap.size()<n){
+                heap.add(new Object[]{values,sequence,t});
+            }else if(n>0 && comparator.compare(values,(Object[]) heap.peek()[0])<0){
+                heap.poll();
+                heap.add(new Object[]{values,sequence,t});
+            }
+            sequence++;
+        }
+        List<Object[]> sorted=new ArrayList<>(heap);
+        sorted.sort(ranked);
+        List<ITuple> result=new ArrayList<>(sorted.size());
+        for(Object[] entry: sorted){
+            result.add((ITuple) entry[2]);
+        }
+        return result;
+    }
+
+    /**
+     * Merges sorted chunks into the tuples list (replacing its tuples), on equal keys the earlier chunk comes first
+     */
+    private static void merge(List<List<ITuple>> chunks, List<ITuple> tuples, Comparator<ITuple> byValues) {
+        int[] positions=new int[chunks.size()];
+        PriorityQueue<Integer> heads=new PriorityQueue<>(chunks.size(),(a,b)->{
+            int c=byValues.compare(chunks.get(a).get(positions[a]),chunks.get(b).get(positions[b]));
+            return c!=0?c:Integer.compare(a,b);
+        });
+        for(int c=0;c<chunks.size();c++){
+            if(!chunks.get(c).isEmpty()){
+                heads.add(c);
+            }
+        }
+        int i=0;
+        while(!heads.isEmpty()){
+            int c=heads.poll();
+            tuples.set(i++,chunks.get(c).get(positions[c]++));
+            if(positions[c]<chunks.get(c).size()){
+                heads.add(c);
+            }
+        }
+    }
+}
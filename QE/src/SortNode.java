@@ -0,0 +1,147 @@
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorts the tuples of its child on the order by keys
+ * With a limit (order by ... limit), only keeps the first tuples in a bounded heap instead of sorting them all
+ * Opened (see PlanNode.open), the node returns the sorted tuples as they are merged from the sorted runs
+ */
+class SortNode extends PlanNode {
+    private PlanNode child;
+    private List<Sort.Key> keys;
+    private int memoryBudget;
+    private File spillFolder;
+    private int limit=-1;
+    private Sort.Merge merge;
+    private long returned;
+
+    /**
+     * constructor
+     * @param child
+     * @param keys
+     * @param memoryBudget
+     * @param spillFolder
+     */
+    public SortNode(PlanNode child, List<Sort.Key> keys, int memoryBudget, File spillFolder) {
+        this.child=child;
+        this.keys=keys;
+        this.memoryBudget=memoryBudget;
+        this.spillFolder=spillFolder;
+        setEstimatedRows(child.getEstimatedRows());
+    }
+
+    @Override
+    String getName() {
+        return child.getName();
+    }
+
+    @Override
+    ISchema getSchema() {
+        return child.getSchema();
+    }
+
+    @Override
+    List<PlanNode> getChildren() {
+        return Collections.singletonList(child);
+    }
+
+    /**
+     * Keeps only the first tuples in sort order (the heap is used if they fit in the memory budget)
+     * @param limit the number of tuples kept
+     */
+    void setLimit(int limit) {
+        this.limit=limit;
+        setEstimatedRows(Math.min(child.getEstimatedRows(),limit));
+    }
+
+    /**
+     * Pulls the tuples of the child through a bounded heap if there is a limit (see Sort.top), or through
+     * an external sort otherwise (see Sort.sort): the sorted runs are written while the child is read,
+     * so the child table is never built
+     * @return
+     */
+    @Override
+    ITable execute() {
+        ITable sorted=new Table(child.getName(),child.getSchema());
+        if(isTop()){
+            Sort sort=new Sort(keys,child.getSchema(),memoryBudget,spillFolder);
+            child.open();
+            try {
+                sorted.getTuples().addAll(sort.top(child::next,limit));
+            } finally {
+                child.close();
+            }
+            return sorted;
+        }
+        openNode();
+        try {
+            ITuple t;
+            while((t=nextTuple())!=null){
+                sorted.addTuple(t);
+            }
+        } finally {
+            closeNode();
+        }
+        return sorted;
+    }
+
+    /**
+     * Sorts the tuples of the child (written to sorted runs as they are read), the sorted tuples are then merged
+     * one at a time by nextTuple
+     */
+    @Override
+    void openNode() {
+        if(isTop()){
+            super.openNode();
+            return;
+        }
+        Sort sort=new Sort(keys,child.getSchema(),memoryBudget,spillFolder);
+        child.open();
+        try {
+            this.merge=sort.sort(child::next,child.getSchema(),getExecutor());
+        } finally {
+            child.close();
+        }
+        this.returned=0;
+    }
+
+    @Override
+    ITuple nextTuple() {
+        if(merge==null){
+            return super.nextTuple();
+        }
+        if(limit>=0 && returned>=limit){
+            return null;
+        }
+        ITuple t=merge.next();
+        if(t!=null){
+            returned++;
+        }
+        return t;
+    }
+
+    @Override
+    void closeNode() {
+        if(merge!=null){
+            merge.close();
+            this.merge=null;
+            return;
+        }
+        super.closeNode();
+    }
+
+    private boolean isTop() {
+        return limit>=0 && limit<=memoryBudget;
+    }
+
+    @Override
+    String describe() {
+        StringBuilder names=new StringBuilder();
+        for(Sort.Key k: keys){
+            names.append(names.length()>0?", ":"").append(getSchema().getName(k.getColumn()))
+                    .append(k.isAscending()?" ASC":" DESC");
+        }
+        return (isTop()?"TopN":"Sort")+" ["+names+"]"+(limit>=0?" limit "+limit:"");
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.*;
+
+/**
+ * A temporary binary file used by operators (join, sort) to move tuples out of the heap
+ * Values are written one after the other, each prefixed with a tag byte for its type
+ * (0 null, 1 String, 2 Integer, 3 Double), so they can be read back without any parsing
+ * The file is deleted from the disk when the spill file is closed
+ */
+class SpillFile implements Closeable {
+    private static final byte NULL=0;
+    private static final byte STRING=1;
+    private static final byte INTEGER=2;
+    private static final byte DOUBLE=3;
+
+    private File file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private int width;
+    private long count;
+
+    /**
+     * Creates an empty spill file in the given folder
+     * @param folder
+     * @param width number of values per tuple
+     */
+    public SpillFile(File folder, int width) {
+        this.width=width;
+        try {
+            this.file=File.createTempFile("qe-spill-",".bin",folder);
+            this.file.deleteOnExit();
+            this.out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file),1<<16));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the tuple values to the end of the file
+     * @param values
+     */
+    public void write(Object[] values) {
+        try {
+            for(int i=0;i<width;i++){
+                Object v=values[i];
+                if(v==null){
+                    out.writeByte(NULL);
+                }else if(v instanceof Integer){
+                    out.writeByte(INTEGER);
+                    out.writeInt((Integer) v);
+                }else if(v instanceof Double){
+                    out.writeByte(DOUBLE);
+                    out.writeDouble((Double) v);
+                }else{
+                    out.writeByte(STRING);
+                    out.writeUTF(v.toString());
+                }
+            }
+            count++;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the number of tuples written to the file
+     * @return
+     */
+    public long size() {
+        return this.count;
+    }
+
+    /**
+     * Reads the next tuple values from the file
+     * The first call finishes the writing and starts reading from the beginning of the file
+     * @return the values or null once all the tuples have been read
+     */
+    public Object[] read() {
+        try {
+            if(in==null){
+                out.close();
+                in=new DataInputStream(new BufferedInputStream(new FileInputStream(file),1<<16));
+                // the file is read once, from start to end
+                QueryStats.readFromDisk(file.length());
+            }
+            int tag=in.read();
+            if(tag==-1){
+                return null;
+            }
+            Object[] values=new Object[width];
+            for(int i=0;i<width;i++){
+                if(i>0){
+                    tag=in.readByte();
+                }
+                if(tag==INTEGER){
+                    values[i]=in.readInt();
+                }else if(tag==DOUBLE){
+                    values[i]=in.readDouble();
+                }else if(tag==STRING){
+                    values[i]=in.readUTF();
+                }
+            }
+            return values;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes and deletes the file
+     */
+    @Override
+    public void close() {
+        try {
+            if(in!=null){
+                in.close();
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            file.delete();
+        }
+    }
+}
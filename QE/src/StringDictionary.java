@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The dictionary of a String attribute of a table stored by tuple (see VersionedTable): the distinct values of the
+ * attribute, each with a code (its position in the dictionary, kept in the dictionary file of the table)
+ *
+ * Values are interned through the dictionary before they are stored, so every tuple with a value holds the same
+ * String instance, the dictionary entry of its code: an attribute with a few distinct values keeps a few Strings
+ * instead of one per tuple, and a tuple is equal to a value of the dictionary if it holds its entry (see
+ * ConditionCompiler), without comparing characters
+ *
+ * An attribute with more than MAX_VALUES distinct values is not worth encoding: its dictionary is dropped and
+ * the values added after that are stored as they are (the entries already held by tuples stay valid)
+ *
+ * Values are added by the writer of the table (one at a time), and looked up by readers at any time
+ */
+class StringDictionary {
+    static final int MAX_VALUES=1<<12;
+
+    private final List<String> values=new ArrayList<>();
+    private final Map<String,String> entries=new ConcurrentHashMap<>();
+    private volatile boolean encoded=true;
+
+    /**
+     * Returns whether the attribute is encoded (it has at most MAX_VALUES distinct values)
+     * @return
+     */
+    boolean isEncoded() {
+        return this.encoded;
+    }
+
+    /**
+     * Returns the dictionary entry of a value, adding it if the attribute is still encoded
+     *
+     * Implements the following algorithm
+     *
+     * If the value is null or the attribute is not encoded, return the value
+     * If the dictionary has the value, return its entry
+     * If the dictionary is full
+     *   Drop it, the attribute is not encoded anymore
+     *   Return the value
+     * Add the value with the next code and return it
+     *
+     * @param value
+     * @return
+     */
+    String intern(String value) {
+        if(value==null || !encoded){
+            return value;
+        }
+        String entry=entries.get(value);
+        if(entry!=null){
+            return entry;
+        }
+        if(values.size()>=MAX_VALUES){
+            drop();
+            return value;
+        }
+        values.add(value);
+        entries.put(value,value);
+        return value;
+    }
+
+    /**
+     * Returns the dictionary entry of a value, or null if it is not in the dictionary
+     * @param value
+     * @return
+     */
+    String lookup(String value) {
+        return encoded?entries.get(value):null;
+    }
+
+    /**
+     * Stops encoding the attribute (the tuples keep the entries they hold)
+     */
+    void drop() {
+        this.encoded=false;
+        this.entries.clear();
+        this.values.clear();
+    }
+
+    /**
+     * Returns the values of the dictionary in code order
+     * @return
+     */
+    List<String> values() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Returns the number of distinct values of the dictionary
+     * @return
+     */
+    int size() {
+        return values.size();
+    }
+}
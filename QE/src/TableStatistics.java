@@ -0,0 +1,108 @@
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Statistics of a table: its number of rows and the statistics of every attribute (see ColumnStatistics)
+ * They are used by the planner to estimate the number of rows of every step of a query
+ */
+class TableStatistics {
+    private long rowCount;
+    private ColumnStatistics[] columns;
+
+    /**
+     * constructor
+     * @param rowCount
+     * @param columns the statistics of the attributes, in schema order
+     */
+    public TableStatistics(long rowCount, ColumnStatistics[] columns) {
+        this.rowCount=rowCount;
+        this.columns=columns;
+    }
+
+    /**
+     * Computes the statistics of a table (one pass over the tuples per attribute)
+     * @param table
+     * @return
+     */
+    public static TableStatistics analyze(ITable table) {
+        ISchema schema=table.getSchema();
+        List<ITuple> tuples=table.getTuples();
+        ColumnStatistics[] columns=new ColumnStatistics[schema.getAttributes().size()];
+        for(int i=0;i<columns.length;i++){
+            int col=i;
+            List<Object> values=new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    if(table instanceof ColumnarTable){
+                        return ((ColumnarTable) table).get(index,col);
+                    }
+                    if(table instanceof OffHeapTable){
+                        return ((OffHeapTable) table).get(index,col);
+                    }
+                    return tuples.get(index).getValue(col);
+                }
+
+                @Override
+                public int size() {
+                    return tuples.size();
+                }
+            };
+            columns[i]=ColumnStatistics.analyze(schema.getType(i),values);
+        }
+        return new TableStatistics(tuples.size(),columns);
+    }
+
+    /**
+     * Updates the statistics for a tuple added to the table
+     * @param tuple
+     */
+    public void add(ITuple tuple) {
+        rowCount++;
+        for(int i=0;i<columns.length;i++){
+            columns[i].add(tuple.getValue(i));
+        }
+    }
+
+    /**
+     * Updates the statistics for a tuple removed from the table
+     * @param tuple
+     */
+    public void remove(ITuple tuple) {
+        rowCount=Math.max(0,rowCount-1);
+        for(int i=0;i<columns.length;i++){
+            columns[i].remove(tuple.getValue(i));
+        }
+    }
+
+    /**
+     * Returns the estimated fraction of the rows matching attribute operator value (see ColumnStatistics.selectivity)
+     * @param col
+     * @param op
+     * @param value
+     * @return
+     */
+    public double selectivity(int col, String op, Object value) {
+        return columns[col].selectivity(rowCount,op,value);
+    }
+
+    /**
+     * Returns the estimated number of distinct values of the attribute
+     * @param col
+     * @return
+     */
+    public double distinct(int col) {
+        return columns[col].distinct(rowCount);
+    }
+
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    public ColumnStatistics getColumn(int col) {
+        return this.columns[col];
+    }
+
+    public int getColumnCount() {
+        return this.columns.length;
+    }
+}
@@ -21,10 +21,10 @@ public class Tuple implements ITuple {
         this.typeMap = new HashMap<>();
         for (int i = 0; i < schema.getAttributes().size();i++){
             Class<?> c;
-            if (schema.getType(i) == "String"){
+            if (schema.getType(i).equals("String")){
                 c = String.class;
             }
-            else if (schema.getType(i) == "Integer") {
+            else if (schema.getType(i).equals("Integer")) {
                 c = Integer.class;
             }
             else {
@@ -35,6 +35,17 @@ public class Tuple implements ITuple {
         this.values = new Object[this.typeMap.size()];
     }
 
+    /**
+     * Creates a tuple with the schema of another tuple and the given values (already of the attribute types),
+     * sharing its typemap: tuples created in bulk (e.g. read back from spill files) do not each build one
+     * @param prototype
+     * @param values
+     */
+    Tuple(Tuple prototype, Object[] values) {
+        this.typeMap = prototype.typeMap;
+        this.values = values;
+    }
+
     /**
      * Stores the value at the given index in the (tuple) object
      * The value is converted from the object to its actual class from the typemap
@@ -45,11 +56,15 @@ public class Tuple implements ITuple {
 
     public void setValue(int index, Object value) {
         Class<?> c = typeMap.get(index);
+        if (value == null || c.isInstance(value)) {
+            values[index] = value;
+            return;
+        }
         if (c == Integer.class){
-            value = Integer.parseInt(c.toString());
+            value = Integer.parseInt(value.toString());
         }
         else if (c == Double.class) {
-            value = Double.parseDouble(c.toString());
+            value = Double.parseDouble(value.toString());
         }
         else if (!c.isInstance(value)){
             throw new IllegalArgumentException("Not a valid CLass");
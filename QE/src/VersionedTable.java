@@ -0,0 +1,474 @@
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A table stored by tuple with multi-version concurrency control: readers see a consistent snapshot of the table
+ * without locking it while it is changed
+ *
+ * The table is an append-only array of versions, each with the commit timestamps (see CommitClock) of the insert
+ * that created it and of the delete that removed it; a reader with snapshot s sees the versions inserted at or
+ * before s and not deleted at or before s. Inserts append versions, deletes only stamp the deleted versions,
+ * so the array a reader holds never changes under it (a larger array is published when it is full)
+ * Versions are committed in array order, so the versions inserted at or before a snapshot are a prefix of the array
+ *
+ * The versions deleted before every snapshot in use are reclaimed by the vacuum (see vacuum)
+ *
+ * String values are interned through a dictionary per attribute (see StringDictionary), so an attribute with
+ * few distinct values holds few Strings
+ *
+ * Writers are serialized by synchronizing on the table (see Database), indexes of the table are changed under
+ * the write lock of the index latch and read under its read lock
+ * A writer can stage its change and commit it later, once it is durable in the write-ahead log (see stage):
+ * staged changes are committed (or aborted) in the order they were staged
+ */
+public class VersionedTable implements ITable {
+    private static final long UNCOMMITTED=Long.MAX_VALUE;
+
+    /**
+     * A version of a tuple: the values and the timestamps of the commits that inserted and deleted it
+     */
+    static class Version extends Tuple {
+        private volatile long begin=UNCOMMITTED;
+        private volatile long end=UNCOMMITTED;
+
+        Version(ISchema schema) {
+            super(schema);
+        }
+
+        /**
+         * Returns whether the version is seen by a reader with the given snapshot
+         * @param snapshot
+         * @return
+         */
+        boolean isVisible(long snapshot) {
+            return begin<=snapshot && snapshot<end;
+        }
+    }
+
+    /**
+     * A change staged to be committed later: the versions it appended and the versions it deletes
+     */
+    static class Change {
+        private final List<ITuple> inserted;
+        private final Collection<ITuple> deleted;
+
+        Change(List<ITuple> inserted, Collection<ITuple> deleted) {
+            this.inserted=inserted;
+            this.deleted=deleted;
+        }
+
+        List<ITuple> getInserted() {
+            return this.inserted;
+        }
+
+        Collection<ITuple> getDeleted() {
+            return this.deleted;
+        }
+    }
+
+    /**
+     * The versions of the table: the first count versions of the array
+     */
+    private static class Store {
+        private final Version[] versions;
+        private final int count;
+
+        Store(Version[] versions, int count) {
+            this.versions=versions;
+            this.count=count;
+        }
+    }
+
+    private String name;
+    private ISchema schema;
+    private CommitClock clock;
+    private volatile Store store=new Store(new Version[16],0);
+    private volatile int live;
+    private volatile int dead;
+    private ReadWriteLock indexLatch=new ReentrantReadWriteLock();
+    private StringDictionary[] dictionaries;
+    private final ArrayDeque<Change> staged=new ArrayDeque<>();
+
+    /**
+     * constructor
+     * @param name
+     * @param schema
+     * @param clock the commit clock of the database
+     */
+    public VersionedTable(String name, ISchema schema, CommitClock clock) {
+        this.name=name;
+        this.schema=schema;
+        this.clock=clock;
+        this.dictionaries=new StringDictionary[schema.getAttributes().size()];
+        for(int i=0;i<dictionaries.length;i++){
+            if(schema.getType(i).equals("String")){
+                dictionaries[i]=new StringDictionary();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public ISchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Adds a tuple and commits it
+     * @param tuple
+     */
+    @Override
+    public void addTuple(ITuple tuple) {
+        List<ITuple> added=append(Collections.singletonList(tuple.getValues()));
+        commit(added,Collections.emptyList());
+    }
+
+    /**
+     * Returns the tuples of the last committed snapshot
+     * @return
+     */
+    @Override
+    public List<ITuple> getTuples() {
+        return snapshot(clock.getCommitted()).getTuples();
+    }
+
+    /**
+     * Returns the last committed timestamp of the database
+     * @return
+     */
+    public long getCommitted() {
+        return clock.getCommitted();
+    }
+
+    /**
+     * Returns the number of tuples of the last committed snapshot
+     * @return
+     */
+    public int size() {
+        return this.live;
+    }
+
+    /**
+     * Returns the table as seen by a reader with the given snapshot (the returned table cannot be changed)
+     * @param snapshot
+     * @return
+     */
+    public ITable snapshot(long snapshot) {
+        return new View(store,snapshot,dead>0);
+    }
+
+    /**
+     * Returns every version of the table not reclaimed yet, committed or not, as a table
+     * (to build an index that readers of older snapshots can use too)
+     * @return
+     */
+    public ITable versions() {
+        return new View(store,UNCOMMITTED,false);
+    }
+
+    /**
+     * Returns whether a tuple of the table is seen by a reader with the given snapshot
+     * @param tuple
+     * @param snapshot
+     * @return
+     */
+    public static boolean isVisible(ITuple tuple, long snapshot) {
+        return ((Version) tuple).isVisible(snapshot);
+    }
+
+    /**
+     * Returns the dictionaries of the attributes of the table (null for an attribute that is not a String)
+     * @return
+     */
+    StringDictionary[] getDictionaries() {
+        return this.dictionaries;
+    }
+
+    /**
+     * Returns the latch of the indexes of the table
+     * @return
+     */
+    public ReadWriteLock getIndexLatch() {
+        return this.indexLatch;
+    }
+
+    /**
+     * Appends versions of rows of values (in schema order, converted to the attribute types),
+     * they are not seen by readers until they are committed
+     * The String values of the rows are replaced with their dictionary entries
+     * @param rows
+     * @return the new versions
+     */
+    public List<ITuple> append(List<Object[]> rows) {
+        Store s=store;
+        Version[] versions=s.versions;
+        if(s.count+rows.size()>versions.length){
+            versions=Arrays.copyOf(versions,Math.max(versions.length*2,s.count+rows.size()));
+        }
+        List<ITuple> added=new ArrayList<>(rows.size());
+        int count=s.count;
+        for(Object[] row: rows){
+            for(int i=0;i<dictionaries.length;i++){
+                if(dictionaries[i]!=null){
+                    row[i]=dictionaries[i].intern((String) row[i]);
+                }
+            }
+            Version v=new Version(schema);
+            v.setValues(row);
+            versions[count++]=v;
+            added.add(v);
+        }
+        this.store=new Store(versions,count);
+        return added;
+    }
+
+    /**
+     * Commits an insert or a delete: stamps the appended versions and the deleted ones with the commit timestamp
+     * @param inserted versions returned by append
+     * @param deleted versions seen by the last committed snapshot (each one once)
+     * @return the commit timestamp
+     */
+    public long commit(List<ITuple> inserted, Collection<ITuple> deleted) {
+        // counted before the commit is seen, a reader seeing the deletes must look for deleted versions
+        this.dead+=deleted.size();
+        long timestamp=clock.commit(t->{
+            for(ITuple v: inserted){
+                ((Version) v).begin=t;
+            }
+            for(ITuple v: deleted){
+                ((Version) v).end=t;
+            }
+        });
+        this.live+=inserted.size()-deleted.size();
+        return timestamp;
+    }
+
+    /**
+     * Stages a change to commit it later (see commit(Change)): its versions are not seen by readers until then
+     * The caller must hold the table lock
+     * @param inserted versions returned by append
+     * @param deleted versions seen by the last committed snapshot (each one once), with no staged change left
+     * (see awaitStaged), so that two deletes never stamp the same version
+     * @return the staged change
+     */
+    public Change stage(List<ITuple> inserted, Collection<ITuple> deleted) {
+        Change change=new Change(inserted,deleted);
+        synchronized(staged){
+            staged.addLast(change);
+        }
+        return change;
+    }
+
+    /**
+     * Commits a staged change, after the changes staged before it
+     * @param change
+     * @return the commit timestamp
+     */
+    public long commit(Change change) {
+        awaitTurn(change);
+        try {
+            return commit(change.inserted,change.deleted);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Aborts a staged change, after the changes staged before it: its versions are committed as deleted by
+     * the same commit that inserts them, so no reader ever sees them and the vacuum reclaims them,
+     * and the versions it deletes are left as they are
+     * @param change
+     */
+    public void abort(Change change) {
+        awaitTurn(change);
+        try {
+            this.dead+=change.inserted.size();
+            clock.commit(t->{
+                for(ITuple v: change.inserted){
+                    ((Version) v).end=t;
+                    ((Version) v).begin=t;
+                }
+            });
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Waits until every staged change is committed or aborted
+     * (called under the table lock, so that no other change is staged in the meantime)
+     */
+    public void awaitStaged() {
+        synchronized(staged){
+            awaitUninterruptibly(()->staged.isEmpty());
+        }
+    }
+
+    private void awaitTurn(Change change) {
+        synchronized(staged){
+            awaitUninterruptibly(()->staged.peekFirst()==change);
+        }
+    }
+
+    private void finish() {
+        synchronized(staged){
+            staged.removeFirst();
+            staged.notifyAll();
+        }
+    }
+
+    /**
+     * Waits on the staged changes until the condition holds, an interrupt is kept for later: a change left staged
+     * would stop the changes staged after it
+     */
+    private void awaitUninterruptibly(BooleanSupplier condition) {
+        boolean interrupted=false;
+        while(!condition.getAsBoolean()){
+            try {
+                staged.wait();
+            } catch (InterruptedException e) {
+                interrupted=true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns whether some deleted versions were not reclaimed yet
+     * @return
+     */
+    public boolean hasDeletedVersions() {
+        return this.dead>0;
+    }
+
+    /**
+     * Removes the versions deleted at or before the horizon (see CommitClock.horizon) from the table
+     * The caller must hold the table lock, and remove the returned versions from the indexes of the table
+     *
+     * Implements the following algorithm
+     *
+     * Copy the versions not deleted at or before the horizon to a new array, keeping their order
+     * Publish the new array (readers holding the old one keep reading it)
+     * Return the removed versions
+     *
+     * @param horizon
+     * @return the removed versions
+     */
+    public List<ITuple> vacuum(long horizon) {
+        Store s=store;
+        List<ITuple> removed=new ArrayList<>();
+        Version[] kept=new Version[s.versions.length];
+        int count=0;
+        for(int i=0;i<s.count;i++){
+            Version v=s.versions[i];
+            if(v.end<=horizon){
+                removed.add(v);
+            }else{
+                kept[count++]=v;
+            }
+        }
+        if(!removed.isEmpty()){
+            this.store=new Store(kept,count);
+            this.dead-=removed.size();
+        }
+        return removed;
+    }
+
+    /**
+     * The table seen by a reader: the versions visible to its snapshot, in array order
+     */
+    private class View extends AbstractList<ITuple> implements ITable, RandomAccess {
+        private Version[] versions;
+        private int end;
+        private long snapshot;
+        private boolean filtered;
+        private int[] positions;
+
+        View(Store store, long snapshot, boolean filtered) {
+            this.versions=store.versions;
+            this.snapshot=snapshot;
+            this.filtered=filtered;
+            // the versions inserted at or before the snapshot are a prefix of the array
+            int low=0;
+            int high=store.count;
+            while(low<high){
+                int mid=(low+high)>>>1;
+                if(versions[mid].begin<=snapshot){
+                    low=mid+1;
+                }else{
+                    high=mid;
+                }
+            }
+            this.end=low;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public ISchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public void addTuple(ITuple tuple) {
+            throw new UnsupportedOperationException("A snapshot of table "+name+" cannot be changed");
+        }
+
+        @Override
+        public List<ITuple> getTuples() {
+            return this;
+        }
+
+        @Override
+        public ITuple get(int index) {
+            if(filtered){
+                return versions[positions()[index]];
+            }
+            if(index>=end){
+                throw new IndexOutOfBoundsException("Row "+index+" of "+end);
+            }
+            return versions[index];
+        }
+
+        @Override
+        public int size() {
+            return filtered?positions().length:end;
+        }
+
+        /**
+         * Returns the positions of the versions not deleted at or before the snapshot (when the table has deleted
+         * versions not reclaimed yet), computed on first use
+         */
+        private int[] positions() {
+            if(positions==null){
+                int[] p=new int[end];
+                int n=0;
+                for(int i=0;i<end;i++){
+                    if(snapshot<versions[i].end){
+                        p[n++]=i;
+                    }
+                }
+                positions=n==end?p:Arrays.copyOf(p,n);
+            }
+            return positions;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the inserts and deletes of a database (wal.log in the database folder)
+ *
+ * Every insert and delete is appended to the log as a binary entry before it is acknowledged, the table files
+ * are only written by a checkpoint, which folds the log into them and empties it (see Database.checkpoint)
+ * After a crash, the entries of the log are replayed over the tables read from their files
+ *
+ * An entry is: length, CRC32 of the content, content
+ * The content of an insert is: 'I', table name, number of rows, number of values per row, the tagged values
+ * The content of a delete is: 'D', table name, where clause (empty to delete all the tuples)
+ * A value is tagged with 0 for null, 1 String, 2 Integer, 3 Double (as in SpillFile)
+ * Replay stops at the first incomplete or corrupt entry (the end of a write interrupted by the crash)
+ */
+class WriteAheadLog implements Closeable {
+    static final byte INSERT='I';
+    static final byte DELETE='D';
+
+    /**
+     * An entry of the log
+     */
+    static class Entry {
+        private byte type;
+        private String table;
+        private List<Object[]> rows;
+        private String whereClause;
+
+        public Entry(byte type, String table, List<Object[]> rows, String whereClause) {
+            this.type=type;
+            this.table=table;
+            this.rows=rows;
+            this.whereClause=whereClause;
+        }
+
+        /**
+         * Returns INSERT or DELETE
+         * @return
+         */
+        public byte getType() {
+            return this.type;
+        }
+
+        public String getTable() {
+            return this.table;
+        }
+
+        /**
+         * Returns the inserted rows (of an insert)
+         * @return
+         */
+        public List<Object[]> getRows() {
+            return this.rows;
+        }
+
+        /**
+         * Returns the where clause (of a delete), empty if all the tuples were deleted
+         * @return
+         */
+        public String getWhereClause() {
+            return this.whereClause;
+        }
+    }
+
+    private AppendWriter writer;
+
+    /**
+     * Opens the log file of the database folder for appending after its last complete entry
+     * @param folder
+     * @param syncPolicy when the appended entries are forced to the disk (see AppendWriter)
+     * @param syncIntervalMillis
+     */
+    public WriteAheadLog(String folder, AppendWriter.SyncPolicy syncPolicy, long syncIntervalMillis) {
+        File file=file(folder);
+        this.writer=new AppendWriter(file,validLength(file),syncPolicy,syncIntervalMillis);
+    }
+
+    /**
+     * Returns the log file of the database folder
+     * @param folder
+     * @return
+     */
+    public static File file(String folder) {
+        return new File(folder+"/wal.log");
+    }
+
+    /**
+     * Queues an insert entry
+     * @param table
+     * @param rows
+     * @return the ticket to wait for with commit
+     */
+    public long logInsert(String table, List<Object[]> rows) {
+        return writer.append(encode(new Entry(INSERT,table,rows,null)));
+    }
+
+    /**
+     * Queues a delete entry
+     * @param table
+     * @param whereClause the where clause of the delete, empty to delete all the tuples
+     * @return the ticket to wait for with commit
+     */
+    public long logDelete(String table, String whereClause) {
+        return writer.append(encode(new Entry(DELETE,table,null,whereClause)));
+    }
+
+    /**
+     * Waits until the entry of the ticket is written (group commit, see AppendWriter)
+     * @param ticket
+     */
+    public void commit(long ticket) {
+        writer.commit(ticket);
+    }
+
+    /**
+     * Returns the size of the log in bytes
+     * @return
+     */
+    public long size() {
+        return writer.size();
+    }
+
+    /**
+     * Empties the log (after a checkpoint wrote its entries to the table files)
+     */
+    public void truncate() {
+        writer.truncate();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * Reads the complete entries of a log file
+     *
+     * Implements the following algorithm
+     *
+     * While the file has a complete entry
+     *   Read its length, checksum and content
+     *   If the checksum does not match the content
+     *     Stop (the entry was not completely written)
+     *   Decode the content and add the entry to the result
+     *
+     * @param file
+     * @return the entries, in log order
+     */
+    public static List<Entry> read(File file) {
+        List<Entry> entries=new ArrayList<>();
+        if(!file.exists()){
+            return entries;
+        }
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            byte[] content;
+            while((content=next(in))!=null){
+                entries.add(decode(content));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the length of the complete entries at the start of the file (0 if there is no file)
+     */
+    private static long validLength(File file) {
+        if(!file.exists()){
+            return 0;
+        }
+        long length=0;
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            byte[] content;
+            while((content=next(in))!=null){
+                length+=8+content.length;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return length;
+    }
+
+    /**
+     * Reads the content of the next entry, returns null at the end of the file or at an incomplete or corrupt entry
+     */
+    private static byte[] next(DataInputStream in) throws IOException {
+        try {
+            int length=in.readInt();
+            int checksum=in.readInt();
+            if(length<0 || length>(1<<30)){
+                return null;
+            }
+            byte[] content=new byte[length];
+            in.readFully(content);
+            CRC32 crc=new CRC32();
+            crc.update(content);
+            return (int) crc.getValue()==checksum?content:null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(Entry entry) {
+        try {
+            ByteArrayOutputStream content=new ByteArrayOutputStream();
+            DataOutputStream out=new DataOutputStream(content);
+            out.writeByte(entry.type);
+            out.writeUTF(entry.table);
+            if(entry.type==INSERT){
+                out.writeInt(entry.rows.size());
+                out.writeInt(entry.rows.isEmpty()?0:entry.rows.get(0).length);
+                for(Object[] row: entry.rows){
+                    for(Object value: row){
+                        writeValue(out,value);
+                    }
+                }
+            }else{
+                out.writeUTF(entry.whereClause);
+            }
+            out.flush();
+            byte[] bytes=content.toByteArray();
+            CRC32 crc=new CRC32();
+            crc.update(bytes);
+            ByteArrayOutputStream result=new ByteArrayOutputStream(bytes.length+8);
+            DataOutputStream header=new DataOutputStream(result);
+            header.writeInt(bytes.length);
+            header.writeInt((int) crc.getValue());
+            header.write(bytes);
+            return result.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Entry decode(byte[] content) throws IOException {
+        DataInputStream in=new DataInputStream(new ByteArrayInputStream(content));
+        byte type=in.readByte();
+        String table=in.readUTF();
+        if(type==DELETE){
+            return new Entry(type,table,null,in.readUTF());
+        }
+        int count=in.readInt();
+        int width=in.readInt();
+        List<Object[]> rows=new ArrayList<>(count);
+        for(int i=0;i<count;i++){
+            Object[] row=new Object[width];
+            for(int j=0;j<width;j++){
+                row[j]=readValue(in);
+            }
+            rows.add(row);
+        }
+        return new Entry(type,table,rows,null);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if(value==null){
+            out.writeByte(0);
+        }else if(value instanceof Integer){
+            out.writeByte(2);
+            out.writeInt((Integer) value);
+        }else if(value instanceof Double){
+            out.writeByte(3);
+            out.writeDouble((Double) value);
+        }else{
+            out.writeByte(1);
+            out.writeUTF(value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        switch(in.readByte()){
+            case 0: return null;
+            case 2: return in.readInt();
+            case 3: return in.readDouble();
+            default: return in.readUTF();
+        }
+    }
+}
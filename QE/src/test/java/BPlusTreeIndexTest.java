@@ -0,0 +1,148 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * B+-tree inserts (with leaf, inner and root splits), bulk loads, deletes and range scans, checked against a TreeMap
+ */
+class BPlusTreeIndexTest {
+    private static final ISchema SCHEMA=schema();
+
+    @Test
+    void insertsSplitNodesAndKeepKeysInOrder() {
+        BPlusTreeIndex index=new BPlusTreeIndex("t",0);
+        TreeMap<Integer,List<ITuple>> expected=new TreeMap<>();
+        Random random=new Random(1);
+        // enough keys for three levels of nodes
+        for(int i=0;i<20000;i++){
+            int key=random.nextInt(15000);
+            ITuple t=tuple(key,i);
+            index.insert(key,t);
+            expected.computeIfAbsent(key,k->new ArrayList<>()).add(t);
+        }
+        index.insert(null,tuple(null,-1));
+        assertContent(expected,index);
+        for(int key: new int[]{-1,0,7,14999,15000,expected.firstKey(),expected.lastKey()}){
+            assertEquals(expected.getOrDefault(key,List.of()),index.lookup(key));
+        }
+        assertRanges(expected,index);
+    }
+
+    @Test
+    void insertsAfterABulkLoadSplitTheFullLeaves() {
+        List<Object> keys=new ArrayList<>();
+        List<List<ITuple>> values=new ArrayList<>();
+        TreeMap<Integer,List<ITuple>> expected=new TreeMap<>();
+        for(int key=0;key<10000;key+=2){
+            List<ITuple> tuples=new ArrayList<>(List.of(tuple(key,key)));
+            keys.add(key);
+            values.add(tuples);
+            expected.put(key,new ArrayList<>(tuples));
+        }
+        BPlusTreeIndex index=new BPlusTreeIndex("t",0);
+        index.bulkLoad(keys,values);
+        assertContent(expected,index);
+        List<Integer> odd=new ArrayList<>();
+        for(int key=1;key<10000;key+=2){
+            odd.add(key);
+        }
+        Collections.shuffle(odd,new Random(2));
+        for(int key: odd){
+            ITuple t=tuple(key,key);
+            index.insert(key,t);
+            expected.put(key,new ArrayList<>(List.of(t)));
+        }
+        assertContent(expected,index);
+        assertRanges(expected,index);
+    }
+
+    @Test
+    void deletesRemoveTheTupleAndThenTheKey() {
+        BPlusTreeIndex index=new BPlusTreeIndex("t",0);
+        TreeMap<Integer,List<ITuple>> expected=new TreeMap<>();
+        List<ITuple> all=new ArrayList<>();
+        for(int i=0;i<5000;i++){
+            ITuple t=tuple(i%1000,i);
+            index.insert(i%1000,t);
+            expected.computeIfAbsent(i%1000,k->new ArrayList<>()).add(t);
+            all.add(t);
+        }
+        Collections.shuffle(all,new Random(3));
+        for(ITuple t: all.subList(0,3000)){
+            Integer key=t.getValue(0);
+            // an equal tuple that is not in the index is not deleted
+            index.delete(key,tuple(key,t.getValue(1)));
+            index.delete(key,t);
+            expected.get(key).remove(t);
+            if(expected.get(key).isEmpty()){
+                expected.remove(key);
+            }
+        }
+        assertContent(expected,index);
+        assertRanges(expected,index);
+    }
+
+    @Test
+    void emptyTreeHasNoTuples() {
+        BPlusTreeIndex index=new BPlusTreeIndex("t",0);
+        index.bulkLoad(List.of(),List.of());
+        assertTrue(index.lookup(1).isEmpty());
+        assertTrue(index.range(null,true,null,true).isEmpty());
+    }
+
+    private static void assertContent(TreeMap<Integer,List<ITuple>> expected, BPlusTreeIndex index) {
+        List<Object> keys=new ArrayList<>();
+        List<List<ITuple>> values=new ArrayList<>();
+        index.forEach((k,v)->{
+            keys.add(k);
+            values.add(new ArrayList<>(v));
+        });
+        assertEquals(new ArrayList<>(expected.keySet()),keys);
+        assertEquals(new ArrayList<>(expected.values()),values);
+    }
+
+    private static void assertRanges(TreeMap<Integer,List<ITuple>> expected, BPlusTreeIndex index) {
+        Random random=new Random(4);
+        for(int i=0;i<200;i++){
+            int low=random.nextInt(16000)-500;
+            int high=low+random.nextInt(2000);
+            boolean lowInclusive=random.nextBoolean();
+            boolean highInclusive=random.nextBoolean();
+            assertEquals(flatten(expected.subMap(low,lowInclusive,high,highInclusive)),
+                    index.range(low,lowInclusive,high,highInclusive));
+        }
+        assertEquals(flatten(expected),index.range(null,true,null,true));
+        assertEquals(flatten(expected.headMap(5000,false)),index.range(null,true,5000,false));
+        assertEquals(flatten(expected.tailMap(5000,false)),index.range(5000,false,null,true));
+    }
+
+    private static List<ITuple> flatten(NavigableMap<Integer,List<ITuple>> map) {
+        List<ITuple> tuples=new ArrayList<>();
+        for(List<ITuple> v: map.values()){
+            tuples.addAll(v);
+        }
+        return tuples;
+    }
+
+    private static ITuple tuple(Integer key, int row) {
+        ITuple t=new Tuple(SCHEMA);
+        t.setValues(new Object[]{key,row});
+        return t;
+    }
+
+    private static ISchema schema() {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"key:Integer");
+        attributes.put(1,"row:Integer");
+        return new Schema(attributes);
+    }
+}
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Readers of the tables not stored by tuple run while inserts and deletes change them: every query sees the table
+ * between two changes, never in the middle of one
+ */
+class ConcurrentReadTest {
+    private static final int BATCH=10;
+
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(value=TestDatabase.Storage.class, names={"COLUMNAR","OFF_HEAP","PAGED"})
+    void readersSeeWholeInsertsAndDeletes(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,500);
+        Database db=TestDatabase.open(folder,storage);
+        db.setResultCache(0,0);
+        db.createIndex("CREATE INDEX ON student (sid)");
+        PreparedQuery prepared=db.prepare("SELECT sid, sname FROM student WHERE major = ?");
+        ExecutorService threads=Executors.newFixedThreadPool(4);
+        AtomicBoolean done=new AtomicBoolean();
+        try {
+            List<Future<?>> readers=new ArrayList<>();
+            readers.add(threads.submit(()->{
+                while(!done.get()){
+                    int added=db.selectData("SELECT sid, sname, byear FROM student WHERE major = 'W'").getTuples().size();
+                    assertTrue(added==0 || added==BATCH,"rows of a batch: "+added);
+                    int all=db.selectData("SELECT sid, major FROM student ORDER BY sid").getTuples().size();
+                    assertEquals(0,(all-500)%BATCH,"rows: "+all);
+                }
+                return null;
+            }));
+            readers.add(threads.submit(()->{
+                while(!done.get()){
+                    int enrolled=db.selectData("SELECT student.sid, enroll.cno FROM student JOIN enroll "
+                            +"ON student.sid = enroll.sid").getTuples().size();
+                    assertTrue(enrolled>0);
+                    db.selectData("SELECT major, COUNT(sid) FROM student GROUP BY major");
+                    db.selectData("SELECT sname FROM student WHERE sid = 'w3'");
+                }
+                return null;
+            }));
+            readers.add(threads.submit(()->{
+                while(!done.get()){
+                    try(Cursor cursor=db.openCursor("SELECT sid FROM student WHERE major = 'W'")){
+                        int added=cursor.getTuples().size();
+                        assertTrue(added==0 || added==BATCH,"rows of a batch: "+added);
+                    }
+                    synchronized(prepared){
+                        prepared.setString(1,"W");
+                        int added=prepared.executeQuery().getTuples().size();
+                        assertTrue(added==0 || added==BATCH,"rows of a batch: "+added);
+                    }
+                }
+                return null;
+            }));
+            StringBuilder insert=new StringBuilder("INSERT INTO student VALUES ");
+            for(int i=0;i<BATCH;i++){
+                insert.append(i==0?"":", ").append("('w").append(i).append("', 'Writer', 'W', 2000)");
+            }
+            for(int i=0;i<300;i++){
+                db.insertData(insert.toString());
+                db.deleteData(i%2==0?"DELETE FROM student WHERE major = 'W'"
+                        :"DELETE FROM student WHERE byear = 2000 AND sname = 'Writer'");
+            }
+            done.set(true);
+            for(Future<?> reader: readers){
+                reader.get();
+            }
+            assertEquals(500,db.selectData("SELECT sid FROM student").getTuples().size());
+        } finally {
+            done.set(true);
+            threads.shutdownNow();
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Compiled where clauses: comparisons, IN, LIKE, AND/OR/NOT and nulls, checked against the rows computed
+ * from the generated students (see TestDatabase.create), with and without indexes
+ */
+class ConditionTest {
+    private static final int STUDENTS=300;
+
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void whereClausesMatchTheGeneratedRows(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,STUDENTS);
+        Database db=TestDatabase.open(folder,storage);
+        db.setResultCache(0,0);
+        try {
+            assertConditions(db);
+            // the same conditions through indexes on the compared attributes
+            db.createIndex("CREATE INDEX ON student (major)");
+            db.createIndex("CREATE INDEX ON student (byear)");
+            db.createIndex("CREATE INDEX ON student (sid)");
+            assertConditions(db);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void likePatternsMatchWholeValues() {
+        String[][] matching={
+                {"abc","abc"},{"a%","abc"},{"a%","a"},{"%c","abc"},{"%b%","abc"},{"%","",},{"a_c","abc"},
+                {"a%c%e","abcde"},{"a%c%e","ace"},{"_","x"},{"a.c","a.c"},{"a[b]*","a[b]*"},{"%\\d%","x\\dy"},
+                {"%","line\nbreak"}};
+        String[][] notMatching={
+                {"abc","abcd"},{"a%","ba"},{"%c","cb"},{"%b%","ac"},{"a_c","ac"},{"a_c","abbc"},
+                {"a%c%e","acd"},{"_",""},{"a.c","abc"},{"a[b]*","ab"},{"ABC","abc"}};
+        for(String[] pair: matching){
+            assertTrue(ConditionCompiler.like(pair[0]).test(pair[1]),pair[0]+" "+pair[1]);
+        }
+        for(String[] pair: notMatching){
+            assertFalse(ConditionCompiler.like(pair[0]).test(pair[1]),pair[0]+" "+pair[1]);
+        }
+    }
+
+    @Test
+    void valuesAreCheckedAgainstTheAttributeTypes() throws Exception {
+        TestDatabase.create(folder,10);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                    ()->db.selectData("SELECT sid FROM student WHERE byear = 'old'"));
+            assertEquals("Not a valid Integer: old",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,
+                    ()->db.selectData("SELECT cno FROM course WHERE credits IN (1.5, two)"));
+            assertEquals("Not a valid Double: two",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,
+                    ()->db.selectData("SELECT sid FROM student WHERE year IN (1950)"));
+            assertEquals("Unknown attribute: year",e.getMessage());
+            // a number compared with a String attribute is a String
+            assertEquals(List.of(),TestDatabase.select(db,"SELECT sid FROM student WHERE major = 1"));
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Checks the rows of every condition of conditions and of the course conditions
+     */
+    private static void assertConditions(Database db) throws InvalidQueryException {
+        for(Map.Entry<String,IntPredicate> condition: conditions().entrySet()){
+            List<List<Object>> expected=new ArrayList<>();
+            for(int i=0;i<STUDENTS;i++){
+                if(condition.getValue().test(i)){
+                    expected.add(List.of("s"+i));
+                }
+            }
+            expected.sort(Comparator.comparing(Object::toString));
+            assertEquals(expected,TestDatabase.select(db,"SELECT sid FROM student WHERE "+condition.getKey()),
+                    condition.getKey());
+        }
+        Map<String,Predicate<Double>> courses=new LinkedHashMap<>();
+        courses.put("credits = 4.5",c->c!=null && c==4.5);
+        courses.put("credits != 4.5",c->c!=null && c!=4.5);
+        courses.put("credits IN (0.0, 3.0, 7.5)",c->c!=null && (c==0.0 || c==3.0));
+        courses.put("NOT credits IN (0.0, 3.0)",c->c==null || c!=0.0 && c!=3.0);
+        courses.put("credits LIKE '%.5'",c->c!=null && c%3!=0);
+        courses.put("credits < 3 OR credits > 4",c->c!=null && c!=3.0);
+        for(Map.Entry<String,Predicate<Double>> condition: courses.entrySet()){
+            List<List<Object>> expected=new ArrayList<>();
+            for(int c=0;c<TestDatabase.COURSES;c++){
+                if(condition.getValue().test(c%4==0?null:1.5*(c%5))){
+                    expected.add(List.of("c"+c));
+                }
+            }
+            expected.sort(Comparator.comparing(Object::toString));
+            assertEquals(expected,TestDatabase.select(db,"SELECT cno FROM course WHERE "+condition.getKey()),
+                    condition.getKey());
+        }
+    }
+
+    /**
+     * Returns the where clauses on student with the students (by number) they match
+     * A comparison never matches a null value, NOT negates the result of its condition (so NOT major = 'CS'
+     * matches the students without a major)
+     */
+    private static Map<String,IntPredicate> conditions() {
+        Map<String,IntPredicate> conditions=new LinkedHashMap<>();
+        conditions.put("sid = 's42'",i->i==42);
+        conditions.put("sid IN ('s1', 's299', 's300', 'x')",i->i==1 || i==299);
+        conditions.put("major = 'CS'",i->"CS".equals(major(i)));
+        conditions.put("major != 'CS'",i->major(i)!=null && !major(i).equals("CS"));
+        conditions.put("NOT major = 'CS'",i->!"CS".equals(major(i)));
+        conditions.put("major <> 'CS' AND major < 'Math'",i->major(i)!=null && major(i).compareTo("Math")<0
+                && !major(i).equals("CS"));
+        conditions.put("major IN ('Math', 'Physics', 'Art')",i->"Math".equals(major(i)) || "Physics".equals(major(i)));
+        conditions.put("major NOT IN ('Math', 'Physics')",i->!"Math".equals(major(i)) && !"Physics".equals(major(i)));
+        conditions.put("major IN ('Art')",i->false);
+        conditions.put("byear = 1981",i->byear(i)==1981);
+        conditions.put("byear IN (1950, 1981, 2009, 2100)",i->byear(i)==1950 || byear(i)==1981 || byear(i)==2009);
+        conditions.put("byear NOT IN (1950, 1981)",i->byear(i)!=1950 && byear(i)!=1981);
+        conditions.put("byear != 1950 AND byear <= 1951",i->byear(i)==1951);
+        conditions.put("byear >= 1980 AND byear < 1990 OR major = 'History'",
+                i->byear(i)>=1980 && byear(i)<1990 || "History".equals(major(i)));
+        conditions.put("(byear < 1960 OR byear > 2000) AND NOT sname LIKE 'Name1%'",
+                i->(byear(i)<1960 || byear(i)>2000) && !name(i).startsWith("Name1"));
+        conditions.put("sname LIKE 'Name1%'",i->name(i).startsWith("Name1"));
+        conditions.put("sname LIKE '%5'",i->name(i).endsWith("5"));
+        conditions.put("sname LIKE '%e5%'",i->name(i).contains("e5"));
+        conditions.put("sname LIKE 'Name_'",i->name(i).length()==5);
+        conditions.put("sname LIKE 'N%e_3'",i->name(i).length()==6 && name(i).endsWith("3"));
+        conditions.put("sname NOT LIKE '%1%'",i->!name(i).contains("1"));
+        conditions.put("sname < 'Name2'",i->name(i).compareTo("Name2")<0);
+        conditions.put("major LIKE '%s%'",i->major(i)!=null && major(i).contains("s"));
+        conditions.put("major LIKE '%'",i->major(i)!=null);
+        conditions.put("NOT major LIKE '%'",i->major(i)==null);
+        conditions.put("byear LIKE '19_5'",i->byear(i)<2000 && byear(i)%10==5);
+        conditions.put("NOT (NOT byear > 2000 AND major IN ('CS', 'Math'))",
+                i->byear(i)>2000 || !"CS".equals(major(i)) && !"Math".equals(major(i)));
+        return conditions;
+    }
+
+    private static String name(int i) {
+        return "Name"+i%97;
+    }
+
+    private static String major(int i) {
+        return i%7==0?null:TestDatabase.MAJORS[i%TestDatabase.MAJORS.length];
+    }
+
+    private static int byear(int i) {
+        return 1950+(i*31)%60;
+    }
+}
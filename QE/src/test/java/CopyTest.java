@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * COPY table FROM 'file' on every storage: invalid files are rejected with their line and leave the table as it was,
+ * valid ones are loaded, indexed and kept across a restart
+ */
+class CopyTest {
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void rejectsInvalidRowsWithTheirLine(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,100);
+        File bad=new File(folder,"bad.csv");
+        StringBuilder rows=new StringBuilder();
+        for(int i=0;i<5000;i++){
+            rows.append("b").append(i).append(",x,y,").append(i==4321?"19x0":"1990").append('\n');
+        }
+        TestDatabase.write(bad,rows.toString());
+        File shortRow=new File(folder,"short.csv");
+        TestDatabase.write(shortRow,"z1,a,b,1990\n\nz2,a,b\n");
+        Database db=TestDatabase.open(folder,storage);
+        // small ranges: the invalid row is not in the first one, its line counts the lines of the ranges before it
+        db.setLoadSplitSize(4096);
+        try {
+            db.createIndex("CREATE INDEX ON student (sid)");
+            List<List<Object>> before=TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student");
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                    ()->db.copyData("COPY student FROM '"+bad.getPath()+"'"));
+            assertEquals("Invalid row in "+bad.getPath()+": Not a valid Integer on line 4322: 19x0",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,()->db.copyData("COPY student FROM '"+shortRow.getPath()+"'"));
+            assertEquals("Invalid row in "+shortRow.getPath()+": Expected 4 values on line 3 but found 3",e.getMessage());
+            assertThrows(InvalidQueryException.class,()->db.copyData("COPY student FROM '"+folder+"/none.csv'"));
+            assertThrows(InvalidQueryException.class,()->db.copyData("COPY nobody FROM '"+bad.getPath()+"'"));
+            assertEquals(before,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+            assertEquals(0,db.selectData("SELECT sid FROM student WHERE sid = 'z1'").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void loadsIndexesAndKeepsTheRows(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,100);
+        File extra=new File(folder,"extra.csv");
+        StringBuilder rows=new StringBuilder();
+        for(int i=0;i<5000;i++){
+            rows.append("c").append(i).append(",Name ").append(i).append(',').append(i%3==0?"":"M"+i%7)
+                    .append(',').append(1950+i%60).append('\n');
+        }
+        TestDatabase.write(extra,rows.toString());
+        Database db=TestDatabase.open(folder,storage);
+        db.setLoadSplitSize(4096);
+        db.createIndex("CREATE INDEX ON student (sid)");
+        db.createIndex("CREATE INDEX ON student (byear)");
+        int year=db.selectData("SELECT sid FROM student WHERE byear = 1999").getTuples().size();
+        Main.runQuery("copy student from '"+extra.getPath()+"';",db);
+        assertEquals(5100,db.selectData("SELECT sid FROM student").getTuples().size());
+        assertEquals(List.of(List.of("Name 4999")),
+                TestDatabase.select(db,"SELECT sname FROM student WHERE sid = 'c4999'"));
+        assertEquals(year+83,db.selectData("SELECT sid FROM student WHERE byear = 1999").getTuples().size());
+        assertTrue(db.explain("SELECT sname FROM student WHERE sid = 'c4999'").contains("Index"));
+        List<List<Object>> loaded=TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student");
+        db.close();
+
+        Database reopened=TestDatabase.open(folder,storage);
+        try {
+            assertEquals(loaded,TestDatabase.select(reopened,"SELECT sid, sname, major, byear FROM student"));
+            assertEquals(2,reopened.getIndexes("student").size());
+            assertEquals(year+83,reopened.selectData("SELECT sid FROM student WHERE byear = 1999").getTuples().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void copiesQuotedValuesSpanningSeveralLines(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,100);
+        File multi=new File(folder,"multi.csv");
+        StringBuilder rows=new StringBuilder();
+        for(int i=0;i<200;i++){
+            rows.append("m").append(i).append(",\"line").append(i).append("\nline2\nline3\",CS,").append(1950+i%60).append('\n');
+        }
+        TestDatabase.write(multi,rows.toString());
+        File bad=new File(folder,"bad.csv");
+        TestDatabase.write(bad,rows+"z1,\"a\nb\",CS,19x0\n");
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            // one range, and ranges smaller than a row (every range boundary is tried inside a quoted value):
+            // the line of the invalid row counts the line breaks of the quoted values before it
+            for(long splitSize: new long[]{Long.MAX_VALUE,7}){
+                db.setLoadSplitSize(splitSize);
+                InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                        ()->db.copyData("COPY student FROM '"+bad.getPath()+"'"));
+                assertEquals("Invalid row in "+bad.getPath()+": Not a valid Integer on line 601: 19x0",e.getMessage());
+            }
+            db.copyData("COPY student FROM '"+multi.getPath()+"'");
+            assertEquals(300,db.selectData("SELECT sid FROM student").getTuples().size());
+            assertEquals(List.of(List.of("line199\nline2\nline3","CS",1969)),
+                    TestDatabase.select(db,"SELECT sname, major, byear FROM student WHERE sid = 'm199'"));
+        } finally {
+            db.close();
+        }
+        Database reopened=TestDatabase.open(folder,storage);
+        try {
+            assertEquals(200,reopened.selectData("SELECT sid FROM student WHERE major = 'CS' AND sname LIKE 'line%'")
+                    .getTuples().size());
+        } finally {
+            reopened.close();
+        }
+    }
+}
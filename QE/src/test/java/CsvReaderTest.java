@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The csv reader of the table files: byte order mark, quoted and trimmed fields, null values, blank lines,
+ * conversion to the attribute types and the lines of its errors
+ */
+class CsvReaderTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void skipsTheByteOrderMarkAndBlankLines() {
+        File file=file("\uFEFFs1,Ann,CS,1990\n\n\r\ns2,Bob,Math,1991\r\n\n");
+        assertEquals(List.of(Arrays.asList("s1","Ann","CS",1990),Arrays.asList("s2","Bob","Math",1991)),read(file));
+    }
+
+    @Test
+    void rejectsAnInvalidByteOrderMark() throws Exception {
+        File file=new File(folder,"student.csv");
+        Files.write(file.toPath(),new byte[]{(byte) 0xEF,'s','1',',','A',',','C',',','1','\n'});
+        IllegalArgumentException e=assertThrows(IllegalArgumentException.class,()->read(file));
+        assertEquals("Invalid UTF-8 byte order mark in "+file,e.getMessage());
+    }
+
+    @Test
+    void quotedFieldsKeepTheirCommasQuotesAndSpaces() {
+        File file=file("\"s,1\",\"say \"\"hi\"\"\",\"  CS \",1990\n"
+                +"  s2  ,  \"Bob\"  ,  , 1991 \n"
+                +"s3,\"\",,\n"
+                +"s4,Zoë \"Z\",É,-7\n");
+        assertEquals(List.of(
+                Arrays.asList("s,1","say \"hi\"","  CS ",1990),
+                Arrays.asList("s2","Bob",null,1991),
+                Arrays.asList("s3","",null,null),
+                Arrays.asList("s4","Zoë \"Z\"","É",-7)),read(file));
+    }
+
+    @Test
+    void convertsValuesToTheAttributeTypes() {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"n:Integer");
+        attributes.put(1,"x:Double");
+        ISchema schema=new Schema(attributes);
+        File file=file("+12,1.5\n-2147483648,-3e2\n2147483647, 7 \n");
+        assertEquals(List.of(Arrays.asList(12,1.5),Arrays.asList(Integer.MIN_VALUE,-300.0),
+                Arrays.asList(Integer.MAX_VALUE,7.0)),read(file,schema));
+        IllegalArgumentException e=assertThrows(IllegalArgumentException.class,
+                ()->read(file("1,2\n\n3,x\n"),schema));
+        assertEquals("Not a valid Double on line 3: x",e.getMessage());
+        e=assertThrows(IllegalArgumentException.class,()->read(file("1,2\n2147483648,3\n"),schema));
+        assertEquals("Not a valid Integer on line 2: 2147483648",e.getMessage());
+    }
+
+    @Test
+    void longFieldsAndRowsAcrossBufferReads() {
+        StringBuilder content=new StringBuilder();
+        List<List<Object>> expected=new ArrayList<>();
+        String name="n".repeat(1000);
+        for(int i=0;i<200;i++){
+            content.append('s').append(i).append(",\"").append(name).append(i).append("\",CS,").append(1950+i%60)
+                    .append('\n');
+            expected.add(Arrays.asList("s"+i,name+i,"CS",1950+i%60));
+        }
+        assertEquals(expected,read(file(content.toString())));
+    }
+
+    @Test
+    void onlyAStrictReaderRejectsRowsWithoutOneValuePerAttribute() {
+        File file=file("s1,Ann,CS,1990,extra\ns2,Bob\n");
+        assertEquals(List.of(Arrays.asList("s1","Ann","CS",1990),Arrays.asList("s2","Bob",null,null)),read(file));
+        IllegalArgumentException e=assertThrows(IllegalArgumentException.class,
+                ()->IO.readRows(file,schema(),0,file.length(),1,true));
+        assertEquals("Expected 4 values on line 1 but found 5",e.getMessage());
+        e=assertThrows(IllegalArgumentException.class,()->IO.readRows(file,schema(),21,file.length(),2,true));
+        assertEquals("Expected 4 values on line 2 but found 2",e.getMessage());
+    }
+
+    private File file(String content) {
+        File file=new File(folder,"student.csv");
+        TestDatabase.write(file,content);
+        return file;
+    }
+
+    private static List<List<Object>> read(File file) {
+        return read(file,schema());
+    }
+
+    private static List<List<Object>> read(File file, ISchema schema) {
+        List<List<Object>> rows=new ArrayList<>();
+        try(CsvReader reader=new CsvReader(file,schema)){
+            while(reader.hasNext()){
+                rows.add(Arrays.asList(reader.next()));
+            }
+        }
+        return rows;
+    }
+
+    private static ISchema schema() {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"sid:String");
+        attributes.put(1,"sname:String");
+        attributes.put(2,"major:String");
+        attributes.put(3,"byear:Integer");
+        return new Schema(attributes);
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * GROUP BY, HAVING and the aggregate functions, checked against the groups computed row by row from the
+ * generated students (see TestDatabase.create)
+ */
+class GroupByTest {
+    private static final int STUDENTS=300;
+
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void aggregatesEveryGroup(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,STUDENTS);
+        Database db=TestDatabase.open(folder,storage);
+        db.setResultCache(0,0);
+        String query="SELECT major, COUNT(*), COUNT(major), COUNT(DISTINCT byear), SUM(byear), MIN(byear), MAX(byear), "
+                +"AVG(byear) FROM student GROUP BY major";
+        try {
+            List<List<Object>> expected=expectedGroups();
+            assertEquals(expected,TestDatabase.select(db,query));
+            // fewer groups in memory than groups: the others are spilled and aggregated afterwards
+            db.setAggregateMemoryBudget(2);
+            assertEquals(expected,TestDatabase.select(db,query));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void havingFiltersTheGroupsAndOrderBySortsThemOnAnAggregate() throws Exception {
+        TestDatabase.create(folder,STUDENTS);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            Map<String,Integer> enrolled=new HashMap<>();
+            for(int i=0;i<STUDENTS;i++){
+                for(int c=0;c<=i%3;c++){
+                    enrolled.merge("c"+(i+c*7)%TestDatabase.COURSES,1,Integer::sum);
+                }
+            }
+            List<List<Object>> expected=new ArrayList<>();
+            for(Map.Entry<String,Integer> e: enrolled.entrySet()){
+                if(e.getValue()>30){
+                    expected.add(Arrays.asList(e.getKey(),e.getValue()));
+                }
+            }
+            expected.sort(Comparator.comparing((List<Object> row)->-(Integer) row.get(1))
+                    .thenComparing(row->(String) row.get(0)));
+            assertEquals(expected,TestDatabase.rows(db.selectData(
+                    "SELECT cno, COUNT(*) FROM enroll GROUP BY cno HAVING COUNT(*) > 30 ORDER BY COUNT(*) DESC, cno")));
+            // a having condition on an aggregate that is not selected, and on a group attribute
+            assertEquals(List.of(List.of("CS")),TestDatabase.select(db,
+                    "SELECT major FROM student GROUP BY major HAVING MIN(byear) = 1950 AND major = 'CS'"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void aggregatesWithoutGroupByReturnOneRow() throws Exception {
+        TestDatabase.create(folder,STUDENTS);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(List.of(Arrays.asList(STUDENTS,1950,2009)),
+                    TestDatabase.select(db,"SELECT COUNT(*), MIN(byear), MAX(byear) FROM student"));
+            assertEquals(List.of(Arrays.asList(0,null,null)),
+                    TestDatabase.select(db,"SELECT COUNT(sid), SUM(byear), AVG(byear) FROM student WHERE major = 'None'"));
+            assertEquals(List.of(Arrays.asList(4.5,1.5)),
+                    TestDatabase.select(db,"SELECT SUM(credits), AVG(credits) FROM course WHERE dept = 'Math'"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void invalidGroupsAreRejected() throws Exception {
+        TestDatabase.create(folder,10);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                    ()->db.selectData("SELECT sname, COUNT(*) FROM student GROUP BY major"));
+            assertEquals("The attribute sname must be in the group by clause",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,()->db.selectData("SELECT major FROM student HAVING major = 'CS'"));
+            assertEquals("A having clause needs a group by clause or an aggregate",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,()->db.selectData("SELECT SUM(*) FROM student"));
+            assertEquals("Only COUNT can be applied to *: SUM(*)",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,()->db.selectData("SELECT major, COUNT(*) FROM student GROUP BY year"));
+            assertEquals("Unknown attribute: year",e.getMessage());
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Returns the rows of the group by query of aggregatesEveryGroup, computed from the generated students
+     */
+    private static List<List<Object>> expectedGroups() {
+        Map<String,List<Integer>> years=new HashMap<>();
+        for(int i=0;i<STUDENTS;i++){
+            String major=i%7==0?null:TestDatabase.MAJORS[i%TestDatabase.MAJORS.length];
+            years.computeIfAbsent(major,m->new ArrayList<>()).add(1950+(i*31)%60);
+        }
+        List<List<Object>> rows=new ArrayList<>();
+        for(Map.Entry<String,List<Integer>> group: years.entrySet()){
+            List<Integer> values=group.getValue();
+            int sum=0;
+            for(int year: values){
+                sum+=year;
+            }
+            Set<Integer> distinct=new HashSet<>(values);
+            rows.add(Arrays.asList(group.getKey(),values.size(),group.getKey()==null?0:values.size(),distinct.size(),
+                    sum,values.stream().min(Integer::compare).get(),values.stream().max(Integer::compare).get(),
+                    (double) sum/values.size()));
+        }
+        rows.sort(Comparator.comparing(Object::toString));
+        return rows;
+    }
+}
@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Inserts and deletes are seen only once their write-ahead log entry is written: a change whose log write fails
+ * is not applied, and concurrent changes sharing group commits are replayed as they were applied
+ */
+class GroupCommitTest {
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void insertWithAFailedLogWriteIsNotApplied(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,50);
+        Database db=TestDatabase.open(folder,storage);
+        db.insertData("INSERT INTO student VALUES ('kept', 'A', 'CS', 2001)");
+        List<List<Object>> before=TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student");
+        // an interrupt closes the log file channel during the write
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(RuntimeException.class,()->db.insertData("INSERT INTO student VALUES ('lost', 'A', 'CS', 2001)"));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(before,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+        assertEquals(0,db.selectData("SELECT sid FROM student WHERE sid = 'lost'").getTuples().size());
+        // the log stays closed: later changes fail as well
+        assertThrows(RuntimeException.class,()->db.deleteData("DELETE FROM student WHERE byear < 1980"));
+        assertEquals(before,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+
+        Database reopened=TestDatabase.open(folder,storage);
+        try {
+            assertEquals(before,TestDatabase.select(reopened,"SELECT sid, sname, major, byear FROM student"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void deleteWithAFailedLogWriteIsNotApplied(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,50);
+        Database db=TestDatabase.open(folder,storage);
+        db.createIndex("CREATE INDEX ON student (byear)");
+        db.insertData("INSERT INTO student VALUES ('kept', 'A', 'CS', 1970)");
+        List<List<Object>> before=TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student");
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(RuntimeException.class,()->db.deleteData("DELETE FROM student WHERE byear < 1980"));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(before,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+        assertEquals(TestDatabase.select(db,"SELECT sid FROM student WHERE byear < 1980").size(),
+                before.stream().filter(row->(Integer) row.get(3)<1980).count());
+    }
+
+    @Test
+    void invalidDeleteIsNotLogged() throws Exception {
+        TestDatabase.create(folder,20);
+        for(TestDatabase.Storage storage: new TestDatabase.Storage[]{TestDatabase.Storage.VERSIONED,TestDatabase.Storage.COLUMNAR}){
+            Database db=TestDatabase.open(folder,storage);
+            assertThrows(InvalidQueryException.class,()->db.deleteData("DELETE FROM student WHERE nothing = 1"));
+            db.close();
+        }
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(20,db.selectData("SELECT sid FROM student").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void concurrentInsertsAndDeletesAreReplayedAsApplied() throws Exception {
+        TestDatabase.create(folder,100);
+        Database crashed=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        crashed.createIndex("CREATE INDEX ON student (major)");
+        ExecutorService writers=Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done=new ArrayList<>();
+            for(int w=0;w<8;w++){
+                int writer=w;
+                done.add(writers.submit(()->{
+                    for(int i=0;i<100;i++){
+                        crashed.insertData("INSERT INTO student VALUES ('w"+writer+"-"+i+"', 'W', 'M"+i%5+"', "
+                                +(1950+i)+")");
+                        if(i%10==9){
+                            crashed.deleteData("DELETE FROM student WHERE major = 'M"+i%5+"' AND byear > "+(1950+i-5));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f: done){
+                f.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+        List<List<Object>> applied=TestDatabase.select(crashed,"SELECT sid, sname, major, byear FROM student");
+
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(applied,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+            assertEquals(TestDatabase.select(db,"SELECT sid FROM student WHERE major = 'M3'").size(),
+                    applied.stream().filter(row->"M3".equals(row.get(2))).count());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void stagedChangesAreSeenOnceCommittedInOrder() {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"key:Integer");
+        CommitClock clock=new CommitClock();
+        VersionedTable table=new VersionedTable("t",new Schema(attributes),clock);
+        VersionedTable.Change first=table.stage(table.append(rows(1,2)),Collections.emptyList());
+        VersionedTable.Change second=table.stage(table.append(rows(3)),Collections.emptyList());
+        VersionedTable.Change third=table.stage(table.append(rows(4)),Collections.emptyList());
+        assertTrue(table.getTuples().isEmpty());
+        Thread committer=new Thread(()->table.commit(second));
+        committer.start();
+        table.abort(first);
+        // waits for the commit of the second change, which waits for the abort of the first one
+        table.commit(third);
+        join(committer);
+        assertEquals(List.of(3,4),keys(table));
+        assertTrue(table.hasDeletedVersions());
+        assertEquals(2,table.vacuum(clock.horizon()).size());
+        assertEquals(List.of(3,4),keys(table));
+    }
+
+    private static List<Object[]> rows(Integer... keys) {
+        List<Object[]> rows=new ArrayList<>();
+        for(Integer key: keys){
+            rows.add(new Object[]{key});
+        }
+        return rows;
+    }
+
+    private static List<Object> keys(ITable table) {
+        List<Object> keys=new ArrayList<>();
+        for(ITuple t: table.getTuples()){
+            keys.add(t.getValue(0));
+        }
+        return keys;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
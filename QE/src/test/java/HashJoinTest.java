@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Hash joins in memory and partitioned to spill files (grace hash join) give the same tuples
+ */
+class HashJoinTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void spilledJoinMatchesTheInMemoryJoin() {
+        ITable left=table("l",2000,i->"k"+(i%300));
+        ITable right=table("r",500,i->i%5==0?null:"k"+(i*7%400));
+        ITable inMemory=new HashJoin(Integer.MAX_VALUE,folder).join(left,0,right,0);
+        ITable spilled=new HashJoin(16,folder).join(left,0,right,0);
+        assertEquals(expectedSize(left,right),inMemory.getTuples().size());
+        assertEquals(TestDatabase.sortedRows(inMemory),TestDatabase.sortedRows(spilled));
+        assertEquals("l.key",spilled.getSchema().getName(0));
+        assertEquals("r.row",spilled.getSchema().getName(3));
+        assertEquals(0,folder.list().length,"spill files are deleted");
+    }
+
+    @Test
+    void spilledJoinOfOneRepeatedKeyStopsPartitioning() {
+        // every tuple has the same key: partitioning cannot split the build side below the memory budget
+        ITable left=table("l",300,i->"same");
+        ITable right=table("r",200,i->"same");
+        ITable spilled=new HashJoin(8,folder).join(left,0,right,0);
+        assertEquals(300*200,spilled.getTuples().size());
+    }
+
+    @Test
+    void spilledJoinQueryReadsItsPartitionsFromTheDisk() throws Exception {
+        TestDatabase.create(folder,500);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            String query="SELECT student.sid, enroll.cno, student.byear FROM student JOIN enroll ON student.sid = enroll.sid"
+                    +" WHERE student.byear > 1980";
+            List<List<Object>> inMemory=TestDatabase.select(db,query);
+            db.setJoinMemoryBudget(10);
+            db.setResultCache(0,0);
+            long read=db.getMetrics().getBytesRead();
+            assertEquals(inMemory,TestDatabase.select(db,query));
+            assertTrue(db.getMetrics().getBytesRead()>read);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long expectedSize(ITable left, ITable right) {
+        Map<Object,Integer> counts=new HashMap<>();
+        for(ITuple t: right.getTuples()){
+            if(t.getValue(0)!=null){
+                counts.merge(t.getValue(0),1,Integer::sum);
+            }
+        }
+        long size=0;
+        for(ITuple t: left.getTuples()){
+            size+=counts.getOrDefault(t.getValue(0),0);
+        }
+        return size;
+    }
+
+    private static ITable table(String name, int size, IntFunction<String> key) {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"key:String");
+        attributes.put(1,"row:Integer");
+        ITable table=new Table(name,new Schema(attributes));
+        for(int i=0;i<size;i++){
+            ITuple t=new Tuple(table.getSchema());
+            t.setValues(new Object[]{key.apply(i),i});
+            table.addTuple(t);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * LIMIT and OFFSET: pages of the ordered results, and scans that stop once the limit is reached
+ */
+class LimitTest {
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void pagesAreSlicesOfTheOrderedResults(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,200);
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            String query="SELECT sid, byear FROM student WHERE major != 'CS' ORDER BY byear DESC, sid";
+            List<List<Object>> all=TestDatabase.rows(db.selectData(query));
+            for(int limit: new int[]{0,1,7,all.size()+1}){
+                for(int offset=0;offset<=all.size()+5;offset+=9){
+                    List<List<Object>> page=all.subList(Math.min(offset,all.size()),Math.min(offset+limit,all.size()));
+                    assertEquals(page,TestDatabase.rows(db.selectData(query+" LIMIT "+limit+" OFFSET "+offset)),
+                            "LIMIT "+limit+" OFFSET "+offset);
+                }
+            }
+            assertEquals(all.subList(0,5),TestDatabase.rows(db.selectData(query+" LIMIT 5")));
+            assertEquals(List.of(List.of(1950,4)),TestDatabase.rows(db.selectData(
+                    "SELECT byear, COUNT(*) FROM student GROUP BY byear ORDER BY byear LIMIT 1")));
+            assertEquals(3,db.selectData("SELECT student.sid, cno FROM student JOIN enroll ON student.sid = enroll.sid "
+                    +"LIMIT 3 OFFSET 100").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void aScanStopsOnceTheLimitIsReached(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,1000);
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            IQueryMetrics metrics=db.getMetrics();
+            metrics.reset();
+            // s5, s10 and s15 are the first CS students
+            assertEquals(List.of(List.of("s5"),List.of("s10"),List.of("s15")),
+                    TestDatabase.rows(db.selectData("SELECT sid FROM student WHERE major = 'CS' LIMIT 3")));
+            assertEquals(16,metrics.getRowsScanned());
+            metrics.reset();
+            assertEquals(List.of(List.of("s4"),List.of("s5"),List.of("s6")),
+                    TestDatabase.rows(db.selectData("SELECT sid FROM student LIMIT 3 OFFSET 4")));
+            assertEquals(7,metrics.getRowsScanned());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void aCursorReturnsTheTuplesOneAtATime() throws Exception {
+        TestDatabase.create(folder,100);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            try(Cursor cursor=db.openCursor("SELECT sid FROM student WHERE byear >= 2000 LIMIT 4 OFFSET 1")){
+                List<List<Object>> expected=TestDatabase.rows(
+                        db.selectData("SELECT sid FROM student WHERE byear >= 2000 LIMIT 4 OFFSET 1"));
+                assertEquals(expected.get(0),Arrays.asList(cursor.next().getValues()));
+                assertEquals(expected.subList(1,4),TestDatabase.rows(cursor));
+                assertNull(cursor.next());
+            }
+            Cursor closed=db.openCursor("SELECT sid FROM student");
+            closed.next();
+            closed.close();
+            assertNull(closed.next());
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Table files are split into byte ranges parsed in parallel: the ranges start and end on row boundaries, also when
+ * quoted values span several lines
+ */
+class LoadTest {
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void rowsAreTheSameWhateverTheSplitSize(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,500);
+        Database whole=TestDatabase.open(folder,storage);
+        List<List<Object>> expected=TestDatabase.select(whole,"SELECT sid, sname, major, byear FROM student");
+        List<List<Object>> enrolled=TestDatabase.select(whole,"SELECT sid, cno, grade FROM enroll");
+        whole.close();
+        for(long splitSize: new long[]{1,40,1000}){
+            Database db=open(storage,splitSize);
+            try {
+                assertEquals(expected,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+                assertEquals(enrolled,TestDatabase.select(db,"SELECT sid, cno, grade FROM enroll"));
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    @Test
+    void quotedLineBreaksAreNotSplitPoints() {
+        TestDatabase.write(new File(folder,"student.csv"),"\uFEFF\"s0\",\"line1\nline2\nline3\",CS,1999\n"
+                +"s1,  \"a \"\"quoted\"\",\n value\" ,Math,2000\n"
+                +"s2,plain\"quote,\"\n\n\",2001\r\n"
+                +"s3,\"\"\"\n\"\"\",History,2002\n");
+        List<List<Object>> expected=List.of(
+                Arrays.asList("s0","line1\nline2\nline3","CS",1999),
+                Arrays.asList("s1","a \"quoted\",\n value","Math",2000),
+                Arrays.asList("s2","plain\"quote","\n\n",2001),
+                Arrays.asList("s3","\"\n\"","History",2002));
+        File file=new File(folder,"student.csv");
+        for(long splitSize=1;splitSize<=file.length();splitSize++){
+            List<List<Object>> rows=new ArrayList<>();
+            for(long[] range: IO.splitFile(file,splitSize)){
+                for(Object[] row: IO.readRows(file,schema(),range[0],range[1])){
+                    rows.add(Arrays.asList(row));
+                }
+            }
+            assertEquals(expected,rows,"split size "+splitSize);
+        }
+    }
+
+    @Test
+    void lineBreaksWrittenByACheckpointAreReadBack() throws Exception {
+        TestDatabase.create(folder,50);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.insertData("INSERT INTO student VALUES ('multi', 'line1\nline2\nline3', 'CS', 1999)");
+        db.close();
+        for(long splitSize=10;splitSize<=60;splitSize+=5){
+            Database reopened=open(TestDatabase.Storage.VERSIONED,splitSize);
+            try {
+                assertEquals(51,reopened.selectData("SELECT sid FROM student").getTuples().size(),"split size "+splitSize);
+                assertEquals(List.of(List.of("line1\nline2\nline3")),
+                        TestDatabase.select(reopened,"SELECT sname FROM student WHERE sid = 'multi'"));
+            } finally {
+                reopened.close();
+            }
+        }
+    }
+
+    private Database open(TestDatabase.Storage storage, long splitSize) {
+        Database db=new Database(folder.getPath(),"schema.txt");
+        db.setColumnar(storage==TestDatabase.Storage.COLUMNAR);
+        db.setOffHeap(storage==TestDatabase.Storage.OFF_HEAP);
+        db.setPaged(storage==TestDatabase.Storage.PAGED);
+        db.setCheckpoint(3_600_000,Long.MAX_VALUE);
+        db.setLoadSplitSize(splitSize);
+        db.populateDB();
+        return db;
+    }
+
+    private static ISchema schema() {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"sid:String");
+        attributes.put(1,"sname:String");
+        attributes.put(2,"major:String");
+        attributes.put(3,"byear:Integer");
+        return new Schema(attributes);
+    }
+}
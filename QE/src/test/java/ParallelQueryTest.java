@@ -0,0 +1,197 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Parallel select queries: morsels processed by several workers and returned in row order, the degree of
+ * parallelism of the database and of the PARALLEL hint, and the serial fallback for small inputs
+ */
+class ParallelQueryTest {
+    /**
+     * More students than two morsels
+     */
+    private static final int STUDENTS=40_000;
+    static final String[] QUERIES={
+            "SELECT sid, sname, byear FROM student WHERE byear >= 1990 AND major != 'CS'",
+            "SELECT sid FROM student WHERE sname LIKE 'Name1%' OR major IN ('Math', 'History')",
+            "SELECT sname, major FROM student",
+            "SELECT sid, byear FROM student ORDER BY byear DESC, sid",
+            "SELECT sid, major FROM student WHERE byear > 1960 ORDER BY sname, major LIMIT 10 OFFSET 20000",
+            "SELECT major, COUNT(*), SUM(byear) FROM student WHERE byear < 2000 GROUP BY major ORDER BY major",
+            "SELECT student.sid, cno, grade FROM student JOIN enroll ON student.sid = enroll.sid WHERE byear > 2005",
+    };
+
+    @TempDir
+    File folder;
+
+    @Test
+    void everyMorselIsProcessedOnceAndReturnedInRowOrder() {
+        ExecutorService pool=Executors.newFixedThreadPool(3);
+        try {
+            MorselExecutor executor=new MorselExecutor(pool,4,0);
+            assertTrue(executor.isParallel(100_000));
+            for(int morselSize: new int[]{1_000,777,100_000}){
+                List<int[]> ranges=executor.map(100_000,morselSize,(from,to)->new int[]{from,to});
+                assertEquals((100_000+morselSize-1)/morselSize,ranges.size());
+                int next=0;
+                for(int[] range: ranges){
+                    assertEquals(next,range[0]);
+                    assertEquals(Math.min(100_000,next+morselSize),range[1]);
+                    next=range[1];
+                }
+                assertEquals(100_000,next);
+            }
+            int size=MorselExecutor.MORSEL_SIZE;
+            assertEquals(List.of(size,size,40_000-2*size),executor.map(40_000,(from,to)->to-from));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void workersProcessMorselsAtTheSameTime() throws Exception {
+        ExecutorService pool=Executors.newFixedThreadPool(1);
+        try {
+            // the first two morsels only finish once both are being processed, by the caller and by the pool thread
+            CyclicBarrier both=new CyclicBarrier(2);
+            List<Thread> threads=executorThreads(new MorselExecutor(pool,2,0),both);
+            assertEquals(2,threads.stream().distinct().count());
+            assertTrue(threads.contains(Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void smallInputsAndASingleWorkerRunOnTheCallingThread() {
+        ExecutorService pool=Executors.newFixedThreadPool(3);
+        try {
+            for(MorselExecutor executor: new MorselExecutor[]{new MorselExecutor(pool,4,50_000),
+                    new MorselExecutor(pool,1,0),MorselExecutor.SERIAL}){
+                assertFalse(executor.isParallel(40_000));
+                List<Thread> threads=new ArrayList<>();
+                List<Integer> sizes=executor.map(40_000,1_000,(from,to)->{
+                    threads.add(Thread.currentThread());
+                    return to-from;
+                });
+                assertEquals(List.of(40_000),sizes);
+                assertEquals(List.of(Thread.currentThread()),threads);
+            }
+            // an input of one morsel is never split
+            assertFalse(new MorselExecutor(pool,4,0).isParallel(MorselExecutor.MORSEL_SIZE));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void aFailingMorselFailsTheCall() throws Exception {
+        ExecutorService pool=Executors.newFixedThreadPool(3);
+        try {
+            MorselExecutor executor=new MorselExecutor(pool,4,0);
+            IllegalStateException failure=new IllegalStateException("morsel 5");
+            IllegalStateException e=assertThrows(IllegalStateException.class,()->executor.map(100_000,1_000,(from,to)->{
+                if(from==5_000){
+                    throw failure;
+                }
+                return from;
+            }));
+            assertSame(failure,e);
+            // the workers are free for the next call
+            assertEquals(100,executor.map(100_000,1_000,(from,to)->from).size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void parallelQueriesReturnTheRowsOfSerialQueries(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,STUDENTS);
+        Database db=TestDatabase.open(folder,storage);
+        AtomicInteger submitted=new AtomicInteger();
+        ExecutorService pool=new ThreadPoolExecutor(3,3,0,TimeUnit.SECONDS,new LinkedBlockingQueue<>()) {
+            @Override
+            public Future<?> submit(Runnable task) {
+                submitted.incrementAndGet();
+                return super.submit(task);
+            }
+        };
+        db.setResultCache(0,0);
+        db.setQueryExecutor(pool);
+        try {
+            db.setParallelism(1);
+            List<List<List<Object>>> serial=new ArrayList<>();
+            for(String query: QUERIES){
+                serial.add(TestDatabase.rows(db.selectData(query)));
+            }
+            assertEquals(0,submitted.get());
+            // fewer students than the default threshold: serial
+            db.setParallelism(4);
+            for(String query: QUERIES){
+                TestDatabase.rows(db.selectData(query));
+            }
+            assertEquals(0,submitted.get());
+            db.setParallelThreshold(0);
+            for(int q=0;q<QUERIES.length;q++){
+                assertEquals(serial.get(q),TestDatabase.rows(db.selectData(QUERIES[q])),QUERIES[q]);
+            }
+            assertTrue(submitted.get()>0);
+            // the hint overrides the degree of the database
+            int before=submitted.get();
+            for(int q=0;q<QUERIES.length;q++){
+                assertEquals(serial.get(q),TestDatabase.rows(db.selectData(hinted(QUERIES[q],1))),QUERIES[q]);
+            }
+            assertEquals(before,submitted.get());
+            db.setParallelism(1);
+            for(int q=0;q<QUERIES.length;q++){
+                assertEquals(serial.get(q),TestDatabase.rows(db.selectData(hinted(QUERIES[q],3))),QUERIES[q]);
+            }
+            assertTrue(submitted.get()>before);
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,()->db.selectData(hinted(QUERIES[0],0)));
+            assertTrue(e.getMessage().contains("degree of parallelism"),e.getMessage());
+        } finally {
+            db.close();
+            pool.shutdown();
+        }
+    }
+
+    private static String hinted(String query, int parallelism) {
+        return query.replaceFirst("SELECT","SELECT /*+ PARALLEL("+parallelism+") */");
+    }
+
+    /**
+     * Returns the threads that processed the morsels of an input of four morsels, the first two waiting for each other
+     */
+    private static List<Thread> executorThreads(MorselExecutor executor, CyclicBarrier both) {
+        int size=MorselExecutor.MORSEL_SIZE;
+        return executor.map(4*size,(from,to)->{
+            if(from<2*size){
+                try {
+                    both.await(10,TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return Thread.currentThread();
+        });
+    }
+}
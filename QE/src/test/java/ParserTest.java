@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The lexer and the recursive descent parser of the queries
+ */
+class ParserTest {
+
+    @Test
+    void lexerSplitsWordsQuotedValuesSymbolsAndHints() throws Exception {
+        Lexer lexer=new Lexer("SELECT /*+ PARALLEL(2) */ a,b FROM t -- comment\n"
+                +"WHERE x>=1 /* comment */ AND y<>'it''s, ok' AND z!=? ;");
+        List<String> tokens=new ArrayList<>();
+        while(lexer.getType()!=Lexer.END){
+            tokens.add(lexer.getType()+":"+lexer.value());
+            lexer.next();
+        }
+        assertEquals(List.of("1:SELECT","4: PARALLEL(2) ","1:a","3:,","1:b","1:FROM","1:t","1:WHERE","1:x","3:>=","1:1",
+                "1:AND","1:y","3:<>","2:it's, ok","1:AND","1:z","3:!=","1:?","3:;"),tokens);
+        assertTrue(new Lexer("select").isWord("SELECT"));
+        assertFalse(new Lexer("selects").isWord("SELECT"));
+    }
+
+    @Test
+    void lexerRejectsUnclosedQuotesAndComments() {
+        InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                ()->Parser.parse("SELECT a FROM t WHERE b = 'open"));
+        assertEquals("Unclosed quote at position 26: SELECT a FROM t WHERE b = 'open",e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a /* FROM t"));
+        assertEquals("Unclosed comment at position 9: SELECT a /* FROM t",e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a FROM t WHERE b ! 1"));
+        assertEquals("Unexpected ! at position 24: SELECT a FROM t WHERE b ! 1",e.getMessage());
+    }
+
+    @Test
+    void parsesEveryClauseOfASelect() throws Exception {
+        SelectQuery select=(SelectQuery) Parser.parse("select /*+ parallel(4) */ student.major, count(distinct sid), "
+                +"MAX(byear) from student join enroll on student.sid = enroll.sid where byear > 1990 and "
+                +"(major in ('CS', 'Math') or not sname like 'A%') group by student.major having COUNT(DISTINCT sid) >= 2 "
+                +"order by COUNT(DISTINCT sid) desc, student.major limit 10 offset 5;");
+        assertEquals(List.of("student.major","COUNT(DISTINCT sid)","MAX(byear)"),select.getAttributes());
+        assertEquals(List.of("student","enroll"),select.getTables());
+        assertEquals("student.sid",select.getJoins().get(0).getLeftAttribute());
+        assertEquals("enroll.sid",select.getJoins().get(0).getRightAttribute());
+        assertEquals("(byear > 1990 AND (major IN (CS, Math) OR NOT sname LIKE A%))",select.getWhere().toString());
+        assertEquals(List.of("student.major"),select.getGroupBy());
+        assertEquals("COUNT(DISTINCT sid) >= 2",select.getHaving().toString());
+        assertEquals("COUNT(DISTINCT sid)",select.getOrderBy().get(0).getAttribute());
+        assertFalse(select.getOrderBy().get(0).isAscending());
+        assertTrue(select.getOrderBy().get(1).isAscending());
+        assertEquals(10,select.getLimit());
+        assertEquals(5,select.getOffset());
+        assertEquals(4,select.getParallelism());
+    }
+
+    @Test
+    void andBindsTighterThanOr() throws Exception {
+        assertEquals("(a = 1 OR (b = 2 AND c = 3))",Parser.parseCondition("a = 1 OR b = 2 AND c = 3").toString());
+        assertEquals("((a = 1 OR b = 2) AND c = 3)",Parser.parseCondition("(a = 1 OR b = 2) AND c = 3").toString());
+        assertEquals("NOT NOT a != 1",Parser.parseCondition("NOT NOT a <> 1").toString());
+        assertEquals("NOT a IN (x, 'y z')",Parser.parseCondition("a NOT IN (x, 'y z')").toString());
+    }
+
+    @Test
+    void parsesInsertsAndDeletes() throws Exception {
+        InsertQuery insert=(InsertQuery) Parser.parse("INSERT INTO student (sid, sname) VALUES ('s1', 'A b'), (s2, ?)");
+        assertEquals("student",insert.getTable());
+        assertEquals(List.of("sid","sname"),insert.getAttributes());
+        assertEquals(List.of(List.of("s1","A b"),Arrays.asList("s2",null)),insert.getRows());
+        assertEquals(1,insert.getParameters().size());
+        assertArrayEquals(new int[]{1,1},insert.getParameters().get(0));
+        DeleteQuery delete=(DeleteQuery) Parser.parse("delete from student where sid = 's1'");
+        assertEquals("student",delete.getTable());
+        assertEquals("sid = s1",delete.getWhere().toString());
+        assertNull(((DeleteQuery) Parser.parse("DELETE FROM student")).getWhere());
+    }
+
+    @Test
+    void keywordsAreNotNamesOrUnquotedValues() throws Exception {
+        InvalidQueryException e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT from FROM t"));
+        assertEquals("Expected attribute but found 'from' at position 7: SELECT from FROM t",e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a FROM t WHERE b = select"));
+        assertEquals("Expected value but found 'select' at position 26: SELECT a FROM t WHERE b = select",
+                e.getMessage());
+        assertEquals("b = 'select'",Parser.parseCondition("b = 'select'").toString());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a FROM t WHERE b NOT = 1"));
+        assertEquals("Expected IN or LIKE but found '=' at position 28: SELECT a FROM t WHERE b NOT = 1",e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a FROM t LIMIT 5 OFFSET x"));
+        assertEquals("Expected number of skipped tuples but found 'x' at position 31: SELECT a FROM t LIMIT 5 OFFSET x",
+                e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT a FROM t; SELECT b FROM t"));
+        assertEquals("Expected end of query but found 'SELECT' at position 17: SELECT a FROM t; SELECT b FROM t",
+                e.getMessage());
+        e=assertThrows(InvalidQueryException.class,()->Parser.parse("UPDATE t SET a = 1"));
+        assertEquals("Expected SELECT, INSERT or DELETE but found 'UPDATE' at position 0: UPDATE t SET a = 1",
+                e.getMessage());
+    }
+
+    @Test
+    void commandIsTheFirstKeywordAfterHintsAndComments() throws Exception {
+        assertEquals("SELECT",Parser.command("/*+ PARALLEL(2) */ -- comment\n select a FROM t"));
+        assertEquals("EXPLAIN",Parser.command("explain SELECT a FROM t"));
+        assertEquals("COPY",Parser.command("Copy t FROM 'f.csv'"));
+        assertNull(Parser.command("UPDATE t SET a = 1"));
+        assertEquals(2,((SelectQuery) Parser.parse("SELECT /*+ PARALLEL(2) */ a FROM t")).getParallelism());
+        assertEquals(0,((SelectQuery) Parser.parse("SELECT /*+ INDEX(t) */ a FROM t")).getParallelism());
+        assertThrows(InvalidQueryException.class,()->Parser.parse("SELECT /*+ PARALLEL(0) */ a FROM t"));
+    }
+}
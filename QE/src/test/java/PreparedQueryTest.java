@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Prepared queries: ? placeholders bound before every execution return the same rows as the query with the values
+ * written in it
+ */
+class PreparedQueryTest {
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void selectsReturnTheRowsOfTheBoundValues(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,300);
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            PreparedQuery select=db.prepare("SELECT sid, sname FROM student WHERE byear >= ? AND major = ?");
+            assertEquals(2,select.getParameterCount());
+            PreparedQuery in=db.prepare("SELECT sid FROM student WHERE major IN (?, 'CS', ?) AND sname LIKE ?");
+            for(int year=1950;year<2010;year+=13){
+                for(String major: TestDatabase.MAJORS){
+                    select.setInt(1,year);
+                    select.setString(2,major);
+                    assertEquals(TestDatabase.select(db,"SELECT sid, sname FROM student WHERE byear >= "+year
+                            +" AND major = '"+major+"'"),TestDatabase.sortedRows(select.executeQuery()));
+                }
+                // a String value of an Integer attribute is converted
+                select.setString(1,String.valueOf(year));
+                assertEquals(TestDatabase.select(db,"SELECT sid, sname FROM student WHERE byear >= "+year
+                        +" AND major = 'History'"),TestDatabase.sortedRows(select.executeQuery()));
+            }
+            in.setString(1,"Math");
+            in.setString(2,"Physics");
+            in.setString(3,"Name1%");
+            assertEquals(TestDatabase.select(db,"SELECT sid FROM student WHERE major IN ('Math', 'CS', 'Physics') "
+                    +"AND sname LIKE 'Name1%'"),TestDatabase.sortedRows(in.executeQuery()));
+            try(Cursor cursor=in.openCursor()){
+                assertEquals(TestDatabase.sortedRows(in.executeQuery()),TestDatabase.sortedRows(cursor));
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void theSelectIsPlannedAgainWhenAnIndexIsCreated() throws Exception {
+        TestDatabase.create(folder,300);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            PreparedQuery select=db.prepare("SELECT sname FROM student WHERE sid = ?");
+            select.setString(1,"s42");
+            assertEquals(List.of(List.of("Name42")),TestDatabase.rows(select.executeQuery()));
+            assertEquals(0,db.getMetrics().getIndexHits());
+            db.createIndex("CREATE INDEX ON student (sid)");
+            select.setString(1,"s43");
+            assertEquals(List.of(List.of("Name43")),TestDatabase.rows(select.executeQuery()));
+            assertEquals(1,db.getMetrics().getIndexHits());
+        } finally {
+            db.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void insertsAndDeletesAreLoggedLikeTheirQueries(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,100);
+        Database db=TestDatabase.open(folder,storage);
+        List<List<Object>> expected=new ArrayList<>();
+        try {
+            PreparedQuery insert=db.prepare("INSERT INTO student (byear, sid, sname) VALUES (?, ?, 'P'), (1999, ?, ?)");
+            PreparedQuery delete=db.prepare("DELETE FROM student WHERE sname = ? AND byear < ?");
+            for(int i=0;i<10;i++){
+                insert.setInt(1,1980+i);
+                insert.setString(2,"p"+i);
+                insert.setString(3,"q"+i);
+                if(i%2==0){
+                    insert.setNull(4);
+                }else{
+                    insert.setString(4,"Q");
+                }
+                insert.executeUpdate();
+                expected.add(Arrays.asList("p"+i,"P",null,1980+i));
+                expected.add(Arrays.asList("q"+i,i%2==0?null:"Q",null,1999));
+            }
+            delete.setString(1,"P");
+            delete.setInt(2,1985);
+            delete.executeUpdate();
+            expected.removeIf(row->"P".equals(row.get(1)) && (Integer) row.get(3)<1985);
+            expected.sort((a,b)->a.toString().compareTo(b.toString()));
+            assertEquals(expected,TestDatabase.select(db,
+                    "SELECT sid, sname, major, byear FROM student WHERE sname = 'P' OR byear = 1999 AND sid LIKE 'q%'"));
+        } finally {
+            db.close();
+        }
+        // replayed from the write-ahead log
+        Database reopened=TestDatabase.open(folder,storage);
+        try {
+            assertEquals(expected,TestDatabase.select(reopened,
+                    "SELECT sid, sname, major, byear FROM student WHERE sname = 'P' OR byear = 1999 AND sid LIKE 'q%'"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void invalidBindingsAreRejected() throws Exception {
+        TestDatabase.create(folder,10);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            PreparedQuery select=db.prepare("SELECT sid FROM student WHERE sid = ? OR byear = ?");
+            select.setString(1,"s1");
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,select::executeQuery);
+            assertEquals("Parameter 2 is not bound",e.getMessage());
+            assertThrows(IllegalArgumentException.class,()->select.setInt(3,1));
+            assertThrows(IllegalArgumentException.class,()->select.setInt(0,1));
+            select.setInt(2,1950);
+            // s1, and s0 born in 1950
+            assertEquals(2,select.executeQuery().getTuples().size());
+            select.clearParameters();
+            assertThrows(InvalidQueryException.class,select::executeQuery);
+            e=assertThrows(InvalidQueryException.class,select::executeUpdate);
+            assertTrue(e.getMessage().startsWith("Not an insert or delete query"));
+            PreparedQuery insert=db.prepare("INSERT INTO student VALUES (?, 'N', 'CS', ?)");
+            insert.setString(1,"x");
+            insert.setDouble(2,1.5);
+            e=assertThrows(InvalidQueryException.class,insert::executeUpdate);
+            assertEquals("Parameter 2 is a Double, the attribute is an Integer",e.getMessage());
+            e=assertThrows(InvalidQueryException.class,insert::executeQuery);
+            assertTrue(e.getMessage().startsWith("Not a select query"));
+            assertThrows(InvalidQueryException.class,
+                    ()->db.prepare("SELECT major, COUNT(*) FROM student GROUP BY major HAVING COUNT(*) > ?"));
+            assertThrows(InvalidQueryException.class,()->db.prepare("INSERT INTO student VALUES (?, 'N')"));
+            assertThrows(InvalidQueryException.class,()->db.prepare("DELETE FROM student WHERE year = ?"));
+            e=assertThrows(InvalidQueryException.class,()->db.selectData("SELECT sid FROM student WHERE sid = ?"));
+            assertTrue(e.getMessage().startsWith("A query with ? placeholders must be prepared"));
+            assertEquals(10,db.selectData("SELECT sid FROM student").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+}
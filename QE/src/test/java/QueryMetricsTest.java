@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The query metrics of a database: counters, latency histograms and the slow query log
+ */
+class QueryMetricsTest {
+    @TempDir
+    File folder;
+    Database db;
+
+    @BeforeEach
+    void open() {
+        TestDatabase.create(folder,100);
+        db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.setResultCache(0,0);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void countsQueriesRowsAndIndexHits() throws Exception {
+        String cs="SELECT sid FROM student WHERE major = 'CS'";
+        int csRows=db.selectData(cs).getTuples().size();
+        db.createIndex("CREATE INDEX ON student (sid)");
+        IQueryMetrics metrics=db.getMetrics();
+        metrics.reset();
+        db.selectData("SELECT sid FROM student");
+        db.selectData(cs);
+        assertEquals(2,metrics.getQueries());
+        assertEquals(200,metrics.getRowsScanned());
+        assertEquals(100+csRows,metrics.getRowsReturned());
+        assertEquals(0,metrics.getIndexHits());
+        assertEquals(1,db.selectData("SELECT sname FROM student WHERE sid = 's7'").getTuples().size());
+        assertEquals(1,metrics.getIndexHits());
+        assertThrows(InvalidQueryException.class,()->db.selectData("SELECT nothing FROM student"));
+        assertThrows(InvalidQueryException.class,()->db.selectData("SELECT FROM"));
+        assertEquals(3,metrics.getQueries());
+        assertEquals(2,metrics.getFailedQueries());
+        QueryMetrics histograms=(QueryMetrics) metrics;
+        assertEquals(3,histograms.getTotalLatency().getCount());
+        assertEquals(3,histograms.getParseLatency().getCount());
+        metrics.reset();
+        assertEquals(0,metrics.getQueries());
+        assertEquals(0,metrics.getFailedQueries());
+        assertEquals(0,metrics.getRowsScanned());
+        assertEquals(0,histograms.getTotalLatency().getCount());
+    }
+
+    @Test
+    void queriesSlowerThanTheThresholdAreLoggedWithTheirPlan() throws Exception {
+        IQueryMetrics metrics=db.getMetrics();
+        metrics.reset();
+        File log=new File(folder,QueryMetrics.SLOW_QUERY_LOG);
+        db.selectData("SELECT sid FROM student WHERE byear = 1999");
+        assertFalse(log.exists());
+        metrics.setSlowQueryThresholdMillis(0);
+        db.selectData("SELECT sname FROM student WHERE byear = 2000");
+        metrics.setSlowQueryThresholdMillis(60_000);
+        db.selectData("SELECT sname FROM student WHERE byear = 2001");
+        assertEquals(1,metrics.getSlowQueries());
+        String logged=new String(Files.readAllBytes(log.toPath()),StandardCharsets.UTF_8);
+        assertTrue(logged.contains("rows scanned: 100, rows returned: "),logged);
+        assertTrue(logged.contains("\nSELECT sname FROM student WHERE byear = 2000\n"),logged);
+        assertTrue(logged.contains("Scan student"),logged);
+        assertFalse(logged.contains("2001"),logged);
+    }
+
+    @Test
+    void slowQueryLogFailuresAreCountedAndTheQuerySucceeds() throws Exception {
+        IQueryMetrics metrics=db.getMetrics();
+        metrics.reset();
+        // a directory in place of the log: it cannot be written
+        File log=new File(folder,QueryMetrics.SLOW_QUERY_LOG);
+        assertTrue(log.mkdir());
+        metrics.setSlowQueryThresholdMillis(0);
+        assertEquals(100,db.selectData("SELECT sid FROM student").getTuples().size());
+        db.insertData("INSERT INTO student VALUES ('new', 'N', 'CS', 2000)");
+        assertEquals(2,metrics.getQueries());
+        assertEquals(2,metrics.getSlowQueries());
+        assertEquals(2,metrics.getSlowQueryLogFailures());
+        assertEquals(0,metrics.getFailedQueries());
+        metrics.reset();
+        assertEquals(0,metrics.getSlowQueryLogFailures());
+    }
+}
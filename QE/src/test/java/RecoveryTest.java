@@ -0,0 +1,224 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Write-ahead log replay and checkpoint recovery: a database left without close (a crash) is opened again
+ * from its folder
+ */
+class RecoveryTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void replaysInsertsAndDeletesLoggedSinceTheLastCheckpoint() throws Exception {
+        TestDatabase.create(folder,50);
+        Database crashed=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        crashed.insertData("INSERT INTO student VALUES ('new1', 'A', 'CS', 2001), ('new2', 'B', 'Math', 2002)");
+        crashed.deleteData("DELETE FROM student WHERE byear < 1960");
+        crashed.insertData("INSERT INTO student (sid, byear) VALUES ('new3', 1955)");
+        List<List<Object>> expected=TestDatabase.select(crashed,"SELECT sid, sname, major, byear FROM student");
+
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(expected,TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"));
+            assertEquals(1,db.selectData("SELECT sid FROM student WHERE sid = 'new3'").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void checkpointFoldsTheLogIntoTheTableFiles() throws Exception {
+        TestDatabase.create(folder,20);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.insertData("INSERT INTO course VALUES ('c99', 'Compilers', 'CS', 3.0)");
+        assertTrue(WriteAheadLog.file(folder.getPath()).length()>0);
+        db.checkpoint();
+        assertEquals(0,WriteAheadLog.file(folder.getPath()).length());
+        assertTrue(read("course.csv").contains("c99,Compilers,CS,3.0"));
+        db.close();
+    }
+
+    @Test
+    void failedBackgroundCheckpointIsReportedAndRetried() throws Exception {
+        TestDatabase.create(folder,20);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        // a directory in place of the temporary table file: the checkpoint cannot write it
+        File blocked=new File(folder,"course.csv.checkpoint");
+        assertTrue(blocked.mkdir());
+        try {
+            db.setCheckpoint(3_600_000,0);
+            db.insertData("INSERT INTO course VALUES ('c99', 'Compilers', 'CS', 3.0)");
+            long deadline=System.currentTimeMillis()+10_000;
+            while(db.getMetrics().getBackgroundFailures()==0 && System.currentTimeMillis()<deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(1,db.getMetrics().getBackgroundFailures());
+            assertTrue(db.getMetrics().getLastBackgroundFailure().contains(" checkpoint: "),
+                    db.getMetrics().getLastBackgroundFailure());
+            assertTrue(read(QueryMetrics.ERROR_LOG).contains("course.csv.checkpoint"),read(QueryMetrics.ERROR_LOG));
+            assertTrue(WriteAheadLog.file(folder.getPath()).length()>0);
+            assertTrue(blocked.delete());
+            // the next checkpoint folds the log
+            db.insertData("INSERT INTO course VALUES ('c98', 'Databases', 'CS', 3.0)");
+            deadline=System.currentTimeMillis()+10_000;
+            while(WriteAheadLog.file(folder.getPath()).length()>0 && System.currentTimeMillis()<deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(0,WriteAheadLog.file(folder.getPath()).length());
+            assertTrue(read("course.csv").contains("c99,Compilers,CS,3.0"));
+            assertEquals(1,db.getMetrics().getBackgroundFailures());
+        } finally {
+            blocked.delete();
+            db.close();
+        }
+    }
+
+    @Test
+    void ignoresATornEntryAtTheEndOfTheLog() throws Exception {
+        TestDatabase.create(folder,20);
+        Database crashed=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        crashed.insertData("INSERT INTO student VALUES ('kept', 'A', 'CS', 2001)");
+        try(FileOutputStream out=new FileOutputStream(WriteAheadLog.file(folder.getPath()),true)){
+            out.write(new byte[]{0,0,0,100,1,2,3});
+        }
+
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(21,db.selectData("SELECT sid FROM student").getTuples().size());
+            assertEquals(1,db.selectData("SELECT sid FROM student WHERE sid = 'kept'").getTuples().size());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void finishesACheckpointInterruptedAfterItsMarker() throws Exception {
+        TestDatabase.create(folder,20);
+        // the crash happened after the temporary table file and the marker were written, the log is folded in
+        TestDatabase.write(new File(folder,"course.csv.checkpoint"),"c0,Only,CS,1.0\n");
+        TestDatabase.write(new File(folder,"checkpoint"),"");
+
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(List.of(List.of("c0","Only","CS",1.0)),
+                    TestDatabase.select(db,"SELECT cno, cname, dept, credits FROM course"));
+            assertFalse(new File(folder,"checkpoint").exists());
+            assertFalse(new File(folder,"course.csv.checkpoint").exists());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void rollsBackACheckpointInterruptedBeforeItsMarker() throws Exception {
+        TestDatabase.create(folder,20);
+        Database crashed=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        crashed.insertData("INSERT INTO course VALUES ('c99', 'Compilers', 'CS', 3.0)");
+        // the temporary table file was being written: it is partial and the log still has the insert
+        TestDatabase.write(new File(folder,"course.csv.checkpoint"),"c0,Tor");
+
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(TestDatabase.COURSES+1,db.selectData("SELECT cno FROM course").getTuples().size());
+            assertFalse(new File(folder,"course.csv.checkpoint").exists());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void pagedTablesAreRecoveredFromTheLog() throws Exception {
+        TestDatabase.create(folder,200);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.PAGED);
+        db.close();
+        Database crashed=TestDatabase.open(folder,TestDatabase.Storage.PAGED);
+        crashed.insertData("INSERT INTO student VALUES ('paged', 'P', 'CS', 1999)");
+        crashed.deleteData("DELETE FROM student WHERE major = 'History'");
+        List<List<Object>> expected=TestDatabase.select(crashed,"SELECT sid, sname, major, byear FROM student");
+
+        Database reopened=TestDatabase.open(folder,TestDatabase.Storage.PAGED);
+        try {
+            assertEquals(expected,TestDatabase.select(reopened,"SELECT sid, sname, major, byear FROM student"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void rebuildsAnIndexFileWrittenForAnotherTableFile() throws Exception {
+        TestDatabase.create(folder,300);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.createIndex("CREATE INDEX ON student (sid)");
+        db.createIndex("CREATE INDEX ON student (byear)");
+        db.close();
+        // a crash between the rename of the table file and the rewrite of its index files: the table file has as
+        // many rows as before, in another order, and the index files still have the positions of the old one
+        List<String> lines=new ArrayList<>(Files.readAllLines(new File(folder,"student.csv").toPath()));
+        Collections.reverse(lines);
+        TestDatabase.write(new File(folder,"student.csv"),String.join("\n",lines)+"\n");
+
+        Database reopened=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(List.of(List.of("s5","Name5")),
+                    TestDatabase.select(reopened,"SELECT sid, sname FROM student WHERE sid = 's5'"));
+            assertEquals(List.of(List.of("s299","Name8")),
+                    TestDatabase.select(reopened,"SELECT sid, sname FROM student WHERE sid = 's299'"));
+            List<List<Object>> scanned=new ArrayList<>();
+            for(List<Object> row: TestDatabase.select(reopened,"SELECT sid, byear FROM student")){
+                if((Integer) row.get(1)>=2000){
+                    scanned.add(row);
+                }
+            }
+            assertEquals(scanned,TestDatabase.select(reopened,"SELECT sid, byear FROM student WHERE byear >= 2000"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void rebuildsIndexStatisticsAndDictionaryFilesCutShort() throws Exception {
+        TestDatabase.create(folder,300);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.createIndex("CREATE INDEX ON student (sid)");
+        db.insertData("INSERT INTO student VALUES ('new', 'A', 'CS', 2001)");
+        db.checkpoint();
+        List<List<Object>> expected=TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student");
+        db.close();
+        for(String name: new String[]{"student.sid.idx","student.stats","student.dict"}){
+            // a write torn by a crash, and the temporary file of the write that was replacing it
+            File file=new File(folder,name);
+            try(FileOutputStream out=new FileOutputStream(file,true)){
+                out.getChannel().truncate(file.length()/2);
+            }
+            TestDatabase.write(new File(folder,name+".1234.tmp"),"partial");
+
+            Database reopened=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+            try {
+                assertEquals(expected,TestDatabase.select(reopened,"SELECT sid, sname, major, byear FROM student"));
+                assertEquals(List.of(List.of("new","A")),
+                        TestDatabase.select(reopened,"SELECT sid, sname FROM student WHERE sid = 'new'"));
+                assertEquals(1,reopened.getIndexes("student").size());
+                assertEquals(301,reopened.getStatistics("student").getRowCount());
+                assertFalse(new File(folder,name+".1234.tmp").exists());
+            } finally {
+                reopened.close();
+            }
+        }
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(folder,name).toPath()),"UTF-8");
+    }
+}
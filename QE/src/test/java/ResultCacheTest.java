@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Select results are cached by normalized query text and invalidated by the inserts and deletes of their tables
+ */
+class ResultCacheTest {
+    @TempDir
+    File folder;
+    Database db;
+
+    @BeforeEach
+    void open() {
+        TestDatabase.create(folder,100);
+        db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void queriesDifferingInSpacesAndKeywordCaseShareTheirResult() throws Exception {
+        ResultCache cache=db.getResultCache();
+        ITable first=db.selectData("SELECT sid, sname FROM student WHERE byear > 2000 ORDER BY sid");
+        ITable second=db.selectData("select  sid, sname\n from student where byear > 2000 order by sid;");
+        assertSame(first,second);
+        assertEquals(1,cache.getHits());
+        assertEquals(1,cache.size());
+        // attribute names and quoted values keep their case
+        db.selectData("SELECT sid FROM student WHERE sname = 'Name5'");
+        assertEquals(0,db.selectData("SELECT sid FROM student WHERE sname = 'NAME5'").getTuples().size());
+        assertEquals(3,cache.size());
+    }
+
+    @Test
+    void unreservedWordsAreValuesWhoseCaseMatters() throws Exception {
+        db.insertData("INSERT INTO student VALUES ('lower', max, 'CS', 2000), ('upper', MAX, 'CS', 2000)");
+        assertNotEquals(ResultCache.normalize("SELECT sid FROM student WHERE sname = max"),
+                ResultCache.normalize("SELECT sid FROM student WHERE sname = MAX"));
+        assertEquals(ResultCache.normalize("SELECT COUNT(*) FROM student"),
+                ResultCache.normalize("SELECT COUNT(*) from student;"));
+        for(String word: new String[]{"max","MAX","Count","parallel"}){
+            assertNotEquals(ResultCache.normalize("SELECT sid FROM student WHERE sname = "+word),
+                    ResultCache.normalize("SELECT sid FROM student WHERE sname = "+swapCase(word)),word);
+        }
+        assertEquals(List.of(List.of("lower")),TestDatabase.select(db,"SELECT sid FROM student WHERE sname = max"));
+        assertEquals(List.of(List.of("upper")),TestDatabase.select(db,"SELECT sid FROM student WHERE sname = MAX"));
+        assertEquals(0,db.getResultCache().getHits());
+    }
+
+    @Test
+    void insertsAndDeletesInvalidateTheResultsOfTheirTables() throws Exception {
+        ResultCache cache=db.getResultCache();
+        String students="SELECT sid FROM student WHERE major = 'CS'";
+        String courses="SELECT cno FROM course";
+        int before=db.selectData(students).getTuples().size();
+        ITable courseResult=db.selectData(courses);
+        db.insertData("INSERT INTO student VALUES ('new', 'N', 'CS', 2000)");
+        assertEquals(before+1,db.selectData(students).getTuples().size());
+        assertEquals(1,cache.getInvalidations());
+        assertSame(courseResult,db.selectData(courses));
+        db.deleteData("DELETE FROM student WHERE sid = 'new'");
+        assertEquals(before,db.selectData(students).getTuples().size());
+        assertEquals(2,cache.getInvalidations());
+    }
+
+    @Test
+    void leastRecentlyUsedResultsAreEvicted() throws Exception {
+        ResultCache cache=db.getResultCache();
+        db.setResultCache(2,Long.MAX_VALUE);
+        ITable s1=db.selectData("SELECT sname FROM student WHERE sid = 's1'");
+        db.selectData("SELECT sname FROM student WHERE sid = 's2'");
+        assertSame(s1,db.selectData("SELECT sname FROM student WHERE sid = 's1'"));
+        db.selectData("SELECT sname FROM student WHERE sid = 's3'");
+        assertEquals(1,cache.getEvictions());
+        assertSame(s1,db.selectData("SELECT sname FROM student WHERE sid = 's1'"));
+        assertEquals(2,cache.size());
+        // a result larger than the whole cache is not kept
+        db.setResultCache(2,100);
+        db.selectData("SELECT sid, sname, major, byear FROM student");
+        assertEquals(0,cache.size());
+        db.setResultCache(0,0);
+        db.selectData("SELECT sname FROM student WHERE sid = 's1'");
+        assertEquals(0,cache.size());
+    }
+
+    private static String swapCase(String word) {
+        StringBuilder swapped=new StringBuilder();
+        for(char c: word.toCharArray()){
+            swapped.append(Character.isUpperCase(c)?Character.toLowerCase(c):Character.toUpperCase(c));
+        }
+        return swapped.toString();
+    }
+}
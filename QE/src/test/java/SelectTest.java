@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Resolution of the attributes of select queries: qualified, unqualified and ambiguous attributes of joined tables,
+ * SELECT * and EXPLAIN
+ */
+class SelectTest {
+    @TempDir
+    File folder;
+
+    @BeforeEach
+    void createDatabase() {
+        TestDatabase.create(folder,50);
+    }
+
+    @Test
+    void ambiguousAttributesOfJoinedTablesAreRejected() throws Exception {
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            String join=" FROM enroll JOIN student ON enroll.sid = student.sid";
+            for(String query: new String[]{
+                    "SELECT sid, cno"+join,
+                    "SELECT cno"+join+" WHERE sid = 's1'",
+                    "SELECT cno"+join+" ORDER BY sid",
+                    "SELECT sid, COUNT(*)"+join+" GROUP BY sid",
+                    "SELECT cno FROM enroll JOIN student ON sid = student.sid",
+                    "SELECT enroll.cno FROM enroll JOIN student ON enroll.sid = student.sid"
+                            +" JOIN course ON course.cno = cno"}){
+                InvalidQueryException e=assertThrows(InvalidQueryException.class,()->db.selectData(query),query);
+                assertTrue(e.getMessage().startsWith("Ambiguous attribute: "),query+": "+e.getMessage());
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void unambiguousAttributesOfJoinedTablesNeedNoTableName() throws Exception {
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            String join=" FROM enroll JOIN student ON enroll.sid = student.sid";
+            assertEquals(TestDatabase.select(db,"SELECT student.sid, enroll.cno, student.sname"+join
+                            +" WHERE student.byear > 1990"),
+                    TestDatabase.select(db,"SELECT student.sid, cno, sname"+join+" WHERE byear > 1990"));
+            List<List<Object>> rows=TestDatabase.select(db,"SELECT enroll.sid, grade"+join+" WHERE student.sid = 's1'");
+            assertEquals(TestDatabase.select(db,"SELECT sid, grade FROM enroll WHERE sid = 's1'"),rows);
+        } finally {
+            db.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void selectAllReturnsTheAttributesOfTheTables(TestDatabase.Storage storage) throws Exception {
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            ITable courses=db.selectData("SELECT * FROM course WHERE dept = 'CS'");
+            assertEquals(List.of("cno","cname","dept","credits"),names(courses.getSchema()));
+            assertEquals(TestDatabase.select(db,"SELECT cno, cname, dept, credits FROM course WHERE dept = 'CS'"),
+                    TestDatabase.sortedRows(courses));
+            String join=" FROM enroll JOIN student ON enroll.sid = student.sid WHERE byear > 1990";
+            ITable joined=db.selectData("SELECT *"+join);
+            assertEquals(List.of("enroll.sid","enroll.cno","enroll.grade","student.sid","student.sname","student.major",
+                    "student.byear"),names(joined.getSchema()));
+            assertEquals(TestDatabase.select(db,"SELECT enroll.sid, cno, grade, student.sid, sname, major, byear"+join),
+                    TestDatabase.sortedRows(joined));
+            assertEquals(TestDatabase.select(db,"SELECT cno, cname, dept, credits FROM course ORDER BY cno LIMIT 3"),
+                    TestDatabase.select(db,"SELECT * FROM course ORDER BY cno LIMIT 3"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void selectAllIsOnlyTheWholeSelectClause() throws Exception {
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            for(String query: new String[]{"SELECT *, sid FROM student","SELECT sid, * FROM student",
+                    "SELECT sid FROM student WHERE * = 's1'","SELECT sid FROM student ORDER BY *"}){
+                InvalidQueryException e=assertThrows(InvalidQueryException.class,()->db.selectData(query),query);
+                assertTrue(e.getMessage().startsWith("Expected "),query+": "+e.getMessage());
+            }
+            InvalidQueryException e=assertThrows(InvalidQueryException.class,
+                    ()->db.selectData("SELECT * FROM student GROUP BY major"));
+            assertEquals("SELECT * cannot be used with a group by clause",e.getMessage());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void explainKeywordIsReadAfterCommentsAndHints() throws Exception {
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            String select="SELECT sname FROM student WHERE byear > 1990";
+            String plan=db.explain(select);
+            for(String query: new String[]{"EXPLAIN "+select,"explain\n"+select+";","-- the plan\nEXPLAIN "+select,
+                    "/* the plan */ EXPLAIN "+select,"/*+ PARALLEL(2) */ EXPLAIN "+select}){
+                assertEquals("EXPLAIN",Parser.command(query),query);
+                assertEquals(plan,db.explain(query),query);
+            }
+            // the select of an explain query is checked as any select query
+            assertThrows(InvalidQueryException.class,()->db.explain("EXPLAIN SELECT nothing FROM student"));
+            assertThrows(InvalidQueryException.class,()->db.explain("EXPLAIN"));
+            assertThrows(InvalidQueryException.class,()->db.selectData("EXPLAIN "+select));
+        } finally {
+            db.close();
+        }
+    }
+
+    private static List<String> names(ISchema schema) {
+        List<String> names=new ArrayList<>();
+        for(int i=0;i<schema.getAttributes().size();i++){
+            names.add(schema.getName(i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Multi-version concurrency control of the tables stored by tuple: readers see the snapshot they started with
+ */
+class SnapshotTest {
+    @TempDir
+    File folder;
+    Database db;
+
+    @BeforeEach
+    void open() {
+        TestDatabase.create(folder,100);
+        db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void cursorDoesNotSeeRowsCommittedAfterItOpened() throws Exception {
+        try(Cursor cursor=db.openCursor("SELECT sid FROM student")){
+            db.insertData("INSERT INTO student VALUES ('late', 'L', 'CS', 2000)");
+            db.deleteData("DELETE FROM student WHERE sid = 's1'");
+            List<Object> seen=drain(cursor);
+            assertEquals(100,seen.size());
+            assertEquals(true,seen.contains("s1"));
+            assertEquals(false,seen.contains("late"));
+        }
+        List<List<Object>> now=TestDatabase.select(db,"SELECT sid FROM student WHERE sid = 'late' OR sid = 's1'");
+        assertEquals(List.of(List.of("late")),now);
+    }
+
+    @Test
+    void indexLookupsReadTheSnapshotToo() throws Exception {
+        db.createIndex("CREATE INDEX ON student (sid)");
+        db.createIndex("CREATE INDEX ON student (byear) USING BTREE");
+        try(Cursor bySid=db.openCursor("SELECT sname FROM student WHERE sid = 's5'");
+            Cursor byYear=db.openCursor("SELECT sid FROM student WHERE byear >= 2008")){
+            db.deleteData("DELETE FROM student WHERE sid = 's5'");
+            db.insertData("INSERT INTO student VALUES ('young', 'Y', 'CS', 2009)");
+            assertEquals(List.of("Name5"),drain(bySid));
+            assertEquals(false,drain(byYear).contains("young"));
+        }
+        assertEquals(0,db.selectData("SELECT sname FROM student WHERE sid = 's5'").getTuples().size());
+        assertEquals(1,db.selectData("SELECT sid FROM student WHERE byear >= 2009 AND sid = 'young'").getTuples().size());
+    }
+
+    @Test
+    void vacuumKeepsTheVersionsAnOpenSnapshotSees() throws Exception {
+        VersionedTable student=(VersionedTable) db.getTable("student");
+        Cursor cursor=db.openCursor("SELECT sid FROM student");
+        db.deleteData("DELETE FROM student WHERE major = 'CS'");
+        int versions=student.versions().getTuples().size();
+        db.vacuum();
+        assertEquals(versions,student.versions().getTuples().size());
+        assertEquals(100,drain(cursor).size());
+        cursor.close();
+        db.vacuum();
+        assertEquals(student.getTuples().size(),student.versions().getTuples().size());
+    }
+
+    private static List<Object> drain(Cursor cursor) {
+        List<Object> values=new ArrayList<>();
+        ITuple t;
+        while((t=cursor.next())!=null){
+            values.add(t.getValue(0));
+        }
+        assertNull(cursor.next());
+        return values;
+    }
+}
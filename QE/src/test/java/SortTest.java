@@ -0,0 +1,214 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Sorts in memory, in parallel and as external merge sorts (runs in spill files) give the same order
+ */
+class SortTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void externalSortMatchesTheInMemorySort() {
+        List<Sort.Key> keys=List.of(new Sort.Key(0,true),new Sort.Key(1,false),new Sort.Key(2,true));
+        ITable inMemory=table(5000);
+        ITable external=table(5000);
+        new Sort(keys,inMemory.getSchema(),Integer.MAX_VALUE,folder).sort(inMemory);
+        new Sort(keys,external.getSchema(),37,folder).sort(external);
+        assertEquals(TestDatabase.rows(inMemory),TestDatabase.rows(external));
+        assertEquals(0,folder.list().length,"runs are deleted");
+        // nulls first in ascending order, numbers compared as numbers
+        assertNull(inMemory.getTuples().get(0).getValue(0));
+        int last=Integer.MIN_VALUE;
+        for(ITuple t: inMemory.getTuples()){
+            Integer v=t.getValue(0);
+            if(v!=null){
+                assertTrue(v>=last);
+                last=v;
+            }
+        }
+    }
+
+    @Test
+    void parallelSortMatchesTheSerialSort() {
+        List<Sort.Key> keys=List.of(new Sort.Key(1,true),new Sort.Key(0,false));
+        ITable serial=table(20000);
+        ITable parallel=table(20000);
+        new Sort(keys,serial.getSchema(),Integer.MAX_VALUE,folder).sort(serial);
+        new Sort(keys,parallel.getSchema(),Integer.MAX_VALUE,folder)
+                .sort(parallel,new MorselExecutor(ForkJoinPool.commonPool(),4,1000));
+        assertEquals(TestDatabase.rows(serial),TestDatabase.rows(parallel));
+    }
+
+    @Test
+    void externalSortWritesItsRunsWhileReadingTheInput() {
+        // equal keys: the merge keeps the input order, as the in-memory sort
+        List<Sort.Key> keys=List.of(new Sort.Key(1,true));
+        ITable inMemory=table(1000);
+        new Sort(keys,inMemory.getSchema(),Integer.MAX_VALUE,folder).sort(inMemory);
+        ITable input=table(1000);
+        Iterator<ITuple> tuples=input.getTuples().iterator();
+        int[] read={0};
+        List<Integer> runsWhileReading=new ArrayList<>();
+        Sort sort=new Sort(keys,input.getSchema(),100,folder);
+        Sort.Merge merge=sort.sort(()->{
+            if(read[0]++==250){
+                runsWhileReading.add(folder.list().length);
+            }
+            return tuples.hasNext()?tuples.next():null;
+        },input.getSchema(),MorselExecutor.SERIAL);
+        Table sorted=new Table("t",input.getSchema());
+        try {
+            assertEquals(List.of(2),runsWhileReading);
+            // the last run is merged from memory
+            assertEquals(9,folder.list().length);
+            ITuple t;
+            while((t=merge.next())!=null){
+                sorted.addTuple(t);
+            }
+        } finally {
+            merge.close();
+        }
+        assertEquals(TestDatabase.rows(inMemory),TestDatabase.rows(sorted));
+        assertEquals(0,folder.list().length,"runs are deleted");
+    }
+
+    @Test
+    void sortNodePullsItsChildInsteadOfRunningIt() {
+        ITable input=table(2000);
+        ITable inMemory=table(2000);
+        List<Sort.Key> keys=List.of(new Sort.Key(0,false),new Sort.Key(2,true));
+        new Sort(keys,inMemory.getSchema(),Integer.MAX_VALUE,folder).sort(inMemory);
+        SortNode sort=new SortNode(new StreamedNode(input),keys,64,folder);
+        assertEquals(TestDatabase.rows(inMemory),TestDatabase.rows(sort.run()));
+        // a limit above the memory budget is a full sort, read until the limit
+        sort.setLimit(300);
+        sort.open();
+        Table first=new Table("t",input.getSchema());
+        try {
+            ITuple t;
+            while((t=sort.next())!=null){
+                first.addTuple(t);
+            }
+        } finally {
+            sort.close();
+        }
+        assertEquals(TestDatabase.rows(inMemory).subList(0,300),TestDatabase.rows(first));
+        assertEquals(0,folder.list().length,"runs are deleted");
+    }
+
+    @Test
+    void topKeepsTheFirstTuplesInSortOrder() {
+        List<Sort.Key> keys=List.of(new Sort.Key(1,true),new Sort.Key(2,true));
+        ITable sorted=table(3000);
+        Sort sort=new Sort(keys,sorted.getSchema(),Integer.MAX_VALUE,folder);
+        sort.sort(sorted);
+        ITable input=table(3000);
+        Iterator<ITuple> tuples=input.getTuples().iterator();
+        List<ITuple> top=sort.top(()->tuples.hasNext()?tuples.next():null,25);
+        Table first=new Table("t",sorted.getSchema());
+        first.getTuples().addAll(top);
+        assertEquals(TestDatabase.rows(sorted).subList(0,25),TestDatabase.rows(first));
+    }
+
+    @Test
+    void orderByQueryIsTheSameWithASmallSortMemoryBudget() throws Exception {
+        TestDatabase.create(folder,3000);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            String query="SELECT sid, major, byear FROM student ORDER BY byear DESC, major, sid";
+            List<List<Object>> inMemory=TestDatabase.rows(db.selectData(query));
+            db.setSortMemoryBudget(100);
+            db.setResultCache(0,0);
+            long read=db.getMetrics().getBytesRead();
+            assertEquals(inMemory,TestDatabase.rows(db.selectData(query)));
+            assertTrue(db.getMetrics().getBytesRead()>read);
+            assertEquals(inMemory.subList(10,15),
+                    TestDatabase.rows(db.selectData(query+" LIMIT 5 OFFSET 10")));
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Returns a table (Integer with nulls, String, unique Integer) in a shuffled order, the same for a given size
+     */
+    private static ITable table(int size) {
+        Map<Integer,String> attributes=new HashMap<>();
+        attributes.put(0,"n:Integer");
+        attributes.put(1,"s:String");
+        attributes.put(2,"id:Integer");
+        ITable table=new Table("t",new Schema(attributes));
+        List<Integer> ids=new ArrayList<>();
+        for(int i=0;i<size;i++){
+            ids.add(i);
+        }
+        Collections.shuffle(ids,new Random(size));
+        for(int id: ids){
+            ITuple t=new Tuple(table.getSchema());
+            t.setValues(new Object[]{id%11==0?null:(id*7919)%1000-500,"v"+(id%13),id});
+            table.addTuple(t);
+        }
+        return table;
+    }
+
+    /**
+     * A plan node that can only be pulled one tuple at a time
+     */
+    private static class StreamedNode extends PlanNode {
+        private ITable table;
+        private Iterator<ITuple> tuples;
+
+        StreamedNode(ITable table) {
+            this.table=table;
+        }
+
+        @Override
+        String getName() {
+            return table.getName();
+        }
+
+        @Override
+        ISchema getSchema() {
+            return table.getSchema();
+        }
+
+        @Override
+        ITable execute() {
+            throw new AssertionError("the child table is built");
+        }
+
+        @Override
+        String describe() {
+            return "Streamed";
+        }
+
+        @Override
+        void openNode() {
+            this.tuples=table.getTuples().iterator();
+        }
+
+        @Override
+        ITuple nextTuple() {
+            return tuples.hasNext()?tuples.next():null;
+        }
+
+        @Override
+        void closeNode() {
+            this.tuples=null;
+        }
+    }
+}
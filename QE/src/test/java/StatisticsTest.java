@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Table and attribute statistics: HyperLogLog distinct counts, equi-depth histograms, selectivities, and the
+ * statistics kept up to date by inserts and deletes and written to the statistics files
+ */
+class StatisticsTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void hyperLogLogEstimatesTheDistinctValues() {
+        for(int n: new int[]{1,10,1000,200_000}){
+            HyperLogLog strings=new HyperLogLog();
+            HyperLogLog integers=new HyperLogLog();
+            for(int i=0;i<n;i++){
+                // every value twice: duplicates are not counted
+                for(int copy=0;copy<2;copy++){
+                    strings.add("value"+i);
+                    integers.add(i);
+                }
+            }
+            assertEquals(n,strings.estimate(),n*0.05,"strings "+n);
+            assertEquals(n,integers.estimate(),n*0.05,"integers "+n);
+            HyperLogLog copy=new HyperLogLog(strings.getRegisters());
+            assertEquals(strings.estimate(),copy.estimate());
+        }
+        assertEquals(0,new HyperLogLog().estimate());
+    }
+
+    @Test
+    void histogramsEstimateRangesOfSkewedValues() {
+        // nine values in ten are below 100, the others spread up to 10000
+        Random random=new Random(7);
+        List<Object> values=new ArrayList<>();
+        for(int i=0;i<20_000;i++){
+            values.add(i%10==0?100+random.nextInt(9_900):random.nextInt(100));
+        }
+        for(int i=0;i<5_000;i++){
+            values.add(null);
+        }
+        ColumnStatistics stats=ColumnStatistics.analyze("Integer",values);
+        long rows=values.size();
+        assertEquals(5_000,stats.getNullCount());
+        assertEquals(0,stats.getMin());
+        assertTrue((Integer) stats.getMax()>9_900);
+        for(int bound: new int[]{50,100,1_000,5_000}){
+            long below=values.stream().filter(v->v!=null && (Integer) v<bound).count();
+            assertEquals(below/(double) rows,stats.selectivity(rows,"<",bound),0.02,"< "+bound);
+            assertEquals((20_000-below)/(double) rows,stats.selectivity(rows,">=",bound),0.02,">= "+bound);
+        }
+        assertEquals(0,stats.selectivity(rows,"=",-1));
+        assertEquals(0,stats.selectivity(rows,"<",0));
+        assertEquals(0.8,stats.selectivity(rows,"<=",20_000),1e-9);
+        assertEquals(0.8/stats.distinct(rows),stats.selectivity(rows,"=",42),1e-9);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void insertsAndDeletesKeepTheStatisticsUpToDate(TestDatabase.Storage storage) throws Exception {
+        TestDatabase.create(folder,500);
+        Database db=TestDatabase.open(folder,storage);
+        try {
+            TableStatistics student=db.getStatistics("student");
+            assertEquals(500,student.getRowCount());
+            assertEquals(1950,student.getColumn(3).getMin());
+            assertEquals(2009,student.getColumn(3).getMax());
+            assertEquals(72,student.getColumn(2).getNullCount());
+            assertEquals(5,student.distinct(2),0.5);
+            assertEquals(500,student.distinct(0),25);
+            db.insertData("INSERT INTO student VALUES ('old', 'O', NULL, 1900), ('new', 'N', 'Art', 2020)");
+            student=db.getStatistics("student");
+            assertEquals(502,student.getRowCount());
+            assertEquals(1900,student.getColumn(3).getMin());
+            assertEquals(2020,student.getColumn(3).getMax());
+            assertEquals(73,student.getColumn(2).getNullCount());
+            assertEquals(6,student.distinct(2),0.5);
+            db.deleteData("DELETE FROM student WHERE byear < 1960");
+            int left=db.selectData("SELECT sid FROM student").getTuples().size();
+            assertEquals(left,db.getStatistics("student").getRowCount());
+            // a removal cannot shrink the min until the table is analyzed again
+            assertEquals(1900,db.getStatistics("student").getColumn(3).getMin());
+            db.analyze("ANALYZE student");
+            assertEquals(1960,db.getStatistics("student").getColumn(3).getMin());
+            assertEquals(left,db.getStatistics("student").getRowCount());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void statisticsAreWrittenAndReadBack() throws Exception {
+        TestDatabase.create(folder,300);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        TableStatistics written;
+        try {
+            assertTrue(IO.statisticsFile("student",folder.getPath()).isFile());
+            db.insertData("INSERT INTO student VALUES ('new', 'N', 'Art', 2020)");
+            db.checkpoint();
+            written=db.getStatistics("student");
+        } finally {
+            db.close();
+        }
+        Database reopened=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            TableStatistics read=reopened.getStatistics("student");
+            assertEquals(written.getRowCount(),read.getRowCount());
+            for(int col=0;col<read.getColumnCount();col++){
+                ColumnStatistics expected=written.getColumn(col);
+                ColumnStatistics column=read.getColumn(col);
+                assertEquals(expected.getNullCount(),column.getNullCount());
+                assertEquals(expected.getMin(),column.getMin());
+                assertEquals(expected.getMax(),column.getMax());
+                assertArrayEquals(expected.getDistinct().getRegisters(),column.getDistinct().getRegisters());
+            }
+            assertEquals(2020,read.getColumn(3).getMax());
+        } finally {
+            reopened.close();
+        }
+    }
+}
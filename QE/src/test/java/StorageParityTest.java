@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Every storage (tables by tuple with versions, by column, off the heap, in pages) returns the same results
+ * as the tables by tuple, for the same queries, inserts and deletes, with and without indexes
+ */
+class StorageParityTest {
+    static final String[] QUERIES={
+            "SELECT sid, sname, major, byear FROM student",
+            "SELECT sid FROM student WHERE byear = 1999",
+            "SELECT sid, byear FROM student WHERE byear >= 1990 AND byear < 1995",
+            "SELECT sid FROM student WHERE byear > 2000 OR byear < 1960",
+            "SELECT sid FROM student WHERE NOT (byear > 1970)",
+            "SELECT sid FROM student WHERE byear != 1980",
+            "SELECT sid, major FROM student WHERE major = 'CS'",
+            "SELECT sid FROM student WHERE major != 'CS'",
+            "SELECT sid FROM student WHERE major IN ('Math', 'Physics') AND byear > 1975",
+            "SELECT sid FROM student WHERE sname LIKE 'Name1%'",
+            "SELECT sid FROM student WHERE major = 'Astronomy'",
+            "SELECT cno FROM course WHERE credits > 2.0",
+            "SELECT cno FROM course WHERE credits <= 1.5 OR dept = 'CS'",
+            "SELECT major, COUNT(*), MIN(byear), MAX(byear) FROM student GROUP BY major",
+            "SELECT cno, COUNT(*) FROM enroll GROUP BY cno HAVING COUNT(*) > 100",
+            "SELECT student.sid, enroll.cno, enroll.grade FROM student JOIN enroll ON student.sid = enroll.sid"
+                    +" WHERE student.byear > 1985",
+            "SELECT enroll.sid, course.cname FROM enroll JOIN course ON enroll.cno = course.cno"
+                    +" WHERE course.dept = 'Math'",
+    };
+    static final String[] ORDERED={
+            "SELECT sid, byear, major FROM student ORDER BY byear DESC, major, sid",
+            "SELECT sid, byear FROM student ORDER BY byear, sid LIMIT 10 OFFSET 5",
+    };
+
+    @TempDir
+    File folder;
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void queriesReturnTheSameRows(TestDatabase.Storage storage) throws Exception {
+        assertEquals(results(TestDatabase.Storage.VERSIONED,"versioned",false),results(storage,storage.name(),false));
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void queriesThroughIndexesReturnTheSameRows(TestDatabase.Storage storage) throws Exception {
+        assertEquals(results(TestDatabase.Storage.VERSIONED,"versioned",false),results(storage,storage.name(),true));
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void insertsAndDeletesGiveTheSameRows(TestDatabase.Storage storage) throws Exception {
+        assertEquals(changes(TestDatabase.Storage.VERSIONED,"versioned"),changes(storage,storage.name()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(TestDatabase.Storage.class)
+    void nullOnlyStringColumnsMatchNothing(TestDatabase.Storage storage) throws Exception {
+        List<Object> expected=nullOnly(TestDatabase.Storage.VERSIONED,"versioned",true);
+        assertEquals(List.of(),((List<?>) expected.get(0)));
+        assertEquals(expected,nullOnly(storage,storage.name(),true));
+        assertEquals(expected,nullOnly(storage,storage.name()+"-rows",false));
+    }
+
+    /**
+     * Returns the results of conditions on a String attribute without any value (course.dept is empty on every
+     * line, its dictionary is empty), vectorized or row by row
+     */
+    private List<Object> nullOnly(TestDatabase.Storage storage, String name, boolean vectorized) throws Exception {
+        File dir=new File(folder,name);
+        dir.mkdir();
+        TestDatabase.create(dir,10);
+        StringBuilder course=new StringBuilder();
+        for(int c=0;c<300;c++){
+            course.append("c").append(c).append(",Course").append(c).append(",,").append(c%4).append('\n');
+        }
+        TestDatabase.write(new File(dir,"course.csv"),course.toString());
+        Database db=TestDatabase.open(dir,storage);
+        db.setVectorized(vectorized);
+        try {
+            List<Object> results=new ArrayList<>();
+            for(String where: new String[]{"dept = 'CS'","dept != 'CS'","dept IN ('CS', 'Math')","dept LIKE 'C%'",
+                    "NOT (dept = 'CS')","credits > 1.0 AND dept = 'CS'","credits > 1.0 OR dept = 'CS'"}){
+                results.add(TestDatabase.select(db,"SELECT cno FROM course WHERE "+where));
+            }
+            return results;
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Returns the results of the queries on a new database with the given storage
+     */
+    private List<Object> results(TestDatabase.Storage storage, String name, boolean indexed) throws Exception {
+        File dir=new File(folder,name+(indexed?"-indexed":""));
+        dir.mkdir();
+        TestDatabase.create(dir,2000);
+        Database db=TestDatabase.open(dir,storage);
+        try {
+            if(indexed){
+                db.createIndex("CREATE INDEX ON student (byear)");
+                db.createIndex("CREATE INDEX ON student (major)");
+                db.createIndex("CREATE INDEX ON enroll (sid)");
+                db.createIndex("CREATE INDEX ON course (credits) USING BTREE");
+            }
+            List<Object> results=new ArrayList<>();
+            for(String query: QUERIES){
+                results.add(TestDatabase.select(db,query));
+            }
+            for(String query: ORDERED){
+                results.add(TestDatabase.rows(db.selectData(query)));
+            }
+            return results;
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Returns the tables after the same inserts and deletes on a new database with the given storage,
+     * before and after it is opened again
+     */
+    private List<Object> changes(TestDatabase.Storage storage, String name) throws Exception {
+        File dir=new File(folder,name);
+        dir.mkdir();
+        TestDatabase.create(dir,500);
+        List<Object> results=new ArrayList<>();
+        Database db=TestDatabase.open(dir,storage);
+        db.createIndex("CREATE INDEX ON student (sid)");
+        db.insertData("INSERT INTO student VALUES ('n1', 'New', 'CS', 2001), ('n2', 'New', NULL, 2002)");
+        db.insertData("INSERT INTO student (sid, byear) VALUES ('n3', 1955)");
+        db.deleteData("DELETE FROM student WHERE byear < 1960 AND major = 'Math'");
+        db.deleteData("DELETE FROM enroll WHERE grade = 'a'");
+        db.insertData("INSERT INTO course VALUES ('c99', 'New', 'CS', 2.5)");
+        db.deleteData("DELETE FROM course WHERE credits < 1.0");
+        results.add(tables(db));
+        results.add(TestDatabase.select(db,"SELECT sname FROM student WHERE sid = 'n3'"));
+        db.close();
+        Database reopened=TestDatabase.open(dir,storage);
+        try {
+            results.add(tables(reopened));
+        } finally {
+            reopened.close();
+        }
+        return results;
+    }
+
+    private static List<Object> tables(Database db) throws InvalidQueryException {
+        return List.of(TestDatabase.select(db,"SELECT sid, sname, major, byear FROM student"),
+                TestDatabase.select(db,"SELECT cno, cname, dept, credits FROM course"),
+                TestDatabase.select(db,"SELECT sid, cno, grade FROM enroll"));
+    }
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The dictionaries of the String attributes of the tables stored by tuple: interned values, equality filters
+ * comparing dictionary entries, dropped dictionaries and dictionary files
+ */
+class StringDictionaryTest {
+    @TempDir
+    File folder;
+
+    @Test
+    void equalValuesShareTheirDictionaryEntry() {
+        StringDictionary dictionary=new StringDictionary();
+        String cs=dictionary.intern(new String("CS"));
+        assertSame(cs,dictionary.intern(new String("CS")));
+        assertSame(cs,dictionary.lookup(new String("CS")));
+        assertNull(dictionary.lookup("Math"));
+        assertNull(dictionary.intern(null));
+        dictionary.intern("Math");
+        assertEquals(List.of("CS","Math"),dictionary.values());
+    }
+
+    @Test
+    void aDictionaryWithTooManyValuesIsDropped() {
+        StringDictionary dictionary=new StringDictionary();
+        for(int i=0;i<StringDictionary.MAX_VALUES;i++){
+            dictionary.intern("v"+i);
+        }
+        assertTrue(dictionary.isEncoded());
+        String value=new String("one too many");
+        assertSame(value,dictionary.intern(value));
+        assertFalse(dictionary.isEncoded());
+        assertEquals(0,dictionary.size());
+        assertNull(dictionary.lookup("v1"));
+    }
+
+    @Test
+    void loadedAndInsertedTuplesHoldTheDictionaryEntries() throws Exception {
+        TestDatabase.create(folder,100);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            db.insertData("INSERT INTO student VALUES ('new', 'N', 'CS', 2000)");
+            String cs=null;
+            for(ITuple t: db.selectData("SELECT major FROM student WHERE major = 'CS'").getTuples()){
+                cs=cs==null?t.getValue(0):cs;
+                assertSame(cs,t.getValue(0));
+            }
+            VersionedTable student=(VersionedTable) db.getTable("student");
+            assertSame(cs,student.getDictionaries()[2].lookup("CS"));
+            assertNull(student.getDictionaries()[3]);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void equalityFiltersMatchCharacterComparisonBeforeAndAfterTheDictionaryIsDropped() throws Exception {
+        TestDatabase.create(folder,100);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        db.setResultCache(0,0);
+        try {
+            VersionedTable student=(VersionedTable) db.getTable("student");
+            assertTrue(student.getDictionaries()[1].isEncoded());
+            assertFiltersMatch(db);
+            // more distinct names than a dictionary keeps: the names inserted from then on are not interned
+            StringBuilder insert=new StringBuilder("INSERT INTO student VALUES ");
+            for(int i=0;i<StringDictionary.MAX_VALUES;i++){
+                insert.append(i==0?"":", ").append("('d").append(i).append("', 'Distinct").append(i)
+                        .append("', 'CS', 2000)");
+            }
+            db.insertData(insert.toString());
+            db.insertData("INSERT INTO student VALUES ('late', 'Name5', 'CS', 2001)");
+            assertFalse(student.getDictionaries()[1].isEncoded());
+            assertTrue(student.getDictionaries()[2].isEncoded());
+            assertFiltersMatch(db);
+            assertEquals(List.of(List.of("late"),List.of("s5")),
+                    TestDatabase.select(db,"SELECT sid FROM student WHERE sname = 'Name5'"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void dictionariesAreWrittenAndReadBackWithTheirCodes() throws Exception {
+        TestDatabase.create(folder,100);
+        Database db=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        List<String> majors;
+        try {
+            assertTrue(IO.dictionaryFile("student",folder.getPath()).isFile());
+            db.insertData("INSERT INTO student VALUES ('new', 'N', 'Art', 2000)");
+            db.checkpoint();
+            majors=new ArrayList<>(((VersionedTable) db.getTable("student")).getDictionaries()[2].values());
+            assertEquals("Art",majors.get(majors.size()-1));
+        } finally {
+            db.close();
+        }
+        Database reopened=TestDatabase.open(folder,TestDatabase.Storage.VERSIONED);
+        try {
+            assertEquals(majors,((VersionedTable) reopened.getTable("student")).getDictionaries()[2].values());
+            assertEquals(1,reopened.selectData("SELECT sid FROM student WHERE major = 'Art'").getTuples().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Checks that = and != on String attributes return the rows of LIKE, which compares characters
+     */
+    private static void assertFiltersMatch(Database db) throws InvalidQueryException {
+        for(String condition: new String[]{"major = 'CS'","sname = 'Name5'","major = 'None'","sname = 'Distinct7'"}){
+            String like=condition.replace(" = "," LIKE ");
+            assertEquals(TestDatabase.select(db,"SELECT sid FROM student WHERE "+like),
+                    TestDatabase.select(db,"SELECT sid FROM student WHERE "+condition),condition);
+            assertEquals(TestDatabase.select(db,"SELECT sid FROM student WHERE NOT "+like+" AND "+like.split(" ")[0]
+                    +" LIKE '%'"),TestDatabase.select(db,"SELECT sid FROM student WHERE "+condition.replace("=","!=")),
+                    condition);
+        }
+    }
+}
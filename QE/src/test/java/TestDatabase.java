@@ -0,0 +1,124 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Creates the database folders of the tests (schema file and csv table files) and opens them
+ *
+ * The generated tables are
+ * student(sid:String, sname:String, major:String, byear:Integer): s0..sN, every seventh student without a major
+ * course(cno:String, cname:String, dept:String, credits:Double)
+ * enroll(sid:String, cno:String, grade:String): every student is enrolled in one to three courses
+ */
+final class TestDatabase {
+    static final String SCHEMA="student(sid:String, sname:String, major:String, byear:Integer)\n"
+            +"course(cno:String, cname:String, dept:String, credits:Double)\n"
+            +"enroll(sid:String, cno:String, grade:String)\n";
+    static final String[] MAJORS={"CS","Math","Biology","Physics","History"};
+    static final int COURSES=20;
+
+    /**
+     * How the tables of an opened database are stored
+     */
+    enum Storage {
+        VERSIONED, COLUMNAR, OFF_HEAP, PAGED
+    }
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Writes the schema file and the table files of a database with the given number of students
+     * @param folder
+     * @param students
+     */
+    static void create(File folder, int students) {
+        write(new File(folder,"schema.txt"),SCHEMA);
+        StringBuilder student=new StringBuilder();
+        StringBuilder enroll=new StringBuilder();
+        for(int i=0;i<students;i++){
+            student.append("s").append(i).append(",Name").append(i%97).append(',')
+                    .append(i%7==0?"":MAJORS[i%MAJORS.length]).append(',').append(1950+(i*31)%60).append('\n');
+            for(int c=0;c<=i%3;c++){
+                enroll.append("s").append(i).append(",c").append((i+c*7)%COURSES).append(',')
+                        .append((char) ('a'+(i+c)%4)).append('\n');
+            }
+        }
+        StringBuilder course=new StringBuilder();
+        for(int c=0;c<COURSES;c++){
+            course.append("c").append(c).append(",Course").append(c).append(',')
+                    .append(MAJORS[c%MAJORS.length]).append(',').append(c%4==0?"":String.valueOf(1.5*(c%5))).append('\n');
+        }
+        write(new File(folder,"student.csv"),student.toString());
+        write(new File(folder,"course.csv"),course.toString());
+        write(new File(folder,"enroll.csv"),enroll.toString());
+    }
+
+    /**
+     * Opens the database of a folder, without background checkpoints (the tests checkpoint explicitly)
+     * @param folder
+     * @param storage
+     * @return
+     */
+    static Database open(File folder, Storage storage) {
+        Database db=new Database(folder.getPath(),"schema.txt");
+        db.setColumnar(storage==Storage.COLUMNAR);
+        db.setOffHeap(storage==Storage.OFF_HEAP);
+        db.setPaged(storage==Storage.PAGED);
+        db.setCheckpoint(3_600_000,Long.MAX_VALUE);
+        db.populateDB();
+        return db;
+    }
+
+    /**
+     * Writes a text file
+     * @param file
+     * @param content
+     */
+    static void write(File file, String content) {
+        try(PrintWriter out=new PrintWriter(file,"UTF-8")){
+            out.print(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the values of the tuples of a table, in table order
+     * @param table
+     * @return
+     */
+    static List<List<Object>> rows(ITable table) {
+        List<List<Object>> rows=new ArrayList<>();
+        for(ITuple t: table.getTuples()){
+            rows.add(Arrays.asList(t.getValues()));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the values of the tuples of a table sorted on their text, to compare results without an order by
+     * @param table
+     * @return
+     */
+    static List<List<Object>> sortedRows(ITable table) {
+        List<List<Object>> rows=rows(table);
+        rows.sort(Comparator.comparing(Object::toString));
+        return rows;
+    }
+
+    /**
+     * Returns the rows of a select query (see sortedRows)
+     * @param db
+     * @param query
+     * @return
+     * @throws InvalidQueryException
+     */
+    static List<List<Object>> select(Database db, String query) throws InvalidQueryException {
+        return sortedRows(db.selectData(query));
+    }
+}